@@ -0,0 +1,51 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+/**
+ * Executes commands entered in a {@link CommandShell}. This is the link
+ * between the telnet server and the application that embeds it.
+ * <br>
+ * Commands are executed on worker threads of the command shell. Results are
+ * written to the given {@link CommandOutput} as they are produced and are
+ * passed to the terminal right away. An execution that takes too long is
+ * interrupted, so long running implementations should respond to
+ * {@link Thread#interrupt()}.
+ *
+ * @author    agent
+ */
+public interface CommandExecutor {
+
+    /**
+     * Execute a command.
+     *
+     * @param   commandLine Command line as entered, without line terminator.
+     * @param   output      Write results here.
+     * @throws  Exception   Execution failed, the message is shown to the user.
+     */
+    void execute(String commandLine, CommandOutput output) throws Exception;
+
+    /**
+     * Get the names of all known commands, used for completion.
+     *
+     * @return  Command names.
+     */
+    String[] getCommandNames();
+
+}
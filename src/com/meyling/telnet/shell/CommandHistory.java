@@ -0,0 +1,640 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import net.wimpi.telnetd.net.ConnectionData;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * History of entered command lines of one user.
+ * <br>
+ * Lines are kept in a ring of fixed size, the oldest lines are dropped when it
+ * is full. The characters of all lines share one <code>char</code> array and are
+ * located by <code>int</code> arrays, so no object per line is kept.
+ * <br>
+ * The history is stored in an append-only file per user. New lines are appended
+ * by a single background writer for all users, so typing never waits for the
+ * disk. The file is read when the history is used first. A file that grew much
+ * larger than the history is rewritten with just the kept lines.
+ * <br>
+ * Incremental reverse search uses an index that maps every trigram (three
+ * consecutive characters) to the lines containing it. Only lines containing the
+ * rarest trigram of the query have to be compared. The index is built when the
+ * first search starts and is updated with every added line afterwards.
+ * <br>
+ * The histories are configured by the following properties:
+ * <ul>
+ * <li><code>history.size</code> - maximum number of lines per user</li>
+ * <li><code>history.dir</code> - directory for history files, empty for no
+ *     persistence</li>
+ * </ul>
+ * Without a history directory every connection has a history of its own that
+ * is dropped when it closes. With a directory the history is kept per user
+ * name, which is taken from the <code>USER</code> environment variable sent by
+ * the client. That name is not authenticated: anyone who sends it can read and
+ * extend the history of that user. So persistence is off by default and should
+ * only be enabled where every client is trusted.
+ *
+ * @author    agent
+ */
+public final class CommandHistory {
+
+    /** Trace logger. */
+    private static Log trace = LogFactory.getLog(CommandHistory.class);
+
+    /** Average number of characters reserved per line. */
+    private static final int AVERAGE_LENGTH = 64;
+
+    /** Maximum number of histories kept in memory. */
+    private static final int CACHE_SIZE = 32;
+
+    /** Histories by user name, the least recently used first. */
+    private static final Map histories = new LinkedHashMap(16, 0.75f, true) {
+        protected boolean removeEldestEntry(final Map.Entry eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** Maximum number of lines per user. */
+    private static int defaultCapacity = 1000;
+
+    /** Directory for history files, <code>null</code> if not persistent. */
+    private static File directory;
+
+    /** Writes history files in the background. */
+    private static Writer writer;
+
+    /** Characters of all lines. */
+    private final char[] chars;
+
+    /** Start of each line within {@link #chars}, indexed by sequence modulo capacity. */
+    private final int[] offsets;
+
+    /** Length of each line, indexed by sequence modulo capacity. */
+    private final int[] lengths;
+
+    /** Sequence number of the oldest line. Sequence numbers never repeat. */
+    private int first;
+
+    /** Number of lines. */
+    private int count;
+
+    /** Position in {@link #chars} after the newest line. */
+    private int charEnd;
+
+    /** Number of characters used. */
+    private int charsUsed;
+
+    /** History file, <code>null</code> if not persistent. */
+    private final File file;
+
+    /** Was the history file read? */
+    private boolean loaded;
+
+    /** Maps trigram keys to {@link IntList}s of sequence numbers, <code>null</code>
+     * until the first search. */
+    private Map index;
+
+    /**
+     * Constructor.
+     *
+     * @param   capacity    Maximum number of lines.
+     * @param   file        History file, <code>null</code> if not persistent.
+     */
+    public CommandHistory(final int capacity, final File file) {
+        final int size = Math.max(1, capacity);
+        chars = new char[size * AVERAGE_LENGTH];
+        offsets = new int[size];
+        lengths = new int[size];
+        this.file = file;
+        loaded = (file == null);
+    }
+
+    /**
+     * Configure the histories.
+     *
+     * @param   settings    Server settings.
+     */
+    public static synchronized void configure(final Properties settings) {
+        defaultCapacity = Integer.parseInt(settings.getProperty("history.size", "1000"));
+        final String dir = settings.getProperty("history.dir", "");
+        directory = (dir.length() == 0 ? null : new File(dir));
+        histories.clear();
+    }
+
+    /**
+     * Get the history of a user. Its file is not read until it is used.
+     *
+     * @param   user    User name.
+     * @return  History.
+     */
+    public static synchronized CommandHistory getHistory(final String user) {
+        CommandHistory history = (CommandHistory) histories.get(user);
+        if (history == null) {
+            history = new CommandHistory(defaultCapacity,
+                (directory == null ? null : new File(directory, toFileName(user))));
+            histories.put(user, history);
+        }
+        return history;
+    }
+
+    /**
+     * Get the history of a connection. If histories are persistent they are
+     * shared by the user name from the <code>USER</code> environment variable
+     * sent by the client. Otherwise, or if the client sent no user name, the
+     * connection gets a history of its own.
+     *
+     * @param   data    Connection data.
+     * @return  History.
+     */
+    public static CommandHistory getHistory(final ConnectionData data) {
+        final Object user = data.getEnvironment().get("USER");
+        synchronized (CommandHistory.class) {
+            if (directory == null || user == null || user.toString().length() == 0) {
+                return new CommandHistory(defaultCapacity, null);
+            }
+        }
+        return getHistory(user.toString());
+    }
+
+    /**
+     * Add a line. Empty lines and repetitions of the newest line are ignored.
+     *
+     * @param   line    Entered line.
+     */
+    public synchronized void add(final String line) {
+        ensureLoaded();
+        if (line.trim().length() == 0
+                || (count > 0 && line.equals(get(count - 1)))) {
+            return;
+        }
+        append(line);
+        if (file != null) {
+            getWriter().append(file, line);
+        }
+    }
+
+    /**
+     * Get number of lines.
+     *
+     * @return  Number of lines.
+     */
+    public synchronized int size() {
+        ensureLoaded();
+        return count;
+    }
+
+    /**
+     * Get a line.
+     *
+     * @param   i   Position, <code>0</code> is the oldest line.
+     * @return  Line.
+     */
+    public synchronized String get(final int i) {
+        ensureLoaded();
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("" + i);
+        }
+        final int slot = (first + i) % offsets.length;
+        final int offset = offsets[slot];
+        final int length = lengths[slot];
+        if (offset + length <= chars.length) {
+            return new String(chars, offset, length);
+        }
+        final StringBuffer buffer = new StringBuffer(length);
+        buffer.append(chars, offset, chars.length - offset);
+        buffer.append(chars, 0, length - (chars.length - offset));
+        return buffer.toString();
+    }
+
+    /**
+     * Search the newest line before a position that contains the query.
+     *
+     * @param   query   Search for this text.
+     * @param   before  Search lines before this position.
+     * @return  Position of found line, <code>-1</code> if there is none.
+     */
+    public synchronized int search(final String query, final int before) {
+        ensureLoaded();
+        final char[] q = query.toCharArray();
+        final int end = first + Math.min(before, count);
+        if (q.length < 3) {
+            // too short for the index, but such queries match early
+            for (int seq = end - 1; seq >= first; seq--) {
+                if (contains(seq, q)) {
+                    return seq - first;
+                }
+            }
+            return -1;
+        }
+        if (index == null) {
+            buildIndex();
+        }
+        // the rarest trigram has the shortest list of candidates
+        IntList candidates = null;
+        for (int i = 0; i + 2 < q.length; i++) {
+            final IntList list = (IntList) index.get(Long.valueOf(trigram(q, i)));
+            if (list == null) {
+                return -1;
+            }
+            if (candidates == null || list.size() < candidates.size()) {
+                candidates = list;
+            }
+        }
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            final int seq = candidates.get(i);
+            if (seq < first) {
+                break;
+            }
+            if (seq < end && contains(seq, q)) {
+                return seq - first;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append a line to the ring, dropping the oldest lines if necessary.
+     *
+     * @param   line    New line.
+     */
+    private void append(final String line) {
+        final int length = Math.min(line.length(), chars.length);
+        while (count == offsets.length || chars.length - charsUsed < length) {
+            evict();
+        }
+        final int seq = first + count;
+        final int slot = seq % offsets.length;
+        offsets[slot] = charEnd;
+        lengths[slot] = length;
+        final int part = Math.min(length, chars.length - charEnd);
+        line.getChars(0, part, chars, charEnd);
+        line.getChars(part, length, chars, 0);
+        charEnd = (charEnd + length) % chars.length;
+        charsUsed += length;
+        count++;
+        if (index != null) {
+            indexLine(seq);
+        }
+    }
+
+    /**
+     * Drop the oldest line.
+     */
+    private void evict() {
+        if (index != null) {
+            unindexLine(first);
+        }
+        charsUsed -= lengths[first % offsets.length];
+        first++;
+        count--;
+    }
+
+    /**
+     * Does a line contain a text?
+     *
+     * @param   seq     Sequence number of line.
+     * @param   q       Search for this text.
+     * @return  Text found?
+     */
+    private boolean contains(final int seq, final char[] q) {
+        final int slot = seq % offsets.length;
+        final int offset = offsets[slot];
+        final int length = lengths[slot];
+        for (int i = 0; i + q.length <= length; i++) {
+            int j = 0;
+            while (j < q.length && chars[(offset + i + j) % chars.length] == q[j]) {
+                j++;
+            }
+            if (j == q.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create the trigram index for all lines.
+     */
+    private void buildIndex() {
+        index = new HashMap();
+        for (int seq = first; seq < first + count; seq++) {
+            indexLine(seq);
+        }
+    }
+
+    /**
+     * Add the trigrams of a line to the index.
+     *
+     * @param   seq     Sequence number of line.
+     */
+    private void indexLine(final int seq) {
+        final char[] line = get(seq - first).toCharArray();
+        for (int i = 0; i + 2 < line.length; i++) {
+            final Long key = Long.valueOf(trigram(line, i));
+            IntList list = (IntList) index.get(key);
+            if (list == null) {
+                list = new IntList();
+                index.put(key, list);
+            }
+            // lines are added in order, so a repeated trigram is the last entry
+            if (list.size() == 0 || list.get(list.size() - 1) != seq) {
+                list.add(seq);
+            }
+        }
+    }
+
+    /**
+     * Remove the trigrams of the oldest line from the index.
+     *
+     * @param   seq     Sequence number of the oldest line.
+     */
+    private void unindexLine(final int seq) {
+        final char[] line = get(0).toCharArray();
+        for (int i = 0; i + 2 < line.length; i++) {
+            final Long key = Long.valueOf(trigram(line, i));
+            final IntList list = (IntList) index.get(key);
+            if (list != null) {
+                list.removeBelow(seq + 1);
+                if (list.size() == 0) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the index key for three characters.
+     *
+     * @param   text    Text.
+     * @param   i       Position of first character.
+     * @return  Trigram key.
+     */
+    private static long trigram(final char[] text, final int i) {
+        return ((long) text[i] << 32) | ((long) text[i + 1] << 16) | text[i + 2];
+    }
+
+    /**
+     * Read the history file if that was not done yet.
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        int lines = 0;
+        try {
+            final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    append(line);
+                    lines++;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            trace.warn("reading history " + file + " failed", e);
+        }
+        if (lines > 2 * offsets.length) {
+            final String[] kept = new String[count];
+            for (int i = 0; i < count; i++) {
+                kept[i] = get(i);
+            }
+            getWriter().rewrite(file, kept);
+        }
+    }
+
+    /**
+     * Get the background writer, start it if necessary.
+     *
+     * @return  Writer for history files.
+     */
+    private static synchronized Writer getWriter() {
+        if (writer == null) {
+            writer = new Writer();
+            writer.start();
+        }
+        return writer;
+    }
+
+    /**
+     * Convert a user name into a file name.
+     *
+     * @param   user    User name.
+     * @return  File name.
+     */
+    private static String toFileName(final String user) {
+        final StringBuffer name = new StringBuffer(user.length() + 8);
+        for (int i = 0; i < user.length(); i++) {
+            final char c = user.charAt(i);
+            name.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' ? c : '_');
+        }
+        return name.append(".history").toString();
+    }
+
+    /**
+     * Growing list of <code>int</code>s in ascending order, that can be cut
+     * at the front.
+     */
+    private static final class IntList {
+
+        /** Values, valid from {@link #start} to {@link #end}. */
+        private int[] values = new int[4];
+
+        /** Position of first value. */
+        private int start;
+
+        /** Position after last value. */
+        private int end;
+
+        /**
+         * Get number of values.
+         *
+         * @return  Size.
+         */
+        int size() {
+            return end - start;
+        }
+
+        /**
+         * Get a value.
+         *
+         * @param   i   Position.
+         * @return  Value.
+         */
+        int get(final int i) {
+            return values[start + i];
+        }
+
+        /**
+         * Add a value at the end.
+         *
+         * @param   value   Value, not smaller than the last one.
+         */
+        void add(final int value) {
+            if (end == values.length) {
+                final int[] grown = new int[Math.max(4, 2 * size())];
+                System.arraycopy(values, start, grown, 0, size());
+                end -= start;
+                start = 0;
+                values = grown;
+            }
+            values[end++] = value;
+        }
+
+        /**
+         * Remove all values below a limit.
+         *
+         * @param   limit   Smallest value kept.
+         */
+        void removeBelow(final int limit) {
+            while (start < end && values[start] < limit) {
+                start++;
+            }
+        }
+    }
+
+    /**
+     * Appends lines to history files in the background.
+     */
+    private static final class Writer extends Thread {
+
+        /** Pending tasks, each is a file followed by a line or an array of lines. */
+        private final LinkedList queue = new LinkedList();
+
+        /**
+         * Constructor.
+         */
+        Writer() {
+            super("CommandHistory writer");
+            setDaemon(true);
+        }
+
+        /**
+         * Append a line to a file.
+         *
+         * @param   file    History file.
+         * @param   line    New line.
+         */
+        synchronized void append(final File file, final String line) {
+            queue.addLast(file);
+            queue.addLast(line);
+            notifyAll();
+        }
+
+        /**
+         * Replace the content of a file.
+         *
+         * @param   file    History file.
+         * @param   lines   New content.
+         */
+        synchronized void rewrite(final File file, final String[] lines) {
+            queue.addLast(file);
+            queue.addLast(lines);
+            notifyAll();
+        }
+
+        public void run() {
+            while (true) {
+                final List tasks = new ArrayList();
+                synchronized (this) {
+                    while (queue.isEmpty()) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    tasks.addAll(queue);
+                    queue.clear();
+                }
+                for (int i = 0; i < tasks.size(); i += 2) {
+                    final File file = (File) tasks.get(i);
+                    try {
+                        final Object content = tasks.get(i + 1);
+                        if (content instanceof String[]) {
+                            write(file, (String[]) content, false);
+                            continue;
+                        }
+                        // collect further lines for the same file
+                        final List lines = new ArrayList();
+                        lines.add(content);
+                        while (i + 2 < tasks.size() && file.equals(tasks.get(i + 2))
+                                && tasks.get(i + 3) instanceof String) {
+                            lines.add(tasks.get(i + 3));
+                            i += 2;
+                        }
+                        write(file, (String[]) lines.toArray(new String[lines.size()]), true);
+                    } catch (IOException e) {
+                        trace.warn("writing history " + file + " failed", e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Write lines to a file.
+         *
+         * @param   file    History file.
+         * @param   lines   Lines to write.
+         * @param   append  Append or replace content?
+         * @throws  IOException Writing failed.
+         */
+        private void write(final File file, final String[] lines, final boolean append)
+                throws IOException {
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            final StringBuffer buffer = new StringBuffer();
+            for (int i = 0; i < lines.length; i++) {
+                buffer.append(lines[i]).append('\n');
+            }
+            final OutputStream out = new FileOutputStream(file, append);
+            try {
+                out.write(buffer.toString().getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+/**
+ * Receives the results of a command executed by a {@link CommandExecutor}.
+ * Lines are passed to the terminal as they arrive. Implementations are thread
+ * safe, executors may write from any thread.
+ *
+ * @author    agent
+ */
+public interface CommandOutput {
+
+    /**
+     * Write a result line.
+     *
+     * @param   line    Line without line terminator.
+     */
+    void println(String line);
+
+    /**
+     * Write an error line, shown in red.
+     *
+     * @param   line    Line without line terminator.
+     */
+    void error(String line);
+
+}
@@ -0,0 +1,512 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.io.toolkit.LineEditor;
+import net.wimpi.telnetd.net.Connection;
+import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.net.SignalListener;
+import net.wimpi.telnetd.shell.Shell;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Shell that runs commands within the JVM instead of starting a system shell.
+ * Commands are executed by a {@link CommandExecutor}, which is the application
+ * embedding the server or the {@link LocalCommandExecutor} stand-in.
+ * <br>
+ * Commands run on a bounded pool of worker threads shared by all sessions.
+ * Their output is written to the terminal as it is produced. A command that
+ * exceeds its time limit is interrupted, Ctrl-C (or an NVT IP or BRK)
+ * interrupts it too. Other keys typed meanwhile are kept and handled once
+ * the command is finished. Entered
+ * lines are kept in a history (cursor up and down, Ctrl-R searches), command
+ * names and configured words are completed with the tabulator key.
+ * <br>
+ * The shell is configured by the following properties:
+ * <ul>
+ * <li><code>commandshell.executor</code> - class name of the executor, must have
+ *     a public default constructor</li>
+ * <li><code>commandshell.threads</code> - number of worker threads</li>
+ * <li><code>commandshell.queue</code> - number of commands that may wait for a worker</li>
+ * <li><code>commandshell.timeout</code> - milliseconds a command may run</li>
+ * </ul>
+ *
+ * @author    agent
+ */
+public final class CommandShell implements Shell, SignalListener {
+
+    /** Trace logger. */
+    private static Log trace = LogFactory.getLog(CommandShell.class);
+
+    /** Character sent for Ctrl-C. */
+    private static final int CTRL_C = 3;
+
+    /** Milliseconds to wait for output before input and time limit are checked. */
+    private static final int OUTPUT_CHECK_INTERVAL = 50;
+
+    /** Maximum number of output lines queued for the terminal. */
+    private static final int MAX_QUEUED_LINES = 1000;
+
+    /** Prompt. */
+    private static final String PROMPT = "> ";
+
+    /** Executes the commands. */
+    private static CommandExecutor executor;
+
+    /** Worker threads. */
+    private static ThreadPoolExecutor workers;
+
+    /** Milliseconds a command may run. */
+    private static long timeout = 30000;
+
+    /** Connection this shell works on. */
+    private Connection connection;
+
+    /** For low level terminal IO. */
+    private ShellIo shellIo;
+
+    /** Previously entered lines of this user. */
+    private CommandHistory history;
+
+    /** Edits the input line. */
+    private LineEditor editor;
+
+    /** Completes command names and configured words. */
+    private final Completer completer = new Completer();
+
+    /** Keys typed while a command was running, as {@link Integer}s. */
+    private final LinkedList typeAhead = new LinkedList();
+
+    /** Was an interrupt signalled while a command was running? */
+    private volatile boolean interruptRequested;
+
+    /**
+     * Configure the shell.
+     *
+     * @param   settings    Server settings.
+     * @throws  Exception   Executor could not be created.
+     */
+    public static synchronized void configure(final Properties settings) throws Exception {
+        final String executorClass = settings.getProperty("commandshell.executor");
+        if (executorClass != null && executorClass.length() > 0) {
+            executor = (CommandExecutor) Class.forName(executorClass).newInstance();
+        }
+        final int threads = Integer.parseInt(settings.getProperty("commandshell.threads", "4"));
+        final int queue = Integer.parseInt(settings.getProperty("commandshell.queue", "16"));
+        timeout = Long.parseLong(settings.getProperty("commandshell.timeout", "30000"));
+        if (workers != null) {
+            workers.shutdown();
+        }
+        workers = createWorkers(threads, queue);
+    }
+
+    /**
+     * Set the executor. Used by an embedding application that configures the
+     * server programmatically.
+     *
+     * @param   commandExecutor Executes the commands.
+     */
+    public static synchronized void setCommandExecutor(final CommandExecutor commandExecutor) {
+        executor = commandExecutor;
+    }
+
+    /**
+     * Get the executor, the stand-in if none is set.
+     *
+     * @return  Executor.
+     */
+    private static synchronized CommandExecutor getCommandExecutor() {
+        if (executor == null) {
+            executor = new LocalCommandExecutor();
+        }
+        return executor;
+    }
+
+    /**
+     * Get the worker threads, create them with default settings if not configured.
+     *
+     * @return  Worker threads.
+     */
+    private static synchronized ThreadPoolExecutor getWorkers() {
+        if (workers == null) {
+            workers = createWorkers(4, 16);
+        }
+        return workers;
+    }
+
+    /**
+     * Create a bounded pool of daemon worker threads.
+     *
+     * @param   threads Number of threads.
+     * @param   queue   Number of waiting commands.
+     * @return  Worker pool.
+     */
+    private static ThreadPoolExecutor createWorkers(final int threads, final int queue) {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+            60, TimeUnit.SECONDS, new ArrayBlockingQueue(Math.max(1, queue)),
+            new ThreadFactory() {
+                private int number;
+                public synchronized Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "CommandShell-" + (++number));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public static Shell createShell() {
+        return new CommandShell();
+    }
+
+    public void run(final Connection con) {
+        connection = con;
+        shellIo = new ShellIo(connection);
+        editor = new LineEditor(shellIo);
+        history = CommandHistory.getHistory(connection.getConnectionData());
+        completer.addProvider(new VocabularyProvider(Completer.getRefreshInterval(), true) {
+            protected String[] loadWords() {
+                return getCommandExecutor().getCommandNames();
+            }
+        });
+        completer.addProvider(Completer.getVocabulary());
+        connection.addConnectionListener(this);
+        try {
+            shellIo.eraseScreen();
+            shellIo.homeCursor();
+            shellIo.setForegroundColor(BasicTerminalIO.GREEN);
+            shellIo.write("Command shell, \"exit\" to quit, tabulator completes commands");
+            shellIo.resetAttributes();
+            shellIo.write(BasicTerminalIO.CRLF);
+            shellIo.flush();
+            while (connection.isActive()) {
+                final String line = readLine();
+                if (line == null || "exit".equals(line.trim()) || "quit".equals(line.trim())) {
+                    break;
+                }
+                if (line.trim().length() > 0) {
+                    execute(line);
+                }
+            }
+        } catch (IOException e) {
+            trace.warn(e, e);
+        }
+    }
+
+    /**
+     * Execute a command and write its output while it is produced.
+     *
+     * @param   line    Command line.
+     * @throws  IOException Terminal access failed.
+     */
+    private void execute(final String line) throws IOException {
+        final SessionOutput output = new SessionOutput();
+        final CommandExecutor commandExecutor = getCommandExecutor();
+        final Future future;
+        try {
+            future = getWorkers().submit(new Runnable() {
+                public void run() {
+                    try {
+                        commandExecutor.execute(line, output);
+                    } catch (InterruptedException e) {
+                        // cancelled, reported by the session
+                    } catch (Exception e) {
+                        output.error(e.getMessage() != null ? e.getMessage() : e.toString());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            writeLine("server busy, try again later", true);
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        interruptRequested = false;
+        while (true) {
+            final boolean done = future.isDone();
+            output.writeTo(this);
+            if (done) {
+                break;
+            }
+            // never blocks, telnet commands without data included
+            final int key = shellIo.read(0);
+            if (key == CTRL_C || interruptRequested) {
+                interruptRequested = false;
+                future.cancel(true);
+                writeLine("^C", true);
+            } else if (timeout > 0 && System.currentTimeMillis() - start > timeout) {
+                future.cancel(true);
+                writeLine("command timed out after " + timeout + " ms", true);
+            } else if (key != BasicTerminalIO.TIMEDOUT) {
+                typeAhead.addLast(Integer.valueOf(key));
+            } else {
+                output.await(OUTPUT_CHECK_INTERVAL);
+            }
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            // ignore
+        } catch (ExecutionException e) {
+            trace.error(e, e);
+        } catch (CancellationException e) {
+            // reported already
+        }
+    }
+
+    /**
+     * Write a line to the terminal.
+     *
+     * @param   line    Line without line terminator.
+     * @param   error   Show as error?
+     * @throws  IOException Writing failed.
+     */
+    private void writeLine(final String line, final boolean error) throws IOException {
+        if (error) {
+            shellIo.setForegroundColor(BasicTerminalIO.RED);
+        }
+        final byte[] bytes = line.getBytes();
+        shellIo.write(bytes, 0, bytes.length);
+        if (error) {
+            shellIo.resetAttributes();
+        }
+        shellIo.write(BasicTerminalIO.CRLF);
+    }
+
+    /**
+     * Read a line. The line is edited by a {@link LineEditor}, the history is
+     * browsed with cursor up and down, the tabulator completes words and Ctrl-C
+     * discards the line.
+     *
+     * @return  Line entered, <code>null</code> if the connection was closed.
+     * @throws  IOException Terminal access failed.
+     */
+    private String readLine() throws IOException {
+        shellIo.write(PROMPT);
+        shellIo.flush();
+        editor.reset();
+        int historyIndex = history.size();
+        while (connection.isActive()) {
+            int c = (typeAhead.isEmpty() ? shellIo.read()
+                : ((Integer) typeAhead.removeFirst()).intValue());
+            if (c == HistorySearch.CTRL_R) {
+                c = searchHistory();
+                historyIndex = history.size();
+            }
+            switch (c) {
+            case BasicTerminalIO.ENTER:
+                shellIo.write(BasicTerminalIO.CRLF);
+                shellIo.flush();
+                final String line = editor.getValue();
+                history.add(line);
+                return line;
+            case CTRL_C:
+                shellIo.write("^C");
+                shellIo.write(BasicTerminalIO.CRLF);
+                editor.reset();
+                shellIo.write(PROMPT);
+                historyIndex = history.size();
+                break;
+            case BasicTerminalIO.UP:
+                if (historyIndex > 0) {
+                    historyIndex--;
+                    editor.setValue(history.get(historyIndex));
+                }
+                break;
+            case BasicTerminalIO.DOWN:
+                if (historyIndex < history.size()) {
+                    historyIndex++;
+                    editor.setValue(historyIndex < history.size()
+                        ? history.get(historyIndex) : "");
+                }
+                break;
+            case BasicTerminalIO.TABULATOR:
+                complete();
+                break;
+            default:
+                editor.handleKey(c);
+            }
+            shellIo.flush();
+        }
+        return null;
+    }
+
+    /**
+     * Complete the word before the cursor. If there are several completions
+     * without a common extension, the user selects one.
+     *
+     * @throws  IOException Terminal access failed.
+     */
+    private void complete() throws IOException {
+        final int cursor = editor.getCursor();
+        final Completer.Completion completion = completer.complete(
+            editor.getText(0, cursor));
+        if (completion == null) {
+            shellIo.bell();
+        } else if (completion.isAmbiguous()) {
+            final int start = cursor - completion.getWord().length();
+            editor.setCursor(start);
+            editor.replace(start, cursor, Completer.select(shellIo, completion));
+        } else {
+            editor.insert(completion.getInsertion());
+        }
+    }
+
+    /**
+     * Search the history incrementally. A found line replaces the line being
+     * edited, otherwise the line is restored.
+     *
+     * @return  Key that ended the search, <code>-1</code> if it was cancelled.
+     * @throws  IOException Terminal access failed.
+     */
+    private int searchHistory() throws IOException {
+        editor.erase();
+        final HistorySearch search = new HistorySearch(shellIo, history);
+        final int key = search.run();
+        if (search.getResult() == null) {
+            editor.draw();
+            return -1;
+        }
+        editor.reset();
+        editor.insert(search.getResult());
+        return key;
+    }
+
+    public void connectionTimedOut(final ConnectionEvent ce) {
+        connection.close();
+    }
+
+    public void connectionIdle(final ConnectionEvent ce) {
+        // ignored
+    }
+
+    public void connectionLogoutRequest(final ConnectionEvent ce) {
+        connection.close();
+    }
+
+    public void connectionSentBreak(final ConnectionEvent ce) {
+        interruptRequested = true;
+    }
+
+    public void connectionInterrupted(final ConnectionEvent ce) {
+        interruptRequested = true;
+    }
+
+    public void connectionOutputAborted(final ConnectionEvent ce) {
+        // lines are written as they come, nothing is queued for long
+    }
+
+    /**
+     * Collects the output of a running command. Lines are queued by the worker
+     * thread and written to the terminal by the thread of the connection.
+     * Producers never block: while {@link #MAX_QUEUED_LINES} lines are waiting
+     * for a slow terminal, further lines are dropped and only counted.
+     */
+    private static final class SessionOutput implements CommandOutput {
+
+        /** Queued lines, every line is followed by its error flag. */
+        private final LinkedList queue = new LinkedList();
+
+        /** Number of lines dropped since the queue was written. */
+        private int dropped;
+
+        public void println(final String line) {
+            add(line, Boolean.FALSE);
+        }
+
+        public void error(final String line) {
+            add(line, Boolean.TRUE);
+        }
+
+        /**
+         * Queue a line, or drop it if the queue is full.
+         *
+         * @param   line    Line to queue.
+         * @param   error   Error flag of the line.
+         */
+        private synchronized void add(final String line, final Boolean error) {
+            if (queue.size() >= 2 * MAX_QUEUED_LINES) {
+                dropped++;
+                return;
+            }
+            queue.addLast(line);
+            queue.addLast(error);
+            notifyAll();
+        }
+
+        /**
+         * Wait for output.
+         *
+         * @param   millis  Maximum milliseconds to wait.
+         */
+        synchronized void await(final long millis) {
+            if (queue.isEmpty()) {
+                try {
+                    wait(millis);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        }
+
+        /**
+         * Write queued lines to the terminal of the shell.
+         *
+         * @param   shell   Write with this shell.
+         * @throws  IOException Writing failed.
+         */
+        void writeTo(final CommandShell shell) throws IOException {
+            final Object[] lines;
+            final int lost;
+            synchronized (this) {
+                if (queue.isEmpty()) {
+                    return;
+                }
+                lines = queue.toArray();
+                queue.clear();
+                lost = dropped;
+                dropped = 0;
+            }
+            for (int i = 0; i < lines.length; i += 2) {
+                shell.writeLine((String) lines[i], ((Boolean) lines[i + 1]).booleanValue());
+            }
+            if (lost > 0) {
+                // the dropped lines came after the queued ones
+                shell.writeLine("[" + lost + " lines dropped]", true);
+            }
+            shell.shellIo.flush();
+        }
+    }
+
+}
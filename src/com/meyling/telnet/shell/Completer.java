@@ -0,0 +1,239 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.io.toolkit.Selection;
+import net.wimpi.telnetd.util.StringUtil;
+
+/**
+ * Completes the word before the cursor with the words of its
+ * {@link CompletionProvider}s. If the word has a single completion it is
+ * completed and followed by a blank, else it is extended to the longest common
+ * prefix of all completions. If that does not extend it, the completions are
+ * offered in a {@link Selection} at the position of the word.
+ * <br>
+ * The vocabulary shared by all shells is configured by the following
+ * properties:
+ * <ul>
+ * <li><code>completion.words</code> - comma separated words completed
+ *     everywhere in a line</li>
+ * <li><code>completion.refresh</code> - milliseconds after which loaded
+ *     vocabularies like command names are loaded again</li>
+ * </ul>
+ *
+ * @author    agent
+ */
+public final class Completer {
+
+    /** Maximum number of completions offered for selection. */
+    private static final int MAX_CANDIDATES = 200;
+
+    /** Words completed everywhere. */
+    private static VocabularyProvider vocabulary
+        = new VocabularyProvider(new String[0], false);
+
+    /** Milliseconds after which loaded vocabularies are refreshed. */
+    private static long refreshInterval = 60000;
+
+    /** Asked for words in this order. */
+    private final List providers = new ArrayList();
+
+    /**
+     * Configure the shared vocabulary.
+     *
+     * @param   settings    Server settings.
+     */
+    public static synchronized void configure(final Properties settings) {
+        final String words = settings.getProperty("completion.words", "").trim();
+        vocabulary = new VocabularyProvider(
+            (words.length() == 0 ? new String[0] : StringUtil.split(words, ",")), false);
+        refreshInterval = Long.parseLong(settings.getProperty("completion.refresh", "60000"));
+    }
+
+    /**
+     * Get provider for the configured words.
+     *
+     * @return  Shared vocabulary.
+     */
+    public static synchronized CompletionProvider getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * Get milliseconds after which loaded vocabularies are refreshed.
+     *
+     * @return  Refresh interval.
+     */
+    public static synchronized long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Add a provider.
+     *
+     * @param   provider    Supplies words to complete.
+     */
+    public void addProvider(final CompletionProvider provider) {
+        providers.add(provider);
+    }
+
+    /**
+     * Complete the last word of a text.
+     *
+     * @param   text    Line up to the cursor.
+     * @return  Completions of the last word, <code>null</code> if there are none.
+     */
+    public Completion complete(final String text) {
+        final int start = text.lastIndexOf(' ') + 1;
+        final String line = text.substring(0, start);
+        final String word = text.substring(start);
+        final TreeSet candidates = new TreeSet();
+        String common = null;
+        for (int i = 0; i < providers.size(); i++) {
+            final PrefixTrie words = ((CompletionProvider) providers.get(i)).getWords(line, word);
+            final String prefix = (words == null ? null : words.getCommonPrefix(word));
+            if (prefix == null) {
+                continue;
+            }
+            common = (common == null ? prefix : commonPrefix(common, prefix));
+            final String[] found = words.getWords(word, MAX_CANDIDATES);
+            for (int j = 0; j < found.length && candidates.size() < MAX_CANDIDATES; j++) {
+                candidates.add(found[j]);
+            }
+        }
+        if (common == null) {
+            return null;
+        }
+        return new Completion(word, common,
+            (String[]) candidates.toArray(new String[candidates.size()]));
+    }
+
+    /**
+     * Let the user select one of several completions. The cursor must be
+     * placed at the start of the word. The completions are shown there, the
+     * word is erased together with the rest of the line afterwards.
+     *
+     * @param   io          Terminal.
+     * @param   completion  Completions of word.
+     * @return  Selected completion.
+     * @throws  IOException Terminal access failed.
+     */
+    public static String select(final BasicTerminalIO io, final Completion completion)
+            throws IOException {
+        final String[] candidates = completion.getCandidates();
+        final Selection selection = new Selection(io, "completion");
+        for (int i = 0; i < candidates.length; i++) {
+            selection.addOption(candidates[i]);
+        }
+        selection.run();
+        io.eraseToEndOfLine();
+        return selection.getOption(selection.getSelected());
+    }
+
+    private static String commonPrefix(final String a, final String b) {
+        final int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return a.substring(0, i);
+    }
+
+    /**
+     * Completions of a word.
+     */
+    public static final class Completion {
+
+        /** Completed word. */
+        private final String word;
+
+        /** Longest common prefix of all completions. */
+        private final String common;
+
+        /** Completions in sorted order, limited to {@link Completer#MAX_CANDIDATES}. */
+        private final String[] candidates;
+
+        /**
+         * Constructor.
+         *
+         * @param   word        Completed word.
+         * @param   common      Longest common prefix of all completions.
+         * @param   candidates  Completions in sorted order.
+         */
+        Completion(final String word, final String common, final String[] candidates) {
+            this.word = word;
+            this.common = common;
+            this.candidates = candidates;
+        }
+
+        /**
+         * Get completed word.
+         *
+         * @return  Word before the cursor.
+         */
+        public String getWord() {
+            return word;
+        }
+
+        /**
+         * Get completions.
+         *
+         * @return  Completions in sorted order.
+         */
+        public String[] getCandidates() {
+            return candidates;
+        }
+
+        /**
+         * Get text to insert after the word. A single completion is followed
+         * by a blank unless it is a directory.
+         *
+         * @return  Text to insert, empty if the completions have no common
+         *          extension.
+         */
+        public String getInsertion() {
+            if (candidates.length == 1) {
+                final String candidate = candidates[0];
+                final boolean directory = candidate.endsWith("/")
+                    || candidate.endsWith(File.separator);
+                return candidate.substring(word.length()) + (directory ? "" : " ");
+            }
+            return common.substring(word.length());
+        }
+
+        /**
+         * Must the user select a completion?
+         *
+         * @return  Are there several completions without common extension?
+         */
+        public boolean isAmbiguous() {
+            return candidates.length > 1 && common.length() == word.length();
+        }
+
+    }
+
+}
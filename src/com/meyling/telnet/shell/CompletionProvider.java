@@ -0,0 +1,40 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+/**
+ * Supplies the words a {@link Completer} completes from. A provider decides by
+ * the position of the word within the line whether it applies, for example
+ * command names only complete the first word of a line.
+ *
+ * @author    agent
+ */
+public interface CompletionProvider {
+
+    /**
+     * Get the words that may complete a word. Implementations should cache the
+     * returned trie, this method is called for every completion request.
+     *
+     * @param   line    Text before the word.
+     * @param   word    Word to complete.
+     * @return  Words, <code>null</code> if this provider does not apply.
+     */
+    PrefixTrie getWords(String line, String word);
+
+}
@@ -0,0 +1,181 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.IOException;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+
+/**
+ * Incremental reverse search in a {@link CommandHistory}, as started by Ctrl-R.
+ * <br>
+ * The search is shown at the cursor position, in the place of the line being
+ * edited. Typed characters extend the query and the newest matching line is
+ * shown, Ctrl-R finds the next older match and backspace shortens the query.
+ * Ctrl-G or Ctrl-C cancel the search. Any other key accepts the found line
+ * and ends the search; the caller should handle that key as if typed after
+ * the line.
+ *
+ * @author    agent
+ */
+public final class HistorySearch {
+
+    /** Character sent for Ctrl-C. */
+    public static final int CTRL_C = 3;
+
+    /** Character sent for Ctrl-G. */
+    public static final int CTRL_G = 7;
+
+    /** Character sent for Ctrl-R. */
+    public static final int CTRL_R = 18;
+
+    /** Terminal. */
+    private final ShellIo shellIo;
+
+    /** Search in this history. */
+    private final CommandHistory history;
+
+    /** Number of characters currently shown. */
+    private int shown;
+
+    /** Accepted line, <code>null</code> if cancelled. */
+    private String result;
+
+    /**
+     * Constructor.
+     *
+     * @param   shellIo Terminal.
+     * @param   history Search in this history.
+     */
+    public HistorySearch(final ShellIo shellIo, final CommandHistory history) {
+        this.shellIo = shellIo;
+        this.history = history;
+    }
+
+    /**
+     * Run the search until a line is accepted or the search is cancelled.
+     * The shown search is removed again, the cursor is where it was at start.
+     *
+     * @return  Key that ended the search.
+     * @throws  IOException Terminal access failed.
+     */
+    public int run() throws IOException {
+        final StringBuffer query = new StringBuffer();
+        int found = -1;
+        boolean failed = false;
+        show(query, found, failed);
+        while (true) {
+            final int c = shellIo.read();
+            switch (c) {
+            case CTRL_R:
+                if (query.length() > 0) {
+                    final int older = history.search(query.toString(),
+                        (found >= 0 ? found : history.size()));
+                    if (older >= 0) {
+                        found = older;
+                        failed = false;
+                    } else {
+                        shellIo.bell();
+                    }
+                }
+                break;
+            case BasicTerminalIO.BACKSPACE:
+            case BasicTerminalIO.DELETE:
+                if (query.length() > 0) {
+                    query.setLength(query.length() - 1);
+                    found = (query.length() > 0
+                        ? history.search(query.toString(), history.size()) : -1);
+                    failed = (query.length() > 0 && found < 0);
+                }
+                break;
+            case CTRL_C:
+            case CTRL_G:
+            case BasicTerminalIO.ESCAPE:
+                result = null;
+                erase();
+                return c;
+            default:
+                if (c >= ' ' && c < 256) {
+                    query.append((char) c);
+                    // the current match may still fit
+                    final int match = history.search(query.toString(),
+                        (found >= 0 ? found + 1 : history.size()));
+                    if (match >= 0) {
+                        found = match;
+                        failed = false;
+                    } else {
+                        failed = true;
+                    }
+                } else {
+                    result = (found >= 0 ? history.get(found) : null);
+                    erase();
+                    return c;
+                }
+            }
+            show(query, found, failed);
+        }
+    }
+
+    /**
+     * Get the accepted line.
+     *
+     * @return  Accepted line, <code>null</code> if the search was cancelled
+     *          or nothing was found.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * Show current state of search.
+     *
+     * @param   query   Query.
+     * @param   found   Position of found line, <code>-1</code> if none.
+     * @param   failed  Did the last change of the query fail?
+     * @throws  IOException Terminal access failed.
+     */
+    private void show(final StringBuffer query, final int found, final boolean failed)
+            throws IOException {
+        erase();
+        String text = (failed ? "(failed reverse-i-search)`" : "(reverse-i-search)`")
+            + query + "': " + (found >= 0 ? history.get(found) : "");
+        // stay within one line
+        final int max = Math.max(1, shellIo.getColumns() - 1);
+        if (text.length() > max) {
+            text = text.substring(0, max);
+        }
+        shellIo.write(text);
+        shellIo.flush();
+        shown = text.length();
+    }
+
+    /**
+     * Remove shown search.
+     *
+     * @throws  IOException Terminal access failed.
+     */
+    private void erase() throws IOException {
+        if (shown > 0) {
+            shellIo.moveLeft(shown);
+            shellIo.eraseToEndOfLine();
+            shown = 0;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.util.Date;
+import java.util.StringTokenizer;
+
+/**
+ * Stand-in {@link CommandExecutor} that needs no embedding application. It is
+ * used if no other executor is configured and knows a few commands for
+ * trying out the {@link CommandShell}:
+ * <ul>
+ * <li><code>help</code> - list commands</li>
+ * <li><code>echo</code> <em>text</em> - print text</li>
+ * <li><code>date</code> - print current time</li>
+ * <li><code>memory</code> - print memory usage of the JVM</li>
+ * <li><code>count</code> <em>n</em> [<em>millis</em>] - print n lines, one each
+ *     <em>millis</em> milliseconds</li>
+ * </ul>
+ *
+ * @author    agent
+ */
+public final class LocalCommandExecutor implements CommandExecutor {
+
+    /** Known commands. */
+    private static final String[] COMMANDS = {"count", "date", "echo", "help", "memory"};
+
+    public void execute(final String commandLine, final CommandOutput output)
+            throws Exception {
+        final StringTokenizer tokens = new StringTokenizer(commandLine);
+        if (!tokens.hasMoreTokens()) {
+            return;
+        }
+        final String command = tokens.nextToken();
+        if ("help".equals(command)) {
+            for (int i = 0; i < COMMANDS.length; i++) {
+                output.println(COMMANDS[i]);
+            }
+        } else if ("echo".equals(command)) {
+            output.println(commandLine.substring(commandLine.indexOf("echo") + 4).trim());
+        } else if ("date".equals(command)) {
+            output.println(new Date().toString());
+        } else if ("memory".equals(command)) {
+            final Runtime runtime = Runtime.getRuntime();
+            output.println("free:  " + runtime.freeMemory() / 1024 + " KB");
+            output.println("total: " + runtime.totalMemory() / 1024 + " KB");
+            output.println("max:   " + runtime.maxMemory() / 1024 + " KB");
+        } else if ("count".equals(command)) {
+            final int n = Integer.parseInt(tokens.nextToken());
+            final long millis = (tokens.hasMoreTokens() ? Long.parseLong(tokens.nextToken()) : 0);
+            for (int i = 1; i <= n; i++) {
+                if (millis > 0) {
+                    Thread.sleep(millis);
+                }
+                output.println(String.valueOf(i));
+            }
+        } else {
+            output.error(command + ": command not found");
+        }
+    }
+
+    public String[] getCommandNames() {
+        return COMMANDS.clone();
+    }
+
+}
@@ -0,0 +1,236 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.PatternSyntaxException;
+
+import net.wimpi.telnetd.io.terminal.ColorHelper;
+import net.wimpi.telnetd.io.toolkit.InputFilter;
+import net.wimpi.telnetd.io.toolkit.Pager;
+import net.wimpi.telnetd.io.toolkit.RingSource;
+import net.wimpi.telnetd.net.Connection;
+import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.shell.Shell;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Shows the server console log. New lines of the configured log file are
+ * shown as they arrive, by a {@link Pager} following a {@link RingSource}.
+ * <br>
+ * All sessions share one {@link LogTailer}, so a viewer costs neither a
+ * process nor a thread besides its connection and its pager. Lines are kept
+ * in a scrollback ring per session. Any key pauses following to page and
+ * search the scrollback. While the ring is full of lines not shown yet, or
+ * while following is paused, new lines are dropped and the number of dropped
+ * lines is shown.
+ * <br>
+ * The shell is configured by the following properties:
+ * <ul>
+ * <li><code>logtail.file</code> - log file to follow (default <code>server.log</code>)</li>
+ * <li><code>logtail.backlog</code> - number of recent lines shown at login</li>
+ * <li><code>logtail.interval</code> - milliseconds between checks of the file</li>
+ * <li><code>logtail.scrollback</code> - maximum number of bytes kept per session</li>
+ * </ul>
+ * Keys: <code>f</code> sets a filter (regular expression, like <code>grep</code>),
+ * <code>F</code> resumes following, <code>q</code> quits.
+ *
+ * @author    agent
+ */
+public final class LogTailShell implements Shell, LogTailer.Subscriber {
+
+    /** Trace logger. */
+    private static Log trace = LogFactory.getLog(LogTailShell.class);
+
+    /** Prompt while paging the scrollback. */
+    private static final String PAGING_PROMPT
+        = "[Up,Down,Space,Enter,/,n,N,g,G,:,F: follow, f: filter, q: quit]";
+
+    /** Shared tailer of the configured file. */
+    private static LogTailer tailer;
+
+    /** Number of recent lines shown at login. */
+    private static int backlog = 100;
+
+    /** Maximum number of bytes kept per session. */
+    private static int scrollback = 256 * 1024;
+
+    /** Connection this shell works on. */
+    private Connection connection;
+
+    /** For low level terminal IO. */
+    private ShellIo shellIo;
+
+    /** Shows the lines. */
+    private Pager pager;
+
+    /** Scrollback of this session. */
+    private RingSource ring;
+
+    /** Number of lines dropped since the last line was kept. */
+    private int dropped;
+
+    /** Current filter. */
+    private String filter = "";
+
+    /**
+     * Configure the shell.
+     *
+     * @param   settings    Server settings.
+     */
+    public static synchronized void configure(final Properties settings) {
+        backlog = Integer.parseInt(settings.getProperty("logtail.backlog", "100"));
+        scrollback = Math.max(4096, Integer.parseInt(settings.getProperty("logtail.scrollback",
+            "262144")));
+        tailer = new LogTailer(new File(settings.getProperty("logtail.file", "server.log")),
+            backlog, Integer.parseInt(settings.getProperty("logtail.interval", "250")));
+    }
+
+    /**
+     * Get the shared tailer, create a default one if not configured.
+     *
+     * @return  Shared tailer.
+     */
+    private static synchronized LogTailer getTailer() {
+        if (tailer == null) {
+            configure(new Properties());
+        }
+        return tailer;
+    }
+
+    public static Shell createShell() {
+        return new LogTailShell();
+    }
+
+    public void run(final Connection con) {
+        connection = con;
+        shellIo = new ShellIo(connection);
+        connection.addConnectionListener(this);
+        final LogTailer logTailer = getTailer();
+        ring = new RingSource(scrollback);
+        pager = new Pager(shellIo, PAGING_PROMPT, 'q');
+        pager.setFollowPrompt("Following " + logTailer.getFile()
+            + " - any key pauses, f: filter, q: quit");
+        pager.registerInputFilter(new InputFilter() {
+            public int filterInput(final int key) throws IOException {
+                return handleKey(key);
+            }
+        });
+        try {
+            logTailer.subscribe(this, filter, backlog);
+            pager.follow(ring);
+        } catch (IOException e) {
+            trace.warn(e, e);
+        } finally {
+            logTailer.unsubscribe(this);
+            ring.close();
+        }
+    }
+
+    public synchronized void linesAppended(final List lines) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (dropped > 0 && append(ColorHelper.colorizeText("[" + dropped
+                    + " lines dropped]", ColorHelper.YELLOW))) {
+                dropped = 0;
+            }
+            // keep the order: once dropping, drop until the notice fits
+            if (dropped > 0 || !append((String) lines.get(i))) {
+                dropped++;
+            }
+        }
+    }
+
+    public synchronized void linesDropped(final int count) {
+        dropped += count;
+    }
+
+    /**
+     * Append a line to the scrollback, if it fits.
+     *
+     * @param   line    Line to append.
+     * @return  Appended?
+     */
+    private boolean append(final String line) {
+        final byte[] bytes = (line + "\n").getBytes();
+        return ring.offer(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Handle a key before the pager does.
+     *
+     * @param   key Key pressed.
+     * @return  Key for the pager or {@link InputFilter#INPUT_HANDLED}.
+     * @throws  IOException Terminal access failed.
+     */
+    private int handleKey(final int key) throws IOException {
+        switch (key) {
+        case 'f':
+            final String expression = pager.readInput("Filter: ");
+            if (expression == null) {
+                return InputFilter.INPUT_HANDLED;
+            }
+            final LogTailer logTailer = getTailer();
+            logTailer.unsubscribe(this);
+            try {
+                logTailer.subscribe(this, expression, 0);
+                filter = expression;
+            } catch (PatternSyntaxException e) {
+                writeStatus("Invalid filter: " + e.getDescription());
+                logTailer.subscribe(this, filter, 0);
+            }
+            writeStatus(filter.length() == 0 ? "No filter" : "Filter: " + filter);
+            return InputFilter.INPUT_HANDLED;
+        default:
+            return key;
+        }
+    }
+
+    /**
+     * Write a status message in its own line.
+     *
+     * @param   message Status message.
+     */
+    private synchronized void writeStatus(final String message) {
+        if (!append(ColorHelper.colorizeText(message, ColorHelper.YELLOW))) {
+            dropped++;
+        }
+    }
+
+    public void connectionTimedOut(final ConnectionEvent ce) {
+        connection.close();
+    }
+
+    public void connectionIdle(final ConnectionEvent ce) {
+        // watching is no activity
+    }
+
+    public void connectionLogoutRequest(final ConnectionEvent ce) {
+        connection.close();
+    }
+
+    public void connectionSentBreak(final ConnectionEvent ce) {
+        // ignored
+    }
+
+}
@@ -0,0 +1,710 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Follows a growing log file and passes new lines to all subscribers.
+ * <br>
+ * One tailer serves any number of subscribers with a single thread. Newly
+ * appended parts of the file are read into one reused buffer and split into
+ * lines. Every
+ * line is kept in a ring of recent lines, which new subscribers get as backlog.
+ * <br>
+ * Subscribers are grouped by their filter, a regular expression that is searched
+ * within each line like <code>grep</code> does. Each distinct filter is applied
+ * only once per line, regardless of how many subscribers share it. Filters run
+ * on a thread of their own, so a slow expression only delays the subscribers
+ * sharing it. If it falls more than {@link #MAX_PENDING} lines behind, further
+ * lines are dropped and its subscribers are told how many.
+ * <br>
+ * The file is polled for changes (<code>java.nio.file.WatchService</code> is not
+ * available on Java 1.6). A file that got shorter is read again from the start, a
+ * file that was replaced (by log rotation) is reopened and read from the start.
+ * Java 1.6 offers neither inodes nor creation times, so a file is identified
+ * by its first bytes, which for a log are a time stamp usually.
+ *
+ * @author    agent
+ */
+public final class LogTailer implements Runnable {
+
+    /** Trace logger. */
+    private static Log trace = LogFactory.getLog(LogTailer.class);
+
+    /** Maximum number of bytes read at once. */
+    private static final int READ_SIZE = 64 * 1024;
+
+    /** Number of leading bytes that identify the file. */
+    private static final int HEAD_SIZE = 256;
+
+    /** Maximum number of bytes read to fill the recent lines at start. */
+    private static final int PRIME_SIZE = 256 * 1024;
+
+    /** Maximum length of a line, longer lines are split. */
+    private static final int MAX_LINE = 8 * 1024;
+
+    /** Maximum number of lines waiting for a filter. */
+    private static final int MAX_PENDING = 10000;
+
+    /** Follow this file. */
+    private final File file;
+
+    /** Maximum number of recent lines kept. */
+    private final int backlog;
+
+    /** Milliseconds between checks of the file. */
+    private final int interval;
+
+    /** Recent lines, the oldest first. */
+    private final ArrayDeque recent = new ArrayDeque();
+
+    /** Maps filter expressions to {@link FilterGroup}s. */
+    private final Map groups = new HashMap();
+
+    /** Bytes of an incomplete last line. */
+    private final byte[] partial = new byte[MAX_LINE];
+
+    /** Number of bytes in {@link #partial}. */
+    private int partialLength;
+
+    /** Buffer for reading, reused for every read. */
+    private final ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+
+    /** First bytes of the file read, identify it. */
+    private final byte[] head = new byte[HEAD_SIZE];
+
+    /** Number of bytes in {@link #head}. */
+    private int headLength;
+
+    /** First bytes of a file compared with {@link #head}. */
+    private final byte[] probe = new byte[HEAD_SIZE];
+
+    /** Opened file. */
+    private RandomAccessFile raf;
+
+    /** Read position within file. */
+    private long position;
+
+    /** Were the recent lines read from the end of the file? */
+    private boolean primed;
+
+    /** Polling thread, <code>null</code> if there are no subscribers. */
+    private Thread thread;
+
+    /**
+     * Constructor. When the first subscriber arrives, the recent lines are read
+     * from the end of the file.
+     *
+     * @param   file        Follow this file.
+     * @param   backlog     Maximum number of recent lines kept.
+     * @param   interval    Milliseconds between checks of the file.
+     */
+    public LogTailer(final File file, final int backlog, final int interval) {
+        this.file = file;
+        this.backlog = Math.max(0, backlog);
+        this.interval = Math.max(10, interval);
+    }
+
+    /**
+     * Get the followed file.
+     *
+     * @return  Followed file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Subscribe for new lines. The subscriber gets up to <code>window</code>
+     * recent lines that match the filter first.
+     *
+     * @param   subscriber  Gets the lines.
+     * @param   filter      Regular expression lines must contain, <code>null</code>
+     *                      or empty for all lines.
+     * @param   window      Maximum number of recent lines to get first.
+     * @throws  java.util.regex.PatternSyntaxException  Invalid filter.
+     */
+    public synchronized void subscribe(final Subscriber subscriber, final String filter,
+            final int window) {
+        final String key = (filter == null ? "" : filter);
+        FilterGroup group = (FilterGroup) groups.get(key);
+        if (group == null) {
+            group = new FilterGroup(key, file);
+            groups.put(key, group);
+        }
+        if (!primed) {
+            prime();
+        }
+        group.subscribe(subscriber, recent, window);
+        if (thread == null) {
+            thread = new Thread(this, "LogTailer " + file.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop getting lines.
+     *
+     * @param   subscriber  Subscriber to remove.
+     */
+    public synchronized void unsubscribe(final Subscriber subscriber) {
+        for (final Iterator i = groups.values().iterator(); i.hasNext(); ) {
+            final FilterGroup group = (FilterGroup) i.next();
+            if (group.unsubscribe(subscriber)) {
+                group.close();
+                i.remove();
+            }
+        }
+        if (groups.isEmpty()) {
+            notifyAll();
+        }
+    }
+
+    public void run() {
+        trace.debug("tailing " + file);
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (groups.isEmpty()) {
+                        // thread ends, the file position is kept
+                        thread = null;
+                        close();
+                        return;
+                    }
+                }
+                try {
+                    poll();
+                } catch (IOException e) {
+                    trace.warn("reading " + file + " failed", e);
+                    close();
+                }
+                synchronized (this) {
+                    if (!groups.isEmpty()) {
+                        wait(interval);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                thread = null;
+            }
+            close();
+        }
+    }
+
+    /**
+     * Read what was appended since last call and pass it on.
+     *
+     * @throws  IOException Reading failed.
+     */
+    private synchronized void poll() throws IOException {
+        final List lines = readLines();
+        if (!lines.isEmpty()) {
+            dispatch(lines);
+        }
+    }
+
+    /**
+     * Fill the recent lines from the end of the file. Reading starts at most
+     * {@link #PRIME_SIZE} bytes before the end, an incomplete first line is skipped.
+     */
+    private void prime() {
+        primed = true;
+        if (backlog == 0 || !file.exists()) {
+            position = file.length();
+            return;
+        }
+        position = Math.max(0, file.length() - PRIME_SIZE);
+        final boolean skipFirst = position > 0;
+        try {
+            final List lines = readLines();
+            for (int i = (skipFirst ? 1 : 0); i < lines.size(); i++) {
+                addRecent((String) lines.get(i));
+            }
+        } catch (IOException e) {
+            trace.warn("reading " + file + " failed", e);
+            close();
+        }
+    }
+
+    /**
+     * Read the complete lines appended since last call.
+     *
+     * @return  New lines.
+     * @throws  IOException Reading failed.
+     */
+    private List readLines() throws IOException {
+        final List lines = new ArrayList();
+        if (raf != null && isReplaced()) {
+            close();
+        }
+        if (raf == null) {
+            if (!file.exists()) {
+                return new ArrayList();
+            }
+            raf = new RandomAccessFile(file, "r");
+            // the file may have been replaced while it was closed
+            final int length = readHead(raf);
+            if (position > raf.length() || length < headLength || !isSameHead()) {
+                trace.debug(file + " was replaced");
+                position = 0;
+                partialLength = 0;
+            }
+            System.arraycopy(probe, 0, head, 0, length);
+            headLength = length;
+        }
+        final FileChannel channel = raf.getChannel();
+        final long size = channel.size();
+        if (size < position) {
+            trace.debug(file + " was truncated");
+            position = 0;
+            partialLength = 0;
+        }
+        if (headLength < HEAD_SIZE && size > headLength) {
+            headLength = readHead(raf);
+            System.arraycopy(probe, 0, head, 0, headLength);
+        }
+        final byte[] data = buffer.array();
+        while (position < size) {
+            buffer.clear();
+            final int length = channel.read(buffer, position);
+            if (length <= 0) {
+                break;
+            }
+            for (int i = 0; i < length; i++) {
+                final byte b = data[i];
+                if (b == '\n' || partialLength == MAX_LINE) {
+                    lines.add(createLine());
+                    if (b == '\n') {
+                        continue;
+                    }
+                }
+                partial[partialLength++] = b;
+            }
+            position += length;
+        }
+        return lines;
+    }
+
+    /**
+     * Did log rotation replace the file we have open?
+     *
+     * @return  Does the file name refer to another file now?
+     * @throws  IOException Access failed.
+     */
+    private boolean isReplaced() throws IOException {
+        if (!file.exists() || file.length() < raf.length()) {
+            return true;
+        }
+        if (headLength == 0) {
+            return false;
+        }
+        // no inodes in Java 1.6, compare the first bytes
+        final RandomAccessFile current = new RandomAccessFile(file, "r");
+        try {
+            return readHead(current) < headLength || !isSameHead();
+        } finally {
+            current.close();
+        }
+    }
+
+    /**
+     * Read the first bytes of a file into {@link #probe}.
+     *
+     * @param   f   Read from this file.
+     * @return  Number of bytes read.
+     * @throws  IOException Reading failed.
+     */
+    private int readHead(final RandomAccessFile f) throws IOException {
+        f.seek(0);
+        int length = 0;
+        int n;
+        while (length < HEAD_SIZE && (n = f.read(probe, length, HEAD_SIZE - length)) > 0) {
+            length += n;
+        }
+        return length;
+    }
+
+    /**
+     * Do the bytes in {@link #probe} start with the known {@link #head}?
+     *
+     * @return  Same first bytes?
+     */
+    private boolean isSameHead() {
+        for (int i = 0; i < headLength; i++) {
+            if (probe[i] != head[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create a line from the buffered bytes.
+     *
+     * @return  Line without line terminator.
+     */
+    private String createLine() {
+        int length = partialLength;
+        if (length > 0 && partial[length - 1] == '\r') {
+            length--;
+        }
+        partialLength = 0;
+        return new String(partial, 0, length);
+    }
+
+    /**
+     * Keep new lines as recent lines and pass them on. Lines for a filter are
+     * queued for its thread, all other subscribers get them right away.
+     *
+     * @param   lines   New lines, not modified afterwards.
+     */
+    private synchronized void dispatch(final List lines) {
+        for (int i = 0; i < lines.size(); i++) {
+            addRecent((String) lines.get(i));
+        }
+        for (final Iterator i = groups.values().iterator(); i.hasNext(); ) {
+            final FilterGroup group = (FilterGroup) i.next();
+            if (group.pattern != null) {
+                group.addLines(lines);
+            } else {
+                group.deliver(lines);
+            }
+        }
+    }
+
+    /**
+     * Keep a line as recent line.
+     *
+     * @param   line    New line.
+     */
+    private void addRecent(final String line) {
+        if (backlog > 0) {
+            if (recent.size() >= backlog) {
+                recent.removeFirst();
+            }
+            recent.addLast(line);
+        }
+    }
+
+    /**
+     * Close the file.
+     */
+    private synchronized void close() {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            raf = null;
+        }
+    }
+
+    /**
+     * Gets new lines of the followed file.
+     */
+    public interface Subscriber {
+
+        /**
+         * New lines were appended. Called by the thread of the tailer, so
+         * implementations should only queue the lines and return quickly.
+         *
+         * @param   lines   Lines, must not be modified.
+         */
+        void linesAppended(List lines);
+
+        /**
+         * Lines were dropped because the filter of the subscriber fell behind.
+         * Called in order with {@link #linesAppended(List)}.
+         *
+         * @param   count   Number of lines dropped.
+         */
+        void linesDropped(int count);
+    }
+
+    /**
+     * Subscribers sharing one filter. A group with a filter has a thread that
+     * searches the lines in the order they were queued.
+     */
+    private static final class FilterGroup implements Runnable {
+
+        /** Compiled filter, <code>null</code> if all lines match. */
+        final Pattern pattern;
+
+        /** Subscribers of this group. */
+        private final List members = new ArrayList();
+
+        /**
+         * Subscribers that get new lines, read without a lock. With a filter, a
+         * subscriber is added once its backlog was passed.
+         */
+        private final List subscribers = new CopyOnWriteArrayList();
+
+        /**
+         * Work for the filter thread: lists of new lines, {@link Backlog}s and
+         * <code>int[1]</code> counts of dropped lines.
+         */
+        private final LinkedList tasks = new LinkedList();
+
+        /** Number of new lines in {@link #tasks}. */
+        private int pending;
+
+        /** Was the group removed? */
+        private boolean closed;
+
+        /**
+         * Constructor. Starts the filter thread, if there is a filter.
+         *
+         * @param   filter  Regular expression, empty for all lines.
+         * @param   file    Followed file, names the thread.
+         */
+        FilterGroup(final String filter, final File file) {
+            pattern = (filter.length() == 0 ? null : Pattern.compile(filter));
+            if (pattern != null) {
+                final Thread thread = new Thread(this, "LogTailer " + file.getName()
+                    + " filter");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        /**
+         * Queue new lines for the filter, or count them as dropped if too many
+         * lines are waiting.
+         *
+         * @param   lines   New lines.
+         */
+        synchronized void addLines(final List lines) {
+            if (pending + lines.size() > MAX_PENDING) {
+                final Object last = (tasks.isEmpty() ? null : tasks.getLast());
+                if (last instanceof int[]) {
+                    ((int[]) last)[0] += lines.size();
+                } else {
+                    tasks.addLast(new int[] {lines.size()});
+                }
+            } else {
+                tasks.addLast(lines);
+                pending += lines.size();
+            }
+            notifyAll();
+        }
+
+        /**
+         * Add a subscriber. It gets up to <code>window</code> recent lines that
+         * pass the filter first, a filter searches them on its own thread.
+         *
+         * @param   subscriber  Gets the lines.
+         * @param   recent      Recent lines, the oldest first.
+         * @param   window      Maximum number of recent lines to pass.
+         */
+        synchronized void subscribe(final Subscriber subscriber, final ArrayDeque recent,
+                final int window) {
+            members.add(subscriber);
+            if (pattern != null) {
+                tasks.addLast(new Backlog(subscriber, recent.toArray(), window));
+                notifyAll();
+                return;
+            }
+            // backlog, newest lines counted from the end
+            final LinkedList lines = new LinkedList();
+            for (final Iterator i = recent.descendingIterator(); i.hasNext()
+                    && lines.size() < window; ) {
+                lines.addFirst(i.next());
+            }
+            if (!lines.isEmpty()) {
+                subscriber.linesAppended(lines);
+            }
+            subscribers.add(subscriber);
+        }
+
+        /**
+         * Let a subscriber get new lines after its backlog, unless it
+         * unsubscribed meanwhile.
+         *
+         * @param   subscriber  Subscriber whose backlog was passed.
+         */
+        synchronized void activate(final Subscriber subscriber) {
+            if (members.contains(subscriber)) {
+                subscribers.add(subscriber);
+            }
+        }
+
+        /**
+         * Remove a subscriber.
+         *
+         * @param   subscriber  Subscriber to remove.
+         * @return  Was it the last one?
+         */
+        synchronized boolean unsubscribe(final Subscriber subscriber) {
+            members.remove(subscriber);
+            subscribers.remove(subscriber);
+            return members.isEmpty();
+        }
+
+        /**
+         * Stop the filter thread.
+         */
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    final Object task;
+                    synchronized (this) {
+                        while (tasks.isEmpty() && !closed) {
+                            wait();
+                        }
+                        if (closed) {
+                            return;
+                        }
+                        task = tasks.removeFirst();
+                        if (task instanceof List) {
+                            pending -= ((List) task).size();
+                        }
+                    }
+                    if (task instanceof List) {
+                        final List lines = (List) task;
+                        final List matched = new ArrayList();
+                        for (int i = 0; i < lines.size(); i++) {
+                            if (matches((String) lines.get(i))) {
+                                matched.add(lines.get(i));
+                            }
+                        }
+                        deliver(matched);
+                    } else if (task instanceof Backlog) {
+                        ((Backlog) task).run(this);
+                    } else {
+                        for (int k = 0; k < subscribers.size(); k++) {
+                            try {
+                                ((Subscriber) subscribers.get(k)).linesDropped(
+                                    ((int[]) task)[0]);
+                            } catch (RuntimeException e) {
+                                trace.error("subscriber failed", e);
+                            }
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // group ends
+            }
+        }
+
+        /**
+         * Pass lines to all subscribers of this group.
+         *
+         * @param   lines   Lines that passed the filter.
+         */
+        void deliver(final List lines) {
+            if (lines.isEmpty()) {
+                return;
+            }
+            for (int k = 0; k < subscribers.size(); k++) {
+                try {
+                    ((Subscriber) subscribers.get(k)).linesAppended(lines);
+                } catch (RuntimeException e) {
+                    trace.error("subscriber failed", e);
+                }
+            }
+        }
+
+        /**
+         * Does a line pass this filter?
+         *
+         * @param   line    Check this line.
+         * @return  Line passes?
+         */
+        boolean matches(final String line) {
+            return pattern == null || pattern.matcher(line).find();
+        }
+    }
+
+    /**
+     * Recent lines to be searched for a new subscriber.
+     */
+    private static final class Backlog {
+
+        /** Gets the matching lines. */
+        private final Subscriber subscriber;
+
+        /** Recent lines, the oldest first. */
+        private final Object[] lines;
+
+        /** Maximum number of lines to pass. */
+        private final int window;
+
+        /**
+         * Constructor.
+         *
+         * @param   subscriber  Gets the matching lines.
+         * @param   lines       Recent lines, the oldest first.
+         * @param   window      Maximum number of lines to pass.
+         */
+        Backlog(final Subscriber subscriber, final Object[] lines, final int window) {
+            this.subscriber = subscriber;
+            this.lines = lines;
+            this.window = window;
+        }
+
+        /**
+         * Pass the newest matching lines to the subscriber, then let it get
+         * new lines.
+         *
+         * @param   group   Filter to apply.
+         */
+        void run(final FilterGroup group) {
+            final LinkedList matched = new LinkedList();
+            for (int i = lines.length - 1; i >= 0 && matched.size() < window; i--) {
+                if (group.matches((String) lines[i])) {
+                    matched.addFirst(lines[i]);
+                }
+            }
+            if (!matched.isEmpty()) {
+                try {
+                    subscriber.linesAppended(matched);
+                } catch (RuntimeException e) {
+                    trace.error("subscriber failed", e);
+                }
+            }
+            group.activate(subscriber);
+        }
+    }
+
+}
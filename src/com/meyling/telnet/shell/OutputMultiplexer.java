@@ -0,0 +1,269 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.net.Connection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Drains <code>stdout</code> and <code>stderr</code> of an external process
+ * within a single thread and passes the output to the terminal in the order
+ * of its arrival.
+ * <br>
+ * Every chunk is written right after it was read, so only this thread writes
+ * to the connection, no monitor handoff between the two streams is needed and
+ * a slow client can only slow down this thread. Each stream owns one reusable
+ * buffer. <code>stderr</code> chunks are rendered in red.
+ * Chunks are tagged with the output epoch of the terminal and dropped if
+ * the output was aborted before they were written.
+ * <br>
+ * Process pipes can not be selected on, so the streams are polled with
+ * {@link InputStream#available()}. The polling interval starts at
+ * {@link #MIN_POLL_INTERVAL} and doubles up to {@link #MAX_POLL_INTERVAL}
+ * while the process is silent, so output that follows a long pause still
+ * appears within {@link #MAX_POLL_INTERVAL} milliseconds. {@link #wake()}
+ * signals that input was passed to the process and output is to be expected,
+ * then polling starts over at the shortest interval.
+ *
+ * @author    agent
+ */
+public final class OutputMultiplexer extends Thread {
+
+    /** Trace logger. */
+    private static Log trace = LogFactory.getLog(OutputMultiplexer.class);
+
+    /** Maximum number of bytes read at once from one stream. */
+    public static final int CHUNK_SIZE = 16 * 1024;
+
+    /** Poll interval in milliseconds right after output was seen. */
+    public static final int MIN_POLL_INTERVAL = 1;
+
+    /** Maximum poll interval in milliseconds while the process is silent. */
+    public static final int MAX_POLL_INTERVAL = 32;
+
+    /** Write to this connection. */
+    private final Connection connection;
+
+    /** Terminal IO of connection. */
+    private final ShellIo shellIo;
+
+    /** Process <code>stdout</code> and its buffer. */
+    private final Source out;
+
+    /** Process <code>stderr</code> and its buffer. */
+    private final Source err;
+
+    /** Is the terminal currently in error rendition? */
+    private boolean errorMode;
+
+    /** Set when the process has terminated, remaining output is drained. */
+    private volatile boolean finished;
+
+    /** Guards {@link #woken}. */
+    private final Object lock = new Object();
+
+    /** Set by {@link #wake()} to end the current wait. */
+    private boolean woken;
+
+    /** Pool to report the time to prompt to, <code>null</code> if reported. */
+    private volatile ProcessPool promptPool;
+
+    /** Start time for the time to prompt. */
+    private volatile long promptStart;
+
+    /**
+     * Constructor.
+     *
+     * @param   connection  Write to this connection.
+     * @param   shellIo     Terminal IO of connection.
+     * @param   out         Process <code>stdout</code>.
+     * @param   err         Process <code>stderr</code>.
+     */
+    public OutputMultiplexer(final Connection connection, final ShellIo shellIo,
+            final InputStream out, final InputStream err) {
+        super("OutputMultiplexer");
+        setDaemon(true);
+        this.connection = connection;
+        this.shellIo = shellIo;
+        this.out = new Source(out, false);
+        this.err = new Source(err, true);
+    }
+
+    public void run() {
+        int interval = MIN_POLL_INTERVAL;
+        try {
+            while (connection.isActive()) {
+                final boolean last = finished;
+                final int read = poll(out) + poll(err);
+                if (read > 0) {
+                    if (errorMode) {
+                        shellIo.setBold(false);
+                        shellIo.resetAttributes();
+                        errorMode = false;
+                    }
+                    shellIo.flush();
+                    if (promptPool != null) {
+                        promptPool.recordTimeToPrompt(System.currentTimeMillis() - promptStart);
+                        promptPool = null;
+                    }
+                    interval = MIN_POLL_INTERVAL;
+                    continue;
+                }
+                if (last) {
+                    break;
+                }
+                if (pause(interval)) {
+                    interval = MIN_POLL_INTERVAL;
+                } else if (interval < MAX_POLL_INTERVAL) {
+                    interval = Math.min(2 * interval, MAX_POLL_INTERVAL);
+                }
+            }
+        } catch (IOException e) {
+            if (connection.isActive() && !finished) {
+                trace.warn(e, e);
+            }
+        }
+    }
+
+    /**
+     * Report the time until the first output of the process, normally its
+     * prompt, was written to the terminal.
+     *
+     * @param   pool    Record the time to prompt here.
+     * @param   start   Measure from this time on, e.g. the login.
+     */
+    public void reportTimeToPrompt(final ProcessPool pool, final long start) {
+        promptStart = start;
+        promptPool = pool;
+    }
+
+    /**
+     * Tell the multiplexer that output is to be expected soon, e.g. because
+     * input was passed to the process. The streams are polled again
+     * immediately.
+     */
+    public void wake() {
+        synchronized (lock) {
+            woken = true;
+            lock.notify();
+        }
+    }
+
+    /**
+     * Tell the multiplexer that the process has terminated. Output that is
+     * still available is written, then the thread ends.
+     */
+    public void finish() {
+        finished = true;
+        wake();
+    }
+
+    /**
+     * Wait until the interval elapsed or {@link #wake()} was called.
+     *
+     * @param   interval    Milliseconds to wait.
+     * @return  Was the wait ended by {@link #wake()}?
+     */
+    private boolean pause(final int interval) {
+        synchronized (lock) {
+            if (!woken) {
+                try {
+                    lock.wait(interval);
+                } catch (InterruptedException e) {
+                    // poll again
+                }
+            }
+            final boolean result = woken;
+            woken = false;
+            return result;
+        }
+    }
+
+    /**
+     * Read the next chunk currently available from a stream and write it to
+     * the terminal. Rendition is only switched when the stream changes.
+     *
+     * @param   source  Read from this stream into its buffer.
+     * @return  Number of bytes read.
+     * @throws  IOException Reading or writing failed.
+     */
+    private int poll(final Source source) throws IOException {
+        final int available = source.stream.available();
+        if (available <= 0) {
+            return 0;
+        }
+        final int epoch = shellIo.getOutputEpoch();
+        final int len = source.stream.read(source.data, 0, Math.min(available, CHUNK_SIZE));
+        if (len <= 0) {
+            return 0;
+        }
+        if (trace.isDebugEnabled()) {
+            trace.debug((source.error ? "STDERR>" : "STDOUT>") + new String(source.data, 0, len));
+        }
+        if (epoch != shellIo.getOutputEpoch()) {
+            // output was aborted while this chunk was read
+            return len;
+        }
+        if (source.error != errorMode) {
+            if (source.error) {
+                shellIo.setForegroundColor(BasicTerminalIO.RED);
+                shellIo.setBold(true);
+            } else {
+                shellIo.setBold(false);
+                shellIo.resetAttributes();
+            }
+            errorMode = source.error;
+        }
+        shellIo.write(source.data, 0, len);
+        return len;
+    }
+
+    /**
+     * One of the process streams with its reusable buffer.
+     */
+    private static final class Source {
+
+        /** Read from this stream. */
+        final InputStream stream;
+
+        /** Buffer for the bytes read, reused for every chunk. */
+        final byte[] data = new byte[CHUNK_SIZE];
+
+        /** Is this <code>stderr</code>? */
+        final boolean error;
+
+        /**
+         * Constructor.
+         *
+         * @param   stream  Read from this stream.
+         * @param   error   Is this <code>stderr</code>?
+         */
+        Source(final InputStream stream, final boolean error) {
+            this.stream = stream;
+            this.error = error;
+        }
+    }
+
+}
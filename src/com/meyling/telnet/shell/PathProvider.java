@@ -0,0 +1,133 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Completes file and directory names. Relative paths are resolved against a
+ * base directory. The entries of a directory are listed once and cached until
+ * the modification time of the directory changes. Directory names are
+ * completed with a trailing separator.
+ * <br>
+ * Paths are completed for every word but the first, and for the first word if
+ * it contains a separator.
+ *
+ * @author    agent
+ */
+public final class PathProvider implements CompletionProvider {
+
+    /** Maximum number of directories cached. */
+    private static final int CACHE_SIZE = 64;
+
+    /** Resolve relative paths against this directory. */
+    private final File base;
+
+    /** Maps directory paths to their {@link Listing}, least recently used first. */
+    private final Map listings = new LinkedHashMap(16, 0.75f, true) {
+        protected boolean removeEldestEntry(final Map.Entry eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param   base    Resolve relative paths against this directory.
+     */
+    public PathProvider(final File base) {
+        this.base = base;
+    }
+
+    public PrefixTrie getWords(final String line, final String word) {
+        final int separator = Math.max(word.lastIndexOf('/'),
+            word.lastIndexOf(File.separatorChar));
+        if (line.trim().length() == 0 && separator < 0) {
+            return null;
+        }
+        final String directoryName = word.substring(0, separator + 1);
+        File directory = new File(directoryName.length() == 0 ? "." : directoryName);
+        if (!directory.isAbsolute()) {
+            directory = new File(base, directory.getPath());
+        }
+        final long modified = directory.lastModified();
+        synchronized (listings) {
+            final Listing listing = (Listing) listings.get(directoryName);
+            if (listing != null && listing.getDirectory().equals(directory)
+                    && listing.getModified() == modified) {
+                return listing.getWords();
+            }
+        }
+        final Listing listing = new Listing(directoryName, directory, modified);
+        synchronized (listings) {
+            listings.put(directoryName, listing);
+        }
+        return listing.getWords();
+    }
+
+    /**
+     * Entries of a directory.
+     */
+    private static final class Listing {
+
+        /** Listed directory. */
+        private final File directory;
+
+        /** Modification time of directory when listed. */
+        private final long modified;
+
+        /** Entry names prefixed by the directory name as typed. */
+        private final PrefixTrie words;
+
+        /**
+         * Constructor, lists the directory.
+         *
+         * @param   directoryName   Directory name as typed.
+         * @param   directory       Directory.
+         * @param   modified        Modification time of directory.
+         */
+        Listing(final String directoryName, final File directory, final long modified) {
+            this.directory = directory;
+            this.modified = modified;
+            final File[] files = directory.listFiles();
+            final String[] names = new String[files == null ? 0 : files.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = directoryName + files[i].getName()
+                    + (files[i].isDirectory() ? File.separator : "");
+            }
+            words = new PrefixTrie(names);
+        }
+
+        File getDirectory() {
+            return directory;
+        }
+
+        long getModified() {
+            return modified;
+        }
+
+        PrefixTrie getWords() {
+            return words;
+        }
+
+    }
+
+}
@@ -0,0 +1,249 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of words that is searched by prefix.
+ * <br>
+ * The nodes of the trie are kept in parallel arrays: one character per node,
+ * the first child and the next sibling are indexes into the same arrays.
+ * Siblings are ordered by character, so words are always found in sorted order.
+ * Every node knows the number of words below it, so the number of completions
+ * of a prefix is known after walking down the prefix.
+ * <br>
+ * A trie is built once from a word list and replaced as a whole when the words
+ * change, so it can be shared between threads without locking.
+ *
+ * @author    agent
+ */
+public final class PrefixTrie {
+
+    /** Index of the root node. */
+    private static final int ROOT = 0;
+
+    /** Marks a missing child or sibling. */
+    private static final int NONE = -1;
+
+    /** Character of each node, unused for the root. */
+    private final char[] labels;
+
+    /** First child of each node. */
+    private final int[] children;
+
+    /** Next sibling of each node. */
+    private final int[] siblings;
+
+    /** Number of words in the subtree of each node. */
+    private final int[] sizes;
+
+    /** Does a word end at this node? */
+    private final boolean[] terminal;
+
+    /** Length of longest word. */
+    private final int maxLength;
+
+    /**
+     * Constructor.
+     *
+     * @param   words   Words, may contain duplicates and need not be sorted.
+     */
+    public PrefixTrie(final String[] words) {
+        final String[] sorted = words.clone();
+        Arrays.sort(sorted);
+        int nodes = 1;
+        int max = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            nodes += sorted[i].length();
+            max = Math.max(max, sorted[i].length());
+        }
+        // upper bound, shared prefixes need fewer nodes
+        final char[] l = new char[nodes];
+        final int[] c = new int[nodes];
+        final int[] s = new int[nodes];
+        final int[] z = new int[nodes];
+        final boolean[] t = new boolean[nodes];
+        Arrays.fill(c, NONE);
+        Arrays.fill(s, NONE);
+        // nodes on the path of the previous word, by depth
+        final int[] path = new int[max + 1];
+        path[0] = ROOT;
+        int used = 1;
+        String previous = null;
+        for (int i = 0; i < sorted.length; i++) {
+            final String word = sorted[i];
+            if (word.equals(previous)) {
+                continue;
+            }
+            int common = 0;
+            if (previous != null) {
+                final int n = Math.min(word.length(), previous.length());
+                while (common < n && word.charAt(common) == previous.charAt(common)) {
+                    common++;
+                }
+            }
+            for (int d = 0; d <= common; d++) {
+                z[path[d]]++;
+            }
+            for (int d = common; d < word.length(); d++) {
+                final int node = used++;
+                l[node] = word.charAt(d);
+                z[node] = 1;
+                final int parent = path[d];
+                // words are sorted, so a new node is always the last child
+                if (d == common && previous != null && previous.length() > common) {
+                    s[path[d + 1]] = node;
+                } else {
+                    c[parent] = node;
+                }
+                path[d + 1] = node;
+            }
+            t[path[word.length()]] = true;
+            previous = word;
+        }
+        labels = trim(l, used);
+        children = trim(c, used);
+        siblings = trim(s, used);
+        sizes = trim(z, used);
+        terminal = new boolean[used];
+        System.arraycopy(t, 0, terminal, 0, used);
+        maxLength = max;
+    }
+
+    /**
+     * Get number of words.
+     *
+     * @return  Number of words.
+     */
+    public int size() {
+        return sizes[ROOT];
+    }
+
+    /**
+     * Get number of words starting with a prefix.
+     *
+     * @param   prefix  Prefix.
+     * @return  Number of words.
+     */
+    public int count(final String prefix) {
+        final int node = find(prefix);
+        return (node == NONE ? 0 : sizes[node]);
+    }
+
+    /**
+     * Get the longest common prefix of all words that start with a prefix.
+     *
+     * @param   prefix  Prefix.
+     * @return  Common prefix, at least <code>prefix</code>. <code>null</code>
+     *          if no word starts with <code>prefix</code>.
+     */
+    public String getCommonPrefix(final String prefix) {
+        int node = find(prefix);
+        if (node == NONE) {
+            return null;
+        }
+        final StringBuffer result = new StringBuffer(prefix);
+        // descend while there is just one way to go
+        while (!terminal[node] && children[node] != NONE
+                && siblings[children[node]] == NONE) {
+            node = children[node];
+            result.append(labels[node]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Get the words starting with a prefix in sorted order.
+     *
+     * @param   prefix  Prefix.
+     * @param   max     Maximum number of words returned.
+     * @return  Words.
+     */
+    public String[] getWords(final String prefix, final int max) {
+        final int node = find(prefix);
+        if (node == NONE || max <= 0) {
+            return new String[0];
+        }
+        final String[] result = new String[Math.min(max, sizes[node])];
+        final char[] word = new char[maxLength];
+        prefix.getChars(0, prefix.length(), word, 0);
+        collect(node, word, prefix.length(), result, 0);
+        return result;
+    }
+
+    /**
+     * Collect words of a subtree in sorted order.
+     *
+     * @param   node    Root of subtree, its word is in <code>word</code>.
+     * @param   word    Characters of the current word.
+     * @param   length  Length of current word.
+     * @param   result  Collect words in here.
+     * @param   found   Number of words already collected.
+     * @return  Number of words collected.
+     */
+    private int collect(final int node, final char[] word, final int length,
+            final String[] result, final int found) {
+        int n = found;
+        if (terminal[node]) {
+            result[n++] = new String(word, 0, length);
+        }
+        for (int child = children[node]; child != NONE && n < result.length;
+                child = siblings[child]) {
+            word[length] = labels[child];
+            n = collect(child, word, length + 1, result, n);
+        }
+        return n;
+    }
+
+    /**
+     * Find the node of a prefix.
+     *
+     * @param   prefix  Prefix.
+     * @return  Node index, {@link #NONE} if no word starts with <code>prefix</code>.
+     */
+    private int find(final String prefix) {
+        int node = ROOT;
+        for (int i = 0; i < prefix.length() && node != NONE; i++) {
+            final char c = prefix.charAt(i);
+            int child = children[node];
+            while (child != NONE && labels[child] < c) {
+                child = siblings[child];
+            }
+            node = (child != NONE && labels[child] == c ? child : NONE);
+        }
+        if (node != NONE && sizes[node] == 0) {
+            return NONE;
+        }
+        return node;
+    }
+
+    private static char[] trim(final char[] array, final int length) {
+        final char[] result = new char[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+    private static int[] trim(final int[] array, final int length) {
+        final int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+}
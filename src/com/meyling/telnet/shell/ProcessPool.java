@@ -0,0 +1,475 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Pool of pre-started shell processes. Starting a process is expensive, so
+ * a number of shells are kept warm and handed out at login. The pool is
+ * replenished in the background.
+ * <br>
+ * The pool is configured by the following properties:
+ * <ul>
+ * <li><code>pwts.pool</code> - enable the pool (default <code>false</code>)</li>
+ * <li><code>pwts.pool.min</code> - number of idle processes always kept ready</li>
+ * <li><code>pwts.pool.max</code> - upper limit of idle processes, the pool grows
+ *     towards it when logins can not be served from the pool</li>
+ * <li><code>pwts.pool.maxage</code> - milliseconds after which an idle process is
+ *     replaced</li>
+ * <li><code>pwts.pool.checkinterval</code> - milliseconds between health checks</li>
+ * <li><code>pwts.pool.reportinterval</code> - milliseconds between the statistics
+ *     written to the log, <code>0</code> disables them</li>
+ * </ul>
+ * A process that has terminated or reached its maximum age is never handed
+ * out. If no idle process is available a new one is started directly.
+ * <br>
+ * The pool hit rate and the time from login until the first output of the
+ * shell (its prompt) are logged periodically and on shutdown. Shells that do
+ * not print a prompt are measured until the output of their first command.
+ *
+ * @author    agent
+ */
+public final class ProcessPool {
+
+    /** Trace logger. */
+    private static Log trace = LogFactory.getLog(ProcessPool.class);
+
+    /** The one and only pool, <code>null</code> if pooling is disabled. */
+    private static ProcessPool instance;
+
+    /** Command line of the pooled processes. */
+    private final String[] command;
+
+    /** Working directory of the pooled processes. */
+    private final File directory;
+
+    /** Minimum number of idle processes. */
+    private final int minSize;
+
+    /** Maximum number of idle processes. */
+    private final int maxSize;
+
+    /** Maximum age of an idle process in milliseconds. */
+    private final long maxAge;
+
+    /** Milliseconds between health checks. */
+    private final long checkInterval;
+
+    /** Milliseconds between statistics reports, 0 if disabled. */
+    private long reportInterval;
+
+    /** Time of last statistics report. */
+    private long lastReport = System.currentTimeMillis();
+
+    /** Number of requests at the last statistics report. */
+    private long reportedRequests;
+
+    /** Idle {@link Entry}s, the oldest first. */
+    private final LinkedList idle = new LinkedList();
+
+    /** Number of idle processes the pool currently aims for. */
+    private int target;
+
+    /** Was there a request since the last health check? */
+    private boolean requested;
+
+    /** Time of last target size adjustment. */
+    private long lastCheck;
+
+    /** Is the pool shut down? */
+    private boolean closed;
+
+    /** Number of requests served from the pool. */
+    private long hits;
+
+    /** Number of requests that had to start a new process. */
+    private long misses;
+
+    /** Number of processes discarded by health checks. */
+    private long discarded;
+
+    /** Number of recorded login times. */
+    private long prompts;
+
+    /** Sum of recorded login times in milliseconds. */
+    private long promptTimeSum;
+
+    /** Maximum recorded login time in milliseconds. */
+    private long promptTimeMax;
+
+    /** Starts and checks processes. */
+    private final Thread maintainer;
+
+    /**
+     * Constructor.
+     *
+     * @param   command         Command line of the pooled processes.
+     * @param   directory       Working directory of the pooled processes.
+     * @param   minSize         Minimum number of idle processes.
+     * @param   maxSize         Maximum number of idle processes.
+     * @param   maxAge          Maximum age of an idle process in milliseconds.
+     * @param   checkInterval   Milliseconds between health checks.
+     */
+    public ProcessPool(final String[] command, final File directory, final int minSize,
+            final int maxSize, final long maxAge, final long checkInterval) {
+        this.command = command;
+        this.directory = directory;
+        this.minSize = Math.max(0, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.maxAge = maxAge;
+        this.checkInterval = Math.max(1, checkInterval);
+        target = this.minSize;
+        maintainer = new Thread("ProcessPool") {
+            public void run() {
+                maintain();
+            }
+        };
+        maintainer.setDaemon(true);
+        maintainer.start();
+    }
+
+    /**
+     * Get a shell process. An idle healthy process is taken from the pool,
+     * otherwise a new one is started.
+     *
+     * @return  Started process.
+     * @throws  IOException Starting a new process failed.
+     */
+    public Process acquire() throws IOException {
+        synchronized (this) {
+            requested = true;
+            while (!idle.isEmpty()) {
+                final Entry entry = (Entry) idle.removeFirst();
+                if (isHealthy(entry, System.currentTimeMillis())) {
+                    hits++;
+                    notifyAll();
+                    return entry.process;
+                }
+                discard(entry);
+            }
+            misses++;
+            if (target < maxSize) {
+                target++;
+            }
+            notifyAll();
+        }
+        trace.debug("process pool empty, starting new process");
+        return start();
+    }
+
+    /**
+     * Record the time a login needed until the shell was ready for input.
+     *
+     * @param   millis  Time to prompt in milliseconds.
+     */
+    public synchronized void recordTimeToPrompt(final long millis) {
+        prompts++;
+        promptTimeSum += millis;
+        if (millis > promptTimeMax) {
+            promptTimeMax = millis;
+        }
+    }
+
+    /**
+     * Set the interval for writing the pool statistics to the log.
+     *
+     * @param   millis  Milliseconds between reports, 0 disables them.
+     */
+    public synchronized void setReportInterval(final long millis) {
+        reportInterval = millis;
+    }
+
+    /**
+     * Stop replenishing and destroy all idle processes.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (!closed && hits + misses > 0) {
+                trace.info(toString());
+            }
+            closed = true;
+            while (!idle.isEmpty()) {
+                ((Entry) idle.removeFirst()).process.destroy();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Get number of idle processes.
+     *
+     * @return  Idle processes.
+     */
+    public synchronized int getSize() {
+        return idle.size();
+    }
+
+    /**
+     * Get number of requests served from the pool.
+     *
+     * @return  Pool hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get number of requests that had to start a new process.
+     *
+     * @return  Pool misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get fraction of requests served from the pool.
+     *
+     * @return  Hit rate between 0 and 1.
+     */
+    public synchronized double getHitRate() {
+        final long total = hits + misses;
+        return (total == 0 ? 0 : (double) hits / total);
+    }
+
+    /**
+     * Get number of processes discarded because they died or became too old.
+     *
+     * @return  Discarded processes.
+     */
+    public synchronized long getDiscarded() {
+        return discarded;
+    }
+
+    /**
+     * Get average time from login until the shell was ready.
+     *
+     * @return  Average time to prompt in milliseconds.
+     */
+    public synchronized long getAverageTimeToPrompt() {
+        return (prompts == 0 ? 0 : promptTimeSum / prompts);
+    }
+
+    /**
+     * Get maximum time from login until the shell was ready.
+     *
+     * @return  Maximum time to prompt in milliseconds.
+     */
+    public synchronized long getMaxTimeToPrompt() {
+        return promptTimeMax;
+    }
+
+    public synchronized String toString() {
+        return "ProcessPool[idle=" + idle.size() + ", target=" + target
+            + ", hits=" + hits + ", misses=" + misses
+            + ", hitRate=" + Math.round(getHitRate() * 100) + "%, discarded=" + discarded
+            + ", avgTimeToPrompt=" + getAverageTimeToPrompt()
+            + ", maxTimeToPrompt=" + promptTimeMax + "]";
+    }
+
+    /**
+     * Health checks and replenishment. Runs in its own thread until the pool
+     * is shut down.
+     */
+    private void maintain() {
+        while (true) {
+            boolean spawn;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                check();
+                spawn = idle.size() < target;
+                if (!spawn) {
+                    try {
+                        wait(checkInterval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            // start outside the lock, requests must not wait for us
+            final Process process;
+            try {
+                process = start();
+            } catch (IOException e) {
+                trace.error("starting pooled process failed", e);
+                synchronized (this) {
+                    try {
+                        wait(checkInterval);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            synchronized (this) {
+                if (closed || idle.size() >= maxSize) {
+                    process.destroy();
+                } else {
+                    idle.addLast(new Entry(process, System.currentTimeMillis()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove dead and aged processes and adjust the target size. Must be called
+     * while holding the lock.
+     */
+    private void check() {
+        final long now = System.currentTimeMillis();
+        for (final Iterator i = idle.iterator(); i.hasNext(); ) {
+            final Entry entry = (Entry) i.next();
+            if (!isHealthy(entry, now)) {
+                i.remove();
+                discard(entry);
+            }
+        }
+        if (now - lastCheck < checkInterval) {
+            return;
+        }
+        lastCheck = now;
+        // shrink slowly back to the minimum if nobody asks
+        if (!requested && target > minSize) {
+            target--;
+        }
+        requested = false;
+        if (reportInterval > 0 && now - lastReport >= reportInterval
+                && hits + misses > reportedRequests) {
+            lastReport = now;
+            reportedRequests = hits + misses;
+            trace.info(toString());
+        } else if (trace.isDebugEnabled()) {
+            trace.debug(toString());
+        }
+    }
+
+    /**
+     * Is this pooled process still usable?
+     *
+     * @param   entry   Check this process.
+     * @param   now     Current time.
+     * @return  Is the process alive and not too old?
+     */
+    private boolean isHealthy(final Entry entry, final long now) {
+        if (maxAge > 0 && now - entry.created > maxAge) {
+            return false;
+        }
+        try {
+            entry.process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            // still running
+            return true;
+        }
+    }
+
+    /**
+     * Throw away a pooled process.
+     *
+     * @param   entry   Process to discard.
+     */
+    private void discard(final Entry entry) {
+        discarded++;
+        entry.process.destroy();
+    }
+
+    /**
+     * Start a new process.
+     *
+     * @return  Started process.
+     * @throws  IOException Start failed.
+     */
+    private Process start() throws IOException {
+        return Runtime.getRuntime().exec(command, (String[]) null, directory);
+    }
+
+    /**
+     * Create the pool according to the settings. Nothing is created if
+     * <code>pwts.pool</code> is not <code>true</code>. A pool created before
+     * is shut down.
+     *
+     * @param   settings    Server settings.
+     * @param   command     Command line of the pooled processes.
+     * @param   directory   Working directory of the pooled processes.
+     * @return  Created pool, <code>null</code> if pooling is disabled.
+     */
+    public static synchronized ProcessPool createProcessPool(final Properties settings,
+            final String[] command, final File directory) {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+        if (!Boolean.valueOf(settings.getProperty("pwts.pool")).booleanValue()) {
+            return null;
+        }
+        instance = new ProcessPool(command, directory,
+            Integer.parseInt(settings.getProperty("pwts.pool.min", "2")),
+            Integer.parseInt(settings.getProperty("pwts.pool.max", "8")),
+            Long.parseLong(settings.getProperty("pwts.pool.maxage", "900000")),
+            Long.parseLong(settings.getProperty("pwts.pool.checkinterval", "5000")));
+        instance.setReportInterval(
+            Long.parseLong(settings.getProperty("pwts.pool.reportinterval", "300000")));
+        trace.info("process pool created: " + instance);
+        return instance;
+    }
+
+    /**
+     * Get the pool.
+     *
+     * @return  Pool, <code>null</code> if pooling is disabled.
+     */
+    public static synchronized ProcessPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Idle pooled process.
+     */
+    private static final class Entry {
+
+        /** Pooled process. */
+        final Process process;
+
+        /** Start time of process. */
+        final long created;
+
+        /**
+         * Constructor.
+         *
+         * @param   process Pooled process.
+         * @param   created Start time of process.
+         */
+        Entry(final Process process, final long created) {
+            this.process = process;
+            this.created = created;
+        }
+    }
+
+}
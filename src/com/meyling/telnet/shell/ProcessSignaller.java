@@ -0,0 +1,149 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Sends an interrupt to the commands running within an external shell process.
+ * <br>
+ * Java offers no way to signal a process, so on Unix like systems the process
+ * id is taken from the process implementation and <code>SIGINT</code> is sent
+ * with <code>pkill</code> to all children of the shell. The shell itself is left
+ * running, just like an interactive shell that ignores <code>SIGINT</code>.
+ * If <code>pkill</code> is not available, the children are signalled by
+ * their process group, which the shell commands run in if job control is on.
+ * <br>
+ * The helper commands run in a thread of their own, so the caller (usually
+ * the thread reading from the connection) does not wait for them.
+ *
+ * @author    agent
+ */
+public final class ProcessSignaller {
+
+    /** Trace logger. */
+    private static Log trace = LogFactory.getLog(ProcessSignaller.class);
+
+    /**
+     * Constructor.
+     */
+    private ProcessSignaller() {
+        // no instances
+    }
+
+    /**
+     * Interrupt the commands run by the given shell process. The signal is
+     * sent in the background.
+     *
+     * @param   process Shell process.
+     * @return  Is signalling supported, i.e. will a signal be sent?
+     */
+    public static boolean interrupt(final Process process) {
+        final int pid = getPid(process);
+        if (pid <= 0) {
+            return false;
+        }
+        final Thread signaller = new Thread("ProcessSignaller") {
+            public void run() {
+                if (!signal(pid)) {
+                    trace.debug("no command to interrupt in shell " + pid);
+                }
+            }
+        };
+        signaller.setDaemon(true);
+        signaller.start();
+        return true;
+    }
+
+    /**
+     * Send <code>SIGINT</code> to the children of a process.
+     *
+     * @param   pid     Process id of the parent.
+     * @return  Was a child signalled?
+     */
+    static boolean signal(final int pid) {
+        final int result = run(new String[] {"pkill", "-INT", "-P", String.valueOf(pid)});
+        if (result == 0) {
+            return true;
+        } else if (result == 1) {
+            // pkill found no child
+            return false;
+        }
+        // pkill missing, try the process group of each child
+        return 0 == run(new String[] {"/bin/sh", "-c",
+            "found=1; for p in `ps -o pid= --ppid " + pid + "`; do "
+            + "found=0; kill -INT -$p 2>/dev/null || kill -INT $p; done; exit $found"});
+    }
+
+    /**
+     * Get the operating system process id.
+     *
+     * @param   process Get id of this process.
+     * @return  Process id, <code>-1</code> if not available.
+     */
+    static int getPid(final Process process) {
+        if (System.getProperty("os.name").toLowerCase(Locale.US).indexOf("windows") != -1) {
+            return -1;
+        }
+        // newer runtimes have an API for it
+        try {
+            final Method method = Process.class.getMethod("pid", new Class[0]);
+            return ((Number) method.invoke(process, new Object[0])).intValue();
+        } catch (Exception e) {
+            // not available
+        }
+        // Dirty hack, the process id is not available by API
+        try {
+            final Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return field.getInt(process);
+        } catch (Exception e) {
+            trace.debug("process id not available", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Run a helper command and wait for its termination.
+     *
+     * @param   command Command line.
+     * @return  Exit code, <code>-1</code> if the command could not be run.
+     */
+    private static int run(final String[] command) {
+        try {
+            final Process helper = Runtime.getRuntime().exec(command);
+            helper.getOutputStream().close();
+            helper.getInputStream().close();
+            helper.getErrorStream().close();
+            return helper.waitFor();
+        } catch (IOException e) {
+            trace.debug("running " + command[0] + " failed", e);
+            return -1;
+        } catch (InterruptedException e) {
+            return -1;
+        }
+    }
+
+}
@@ -18,11 +18,9 @@
  */
 package com.meyling.telnet.shell;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketException;
 import java.util.ArrayList;
@@ -30,11 +28,11 @@ import java.util.List;
 import java.util.Locale;
 
 import net.wimpi.telnetd.io.BasicTerminalIO;
-import net.wimpi.telnetd.io.TerminalIO;
-import net.wimpi.telnetd.io.terminal.BasicTerminal;
+import net.wimpi.telnetd.io.toolkit.LineEditor;
 import net.wimpi.telnetd.net.Connection;
 import net.wimpi.telnetd.net.ConnectionData;
 import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.net.SignalListener;
 import net.wimpi.telnetd.shell.Shell;
 
 import org.apache.commons.logging.Log;
@@ -48,43 +46,32 @@ import org.apache.commons.logging.LogFactory;
  * <code>stdout</code> and <code>stderr</code> streams from the external shell
  * process to the telnet terminal connection.
  * <br>
- * The input from the terminal is line buffered to enable simple line editing
- * functionality. A drawback of this behaviour is that read requests of the external
+ * The input from the terminal is line buffered to enable line editing with
+ * a {@link LineEditor}. A drawback of this behaviour is that read requests of the external
  * process that wait for a single character are not directly supported. If
  * the external process waits for an 'y' you have to type in "y<code>CR</code>".
  * This should be no problem for getting the 'y'. But a subsequent read character
  * request from the external process gets the <code>CR</code> character.
  * <br>
- * The <code>stderr</code> output is merged into the terminal output (in red color)
- * as long stderr characters are available.
+ * The <code>stdout</code> and <code>stderr</code> output is merged in order of
+ * arrival into the terminal output by an {@link OutputMultiplexer}, the
+ * <code>stderr</code> output is shown in red color.
+ * <br>
+ * The tabulator key completes configured words and file names, see
+ * {@link Completer}.
+ * <br>
+ * An interrupt (NVT IP or BRK, or Ctrl-C) sends <code>SIGINT</code> to the
+ * commands run by the shell and discards output that was not sent yet.
  *
  * @author    Michael Meyling
  */
-public final class PwtsShell implements Shell {
+public final class PwtsShell implements Shell, SignalListener {
 
     /** Trace logger. */
     private static Log trace = LogFactory.getLog(PwtsShell.class);
 
-    /** ESC sequece for deleting a character. */
-    private static final byte[] deleteChar
-//        = new byte[] {BasicTerminal.ESC, BasicTerminal.LSB, 'X'};
-        = new byte[] {BasicTerminal.ESC, BasicTerminal.LSB, '1', 'P'};
-
-    /** ESC sequece for deleting a character. */
-    private static final byte[] insertChar
-        = new byte[] {BasicTerminal.ESC, BasicTerminal.LSB, '1', '@'};
-
-    /** ESC sequece for moving back a character. */
-    private static final byte[] moveBack
-        = new byte[] {BasicTerminal.ESC, BasicTerminal.LSB, '1', 'D'};
-
-    /** ESC sequece for saving cursor position. */
-    private static final byte[] saveCursor
-        = new byte[] {BasicTerminal.ESC, BasicTerminal.LSB, 's'};
-
-    /** ESC sequece for restoring cursor position. */
-    private static final byte[] restoreCursor
-        = new byte[] {BasicTerminal.ESC, BasicTerminal.LSB, 'u'};
+    /** Character sent by clients that do not map Ctrl-C to an IP. */
+    private static final int CTRL_C = 3;
 
     /** Connection this shell works on. */
     private Connection connection;
@@ -92,17 +79,21 @@ public final class PwtsShell implements Shell {
     /** For low level terminal IO. */
     private ShellIo shellIo;
 
-    /** Line buffer for stderr output. */
-    private StringBuffer errorBuffer = new StringBuffer();
+    /** Milliseconds to wait for remaining output after process termination. */
+    private static final int DRAIN_TIMEOUT = 1000;
 
-    /** Output handler. */
-    private OutputStreamGobbler outputGobbler;
+    /** Output handler for process stdout and stderr. */
+    private OutputMultiplexer outputMultiplexer;
 
     private Process process;
 
+    /** Start time of this session. */
+    private long loginTime;
+
     private Thread shellThread;
 
     public void run(final Connection con) {
+        loginTime = System.currentTimeMillis();
         connection = con;
         shellIo = new ShellIo(connection);
         connection.addConnectionListener(this);
@@ -152,6 +143,15 @@ public final class PwtsShell implements Shell {
 
     /** Execute the shell. */
     private void executeShell() throws IOException {
+        execSynchronized(getShellCommand());
+    }
+
+    /**
+     * Get command line of the system shell.
+     *
+     * @return  Command line, the first element is the executable.
+     */
+    public static String[] getShellCommand() {
         final List list = new ArrayList();
         // get the operating system
         final String os = System.getProperty("os.name").toLowerCase(Locale.US);
@@ -167,7 +167,17 @@ public final class PwtsShell implements Shell {
             list.add(0, "/bin/sh");
         }
         // TODO mime 20060414: if no system shell is found what do we do?
-        execSynchronized((String[]) list.toArray(new String[] {}));
+        return (String[]) list.toArray(new String[] {});
+    }
+
+    /**
+     * Get start directory of the system shell.
+     *
+     * @return  Start directory.
+     * @throws  IOException Directory could not be resolved.
+     */
+    public static File getStartDirectory() throws IOException {
+        return new File("/").getCanonicalFile();
     }
 
     public void connectionTimedOut(ConnectionEvent ce) {
@@ -220,18 +230,45 @@ public final class PwtsShell implements Shell {
     }
 
     public void connectionSentBreak(ConnectionEvent ce) {
-        try {
-            shellIo.write("\r\n");
-            shellIo.write("CONNECTION BREAK (ignored)");
-            shellIo.write("\r\n");
-            shellIo.flush();
-        } catch (Exception e) {
-            trace.fatal(e, e);
+        interruptProcess();
+    }
+
+    public void connectionInterrupted(ConnectionEvent ce) {
+        interruptProcess();
+    }
+
+    public void connectionOutputAborted(ConnectionEvent ce) {
+        // the output epoch was advanced, the multiplexer drops what it has queued
+        trace.debug("output aborted");
+    }
+
+    /**
+     * Interrupt the command currently running in the shell process. Output that
+     * was not sent yet is discarded.
+     */
+    private void interruptProcess() {
+        if (process == null) {
+            return;
+        }
+        shellIo.discardOutput();
+        if (outputMultiplexer != null) {
+            outputMultiplexer.wake();
+        }
+        if (!ProcessSignaller.interrupt(process)) {
+            try {
+                shellIo.write("\r\n");
+                shellIo.write("INTERRUPT (not supported)");
+                shellIo.write("\r\n");
+                shellIo.flush();
+            } catch (Exception e) {
+                trace.fatal(e, e);
+            }
         }
     }
 
     /**
-     * Execute external process.
+     * Execute external process. If a {@link ProcessPool} is configured the
+     * process is taken from the pool, which was set up with the same command line.
      *
      * @param   commandLineParameters   Comand line parameters. The first parameter must be an
      *                 executable program.
@@ -249,27 +286,30 @@ public final class PwtsShell implements Shell {
         }
         try {
             trace.info("executing: " + buffer.toString());
-            final File startDir = new File("/");
-            process = Runtime.getRuntime().exec(commandLineParameters, (String[]) null, 
-                startDir.getCanonicalFile());
+            final ProcessPool pool = ProcessPool.getInstance();
+            if (pool != null) {
+                process = pool.acquire();
+            } else {
+                process = Runtime.getRuntime().exec(commandLineParameters, (String[]) null,
+                    getStartDirectory());
+            }
         } catch (IOException e) {
             throw e;
         }
-        // thread for process error stream
-        final ErrorStreamGobbler errorGobbler = new
-            ErrorStreamGobbler(process.getErrorStream());
-
-        // thread for process output stream
-        outputGobbler = new
-                    OutputStreamGobbler(process.getInputStream());
+        // thread for process output and error stream
+        outputMultiplexer = new OutputMultiplexer(connection, shellIo,
+            process.getInputStream(), process.getErrorStream());
 
         // thread for process input stream
         final InputStreamGobbler inputGobbler = new
             InputStreamGobbler(process.getOutputStream());
 
+        if (ProcessPool.getInstance() != null) {
+            outputMultiplexer.reportTimeToPrompt(ProcessPool.getInstance(), loginTime);
+        }
+
         // start them all
-        errorGobbler.start();
-        outputGobbler.start();
+        outputMultiplexer.start();
         inputGobbler.start();
 
         try {
@@ -281,6 +321,13 @@ public final class PwtsShell implements Shell {
             trace.fatal("execution interupted. Called was: " + buffer);
             throw new IOException("process execution interrupted.");
         } finally {
+            // let the multiplexer write what is left
+            outputMultiplexer.finish();
+            try {
+                outputMultiplexer.join(DRAIN_TIMEOUT);
+            } catch (InterruptedException e) {
+                // ignore
+            }
             // close all those streams
             try {
                 process.getInputStream().close();
@@ -306,103 +353,6 @@ public final class PwtsShell implements Shell {
     }
 
 
-    /**
-     * Passes shell output stream to terminal.
-     */
-    class OutputStreamGobbler extends Thread {
-
-        /** Work on this stream. */
-        final InputStream is;
-
-        /**
-         * Constructor.
-         *
-         * @param   is      Work on this stream.
-         */
-        OutputStreamGobbler(final InputStream is) {
-            this.is = new BufferedInputStream(is);
-        }
-
-        public void run() {
-            try {
-                final StringBuffer outputBuffer = new StringBuffer();
-                int c = '\0';
-                while (-1 != (c = is.read()) && connection.isActive()) {
-                    if (trace.isDebugEnabled()) {
-                        trace.debug("STDOUT>" + (char) c);
-                    }
-                    outputBuffer.append((char) c);
-                    if (0 == is.available()) {
-                        // if there are some error messages, write
-                        // them first
-                        synchronized (errorBuffer) {
-                            if (errorBuffer.length() > 0) {
-                                try {
-                                    errorBuffer.wait();
-                                } catch (InterruptedException e) {
-                                    trace.fatal(e, e);
-                                }
-                            }
-                            shellIo.write(outputBuffer.toString());
-                            shellIo.flush();
-                            outputBuffer.setLength(0);
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                trace.warn(e, e);
-            }
-        }
-    }
-
-    /**
-     * Passes shell error stream to terminal. Error output is in light red.
-     */
-    class ErrorStreamGobbler extends Thread {
-
-        /** Work on this stream. */
-        final InputStream is;
-
-        /**
-         * Constructor.
-         *
-         * @param   is      Work on this stream.
-         */
-        ErrorStreamGobbler(final InputStream is) {
-            this.is = new BufferedInputStream(is);
-        }
-
-        public void run() {
-            try {
-                int c = '\0';
-                while (-1 != (c = is.read()) && connection.isActive()) {
-                    if (trace.isDebugEnabled()) {
-                        trace.debug("STDERR>" + (char) c);
-                    }
-                    errorBuffer.append((char) c);
-                    if (0 == is.available()) {
-                        // we try to synchronize with the OutputStreamGobbler
-                        synchronized (errorBuffer) {
-                            shellIo.setForegroundColor(BasicTerminalIO.RED);
-                            shellIo.setBold(true);
-                            shellIo.write(errorBuffer.toString());
-                            shellIo.setBold(false);
-                            shellIo.resetAttributes();
-                            shellIo.flush();
-                            errorBuffer.setLength(0);
-                            errorBuffer.notify();
-                        }
-                    }
-                }
-            } catch (SocketException e) {
-                trace.warn("connection closed");
-            } catch (IOException e) {
-                trace.warn(e, e);
-            }
-        }
-    }
-
-
     /**
      * Passes input stream to shell.
      */
@@ -428,114 +378,83 @@ public final class PwtsShell implements Shell {
 
         public void run() {
             try {
-                // list of previous entered lines
-                final List lines = new ArrayList();
-                // position within lines
-                int lineNumber = -1;
-                // line buffer
-                final StringBuffer inputBuffer = new StringBuffer();
-                // position within line buffer
-                int cursor = 0;
+                // previous entered lines of this user
+                final CommandHistory history = CommandHistory.getHistory(
+                    connection.getConnectionData());
+                // position within history
+                int lineNumber = history.size() - 1;
+                // completes configured words and paths relative to the start directory
+                final Completer completer = new Completer();
+                completer.addProvider(Completer.getVocabulary());
+                completer.addProvider(new PathProvider(getStartDirectory()));
+                // edits the input line
+                final LineEditor editor = new LineEditor(shellIo);
+                // key that ended a history search, handled as typed
+                int pending = -1;
                 do {
-                    int c = shellIo.read();
+                    int c = (pending != -1 ? pending : shellIo.read());
+                    pending = -1;
                     if (trace.isDebugEnabled()) {
                         trace.debug("STDIN> " + c + " " + (char)c);
                     }
                     switch (c) {
-                    case BasicTerminalIO.DELETE:
-                        trace.debug("STDIN> DELETE");
-                        if (cursor < inputBuffer.length()) {
-                            inputBuffer.deleteCharAt(cursor);
-                            shellIo.write(deleteChar);
-                        }
-                        break;
-                    case BasicTerminalIO.BACKSPACE:
-                        trace.debug("STDIN> BACKSPACE");
-                        if (cursor > 0) {
-                            inputBuffer.deleteCharAt(cursor - 1);
-                            cursor--;
-                            shellIo.write((char) TerminalIO.BS);
-//                            shellIo.moveLeft(1);
-                            shellIo.write(deleteChar);
-                        }
-                        break;
-                    case BasicTerminalIO.LEFT:
-                        trace.debug("STDIN> LEFT");
-                        if (cursor > 0) {
-                            cursor--;
-                            shellIo.write((char) TerminalIO.BS);
-                        }
-                        break;
-                    case BasicTerminalIO.RIGHT:
-                        trace.debug("STDIN> RIGHT");
-                        if (cursor < inputBuffer.length()) {
-                            shellIo.moveRight(1);
-//                            m_IO.write(inputBuffer.charAt(cursor));
-                            cursor++;
-                        }
-                        break;
                     case BasicTerminalIO.UP:
                         trace.debug("STDIN> UP");
-                        if (lines.size() > 0 && lineNumber >= 0) {
-                            if (inputBuffer.length() > cursor) {
-//                                for (int i = cursor; i < inputBuffer.length(); i++) {
-//                                    shellIo.write(deleteChar);
-//                                }
-                                shellIo.write(deleteChars(inputBuffer.length() - cursor));
-                            }
-                            for (int i = 0; i < cursor; i++) {
-                                shellIo.write((char) TerminalIO.BS);
-                                shellIo.write(deleteChar);
-                            }
-                            final String line = (String) lines.get(lineNumber);
+                        if (history.size() > 0 && lineNumber >= 0) {
+                            editor.setValue(history.get(lineNumber));
                             if (lineNumber > 0) {
                                 lineNumber--;
                             }
-                            shellIo.write(line);
-                            inputBuffer.setLength(0);
-                            inputBuffer.append(line);
-                            cursor = line.length();
                         }
                         break;
                     case BasicTerminalIO.DOWN:
                         trace.debug("STDIN> DOWN");
-                        if (lineNumber >= 0 && lineNumber < lines.size()) {
-                            if (inputBuffer.length() > cursor) {
-                                shellIo.write(deleteChars(inputBuffer.length() - cursor));
-                            }
-                            for (int i = 0; i < cursor; i++) {
-                                shellIo.write((char) TerminalIO.BS);
-                                shellIo.write(deleteChar);
-                            }
-                            final String line = (String) lines.get(lineNumber);
-                            if (lineNumber + 1 < lines.size()) {
+                        if (lineNumber >= 0 && lineNumber < history.size()) {
+                            editor.setValue(history.get(lineNumber));
+                            if (lineNumber + 1 < history.size()) {
                                 lineNumber++;
                             }
-                            shellIo.write(line);
-                            inputBuffer.setLength(0);
-                            inputBuffer.append(line);
-                            cursor = line.length();
                         }
                         break;
+                    case CTRL_C:
+                        trace.debug("STDIN> CTRL-C");
+                        shellIo.write("^C");
+                        shellIo.write(BasicTerminalIO.CRLF);
+                        shellIo.flush();
+                        editor.reset();
+                        interruptProcess();
+                        break;
+                    case HistorySearch.CTRL_R:
+                        trace.debug("STDIN> CTRL-R");
+                        editor.erase();
+                        final HistorySearch search = new HistorySearch(shellIo, history);
+                        final int key = search.run();
+                        if (search.getResult() != null) {
+                            editor.reset();
+                            editor.insert(search.getResult());
+                            pending = key;
+                        } else {
+                            editor.draw();
+                        }
+                        break;
+                    case BasicTerminalIO.TABULATOR:
+                        trace.debug("STDIN> TABULATOR");
+                        complete(completer, editor);
+                        break;
                     case BasicTerminalIO.ENTER:
                         trace.debug("STDIN> ENTER");
                         shellIo.write(BasicTerminalIO.CRLF);
-                        os.write(inputBuffer.toString().getBytes());
+                        final String line = editor.getValue();
+                        os.write(line.getBytes());
                         os.write((char) c);
                         os.flush();
-                        cursor = 0;
-                        lines.add(inputBuffer.toString());
-                        lineNumber = lines.size() - 1;
-                        inputBuffer.setLength(0);
+                        outputMultiplexer.wake();
+                        history.add(line);
+                        lineNumber = history.size() - 1;
+                        editor.reset();
                         break;
                     default:
-                        if (c < 256) {
-                            trace.debug("STDIN> no special char");
-                            shellIo.write(insertChar);
-                            shellIo.write((char) c);
-                            inputBuffer.insert(cursor, (char) c);
-                            cursor++;
-                        } else {
+                        if (!editor.handleKey(c)) {
                             trace.debug("STDIN> unknown char");
                         }
                     }
@@ -549,18 +468,27 @@ public final class PwtsShell implements Shell {
     }
 
     /**
-     * Get ESC sequece for deleting <code>number</code> characters.
-     * 
-     *  @param  number  Delete this amount of characters.
+     * Complete the word before the cursor. If there are several completions
+     * without a common extension, the user selects one.
+     *
+     * @param   completer   Completes words.
+     * @param   editor      Edits the input line.
+     * @throws  IOException Terminal access failed.
      */
-    private static final byte[] deleteChars(final int number) {
-        final StringBuffer result = new StringBuffer();
-        result.append((char) BasicTerminal.ESC);
-        result.append((char) BasicTerminal.LSB);
-        result.append(number);
-        result.append('P');
-        System.out.println(">>>" + result.toString());
-        return result.toString().getBytes();
+    private void complete(final Completer completer, final LineEditor editor)
+            throws IOException {
+        final int cursor = editor.getCursor();
+        final Completer.Completion completion = completer.complete(
+            editor.getText(0, cursor));
+        if (completion == null) {
+            shellIo.bell();
+        } else if (completion.isAmbiguous()) {
+            final int start = cursor - completion.getWord().length();
+            editor.setCursor(start);
+            editor.replace(start, cursor, Completer.select(shellIo, completion));
+        } else {
+            editor.insert(completion.getInsertion());
+        }
     }
-    
+
 }
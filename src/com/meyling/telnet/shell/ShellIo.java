@@ -26,10 +26,9 @@ import org.apache.commons.logging.LogFactory;
 
 import net.wimpi.telnetd.io.BasicTerminalIO;
 import net.wimpi.telnetd.io.TelnetIO;
-import net.wimpi.telnetd.io.TerminalIO;
-import net.wimpi.telnetd.io.terminal.Terminal;
+import net.wimpi.telnetd.io.UpdateScheduler;
 import net.wimpi.telnetd.net.Connection;
-import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.net.ResizeListener;
 
 /**
  * Low level IO for terminal operations. This class wraps mainly a
@@ -50,12 +49,6 @@ public final class ShellIo implements BasicTerminalIO {
     /** Handles telnet protocol communication. */
     private final TelnetIO telnetIo;
 
-    /** Buffer for already read keys. */
-    private final int[] buffer = new int[1024];
-
-    /** Marks the buffer position for {@link #buffer}. */
-    private int bufferPosition = 0;
-
     /**
      * Constructor.
      *
@@ -75,135 +68,24 @@ public final class ShellIo implements BasicTerminalIO {
       }
 
     /**
-     * Already read ints are put into this read buffer.
-     *
-     * @param    c        Read int.
-     */
-    private void putBuffer(final int c) {
-        buffer[bufferPosition++] = c;
-    }
-
-    /**
-     * Put already read int into read buffer for several times.
+     * Read a character or key. Escape sequences are decoded by the
+     * {@link net.wimpi.telnetd.io.InputDecoder} of the wrapped
+     * {@link net.wimpi.telnetd.io.TerminalIO}, which also fires logout
+     * requests.
      *
-     * @param    c        Read int.
-     * @param     number    Repeat this often.
-     */
-    private void putBuffer(final int c, final int number) {
-        for (int i = 0; i < number; i++) {
-            putBuffer(c);
-        }
-    }
-
-    /**
-     * Read from buffer or connection if nothing is left in the buffer.
-     *
-     * @return    Read int.
+     * @return    Read character or key.
      * @throws     IOException    Read error.
      */
-    private int bufferedRead() throws IOException {
-        int result;
-        if (bufferPosition > 0) {
-            bufferPosition--;
-            result = buffer[bufferPosition];
-        } else {
-            result = telnetIo.read();
-        }
-        if (trace.isDebugEnabled()) {
-            trace.debug("n original read:     " + result);
-        }
-        return result;
-    }
-
     public int read() throws IOException {
-        int i = bufferedRead();
-
-        //translate possible control sequences
-        i = ((TerminalIO) terminalIo).getTerminal().translateControlCharacter(i);
-        if (trace.isDebugEnabled()) {
-            trace.debug("n translate control:      " + i);
-        }
-
-        //catch & fire a logoutrequest event
-        if (i == LOGOUTREQUEST) {
-            connection.processConnectionEvent(new ConnectionEvent(connection,
-                ConnectionEvent.CONNECTION_LOGOUTREQUEST));
-            i = TerminalIO.HANDLED;
-        } else if (i > 256 && i == TerminalIO.ESCAPE) {
-            //translate an incoming escape sequence
-            i = handleEscapeSequence();
-        }
+        final int i = terminalIo.read();
         if (trace.isDebugEnabled()) {
             trace.debug("n result:      " + i);
         }
-
-        //return i holding a char or a defined special key
         return i;
     }
 
-    /**
-     * After getting an ESC this method handles the ESC sequence.
-     * If the ESC sequence leads to several ints to read (for example
-     * multiple backspace characters) these characters are put into the
-     * buffer with {@link #putBuffer(int)} of {@link #putBuffer(int, int)}.
-     *
-     * This method extends the functionality of
-     * {@link net.wimpi.telnetd.io.terminal.BasicTerminal#translateEscapeSequence(int[])}.
-     *
-     * @return    Read int.
-     * @throws     IOException    Read error.
-     */
-    private int handleEscapeSequence() throws IOException {
-        int c;
-        if ((c = bufferedRead()) == Terminal.LSB) {
-            int number = 0;
-            do {
-                c = bufferedRead();
-                if (c >= 0 && c < 256 && Character.isDigit((char) c)) {
-                    number = number * 10 + c - '0';
-                } else {
-                    break;
-                }
-            } while (true);
-            if (number == 0) {
-                number = 1;
-            }
-            if (trace.isDebugEnabled()) {
-                trace.debug("number=" + number);
-            }
-            switch (c) {
-            case Terminal.A:
-                number--;
-                putBuffer(TerminalIO.UP, number);
-                return TerminalIO.UP;
-            case Terminal.B:
-                number--;
-                putBuffer(TerminalIO.DOWN, number);
-                return TerminalIO.DOWN;
-            case Terminal.C:
-                number--;
-                putBuffer(TerminalIO.RIGHT, number);
-                return TerminalIO.RIGHT;
-            case Terminal.D:
-                number--;
-                putBuffer(TerminalIO.LEFT, number);
-                return TerminalIO.LEFT;
-            case 80:    // new in comparison to the original
-                // P (DELETE). The byte code of P, as used in escape sequences
-                // for delete character. 
-                number--;
-                putBuffer(TerminalIO.DELETE, number);
-                return TerminalIO.DELETE;
-            case 126:   // ~ new in comparison to the original
-                if (number == 3) {
-                    putBuffer(TerminalIO.DELETE);
-                }
-            default:
-                break;
-            }
-        }
-        trace.error("Unrecognized ESC sequence with char " + c + " " + (char) c);
-        return TerminalIO.UNRECOGNIZED;
+    public int read(final int timeout) throws IOException {
+        return terminalIo.read(timeout);
     }
 
     public void bell() throws IOException {
@@ -218,6 +100,18 @@ public final class ShellIo implements BasicTerminalIO {
         return terminalIo.defineScrollRegion(topmargin, bottommargin);
     }
 
+    public void addResizeListener(final ResizeListener rl) {
+        terminalIo.addResizeListener(rl);
+    }
+
+    public void removeResizeListener(final ResizeListener rl) {
+        terminalIo.removeResizeListener(rl);
+    }
+
+    public boolean scrollRegion(int topmargin, int bottommargin, int lines) throws IOException {
+        return terminalIo.scrollRegion(topmargin, bottommargin, lines);
+    }
+
     public void eraseLine() throws IOException {
         terminalIo.eraseLine();
     }
@@ -246,6 +140,18 @@ public final class ShellIo implements BasicTerminalIO {
         terminalIo.flush();
     }
 
+    public void discardOutput() {
+        terminalIo.discardOutput();
+    }
+
+    public int getOutputEpoch() {
+        return terminalIo.getOutputEpoch();
+    }
+
+    public UpdateScheduler getUpdateScheduler() {
+        return terminalIo.getUpdateScheduler();
+    }
+
     public void forceBold(boolean b) {
         terminalIo.forceBold(b);
     }
@@ -314,6 +220,22 @@ public final class ShellIo implements BasicTerminalIO {
         terminalIo.setBackgroundColor(color);
     }
 
+    public void setIndexedForegroundColor(final int index) throws IOException {
+        terminalIo.setIndexedForegroundColor(index);
+    }
+
+    public void setIndexedBackgroundColor(final int index) throws IOException {
+        terminalIo.setIndexedBackgroundColor(index);
+    }
+
+    public void setRGBForegroundColor(final int r, final int g, final int b) throws IOException {
+        terminalIo.setRGBForegroundColor(r, g, b);
+    }
+
+    public void setRGBBackgroundColor(final int r, final int g, final int b) throws IOException {
+        terminalIo.setRGBBackgroundColor(r, g, b);
+    }
+
     public void setBlink(boolean b) throws IOException {
         terminalIo.setBlink(b);
     }
@@ -382,5 +304,21 @@ public final class ShellIo implements BasicTerminalIO {
             terminalIo.flush();
         }
     }
+
+    /**
+     * Write a range of a byte array to connection. The bytes are passed
+     * to the telnet layer as they are, no color markup is interpreted.
+     *
+     * @param   bytes   Bytes to write.
+     * @param   off     Offset of first byte to write.
+     * @param   len     Number of bytes to write.
+     * @throws  IOException Writing failed.
+     */
+    public void write(final byte[] bytes, final int off, final int len) throws IOException {
+        telnetIo.write(bytes, off, len);
+        if (terminalIo.isAutoflushing()) {
+            terminalIo.flush();
+        }
+    }
     
 }
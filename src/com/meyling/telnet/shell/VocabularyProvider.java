@@ -0,0 +1,119 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package com.meyling.telnet.shell;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Completes words of a vocabulary. The vocabulary is either fixed or loaded by
+ * a subclass in {@link #loadWords()}. A loaded vocabulary is refreshed lazily:
+ * it is reloaded by the first completion request after it got older than the
+ * refresh interval.
+ *
+ * @author    agent
+ */
+public class VocabularyProvider implements CompletionProvider {
+
+    /** Trace logger. */
+    private static Log trace = LogFactory.getLog(VocabularyProvider.class);
+
+    /** Complete only the first word of a line? */
+    private final boolean firstWordOnly;
+
+    /** Milliseconds a loaded vocabulary is valid, negative for ever. */
+    private final long refreshInterval;
+
+    /** Current vocabulary, <code>null</code> if not loaded yet. */
+    private volatile PrefixTrie words;
+
+    /** Time the vocabulary was loaded. */
+    private volatile long loadTime;
+
+    /**
+     * Constructor for a fixed vocabulary.
+     *
+     * @param   words           Vocabulary.
+     * @param   firstWordOnly   Complete only the first word of a line?
+     */
+    public VocabularyProvider(final String[] words, final boolean firstWordOnly) {
+        this.firstWordOnly = firstWordOnly;
+        this.refreshInterval = -1;
+        this.words = new PrefixTrie(words);
+    }
+
+    /**
+     * Constructor for a vocabulary that is loaded by {@link #loadWords()}.
+     *
+     * @param   refreshInterval Milliseconds until the vocabulary is loaded
+     *                          again, negative for never.
+     * @param   firstWordOnly   Complete only the first word of a line?
+     */
+    protected VocabularyProvider(final long refreshInterval, final boolean firstWordOnly) {
+        this.firstWordOnly = firstWordOnly;
+        this.refreshInterval = refreshInterval;
+    }
+
+    public PrefixTrie getWords(final String line, final String word) {
+        if (firstWordOnly && line.trim().length() > 0) {
+            return null;
+        }
+        PrefixTrie result = words;
+        if (result == null || (refreshInterval >= 0
+                && System.currentTimeMillis() - loadTime > refreshInterval)) {
+            result = refresh();
+        }
+        return result;
+    }
+
+    /**
+     * Load the vocabulary if no other thread did it meanwhile. If loading fails
+     * the previous vocabulary is kept.
+     *
+     * @return  Current vocabulary.
+     */
+    private synchronized PrefixTrie refresh() {
+        final long now = System.currentTimeMillis();
+        if (words != null && (refreshInterval < 0 || now - loadTime <= refreshInterval)) {
+            return words;
+        }
+        try {
+            words = new PrefixTrie(loadWords());
+        } catch (Exception e) {
+            trace.warn("loading vocabulary failed", e);
+            if (words == null) {
+                words = new PrefixTrie(new String[0]);
+            }
+        }
+        loadTime = now;
+        return words;
+    }
+
+    /**
+     * Load the vocabulary. Subclasses that use the refreshing constructor
+     * override this method.
+     *
+     * @return  Vocabulary.
+     * @throws  Exception   Loading failed.
+     */
+    protected String[] loadWords() throws Exception {
+        return new String[0];
+    }
+
+}
@@ -36,6 +36,13 @@ import net.wimpi.telnetd.util.StringUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.meyling.telnet.shell.CommandHistory;
+import com.meyling.telnet.shell.CommandShell;
+import com.meyling.telnet.shell.Completer;
+import com.meyling.telnet.shell.LogTailShell;
+import com.meyling.telnet.shell.ProcessPool;
+import com.meyling.telnet.shell.PwtsShell;
+
 /**
  * Class that implements a telnet server.
  * <br>
@@ -100,6 +107,9 @@ public class TelnetD {
             // shutdown the PortListener resources
             plis.stop();
         }
+        if (ProcessPool.getInstance() != null) {
+            ProcessPool.getInstance().shutdown();
+        }
     }
 
     /**
@@ -169,6 +179,64 @@ public class TelnetD {
         TerminalManager.createTerminalManager(terminals);
     }
 
+    /**
+     * Method to prepare the command line histories of the users.
+     *
+     * @param   settings        Properties object that holds main settings.
+     */
+    private void prepareHistory(final Properties settings) {
+        CommandHistory.configure(settings);
+    }
+
+    /**
+     * Method to prepare the tabulator completion.
+     *
+     * @param   settings        Properties object that holds main settings.
+     */
+    private void prepareCompletion(final Properties settings) {
+        Completer.configure(settings);
+    }
+
+    /**
+     * Method to prepare the in-process command shell.
+     *
+     * @param   settings        Properties object that holds main settings.
+     * @throws  BootException   Preparation failed.
+     */
+    private void prepareCommandShell(final Properties settings) throws BootException {
+        try {
+            CommandShell.configure(settings);
+        } catch (Exception e) {
+            trace.fatal(e, e);
+            throw new BootException("Failure while configuring command shell: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Method to prepare the shell for following the server log.
+     *
+     * @param   settings        Properties object that holds main settings.
+     */
+    private void prepareLogTail(final Properties settings) {
+        LogTailShell.configure(settings);
+    }
+
+    /**
+     * Method to prepare the optional pool of pre-started shell processes.
+     *
+     * @param   settings        Properties object that holds main settings.
+     * @throws  BootException   Preparation failed.
+     */
+    private void prepareProcessPool(final Properties settings) throws BootException {
+        try {
+            ProcessPool.createProcessPool(settings, PwtsShell.getShellCommand(),
+                PwtsShell.getStartDirectory());
+        } catch (Exception e) {
+            trace.fatal(e, e);
+            throw new BootException("Failure while creating process pool: " + e.getMessage());
+        }
+    }
+
     /**
      * Factory method to create a TelnetD Instance.
      *
@@ -183,6 +251,11 @@ public class TelnetD {
             final TelnetD td = new TelnetD();
             td.prepareShellManager(main);
             td.prepareTerminals(main);
+            td.prepareHistory(main);
+            td.prepareCompletion(main);
+            td.prepareProcessPool(main);
+            td.prepareLogTail(main);
+            td.prepareCommandShell(main);
             final String[] listnames = StringUtil.split(
                 main.getProperty("listeners"), ",");
             for (int i = 0; i < listnames.length; i++) {
@@ -0,0 +1,95 @@
+package net.gamerservices.telnetd;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import com.meyling.telnet.shell.CommandExecutor;
+import com.meyling.telnet.shell.CommandOutput;
+
+/**
+ * Runs the commands of the command shell as server console commands.
+ * Commands are dispatched on the main server thread, whatever the server
+ * logs on that thread while the command runs is passed back as output.
+ */
+public class telnetCommandExecutor implements CommandExecutor {
+
+    private static final String[] SERVER_COMMANDS = { "ban", "ban-ip", "banlist",
+            "deop", "gamemode", "give", "help", "kick", "list", "op", "pardon",
+            "pardon-ip", "plugins", "reload", "save-all", "save-off", "save-on",
+            "say", "stop", "time", "toggledownfall", "tp", "version",
+            "whitelist", "xp" };
+
+    private final JavaPlugin plugin;
+
+    public telnetCommandExecutor(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(final String commandLine, final CommandOutput output) throws Exception {
+        final Server server = plugin.getServer();
+        Future result = server.getScheduler().callSyncMethod(plugin, new Callable() {
+            @Override
+            public Object call() throws Exception {
+                // handlers are called by the logging thread
+                final Thread thread = Thread.currentThread();
+                Handler capture = new Handler() {
+                    @Override
+                    public void publish(LogRecord record) {
+                        if (Thread.currentThread() == thread) {
+                            output.println(record.getMessage());
+                        }
+                    }
+
+                    @Override
+                    public void flush() {
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+                Logger logger = server.getLogger();
+                logger.addHandler(capture);
+                try {
+                    return Boolean.valueOf(server.dispatchCommand(server.getConsoleSender(), commandLine));
+                } finally {
+                    logger.removeHandler(capture);
+                }
+            }
+        });
+        if (!((Boolean) result.get()).booleanValue()) {
+            output.error("Unknown command. Type \"help\" for help.");
+        }
+    }
+
+    @Override
+    public String[] getCommandNames() {
+        List names = new ArrayList();
+        for (int i = 0; i < SERVER_COMMANDS.length; i++) {
+            names.add(SERVER_COMMANDS[i]);
+        }
+        Plugin[] plugins = plugin.getServer().getPluginManager().getPlugins();
+        for (int i = 0; i < plugins.length; i++) {
+            Object commands = plugins[i].getDescription().getCommands();
+            if (commands instanceof Map) {
+                for (Iterator iter = ((Map) commands).keySet().iterator(); iter.hasNext();) {
+                    names.add(iter.next().toString());
+                }
+            }
+        }
+        return (String[]) names.toArray(new String[names.size()]);
+    }
+
+}
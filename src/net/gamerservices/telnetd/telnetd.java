@@ -2,6 +2,7 @@ package net.gamerservices.telnetd;
 
 import org.bukkit.plugin.java.JavaPlugin;
 
+import com.meyling.telnet.shell.CommandShell;
 import com.meyling.telnet.startup.TelnetD;
 
 public class telnetd extends JavaPlugin {
@@ -20,6 +21,7 @@ public class telnetd extends JavaPlugin {
 		
 
         try {
+            CommandShell.setCommandExecutor(new telnetCommandExecutor(this));
             myTD = TelnetD.createTelnetD();
             myTD.start();
         } catch (Exception e) {
@@ -33,6 +33,7 @@
 package net.wimpi.telnetd;
 
 import net.wimpi.telnetd.io.terminal.TerminalManager;
+import net.wimpi.telnetd.net.Connection;
 import net.wimpi.telnetd.net.PortListener;
 import net.wimpi.telnetd.shell.ShellManager;
 import net.wimpi.telnetd.util.PropertiesLoader;
@@ -95,6 +96,7 @@ public class TelnetD {
       //shutdown the Portlistener resources
       plis.stop();
     }
+    Connection.stopResizeTimer();
   }//stop
 
   /**
@@ -32,6 +32,8 @@
 
 package net.wimpi.telnetd.io;
 
+import net.wimpi.telnetd.net.ResizeListener;
+
 import java.io.IOException;
 
 
@@ -49,12 +51,29 @@ public interface BasicTerminalIO {
    * Method that retrieves Input from the underlying
    * Stream, translating Terminal specific escape
    * sequences and returning a (constant defined) key,
-   * or a character.
+   * or a character.<br>
+   * Keys pressed together with modifiers are returned with
+   * the SHIFT, ALT and/or CTRL bits set; a lone escape key is
+   * returned as ESCAPE once no further bytes follow within a
+   * short timeout.
    *
    * @return int that represents a constant defined key.
    */
   public int read() throws IOException;
 
+  /**
+   * Method that retrieves Input like read(), but
+   * waits at most the given time for it.<br>
+   * Keys typed ahead can be checked for this way, e.g. an
+   * interrupt while a command is running.
+   *
+   * @param timeout the maximum time to wait in milliseconds,
+   *                0 to return immediately.
+   * @return int that represents a constant defined key, or
+   *         TIMEDOUT if there was no input.
+   */
+  public int read(int timeout) throws IOException;
+
   /**
    * Method that writes a raw byte to the terminal.
    * @param b a <tt>byte</tt> value to be written.
@@ -212,6 +231,48 @@ public interface BasicTerminalIO {
    */
   public void setBackgroundColor(int color) throws IOException;
 
+  /**
+   * Method that sets the foreground color to an entry of the
+   * 256 color palette.<br>
+   * If the terminal has a lower color depth, the nearest of
+   * the basic colors will be used.
+   *
+   * @param index Integer that represents the palette index (0-255).
+   */
+  public void setIndexedForegroundColor(int index) throws IOException;
+
+  /**
+   * Method that sets the background color to an entry of the
+   * 256 color palette.<br>
+   * If the terminal has a lower color depth, the nearest of
+   * the basic colors will be used.
+   *
+   * @param index Integer that represents the palette index (0-255).
+   */
+  public void setIndexedBackgroundColor(int index) throws IOException;
+
+  /**
+   * Method that sets the foreground color to a 24 bit RGB color.<br>
+   * If the terminal has a lower color depth, the nearest supported
+   * palette entry will be used.
+   *
+   * @param r red channel (0-255).
+   * @param g green channel (0-255).
+   * @param b blue channel (0-255).
+   */
+  public void setRGBForegroundColor(int r, int g, int b) throws IOException;
+
+  /**
+   * Method that sets the background color to a 24 bit RGB color.<br>
+   * If the terminal has a lower color depth, the nearest supported
+   * palette entry will be used.
+   *
+   * @param r red channel (0-255).
+   * @param g green channel (0-255).
+   * @param b blue channel (0-255).
+   */
+  public void setRGBBackgroundColor(int r, int g, int b) throws IOException;
+
   /**
    * Method that sets bold as attribute for writing on the terminal.
    * The final representation on the terminal might differ by the
@@ -286,6 +347,31 @@ public interface BasicTerminalIO {
    */
   public void flush() throws IOException;
 
+  /**
+   * Discards all output that has been written but not yet
+   * sent over the network, and advances the output epoch.
+   */
+  public void discardOutput();
+
+  /**
+   * Returns the output epoch, which is advanced whenever
+   * queued output is discarded (see discardOutput(), or an AO
+   * sent by the client).<br>
+   * Producers that queue output may tag it with the epoch and
+   * drop it, if the epoch changed before it was written.
+   *
+   * @return the current output epoch.
+   */
+  public int getOutputEpoch();
+
+  /**
+   * Returns the scheduler for repaints from background
+   * threads, which are serialized with the reading thread.
+   *
+   * @return the UpdateScheduler of this <tt>BasicTerminalIO</tt>.
+   */
+  public UpdateScheduler getUpdateScheduler();
+
   /**
    * Closes this <tt>BasicTerminalIO</tt>.
    */
@@ -323,6 +409,21 @@ public interface BasicTerminalIO {
    */
   public int getColumns();
 
+  /**
+   * Registers a listener to be notified (debounced) when the
+   * clients terminal geometry changed.
+   *
+   * @param rl ResizeListener to be registered.
+   */
+  public void addResizeListener(ResizeListener rl);
+
+  /**
+   * Removes a listener registered with addResizeListener().
+   *
+   * @param rl ResizeListener to be removed.
+   */
+  public void removeResizeListener(ResizeListener rl);
+
 
   /**
    * Mutator method for the signalling attribute.
@@ -385,6 +486,25 @@ public interface BasicTerminalIO {
   public boolean defineScrollRegion(int topmargin, int bottommargin)
       throws IOException;
 
+  /**
+   * Method that scrolls the content of a region of rows on the terminal
+   * screen, without retransmitting it.
+   * Positive line counts scroll the content up (blank lines appear at the
+   * bottom margin), negative counts scroll it down (blank lines appear at
+   * the top margin).<br>
+   * The scroll region is reset to the full screen afterwards, and the
+   * cursor position is undefined, so callers have to reposition it.
+   *
+   * @param topmargin    the top margin in rows.
+   * @param bottommargin the bottom margin in rows.
+   * @param lines        the number of lines to scroll.
+   * @return true if the region was scrolled, false if the terminal does
+   *         not support scrolling and the region has to be redrawn.
+   * @throws IOException if an I/O error occurs.
+   */
+  public boolean scrollRegion(int topmargin, int bottommargin, int lines)
+      throws IOException;
+
 //Constants
 
   /**
@@ -407,6 +527,31 @@ public interface BasicTerminalIO {
    */
   public static final int LEFT = 1004;
 
+  /**
+   * Home (defining the home or pos1 key)
+   */
+  public static final int BEGIN = 1005;
+
+  /**
+   * End (defining the end key)
+   */
+  public static final int END = 1006;
+
+  /**
+   * Page up (defining the page up key)
+   */
+  public static final int PAGEUP = 1007;
+
+  /**
+   * Page down (defining the page down key)
+   */
+  public static final int PAGEDOWN = 1008;
+
+  /**
+   * Escape (defining the escape key)
+   */
+  public static final int ESCAPE = 1200;
+
   /**
    * Tabulator (defining the tab key)
    */
@@ -437,6 +582,41 @@ public interface BasicTerminalIO {
    */
   public static final int LOGOUTREQUEST = 1306;
 
+  /**
+   * Insert (defining the insert key)
+   */
+  public static final int INSERT = 1307;
+
+  /**
+   * Timed out (no input within the time given to read(int))
+   */
+  public static final int TIMEDOUT = -2;
+
+  /**
+   * Function keys (F1 is FUNCTIONKEY+1, F12 is FUNCTIONKEY+12)
+   */
+  public static final int FUNCTIONKEY = 1400;
+
+  /**
+   * Shift modifier (bit set on the key code)
+   */
+  public static final int SHIFT = 0x10000;
+
+  /**
+   * Alt (meta) modifier (bit set on the key code)
+   */
+  public static final int ALT = 0x20000;
+
+  /**
+   * Ctrl modifier (bit set on the key code)
+   */
+  public static final int CTRL = 0x40000;
+
+  /**
+   * Mask of all modifier bits
+   */
+  public static final int MODIFIERS = 0x70000;
+
   /**
    * Black
    */
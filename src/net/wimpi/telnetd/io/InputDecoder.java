@@ -0,0 +1,242 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io;
+
+import net.wimpi.telnetd.io.terminal.KeyTrie;
+import net.wimpi.telnetd.io.terminal.Terminal;
+
+import java.io.IOException;
+
+/**
+ * Class that decodes the input of a connection into
+ * characters and (constant defined) keys.<br>
+ * Escape sequences are matched incrementally against the
+ * KeyTrie of the active terminal, so sequences of any length
+ * are recognized (Home/End, function keys, modifier variants).
+ * An ambiguous prefix is resolved by a short inter-byte timeout:
+ * <ul>
+ * <li>a lone ESC becomes the ESCAPE key,
+ * <li>ESC followed by a character not starting a sequence becomes
+ * that character with the ALT modifier,
+ * <li>unknown CSI sequences are consumed up to their final byte and
+ * reported as UNRECOGNIZED.
+ * </ul>
+ * Decoding works on the buffered input of the TelnetIO and does
+ * not allocate.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class InputDecoder {
+
+  private TelnetIO m_TelnetIO;
+  private Terminal m_Terminal;
+  private KeyTrie m_Trie;
+  private int m_Timeout;
+  private int m_Pushback;
+
+  /**
+   * Constructs a decoder reading from the given TelnetIO.
+   *
+   * @param tio  the TelnetIO to read from.
+   * @param term the terminal whose key sequences should be decoded.
+   */
+  public InputDecoder(TelnetIO tio, Terminal term) {
+    m_TelnetIO = tio;
+    m_Timeout = DEFAULT_TIMEOUT;
+    m_Pushback = NONE;
+    setTerminal(term);
+  }//constructor
+
+  /**
+   * Sets the terminal whose key sequences should be decoded.
+   *
+   * @param term the active terminal.
+   */
+  public void setTerminal(Terminal term) {
+    m_Terminal = term;
+    m_Trie = term.getKeyTrie();
+  }//setTerminal
+
+  /**
+   * Sets the time to wait for the next byte of an
+   * escape sequence before the bytes read so far
+   * are decided upon.
+   *
+   * @param timeout the timeout in milliseconds.
+   */
+  public void setTimeout(int timeout) {
+    m_Timeout = timeout;
+  }//setTimeout
+
+  /**
+   * Returns the inter-byte timeout for escape sequences.
+   *
+   * @return the timeout in milliseconds.
+   */
+  public int getTimeout() {
+    return m_Timeout;
+  }//getTimeout
+
+  /**
+   * Reads the next character or key.
+   *
+   * @return the character, or a key as defined in BasicTerminalIO
+   *         (possibly with modifier bits set).
+   * @throws IOException if reading from the connection fails.
+   */
+  public int read() throws IOException {
+    int b = nextByte();
+    if (b != Terminal.ESC) {
+      return m_Terminal.translateControlCharacter(b);
+    }
+    return decodeSequence();
+  }//read
+
+  /**
+   * Reads the next character or key, waiting at most the
+   * given time for it.
+   *
+   * @param timeout the maximum time to wait in milliseconds,
+   *                0 to return immediately.
+   * @return the character or key as in read(), or
+   *         BasicTerminalIO.TIMEDOUT if there was none.
+   * @throws IOException if reading from the connection fails.
+   */
+  public int read(int timeout) throws IOException {
+    int b = nextByte(timeout);
+    if (b == TelnetIO.TIMEDOUT) {
+      return BasicTerminalIO.TIMEDOUT;
+    }
+    if (b != Terminal.ESC) {
+      return m_Terminal.translateControlCharacter(b);
+    }
+    return decodeSequence();
+  }//read(int)
+
+  private int nextByte() throws IOException {
+    if (m_Pushback != NONE) {
+      int b = m_Pushback;
+      m_Pushback = NONE;
+      return b;
+    }
+    return m_TelnetIO.read();
+  }//nextByte
+
+  private int nextByte(int timeout) throws IOException {
+    if (m_Pushback != NONE) {
+      int b = m_Pushback;
+      m_Pushback = NONE;
+      return b;
+    }
+    return m_TelnetIO.read(timeout);
+  }//nextByte
+
+  private int decodeSequence() throws IOException {
+    int node = m_Trie.getChild(KeyTrie.ROOT, Terminal.ESC);
+    int depth = 1;
+    int first = NONE;
+
+    while (node != KeyTrie.NONE) {
+      if (!m_Trie.hasChildren(node)) {
+        return m_Trie.getValue(node);
+      }
+      int b = nextByte(m_Timeout);
+      if (b == TelnetIO.TIMEDOUT) {
+        if (m_Trie.getValue(node) != KeyTrie.NONE) {
+          return m_Trie.getValue(node);
+        }
+        if (depth == 1) {
+          return BasicTerminalIO.ESCAPE;
+        } else if (depth == 2) {
+          //alt pressed with a character that may start a sequence
+          return first | BasicTerminalIO.ALT;
+        }
+        return TerminalIO.UNRECOGNIZED;
+      }
+      if (depth == 1) {
+        first = b;
+      }
+      int child = m_Trie.getChild(node, b);
+      if (child == KeyTrie.NONE) {
+        if (m_Trie.getValue(node) != KeyTrie.NONE) {
+          //complete sequence followed by unrelated input
+          m_Pushback = b;
+          return m_Trie.getValue(node);
+        }
+        return recover(depth, b, first);
+      }
+      node = child;
+      depth++;
+    }
+    //no sequences starting with ESC known at all
+    return BasicTerminalIO.ESCAPE;
+  }//decodeSequence
+
+  private int recover(int depth, int b, int first) throws IOException {
+    if (depth == 1) {
+      if (b == Terminal.ESC) {
+        //escape key pressed twice, the second may start a sequence
+        m_Pushback = b;
+        return BasicTerminalIO.ESCAPE;
+      }
+      if (b >= 32 && b < 127) {
+        return b | BasicTerminalIO.ALT;
+      }
+      int key = m_Terminal.translateControlCharacter(b);
+      return (key == b) ? TerminalIO.UNRECOGNIZED : key | BasicTerminalIO.ALT;
+    }
+    if (first == Terminal.LSB) {
+      //skip the remainder of an unknown control sequence
+      int c = b;
+      while (!isFinal(c) && (depth < MAX_SEQUENCE_LENGTH)) {
+        c = nextByte(m_Timeout);
+        if (c == TelnetIO.TIMEDOUT) {
+          break;
+        }
+        depth++;
+      }
+    }
+    return TerminalIO.UNRECOGNIZED;
+  }//recover
+
+  private static boolean isFinal(int b) {
+    return b >= 0x40 && b <= 0x7E;
+  }//isFinal
+
+  private static final int NONE = -1;
+  private static final int DEFAULT_TIMEOUT = 100;
+  private static final int MAX_SEQUENCE_LENGTH = 32;
+
+}//class InputDecoder
@@ -38,11 +38,17 @@ import net.wimpi.telnetd.net.ConnectionEvent;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.Socket;
 
 /**
  * Class that represents the TelnetIO implementation. It contains
@@ -78,6 +84,14 @@ public class TelnetIO {
   private Connection m_Connection;			//a reference to the connection this instance works for
   private ConnectionData m_ConnectionData;	//holds all important information of the connection
   private DataOutputStream m_Out;		//the byte oriented outputstream
+  private OutputBuffer m_OutBuffer;		//the buffer below m_Out, supports discarding
+  private volatile int m_OutputEpoch;		//advanced whenever queued output is discarded
+  private TokenBucket m_EgressBucket;		//shapes the output, may be null
+  private boolean m_Summarizing;		//summarize bulk output instead of delaying it
+  private boolean m_Suppressing;		//currently dropping lines
+  private boolean m_MidLine;			//last bulk output did not end a line
+  private int m_Suppressed;			//lines dropped since last marker
+  private long m_LastMarker;			//time of last suppressed lines marker
   private DataInputStream m_In;			//the byte oriented input stream
 
   //Aggregations
@@ -103,9 +117,20 @@ public class TelnetIO {
     //we make an instance of our inner class
     m_IACHandler = new IACHandler();
     //we setup underlying byte oriented streams
-    m_In = new DataInputStream(m_ConnectionData.getSocket().getInputStream());
-    m_Out =
-        new DataOutputStream(new BufferedOutputStream(m_ConnectionData.getSocket().getOutputStream()));
+    //buffered, so that bursts (e.g. escape sequences) are read in bulk
+    m_In = new DataInputStream(
+        new BufferedInputStream(m_ConnectionData.getSocket().getInputStream(), INPUT_BUFFER_SIZE));
+    OutputStream out = m_ConnectionData.getSocket().getOutputStream();
+    //output shaping, if configured for the listener or the server
+    m_EgressBucket = m_ConnectionData.getManager().createEgressBucket();
+    if (m_EgressBucket != null) {
+      out = new ShapedOutputStream(out, m_EgressBucket);
+      m_Summarizing = m_ConnectionData.getManager().isEgressSummarizing();
+    }
+    m_OutBuffer = new OutputBuffer(out);
+    m_Out = new DataOutputStream(m_OutBuffer);
+    //the urgent byte of a SYNCH (the DM) has to be seen by the IACHandler
+    m_ConnectionData.getSocket().setOOBInline(true);
 
     //we save the local address (necessary?)
     m_LocalAddress = m_ConnectionData.getSocket().getLocalAddress();
@@ -171,11 +196,108 @@ public class TelnetIO {
    * @param sequence byte[] to be written.
    */
   public void write(byte[] sequence) throws IOException {
-    for (int z = 0; z < sequence.length; z++) {
-      write(sequence[z]);
-    }
+    writeBytes(sequence, 0, sequence.length);
   }//write(byte[])
 
+  /**
+   * Method to write a range of an array of bytes.<br>
+   * This is the path for bulk output (e.g. the output of a process).
+   * If the connection manager summarizes output exceeding the shaping
+   * rate, whole lines written through this method are dropped while
+   * the bandwidth is exhausted, and replaced by periodic
+   * "[N lines suppressed]" markers.
+   *
+   * @param sequence byte[] holding the data.
+   * @param off      the offset of the first byte to be written.
+   * @param len      the number of bytes to be written.
+   */
+  public void write(byte[] sequence, int off, int len) throws IOException {
+    if (m_Summarizing) {
+      writeSummarized(sequence, off, len);
+    } else {
+      writeBytes(sequence, off, len);
+    }
+  }//write(byte[],int,int)
+
+  /**
+   * Writes a range of bytes, with CRLF translation.
+   * Runs of bytes that need no translation are handed to
+   * the underlying stream in one call, so that bulk output does
+   * not pay a method call per byte.
+   */
+  private void writeBytes(byte[] sequence, int off, int len) throws IOException {
+    int start = off;
+    final int end = off + len;
+    for (int z = off; z < end; z++) {
+      byte b = sequence[z];
+      if (b == 10 || b == 13 || m_CRFlag) {
+        if (z > start) {
+          m_Out.write(sequence, start, z - start);
+        }
+        write(b);
+        start = z + 1;
+      }
+    }
+    if (end > start) {
+      m_Out.write(sequence, start, end - start);
+    }
+  }//writeBytes
+
+  /**
+   * Writes a range of bytes line by line, as long as the
+   * egress bucket has tokens for them. Lines that do not fit
+   * are counted and dropped; a line that has been started is
+   * always completed, so that the terminal state stays sane.
+   * A line longer than the bucket can hold is passed once the
+   * bucket is full.
+   */
+  private void writeSummarized(byte[] sequence, int off, int len) throws IOException {
+    final int end = off + len;
+    int start = off;
+    while (start < end) {
+      int lf = start;
+      while (lf < end && sequence[lf] != 10) {
+        lf++;
+      }
+      int stop = (lf < end) ? lf + 1 : end;
+      if (m_Suppressing) {
+        if (lf == end) {
+          //rest of a suppressed line
+          return;
+        }
+        m_Suppressed++;
+        long now = System.currentTimeMillis();
+        if (m_EgressBucket.available() >= m_OutBuffer.pending() + m_EgressBucket.getCapacity() / 2) {
+          //bandwidth recovered
+          writeSuppressedMarker();
+          m_Suppressing = false;
+        } else if (now - m_LastMarker >= SUMMARY_INTERVAL) {
+          writeSuppressedMarker();
+        }
+      } else if (!m_MidLine && m_EgressBucket.available()
+          < Math.min(m_OutBuffer.pending() + (stop - start), m_EgressBucket.getCapacity())) {
+        //line does not fit, handle it as suppressed
+        m_Suppressing = true;
+        m_Suppressed = 0;
+        m_LastMarker = System.currentTimeMillis();
+        continue;
+      } else {
+        writeBytes(sequence, start, stop - start);
+        m_MidLine = (lf == end);
+      }
+      start = stop;
+    }
+  }//writeSummarized
+
+  private void writeSuppressedMarker() throws IOException {
+    if (m_Suppressed > 0) {
+      byte[] marker = ("[" + m_Suppressed + " lines suppressed]\n").getBytes();
+      writeBytes(marker, 0, marker.length);
+    }
+    m_Suppressed = 0;
+    m_LastMarker = System.currentTimeMillis();
+  }//writeSuppressedMarker
+
   /**
    * Method to output an array of int' s.
    *
@@ -239,6 +361,33 @@ public class TelnetIO {
     }
   }//close
 
+  /**
+   * Discards all output that has been buffered but not yet sent,
+   * and advances the output epoch.<br>
+   * This call never blocks on a writer that is stuck on a slow
+   * connection; the buffer is dropped when the writer enters the
+   * buffer the next time.
+   *
+   * @param synch true if a SYNCH (IAC DM, with DM sent as urgent data)
+   *              should be sent to the client in place of the discarded output.
+   */
+  public void discardOutput(boolean synch) {
+    m_OutputEpoch++;
+    m_OutBuffer.discard(synch);
+  }//discardOutput
+
+  /**
+   * Returns the output epoch. The epoch is advanced whenever
+   * queued output is discarded (e.g. the client sent an AO), so
+   * that producers can tag queued output with the epoch it was
+   * produced in, and drop it if the epoch changed.
+   *
+   * @return the current output epoch.
+   */
+  public int getOutputEpoch() {
+    return m_OutputEpoch;
+  }//getOutputEpoch
+
   private void rawWrite(int i) throws IOException {
     //try {
     m_Out.write(i);
@@ -280,6 +429,69 @@ public class TelnetIO {
     return stripCRSeq(c);
   }//read
 
+  /**
+   * Method to read a byte from the InputStream, waiting
+   * at most the given time for it to arrive.<br>
+   * Bytes already buffered are returned immediately. Telnet
+   * protocol sequences are processed as in read(), but
+   * a sequence that is not followed by data does not make this
+   * method wait for more than the given time.
+   *
+   * @param timeout the maximum time to wait in milliseconds,
+   *                0 or less to return immediately.
+   * @return int read from stream, or TIMEDOUT if nothing arrived.
+   */
+  public int read(int timeout) throws IOException {
+    long deadline = System.currentTimeMillis() + timeout;
+    while (true) {
+      if (m_In.available() == 0) {
+        long wait = deadline - System.currentTimeMillis();
+        if (wait <= 0 || !awaitInput((int) wait)) {
+          return TIMEDOUT;
+        }
+      }
+      int c = rawread();
+      if (c != 255) {
+        return stripCRSeq(c);
+      }
+      c = rawread();
+      if (c == 255) {
+        //escaped data byte
+        return c;
+      }
+      m_IACHandler.handleC(c);
+    }
+  }//read(int)
+
+  private boolean awaitInput(int timeout) throws IOException {
+    Socket sock = m_ConnectionData.getSocket();
+    int old = sock.getSoTimeout();
+    sock.setSoTimeout(timeout);
+    try {
+      //peek: wait for one byte to arrive in the buffer
+      m_In.mark(1);
+      if (m_In.read() == -1) {
+        throw new EOFException();
+      }
+      m_In.reset();
+      return true;
+    } catch (InterruptedIOException ex) {
+      return false;
+    } finally {
+      sock.setSoTimeout(old);
+    }
+  }//awaitInput
+
+  /**
+   * Returns the number of bytes that can be read
+   * without blocking.
+   *
+   * @return the number of buffered bytes.
+   */
+  public int available() throws IOException {
+    return m_In.available();
+  }//available
+
   /**
    * Method to close the underlying inputstream to free system resources.<br>
    * Most likely only to be called by the ConnectionManager upon clean up of
@@ -427,6 +639,26 @@ public class TelnetIO {
     }
   }//IamHere
 
+  /**
+   * Network virtual terminal interrupt process.<br>
+   * Queued output belongs to what is going to be interrupted,
+   * so it is discarded before listeners are notified.
+   */
+  private void nvtInterrupt() {
+    discardOutput(false);
+    m_Connection.processConnectionEvent(new ConnectionEvent(m_Connection, ConnectionEvent.CONNECTION_INTERRUPT));
+  }//nvtInterrupt
+
+  /**
+   * Network virtual terminal abort output.
+   *
+   * @param synch true if the client should be sent a SYNCH.
+   */
+  private void nvtAbortOutput(boolean synch) {
+    discardOutput(synch);
+    m_Connection.processConnectionEvent(new ConnectionEvent(m_Connection, ConnectionEvent.CONNECTION_ABORTOUTPUT));
+  }//nvtAbortOutput
+
   /**
    * Network virtual terminal break.
    */
@@ -450,7 +682,12 @@ public class TelnetIO {
       height = DEFAULT_HEIGHT;
     }
     //DEBUG: write("[New Window Size " + window_width + "x" + window_height + "]");
-    m_ConnectionData.setTerminalGeometry(width, height);
+    if (width != m_ConnectionData.getTerminalColumns()
+        || height != m_ConnectionData.getTerminalRows()) {
+      m_ConnectionData.setTerminalGeometry(width, height);
+      //debounced notification of the resize listeners
+      m_Connection.processTerminalResize();
+    }
   }//setTerminalGeometry
 
   public void setEcho(boolean b) {
@@ -613,7 +850,11 @@ public class TelnetIO {
           IamHere();
           break;
         case AO:
+          nvtAbortOutput(true);
+          break;
         case IP:
+          nvtInterrupt();
+          break;
         case EL:
         case EC:
         case NOP:
@@ -691,7 +932,8 @@ public class TelnetIO {
           break;
 
           /* Now about other two byte IACs */
-        case DM:	//How do I implement a SYNCH signal?
+        case DM:	//SYNCH: discard what we queued, the client flushed anyway
+          nvtAbortOutput(false);
           break;
         case SB: //handle subnegotiations
           if ((supported(buf[1])) && (isEnabled(buf[1]))) {
@@ -1629,6 +1871,184 @@ public class TelnetIO {
   private static final int DEFAULT_WIDTH = 80;
   private static final int DEFAULT_HEIGHT = 25;
 
+  /**
+   * Input Constants
+   */
+  private static final int INPUT_BUFFER_SIZE = 1024;
+
+  /**
+   * Output Constants
+   */
+  private static final int SUMMARY_INTERVAL = 1000;	//ms between suppressed lines markers
+  private static final int MAX_SEQUENCE_LENGTH = 32;	//longest sequence kept on discard
+  private static final byte ESC = 27;
+  private static final byte[] CANCEL_SEQUENCE = {24};			//CAN
+  private static final byte[] RESET_SEQUENCE = {24, 27, '[', '0', 'm'};	//CAN, SGR 0
+
+  /**
+   * Returned by read(int) if no input arrived within the timeout.
+   */
+  public static final int TIMEDOUT = -2;
+
   /** end Constants declaration **************************************************/
 
+  /**
+   * Buffered output stream that can drop its unsent content.<br>
+   * A discard request is only flagged; it is carried out by the
+   * next thread writing or flushing, so that the requesting thread
+   * (usually the one reading from the connection) never waits for
+   * a writer blocked on the socket.<br>
+   * An escape sequence or UTF-8 character at the end of the buffer
+   * that is still incomplete is kept, as the writer is going to complete
+   * it. The terminal is told to abandon a sequence that was sent in part
+   * (CAN), and attributes are reset if escape sequences were dropped.
+   */
+  private class OutputBuffer extends BufferedOutputStream {
+
+    private volatile boolean m_Discard;
+    private volatile boolean m_Synch;
+
+    public OutputBuffer(OutputStream out) {
+      super(out);
+    }//constructor
+
+    public int pending() {
+      return count;
+    }//pending
+
+    public void discard(boolean synch) {
+      if (synch) {
+        m_Synch = true;
+      }
+      m_Discard = true;
+    }//discard
+
+    public synchronized void write(int b) throws IOException {
+      checkDiscard();
+      super.write(b);
+    }//write(int)
+
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+      checkDiscard();
+      super.write(b, off, len);
+    }//write(byte[],int,int)
+
+    public synchronized void flush() throws IOException {
+      checkDiscard();
+      super.flush();
+    }//flush
+
+    private void checkDiscard() throws IOException {
+      if (!m_Discard) {
+        return;
+      }
+      m_Discard = false;
+      int cut = incompleteTail();
+      boolean escapes = false;
+      for (int i = 0; i < cut && !escapes; i++) {
+        escapes = (buf[i] == ESC);
+      }
+      byte[] reset = (escapes) ? RESET_SEQUENCE : CANCEL_SEQUENCE;
+      if (cut == 0) {
+        reset = new byte[0];
+      }
+      int tail = count - cut;
+      System.arraycopy(buf, cut, buf, reset.length, tail);
+      System.arraycopy(reset, 0, buf, 0, reset.length);
+      count = reset.length + tail;
+      if (m_Synch) {
+        m_Synch = false;
+        out.write(IAC);
+        out.flush();
+        m_ConnectionData.getSocket().sendUrgentData(DM);
+      }
+    }//checkDiscard
+
+    /**
+     * Returns the start of an incomplete escape sequence or
+     * UTF-8 character at the end of the buffer.
+     *
+     * @return the index, or count if the buffer ends on a boundary.
+     */
+    private int incompleteTail() {
+      int limit = Math.max(0, count - MAX_SEQUENCE_LENGTH);
+      int tail = count;
+      //escape sequence
+      for (int i = count - 1; i >= limit; i--) {
+        if (buf[i] == ESC) {
+          if (!isCompleteSequence(i)) {
+            tail = i;
+          }
+          break;
+        }
+      }
+      //utf-8 lead byte followed by too few continuation bytes
+      int i = count - 1;
+      while (i >= limit && i > count - 4 && (buf[i] & 0xC0) == 0x80) {
+        i--;
+      }
+      if (i >= limit && i < count) {
+        int lead = buf[i] & 0xFF;
+        int length = (lead >= 0xF0) ? 4 : (lead >= 0xE0) ? 3 : (lead >= 0xC0) ? 2 : 1;
+        if (count - i < length) {
+          tail = Math.min(tail, i);
+        }
+      }
+      return tail;
+    }//incompleteTail
+
+    private boolean isCompleteSequence(int start) {
+      int i = start + 1;
+      if (i >= count) {
+        return false;
+      }
+      if (buf[i] == '[') {
+        //CSI: parameters and intermediates up to a final byte
+        for (i++; i < count; i++) {
+          if (buf[i] >= 0x40 && buf[i] <= 0x7E) {
+            return true;
+          }
+        }
+        return false;
+      }
+      if (buf[i] >= 0x20 && buf[i] <= 0x2F) {
+        //designation, one more byte follows
+        return i + 1 < count;
+      }
+      return true;
+    }//isCompleteSequence
+
+  }//inner class OutputBuffer
+
+  /**
+   * Output stream that takes tokens from a bucket for every
+   * byte passed on to the socket.
+   */
+  private static class ShapedOutputStream extends FilterOutputStream {
+
+    private TokenBucket m_Bucket;
+
+    public ShapedOutputStream(OutputStream out, TokenBucket bucket) {
+      super(out);
+      m_Bucket = bucket;
+    }//constructor
+
+    public void write(int b) throws IOException {
+      m_Bucket.take(1);
+      out.write(b);
+    }//write(int)
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      //pass on in quanta, so the socket sees a steady stream
+      while (len > 0) {
+        int n = Math.min(len, TokenBucket.QUANTUM);
+        m_Bucket.take(n);
+        out.write(b, off, n);
+        off += n;
+        len -= n;
+      }
+    }//write(byte[],int,int)
+
+  }//inner class ShapedOutputStream
+
 }//class TelnetIO
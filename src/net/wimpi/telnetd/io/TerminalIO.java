@@ -32,11 +32,15 @@
 
 package net.wimpi.telnetd.io;
 
+import net.wimpi.telnetd.io.terminal.ColorQuantizer;
+import net.wimpi.telnetd.io.terminal.Colorizer;
 import net.wimpi.telnetd.io.terminal.Terminal;
 import net.wimpi.telnetd.io.terminal.TerminalManager;
 import net.wimpi.telnetd.net.Connection;
 import net.wimpi.telnetd.net.ConnectionData;
 import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.net.ConnectionManager;
+import net.wimpi.telnetd.net.ResizeListener;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -61,6 +65,9 @@ public class TerminalIO
   private Connection m_Connection;			//the connection this instance is working for
   private ConnectionData m_ConnectionData;	//holds data of the connection
   private Terminal m_Terminal;					//active terminal object
+  private int m_ColorDepth;					//color depth in effect
+  private InputDecoder m_Decoder;				//decodes keys and sequences
+  private UpdateScheduler m_UpdateScheduler;	//serializes background repaints
 
   //Members
   private boolean m_AcousticSignalling;		//flag for accoustic signalling
@@ -77,6 +84,7 @@ public class TerminalIO
     m_Connection = con;
     m_AcousticSignalling = true;
     m_Autoflush = true;
+    m_UpdateScheduler = new UpdateScheduler(this);
 
     //store the associated  ConnectionData instance
     m_ConnectionData = m_Connection.getConnectionData();
@@ -111,27 +119,46 @@ public class TerminalIO
    *         <li>character read
    *         <li>IOERROR in case of an error
    *         <li>DELETE,BACKSPACE,TABULATOR,ESCAPE,COLORINIT,LOGOUTREQUEST
-   *         <li>UP,DOWN,LEFT,RIGHT
+   *         <li>UP,DOWN,LEFT,RIGHT,BEGIN,END,PAGEUP,PAGEDOWN,INSERT
+   *         <li>FUNCTIONKEY+n, possibly with SHIFT, ALT or CTRL bits set
    *         </ul>
    */
   public int read() throws IOException {
-    int i = m_TelnetIO.read();
-    //translate possible control sequences
-    i = m_Terminal.translateControlCharacter(i);
+    //read a character or a decoded key sequence,
+    //scheduled repaints may be written meanwhile
+    int i;
+    m_UpdateScheduler.enterRead();
+    try {
+      i = m_Decoder.read();
+    } finally {
+      m_UpdateScheduler.leaveRead();
+    }
 
     //catch & fire a logoutrequest event
     if (i == LOGOUTREQUEST) {
       m_Connection.processConnectionEvent(new ConnectionEvent(m_Connection, ConnectionEvent.CONNECTION_LOGOUTREQUEST));
       i = HANDLED;
-    } else if (i > 256 && i == ESCAPE) {
-      //translate an incoming escape sequence
-      i = handleEscapeSequence(i);
     }
 
     //return i holding a char or a defined special key
     return i;
   }//read
 
+  public int read(int timeout) throws IOException {
+    int i;
+    m_UpdateScheduler.enterRead();
+    try {
+      i = m_Decoder.read(timeout);
+    } finally {
+      m_UpdateScheduler.leaveRead();
+    }
+    if (i == LOGOUTREQUEST) {
+      m_Connection.processConnectionEvent(new ConnectionEvent(m_Connection, ConnectionEvent.CONNECTION_LOGOUTREQUEST));
+      i = HANDLED;
+    }
+    return i;
+  }//read(int)
+
   public void write(byte b) throws IOException {
     m_TelnetIO.write(b);
     if (m_Autoflush) {
@@ -147,7 +174,9 @@ public class TerminalIO
   }//write(char)
 
   public void write(String str) throws IOException {
-    if (m_ForceBold) {
+    if (m_ColorDepth != m_Terminal.getColorDepth()) {
+      m_TelnetIO.write(Colorizer.getReference().colorize(str, m_ColorDepth, m_ForceBold));
+    } else if (m_ForceBold) {
       m_TelnetIO.write(m_Terminal.formatBold(str));
     } else {
       m_TelnetIO.write(m_Terminal.format(str));
@@ -303,6 +332,36 @@ public class TerminalIO
     }
   }//defineScrollRegion
 
+  public boolean scrollRegion(int topmargin, int bottommargin, int lines)
+      throws IOException {
+    if (!m_Terminal.supportsScrolling()) {
+      return false;
+    }
+    m_TelnetIO.write(m_Terminal.getScrollMarginsSequence(topmargin, bottommargin));
+    //the margins home the cursor, so we move it onto the margin we index on
+    int[] pos = new int[2];
+    pos[1] = 1;
+    byte[] sequence = null;
+    if (lines > 0) {
+      pos[0] = bottommargin;
+      sequence = m_Terminal.getSpecialSequence(INDEX);
+    } else {
+      pos[0] = topmargin;
+      sequence = m_Terminal.getSpecialSequence(REVERSEINDEX);
+      lines = -lines;
+    }
+    m_TelnetIO.write(m_Terminal.getCursorPositioningSequence(pos));
+    for (int i = 0; i < lines; i++) {
+      m_TelnetIO.write(sequence);
+    }
+    //reset the margins to the full screen
+    m_TelnetIO.write(m_Terminal.getScrollMarginsSequence(1, getRows()));
+    if (m_Autoflush) {
+      flush();
+    }
+    return true;
+  }//scrollRegion
+
   public void setForegroundColor(int color) throws IOException {
     if (m_Terminal.supportsSGR()) {
       m_TelnetIO.write(m_Terminal.getGRSequence(FCOLOR, color));
@@ -322,6 +381,61 @@ public class TerminalIO
     }
   }//setBackgroundColor
 
+  public void setIndexedForegroundColor(int index) throws IOException {
+    writeIndexedColor(index, false);
+  }//setIndexedForegroundColor
+
+  public void setIndexedBackgroundColor(int index) throws IOException {
+    writeIndexedColor(index, true);
+  }//setIndexedBackgroundColor
+
+  public void setRGBForegroundColor(int r, int g, int b) throws IOException {
+    writeRGBColor(ColorQuantizer.toRGB(r, g, b), false);
+  }//setRGBForegroundColor
+
+  public void setRGBBackgroundColor(int r, int g, int b) throws IOException {
+    writeRGBColor(ColorQuantizer.toRGB(r, g, b), true);
+  }//setRGBBackgroundColor
+
+  private void writeIndexedColor(int index, boolean background) throws IOException {
+    int depth = m_ColorDepth;
+    if (depth >= Terminal.COLORS_INDEXED) {
+      m_TelnetIO.write(m_Terminal.getGRSequence((background) ? EXTBCOLOR : EXTFCOLOR, index));
+    } else if (m_Terminal.supportsSGR()) {
+      writeBasicColor(BLACK + ColorQuantizer.indexedToBasic(index), background);
+    } else {
+      return;
+    }
+    if (m_Autoflush) {
+      flush();
+    }
+  }//writeIndexedColor
+
+  private void writeRGBColor(int rgb, boolean background) throws IOException {
+    int depth = m_ColorDepth;
+    if (depth >= Terminal.COLORS_RGB) {
+      m_TelnetIO.write(m_Terminal.getGRSequence((background) ? RGBBCOLOR : RGBFCOLOR, rgb));
+    } else if (depth >= Terminal.COLORS_INDEXED) {
+      m_TelnetIO.write(m_Terminal.getGRSequence((background) ? EXTBCOLOR : EXTFCOLOR,
+          ColorQuantizer.rgbToIndexed(rgb)));
+    } else if (m_Terminal.supportsSGR()) {
+      writeBasicColor(BLACK + ColorQuantizer.rgbToBasic(rgb), background);
+    } else {
+      return;
+    }
+    if (m_Autoflush) {
+      flush();
+    }
+  }//writeRGBColor
+
+  private void writeBasicColor(int color, boolean background) throws IOException {
+    if (background) {
+      m_TelnetIO.write(m_Terminal.getGRSequence(BCOLOR, color + 10));
+    } else {
+      m_TelnetIO.write(m_Terminal.getGRSequence(FCOLOR, color));
+    }
+  }//writeBasicColor
+
   public void setBold(boolean b) throws IOException {
     if (m_Terminal.supportsSGR()) {
       if (b) {
@@ -392,25 +506,6 @@ public class TerminalIO
    * Auxiliary I/O methods						                        *
    ************************************************************************/
 
-  /**
-   * Method that parses forward for escape sequences
-   */
-  private int handleEscapeSequence(int i) throws IOException {
-    if (i == ESCAPE) {
-      int[] bytebuf = new int[m_Terminal.getAtomicSequenceLength()];
-      //fill atomic length
-      //FIXME: ensure CAN, broken Escapes etc.
-      for (int m = 0; m < bytebuf.length; m++) {
-        bytebuf[m] = m_TelnetIO.read();
-      }
-      return m_Terminal.translateEscapeSequence(bytebuf);
-    }
-    if (i == BYTEMISSING) {
-      //FIXME:longer escapes etc...
-    }
-
-    return HANDLED;
-  }//handleEscapeSequence
 
   /**
    * Accessor method for the autoflushing mechanism.
@@ -455,8 +550,21 @@ public class TerminalIO
     m_TelnetIO.flush();
   }//flush (implements the famous iToilet)
 
+  public void discardOutput() {
+    m_TelnetIO.discardOutput(false);
+  }//discardOutput
+
+  public int getOutputEpoch() {
+    return m_TelnetIO.getOutputEpoch();
+  }//getOutputEpoch
+
+  public UpdateScheduler getUpdateScheduler() {
+    return m_UpdateScheduler;
+  }//getUpdateScheduler
+
 
   public void close() {
+    m_UpdateScheduler.stop();
     m_TelnetIO.closeOutput();
     m_TelnetIO.closeInput();
   }//close
@@ -498,6 +606,12 @@ public class TerminalIO
   public void setTerminal(String terminalName) throws IOException {
 
     m_Terminal = TerminalManager.getReference().getTerminal(terminalName);
+    if (m_Decoder == null) {
+      m_Decoder = new InputDecoder(m_TelnetIO, m_Terminal);
+    } else {
+      m_Decoder.setTerminal(m_Terminal);
+    }
+    m_ColorDepth = resolveColorDepth();
     //Terminal is set we init it....
     initTerminal();
     //debug message
@@ -505,6 +619,29 @@ public class TerminalIO
   }//setTerminal
 
 
+  /**
+   * Returns the color depth for the active terminal. The listener
+   * may configure it, otherwise the terminal declares it; a client
+   * that advertises direct color through its environment is trusted
+   * if the terminal supports the 256 color palette at least.
+   */
+  private int resolveColorDepth() {
+    int depth = m_Terminal.getColorDepth();
+    if (depth == Terminal.COLORS_NONE) {
+      return depth;
+    }
+    ConnectionManager cm = m_ConnectionData.getManager();
+    if (cm != null && cm.getColorDepth() > 0) {
+      return cm.getColorDepth();
+    }
+    Object colorterm = m_ConnectionData.getEnvironment().get("COLORTERM");
+    if (depth == Terminal.COLORS_INDEXED
+        && ("truecolor".equals(colorterm) || "24bit".equals(colorterm))) {
+      return Terminal.COLORS_RGB;
+    }
+    return depth;
+  }//resolveColorDepth
+
   /**
    * Terminal initialization
    */
@@ -527,6 +664,14 @@ public class TerminalIO
     return m_ConnectionData.getTerminalColumns();
   }//getColumns
 
+  public void addResizeListener(ResizeListener rl) {
+    m_Connection.addResizeListener(rl);
+  }//addResizeListener
+
+  public void removeResizeListener(ResizeListener rl) {
+    m_Connection.removeResizeListener(rl);
+  }//removeResizeListener
+
 
   /**
    * Accessor Method for the terminal geometry changed flag
@@ -621,6 +766,12 @@ public class TerminalIO
   public static final int DEVICERESET = 10005;
   public static final int LINEWRAP = 10006;
   public static final int NOLINEWRAP = 10007;
+  public static final int INDEX = 10008;
+  public static final int REVERSEINDEX = 10009;
+  public static final int EXTFCOLOR = 10010;
+  public static final int EXTBCOLOR = 10011;
+  public static final int RGBFCOLOR = 10012;
+  public static final int RGBBCOLOR = 10013;
 
   /** end Constants Declaration  ******************************************/
 
@@ -0,0 +1,179 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Class implementing a token bucket for shaping output.<br>
+ * The bucket is refilled with <tt>rate</tt> tokens (bytes) per second,
+ * up to <tt>burst</tt> tokens. Writers take tokens before passing bytes
+ * on, and wait if there are not enough.
+ * <p/>
+ * Buckets can be chained: a connection's bucket has the server wide
+ * bucket as parent, and every token has to be taken from both.
+ * Tokens are taken from the parent in quanta of at most
+ * QUANTUM bytes, so that waiting connections take turns and
+ * share the global bandwidth fairly, instead of one large write
+ * claiming all of it.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class TokenBucket {
+
+  private int m_Rate;				//tokens per second
+  private int m_Burst;				//maximum number of tokens
+  private TokenBucket m_Parent;		//bucket charged too, may be null
+  private long m_Tokens;			//tokens available
+  private long m_LastRefill;		//time of last refill
+
+  /**
+   * Constructs a full token bucket.
+   *
+   * @param rate   the number of tokens (bytes) added per second.
+   * @param burst  the maximum number of tokens, if smaller than 1
+   *               one second's worth of tokens is used.
+   * @param parent a bucket that has to be charged as well, or null.
+   */
+  public TokenBucket(int rate, int burst, TokenBucket parent) {
+    m_Rate = Math.max(1, rate);
+    m_Burst = (burst < 1) ? m_Rate : burst;
+    m_Parent = parent;
+    m_Tokens = m_Burst;
+    m_LastRefill = System.currentTimeMillis();
+  }//constructor
+
+  /**
+   * Returns the rate of this bucket.
+   *
+   * @return the number of tokens added per second.
+   */
+  public int getRate() {
+    return m_Rate;
+  }//getRate
+
+  /**
+   * Returns the burst size of this bucket.
+   *
+   * @return the maximum number of tokens.
+   */
+  public int getBurst() {
+    return m_Burst;
+  }//getBurst
+
+  /**
+   * Returns the number of tokens this bucket and its parent
+   * can hold together, i.e. the largest number of tokens
+   * that can ever be available at once.
+   *
+   * @return the capacity in tokens.
+   */
+  public int getCapacity() {
+    return (m_Parent == null) ? m_Burst : Math.min(m_Burst, m_Parent.getCapacity());
+  }//getCapacity
+
+  /**
+   * Returns the number of tokens that can be taken right
+   * now without waiting, considering the parent bucket.
+   *
+   * @return the number of available tokens.
+   */
+  public int available() {
+    int avail;
+    synchronized (this) {
+      refill();
+      avail = (int) m_Tokens;
+    }
+    if (m_Parent != null) {
+      avail = Math.min(avail, m_Parent.available());
+    }
+    return avail;
+  }//available
+
+  /**
+   * Takes the given number of tokens from this bucket and
+   * its parent, waiting until they are available.
+   *
+   * @param num the number of tokens to be taken.
+   * @throws InterruptedIOException if the thread was interrupted while waiting.
+   */
+  public void take(int num) throws InterruptedIOException {
+    while (num > 0) {
+      int q = Math.min(num, Math.min(QUANTUM, m_Burst));
+      acquire(q);
+      if (m_Parent != null) {
+        m_Parent.take(q);
+      }
+      num -= q;
+    }
+  }//take
+
+  private synchronized void acquire(int num) throws InterruptedIOException {
+    refill();
+    while (m_Tokens < num) {
+      long millis = ((num - m_Tokens) * 1000 + m_Rate - 1) / m_Rate;
+      try {
+        wait(Math.max(1, millis));
+      } catch (InterruptedException ex) {
+        throw new InterruptedIOException("Interrupted while waiting for output bandwidth.");
+      }
+      refill();
+    }
+    m_Tokens -= num;
+  }//acquire
+
+  private void refill() {
+    long now = System.currentTimeMillis();
+    long elapsed = now - m_LastRefill;
+    if (elapsed <= 0) {
+      return;
+    }
+    long tokens = elapsed * m_Rate / 1000;
+    if (tokens > 0) {
+      m_Tokens = Math.min(m_Burst, m_Tokens + tokens);
+      //only advance by the time that was actually converted into tokens
+      m_LastRefill += tokens * 1000 / m_Rate;
+      if (m_Tokens == m_Burst) {
+        m_LastRefill = now;
+      }
+    }
+  }//refill
+
+  /**
+   * Defines the maximum number of tokens taken from a parent
+   * bucket at once.
+   */
+  public static final int QUANTUM = 1024;
+
+}//class TokenBucket
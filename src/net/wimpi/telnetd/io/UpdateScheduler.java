@@ -0,0 +1,240 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * Class that serializes background repaints with the
+ * foreground I/O of a connection.<br>
+ * Threads refreshing a clock or a live counter schedule the
+ * component instead of drawing it. The repaints are run while
+ * the thread of the shell waits for input, which then is held
+ * until the batch is written, so output never interleaves.
+ * Requests are coalesced to the maximum rate; all repaints of a
+ * batch are wrapped in one store/restore cursor pair and one flush,
+ * leaving the input cursor where it was.
+ * <p/>
+ * Every TerminalIO has one scheduler, see
+ * {@link BasicTerminalIO#getUpdateScheduler()}.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class UpdateScheduler {
+
+  private static Log log = LogFactory.getLog(UpdateScheduler.class);
+
+  private BasicTerminalIO m_IO;
+  private Vector m_Pending;				//scheduled Repaintables
+  private long m_Interval;				//minimum ms between batches
+  private long m_NextBatch;
+  private boolean m_Reading;			//foreground waits for input
+  private boolean m_Painting;			//a batch is being written
+  private boolean m_Stopped;
+  private Thread m_Painter;
+
+  /**
+   * Constructs a scheduler for the given I/O.
+   *
+   * @param io the BasicTerminalIO whose read() calls report the
+   *           foreground waiting for input.
+   */
+  public UpdateScheduler(BasicTerminalIO io) {
+    m_IO = io;
+    m_Pending = new Vector(5, 5);
+    m_Interval = 1000 / DEFAULT_RATE;
+  }//constructor
+
+  /**
+   * Schedules a repaint. May be called from any thread; a
+   * Repaintable scheduled again before its repaint ran is
+   * painted once.
+   *
+   * @param r the Repaintable to be painted.
+   */
+  public synchronized void schedule(Repaintable r) {
+    if (m_Stopped) {
+      return;
+    }
+    if (!m_Pending.contains(r)) {
+      m_Pending.addElement(r);
+    }
+    if (m_Painter == null) {
+      m_Painter = new Painter();
+      m_Painter.start();
+    }
+    notifyAll();
+  }//schedule
+
+  /**
+   * Mutator method for the maximum number of batches per second.
+   *
+   * @param rate int representing the batches per second.
+   */
+  public synchronized void setMaximumRate(int rate) {
+    m_Interval = 1000 / Math.max(1, rate);
+  }//setMaximumRate
+
+  /**
+   * Accessor method for the maximum number of batches per second.
+   *
+   * @return int representing the batches per second.
+   */
+  public int getMaximumRate() {
+    return (int) (1000 / m_Interval);
+  }//getMaximumRate
+
+  /**
+   * Stops the scheduler, pending repaints are dropped.
+   */
+  public synchronized void stop() {
+    m_Stopped = true;
+    m_Pending.removeAllElements();
+    notifyAll();
+  }//stop
+
+  /**
+   * Called by the foreground thread before it blocks for input.
+   */
+  synchronized void enterRead() {
+    m_Reading = true;
+    notifyAll();
+  }//enterRead
+
+  /**
+   * Called by the foreground thread after input arrived;
+   * returns once a batch being written is complete.
+   */
+  synchronized void leaveRead() {
+    m_Reading = false;
+    while (m_Painting) {
+      try {
+        wait();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }//leaveRead
+
+  /**
+   * Writes a batch of repaints, with the cursor stored and
+   * restored once and a single flush.
+   */
+  private void paint(Repaintable[] batch) throws IOException {
+    boolean autoflush = m_IO.isAutoflushing();
+    m_IO.setAutoflushing(false);
+    try {
+      m_IO.storeCursor();
+      for (int i = 0; i < batch.length; i++) {
+        batch[i].paint();
+      }
+      m_IO.restoreCursor();
+      m_IO.flush();
+    } finally {
+      m_IO.setAutoflushing(autoflush);
+    }
+  }//paint
+
+  /**
+   * Thread writing the scheduled repaints.
+   */
+  private class Painter extends Thread {
+
+    Painter() {
+      super("UpdateScheduler Painter");
+      setDaemon(true);
+    }//constructor
+
+    public void run() {
+      try {
+        while (true) {
+          Repaintable[] batch;
+          synchronized (UpdateScheduler.this) {
+            if (m_Stopped) {
+              m_Painter = null;
+              return;
+            }
+            long wait = m_NextBatch - System.currentTimeMillis();
+            if (m_Pending.isEmpty()) {
+              //idle, let the thread go
+              UpdateScheduler.this.wait(IDLE_TIMEOUT);
+              if (m_Pending.isEmpty()) {
+                m_Painter = null;
+                return;
+              }
+              continue;
+            } else if (wait > 0) {
+              //coalesce requests until the next batch is due
+              UpdateScheduler.this.wait(wait);
+              continue;
+            } else if (!m_Reading) {
+              //the foreground is writing
+              UpdateScheduler.this.wait();
+              continue;
+            }
+            batch = new Repaintable[m_Pending.size()];
+            m_Pending.copyInto(batch);
+            m_Pending.removeAllElements();
+            m_Painting = true;
+          }
+          try {
+            paint(batch);
+          } catch (IOException ex) {
+            log.debug("run()", ex);
+          } finally {
+            synchronized (UpdateScheduler.this) {
+              m_Painting = false;
+              m_NextBatch = System.currentTimeMillis() + m_Interval;
+              UpdateScheduler.this.notifyAll();
+            }
+          }
+        }
+      } catch (InterruptedException ex) {
+        synchronized (UpdateScheduler.this) {
+          m_Painter = null;
+        }
+      }
+    }//run
+
+  }//inner class Painter
+
+  private static final int DEFAULT_RATE = 4;
+  private static final long IDLE_TIMEOUT = 30000;
+
+}//class UpdateScheduler
@@ -48,6 +48,7 @@ public abstract class BasicTerminal implements Terminal {
 
   //Associations
   protected Colorizer m_Colorizer;
+  private KeyTrie m_KeyTrie;
 
   /**
    * Constructs an instance with an associated colorizer.
@@ -101,6 +102,63 @@ public abstract class BasicTerminal implements Terminal {
   }//translateEscapeSequence
 
 
+  public synchronized KeyTrie getKeyTrie() {
+    if (m_KeyTrie == null) {
+      m_KeyTrie = createKeyTrie();
+    }
+    return m_KeyTrie;
+  }//getKeyTrie
+
+  /**
+   * Creates the trie of key sequences understood by this
+   * terminal. The basic implementation knows the sequences of
+   * the vt100/vt220 family, including the variants sent by xterm,
+   * rxvt and the linux console, and the xterm modifier encoding
+   * (e.g. <tt>ESC [ 1 ; 5 A</tt> for Ctrl-Up).<br>
+   * Subclasses may add or replace sequences.
+   *
+   * @return the KeyTrie for this terminal.
+   */
+  protected KeyTrie createKeyTrie() {
+    KeyTrie trie = new KeyTrie();
+    String csi = "\033[";
+    String ss3 = "\033O";
+
+    //keys with a final letter: CSI x, SS3 x and CSI 1;m x
+    for (int i = 0; i < LETTER_KEYS.length; i += 2) {
+      char letter = (char) LETTER_KEYS[i];
+      int key = LETTER_KEYS[i + 1];
+      trie.add(csi + letter, key);
+      trie.add(ss3 + letter, key);
+      for (int m = 2; m <= 8; m++) {
+        trie.add(csi + "1;" + m + letter, key | getModifiers(m));
+      }
+    }
+    //keys with a number: CSI n ~ and CSI n;m ~
+    for (int i = 0; i < TILDE_KEYS.length; i += 2) {
+      String num = Integer.toString(TILDE_KEYS[i]);
+      int key = TILDE_KEYS[i + 1];
+      trie.add(csi + num + "~", key);
+      for (int m = 2; m <= 8; m++) {
+        trie.add(csi + num + ";" + m + "~", key | getModifiers(m));
+      }
+    }
+    //linux console function keys
+    for (int i = 0; i < 5; i++) {
+      trie.add(csi + "[" + (char) (A + i), TerminalIO.FUNCTIONKEY + 1 + i);
+    }
+    //backtab
+    trie.add(csi + "Z", TerminalIO.TABULATOR | TerminalIO.SHIFT);
+    //delete character, as sent by some clients
+    trie.add(csi + "P", TerminalIO.DELETE);
+    return trie;
+  }//createKeyTrie
+
+  private static int getModifiers(int param) {
+    //xterm encodes modifiers as 1 + (shift=1 | alt=2 | ctrl=4)
+    return ((param - 1) & 7) << 16;
+  }//getModifiers
+
   public byte[] getCursorMoveSequence(int direction, int times) {
     byte[] sequence = null;
 
@@ -255,6 +313,16 @@ public abstract class BasicTerminal implements Terminal {
         sequence[2] = 55; //Ascii code of 7
         sequence[3] = 108; //Ascii code of l
         break;
+      case TerminalIO.INDEX:
+        sequence = new byte[2];
+        sequence[0] = ESC;
+        sequence[1] = D;
+        break;
+      case TerminalIO.REVERSEINDEX:
+        sequence = new byte[2];
+        sequence[0] = ESC;
+        sequence[1] = 77; //Ascii code of M
+        break;
     }
     return sequence;
   }//getSpecialSequence
@@ -292,6 +360,22 @@ public abstract class BasicTerminal implements Terminal {
         sequence[offset] = 109;		//ASCII Code of m
         break;
 
+      case TerminalIO.EXTFCOLOR:
+        sequence = getExtendedColorSequence("38;5;" + (param & 0xFF));
+        break;
+
+      case TerminalIO.EXTBCOLOR:
+        sequence = getExtendedColorSequence("48;5;" + (param & 0xFF));
+        break;
+
+      case TerminalIO.RGBFCOLOR:
+        sequence = getExtendedColorSequence("38;2;" + getRGBParameters(param));
+        break;
+
+      case TerminalIO.RGBBCOLOR:
+        sequence = getExtendedColorSequence("48;2;" + getRGBParameters(param));
+        break;
+
       case TerminalIO.RESET:
         sequence = new byte[5];
         sequence[0] = ESC;
@@ -305,6 +389,20 @@ public abstract class BasicTerminal implements Terminal {
     return sequence;
   }//getGRsequence
 
+  private byte[] getExtendedColorSequence(String params) {
+    byte[] digits = params.getBytes();
+    byte[] sequence = new byte[3 + digits.length];
+    sequence[0] = ESC;
+    sequence[1] = LSB;
+    System.arraycopy(digits, 0, sequence, 2, digits.length);
+    sequence[2 + digits.length] = 109;	//ASCII Code of m
+    return sequence;
+  }//getExtendedColorSequence
+
+  private String getRGBParameters(int rgb) {
+    return ((rgb >> 16) & 0xFF) + ";" + ((rgb >> 8) & 0xFF) + ";" + (rgb & 0xFF);
+  }//getRGBParameters
+
 
   public byte[] getScrollMarginsSequence(int topmargin, int bottommargin) {
 
@@ -334,11 +432,11 @@ public abstract class BasicTerminal implements Terminal {
   }//getScrollMarginsSequence
 
   public String format(String str) {
-    return m_Colorizer.colorize(str, supportsSGR(), false);
+    return m_Colorizer.colorize(str, getColorDepth(), false);
   }//format
 
   public String formatBold(String str) {
-    return m_Colorizer.colorize(str, supportsSGR(), true);
+    return m_Colorizer.colorize(str, getColorDepth(), true);
   }//formatBold
 
   public byte[] getInitSequence() {
@@ -347,6 +445,17 @@ public abstract class BasicTerminal implements Terminal {
     return sequence;
   }//getInitSequence
 
+  /**
+   * Returns the basic eight colors if the terminal
+   * supports graphics rendition, none otherwise.
+   * Subclasses that know better should override.
+   *
+   * @return the color depth of this terminal.
+   */
+  public int getColorDepth() {
+    return (supportsSGR()) ? COLORS_BASIC : COLORS_NONE;
+  }//getColorDepth
+
   public int getAtomicSequenceLength() {
     return 2;
   }//getAtomicSequenceLength
@@ -368,4 +477,40 @@ public abstract class BasicTerminal implements Terminal {
 
   public abstract boolean supportsScrolling();
 
+  private static final int[] LETTER_KEYS = {
+    A, TerminalIO.UP,
+    B, TerminalIO.DOWN,
+    C, TerminalIO.RIGHT,
+    D, TerminalIO.LEFT,
+    H, TerminalIO.BEGIN,
+    70, TerminalIO.END,                  //F
+    80, TerminalIO.FUNCTIONKEY + 1,      //P
+    81, TerminalIO.FUNCTIONKEY + 2,      //Q
+    82, TerminalIO.FUNCTIONKEY + 3,      //R
+    83, TerminalIO.FUNCTIONKEY + 4       //S
+  };
+
+  private static final int[] TILDE_KEYS = {
+    1, TerminalIO.BEGIN,
+    2, TerminalIO.INSERT,
+    3, TerminalIO.DELETE,
+    4, TerminalIO.END,
+    5, TerminalIO.PAGEUP,
+    6, TerminalIO.PAGEDOWN,
+    7, TerminalIO.BEGIN,
+    8, TerminalIO.END,
+    11, TerminalIO.FUNCTIONKEY + 1,
+    12, TerminalIO.FUNCTIONKEY + 2,
+    13, TerminalIO.FUNCTIONKEY + 3,
+    14, TerminalIO.FUNCTIONKEY + 4,
+    15, TerminalIO.FUNCTIONKEY + 5,
+    17, TerminalIO.FUNCTIONKEY + 6,
+    18, TerminalIO.FUNCTIONKEY + 7,
+    19, TerminalIO.FUNCTIONKEY + 8,
+    20, TerminalIO.FUNCTIONKEY + 9,
+    21, TerminalIO.FUNCTIONKEY + 10,
+    23, TerminalIO.FUNCTIONKEY + 11,
+    24, TerminalIO.FUNCTIONKEY + 12
+  };
+
 }//class BasicTerminal
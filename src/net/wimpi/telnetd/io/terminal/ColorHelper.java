@@ -203,6 +203,57 @@ public class ColorHelper {
     return INTERNAL_MARKER + BLINK + str + INTERNAL_MARKER + BLINK_OFF;
   }//blinkingText
 
+  /**
+   * Returns the markup representation of a 256 color
+   * palette entry, which can be used like any of the
+   * constant defined colors (also as backgroundcolor).
+   *
+   * @param index the palette index (0-255).
+   * @return String with the color markup.
+   */
+  public static String indexedColor(int index) {
+    String hex = Integer.toHexString(index & 0xFF);
+    return (hex.length() == 1) ? INDEXED + "0" + hex : INDEXED + hex;
+  }//indexedColor
+
+  /**
+   * Returns the markup representation of a 24 bit
+   * RGB color, which can be used like any of the
+   * constant defined colors (also as backgroundcolor).
+   * Terminals with a lower color depth will render the
+   * nearest color they support.
+   *
+   * @param r red channel (0-255).
+   * @param g green channel (0-255).
+   * @param b blue channel (0-255).
+   * @return String with the color markup.
+   */
+  public static String rgbColor(int r, int g, int b) {
+    String hex = Integer.toHexString(ColorQuantizer.toRGB(r, g, b) | 0x1000000);
+    return RGB + hex.substring(1);
+  }//rgbColor
+
+  /**
+   * Returns the length of a markup (including the
+   * marker itself) started by the given attribute
+   * character.
+   *
+   * @param attribute the character following the marker.
+   * @return the length of the markup.
+   */
+  public static int getMarkupLength(char attribute) {
+    switch (attribute) {
+      case 'X':
+      case 'x':
+        return 4;
+      case 'T':
+      case 't':
+        return 8;
+      default:
+        return 2;
+    }
+  }//getMarkupLength
+
   /**
    * Returns the length of the visible string calculated
    * from the internal marked-up string passed as parameter.
@@ -220,8 +271,12 @@ public class ColorHelper {
     while (!done) {
       foundcursor = str.indexOf(MARKER_CODE, parsecursor);
       if (foundcursor != -1) {
-        //increment counter
-        counter++;
+        //increment counter by the markup length
+        if (foundcursor + 1 < str.length()) {
+          counter += getMarkupLength(str.charAt(foundcursor + 1));
+        } else {
+          counter += 2;
+        }
         //parseon from the next char
         parsecursor = foundcursor + 1;
       } else {
@@ -229,7 +284,7 @@ public class ColorHelper {
       }
     }
 
-    return (str.length() - (counter * 2));
+    return (str.length() - counter);
   }//getVisibleLength
 
 
@@ -292,6 +347,21 @@ public class ColorHelper {
   public static final String WHITE = "W";
 
 
+  /**
+   * Defines the markup prefix of an indexed (256 color
+   * palette) color, followed by two hex digits.
+   * Use indexedColor(int) to create it.
+   */
+  public static final String INDEXED = "X";
+
+  /**
+   * Defines the markup prefix of a 24 bit RGB color,
+   * followed by six hex digits.
+   * Use rgbColor(int,int,int) to create it.
+   */
+  public static final String RGB = "T";
+
+
   /**
    * Defines the markup representation of the activator
    * for style bold (normally represented by high intensity).
@@ -0,0 +1,212 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.terminal;
+
+/**
+ * Utility class that maps extended colors (256 color palette
+ * indices and 24 bit RGB values) down to the color depth a
+ * terminal actually supports.<br>
+ * The nearest palette entries are looked up in tables that are
+ * computed once, quantizing each RGB channel to 5 bits. This
+ * keeps the per color cost of downsampling at a single array
+ * access, which matters because markups are translated on
+ * every write.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public final class ColorQuantizer {
+
+  //palette definitions, must precede the tables computed from them
+  private static final int[] SYSTEM_COLORS = {
+    0x000000, 0xCD0000, 0x00CD00, 0xCDCD00, 0x0000EE, 0xCD00CD, 0x00CDCD, 0xE5E5E5,
+    0x7F7F7F, 0xFF0000, 0x00FF00, 0xFFFF00, 0x5C5CFF, 0xFF00FF, 0x00FFFF, 0xFFFFFF
+  };
+  private static final int[] CUBE_LEVELS = {0, 95, 135, 175, 215, 255};
+
+  private static final int[] c_Palette = createPalette();
+  private static final byte[] c_IndexedToBasic = createIndexedToBasic();
+  private static byte[] c_RGBToIndexed;  //lazily computed
+  private static byte[] c_RGBToBasic;    //lazily computed
+
+  private ColorQuantizer() {
+  }//constructor
+
+  /**
+   * Returns the RGB value of a 256 color palette entry.
+   *
+   * @param index the palette index (0-255).
+   * @return the color as 0xRRGGBB.
+   */
+  public static int getRGB(int index) {
+    return c_Palette[index & 0xFF];
+  }//getRGB
+
+  /**
+   * Maps a 256 color palette index to one of the
+   * eight basic colors.
+   *
+   * @param index the palette index (0-255).
+   * @return the basic color offset (0-7), to be added to
+   *         BasicTerminalIO.BLACK.
+   */
+  public static int indexedToBasic(int index) {
+    return c_IndexedToBasic[index & 0xFF];
+  }//indexedToBasic
+
+  /**
+   * Maps a RGB color to the nearest entry of the
+   * 256 color palette.
+   *
+   * @param rgb the color as 0xRRGGBB.
+   * @return the palette index (0-255).
+   */
+  public static int rgbToIndexed(int rgb) {
+    byte[] table = c_RGBToIndexed;
+    if (table == null) {
+      table = createRGBTable(16, 256);
+      c_RGBToIndexed = table;
+    }
+    return table[quantize(rgb)] & 0xFF;
+  }//rgbToIndexed
+
+  /**
+   * Maps a RGB color to the nearest of the
+   * eight basic colors.
+   *
+   * @param rgb the color as 0xRRGGBB.
+   * @return the basic color offset (0-7), to be added to
+   *         BasicTerminalIO.BLACK.
+   */
+  public static int rgbToBasic(int rgb) {
+    byte[] table = c_RGBToBasic;
+    if (table == null) {
+      table = createRGBTable(0, 8);
+      c_RGBToBasic = table;
+    }
+    return table[quantize(rgb)];
+  }//rgbToBasic
+
+  /**
+   * Packs the given channels into a 0xRRGGBB value,
+   * clamping each channel to 0-255.
+   *
+   * @param r red channel.
+   * @param g green channel.
+   * @param b blue channel.
+   * @return the color as 0xRRGGBB.
+   */
+  public static int toRGB(int r, int g, int b) {
+    return (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+  }//toRGB
+
+  private static int clamp(int c) {
+    if (c < 0) {
+      return 0;
+    } else if (c > 255) {
+      return 255;
+    }
+    return c;
+  }//clamp
+
+  private static int quantize(int rgb) {
+    return ((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x03E0) | ((rgb >> 3) & 0x001F);
+  }//quantize
+
+  private static byte[] createRGBTable(int from, int to) {
+    byte[] table = new byte[32768];
+    for (int q = 0; q < table.length; q++) {
+      //use the center of each quantization bucket
+      int r = ((q >> 10) << 3) | 4;
+      int g = (((q >> 5) & 0x1F) << 3) | 4;
+      int b = ((q & 0x1F) << 3) | 4;
+      table[q] = (byte) nearest((r << 16) | (g << 8) | b, from, to);
+    }
+    return table;
+  }//createRGBTable
+
+  private static byte[] createIndexedToBasic() {
+    byte[] table = new byte[256];
+    for (int idx = 0; idx < 256; idx++) {
+      if (idx < 16) {
+        //bright variants map onto their normal intensity color
+        table[idx] = (byte) (idx & 7);
+      } else {
+        table[idx] = (byte) nearest(c_Palette[idx], 0, 8);
+      }
+    }
+    return table;
+  }//createIndexedToBasic
+
+  private static int nearest(int rgb, int from, int to) {
+    int r = (rgb >> 16) & 0xFF;
+    int g = (rgb >> 8) & 0xFF;
+    int b = rgb & 0xFF;
+    int best = from;
+    int bestdist = Integer.MAX_VALUE;
+    for (int idx = from; idx < to; idx++) {
+      int dr = r - ((c_Palette[idx] >> 16) & 0xFF);
+      int dg = g - ((c_Palette[idx] >> 8) & 0xFF);
+      int db = b - (c_Palette[idx] & 0xFF);
+      int dist = dr * dr + dg * dg + db * db;
+      if (dist < bestdist) {
+        bestdist = dist;
+        best = idx;
+      }
+    }
+    return best;
+  }//nearest
+
+  private static int[] createPalette() {
+    int[] palette = new int[256];
+    //16 system colors (xterm defaults)
+    System.arraycopy(SYSTEM_COLORS, 0, palette, 0, 16);
+    //6x6x6 color cube
+    int idx = 16;
+    for (int r = 0; r < 6; r++) {
+      for (int g = 0; g < 6; g++) {
+        for (int b = 0; b < 6; b++) {
+          palette[idx++] = (CUBE_LEVELS[r] << 16) | (CUBE_LEVELS[g] << 8) | CUBE_LEVELS[b];
+        }
+      }
+    }
+    //grayscale ramp
+    for (int gray = 0; gray < 24; gray++) {
+      int level = 8 + gray * 10;
+      palette[idx++] = (level << 16) | (level << 8) | level;
+    }
+    return palette;
+  }//createPalette
+
+}//class ColorQuantizer
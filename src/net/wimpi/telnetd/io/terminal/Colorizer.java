@@ -117,7 +117,26 @@ public final class Colorizer {
    *         String without internal markups or ANSI escape sequences if support is false.
    */
   public String colorize(String str, boolean support, boolean forcebold) {
+    return colorize(str, (support) ? Terminal.COLORS_BASIC : Terminal.COLORS_NONE, forcebold);
+  }//colorize
+
+  /**
+   * Translates all internal markups within the String
+   * into ANSI Escape sequences, downsampling extended (indexed or RGB)
+   * color markups to the given color depth.<br>
+   * The method is hooked into BasicTerminalIO.write(String str), so
+   * it is not necessary to call it directly.
+   *
+   * @param str        String with internal color/style markups.
+   * @param colordepth the color depth of the Terminal (see Terminal.COLORS_*).
+   *                   If COLORS_NONE, the internal markups are ripped out of the string.
+   * @param forcebold  boolean that forces the output to be bold at any time.
+   * @return String with ANSI escape sequences (Graphics Rendition), if colors are supported,
+   *         String without internal markups or ANSI escape sequences otherwise.
+   */
+  public String colorize(String str, int colordepth, boolean forcebold) {
 
+    boolean support = (colordepth > Terminal.COLORS_NONE);
     StringBuffer out = new StringBuffer(str.length() + 20);
     int parsecursor = 0;
     int foundcursor = 0;
@@ -127,10 +146,18 @@ public final class Colorizer {
       foundcursor = str.indexOf(ColorHelper.MARKER_CODE, parsecursor);
       if (foundcursor != -1) {
         out.append(str.substring(parsecursor, foundcursor));
+        char attribute = str.charAt(foundcursor + 1);
+        int length = ColorHelper.getMarkupLength(attribute);
         if (support) {
-          out.append(addEscapeSequence(str.substring(foundcursor + 1, foundcursor + 2), forcebold));
+          if (length > 2) {
+            out.append(addExtendedSequence(attribute,
+                str.substring(foundcursor + 2, Math.min(foundcursor + length, str.length())),
+                colordepth, forcebold));
+          } else {
+            out.append(addEscapeSequence(str.substring(foundcursor + 1, foundcursor + 2), forcebold));
+          }
         }
-        parsecursor = foundcursor + 2;
+        parsecursor = Math.min(foundcursor + length, str.length());
       } else {
         out.append(str.substring(parsecursor, str.length()));
         done = true;
@@ -170,6 +197,43 @@ public final class Colorizer {
     return tmpbuf.toString();
   }//addEscapeSequence
 
+  private String addExtendedSequence(char attribute, String value,
+                                     int colordepth, boolean forcebold) {
+    int color = 0;
+    try {
+      color = Integer.parseInt(value, 16);
+    } catch (NumberFormatException ex) {
+      return "";
+    }
+    boolean background = Character.isLowerCase(attribute);
+    boolean rgb = (attribute == 'T' || attribute == 't');
+
+    StringBuffer tmpbuf = new StringBuffer(20);
+    tmpbuf.append((char) 27);
+    tmpbuf.append((char) 91);
+    if (rgb && colordepth >= Terminal.COLORS_RGB) {
+      tmpbuf.append((background) ? "48;2;" : "38;2;");
+      tmpbuf.append((color >> 16) & 0xFF);
+      tmpbuf.append((char) 59);
+      tmpbuf.append((color >> 8) & 0xFF);
+      tmpbuf.append((char) 59);
+      tmpbuf.append(color & 0xFF);
+    } else if (colordepth >= Terminal.COLORS_INDEXED) {
+      tmpbuf.append((background) ? "48;5;" : "38;5;");
+      tmpbuf.append((rgb) ? ColorQuantizer.rgbToIndexed(color) : (color & 0xFF));
+    } else {
+      int basic = (rgb) ? ColorQuantizer.rgbToBasic(color) : ColorQuantizer.indexedToBasic(color);
+      tmpbuf.append(((background) ? s : S) + basic);
+    }
+    if (forcebold) {
+      tmpbuf.append((char) 59);
+      tmpbuf.append(f);
+    }
+    tmpbuf.append((char) 109);
+
+    return tmpbuf.toString();
+  }//addExtendedSequence
+
 
   /**
    * Returns the reference of the Singleton instance.
@@ -300,6 +364,13 @@ public final class Colorizer {
       announceResult(true);
 
 
+      announceTest("Extended Color Tests");
+      System.out.println("->" + myColorizer.colorize(ColorHelper.colorizeText("INDEXED", ColorHelper.indexedColor(208)), Terminal.COLORS_INDEXED, false) + "<-");
+      System.out.println("->" + myColorizer.colorize(ColorHelper.colorizeText("RGB", ColorHelper.rgbColor(255, 128, 0)), Terminal.COLORS_RGB, false) + "<-");
+      System.out.println("->" + myColorizer.colorize(ColorHelper.colorizeText("RGB", ColorHelper.rgbColor(255, 128, 0)), Terminal.COLORS_INDEXED, false) + "<-");
+      System.out.println("->" + myColorizer.colorize(ColorHelper.colorizeBackground("     ", ColorHelper.rgbColor(0, 64, 160)), Terminal.COLORS_BASIC, false) + "<-");
+      announceResult(true);
+
       announceTest("Visible length test");
       String colorized = ColorHelper.boldcolorizeText("STRING", ColorHelper.YELLOW);
 
@@ -312,6 +383,10 @@ public final class Colorizer {
       System.out.println("->" + myColorizer.colorize(colorized, true) + "<-");
       System.out.println("Visible length=" + ColorHelper.getVisibleLength(colorized));
 
+      colorized = ColorHelper.colorizeText("RGB", ColorHelper.rgbColor(10, 20, 30), ColorHelper.indexedColor(17));
+      System.out.println("->" + myColorizer.colorize(colorized, Terminal.COLORS_RGB, false) + "<-");
+      System.out.println("Visible length=" + ColorHelper.getVisibleLength(colorized));
+
       announceResult(true);
 
       if (false) throw new Exception();	//this will shut up jikes
@@ -0,0 +1,176 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.terminal;
+
+/**
+ * Class that holds the key sequences a terminal sends
+ * as byte trie, mapping each complete sequence to a
+ * (constant defined) key.<br>
+ * Nodes are stored in parallel arrays (label, first child,
+ * next sibling, value), so walking the trie while decoding
+ * input does not allocate. Nodes are referenced by their index,
+ * the root being <tt>ROOT</tt>.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class KeyTrie {
+
+  private byte[] m_Labels;
+  private int[] m_FirstChild;
+  private int[] m_Sibling;
+  private int[] m_Values;
+  private int m_Size;
+
+  /**
+   * Constructs an empty trie.
+   */
+  public KeyTrie() {
+    m_Labels = new byte[64];
+    m_FirstChild = new int[64];
+    m_Sibling = new int[64];
+    m_Values = new int[64];
+    m_Size = 0;
+    newNode((byte) 0);
+  }//constructor
+
+  /**
+   * Adds a key sequence, replacing the key of an
+   * already existing identical sequence.
+   *
+   * @param seq the sequence as sent by the terminal.
+   * @param key the key the sequence represents.
+   */
+  public synchronized void add(byte[] seq, int key) {
+    int node = ROOT;
+    for (int i = 0; i < seq.length; i++) {
+      int child = getChild(node, seq[i] & 0xFF);
+      if (child == NONE) {
+        child = newNode(seq[i]);
+        m_Sibling[child] = m_FirstChild[node];
+        m_FirstChild[node] = child;
+      }
+      node = child;
+    }
+    m_Values[node] = key;
+  }//add
+
+  /**
+   * Adds a key sequence given as String of
+   * 8 bit characters.
+   *
+   * @param seq the sequence as sent by the terminal.
+   * @param key the key the sequence represents.
+   */
+  public void add(String seq, int key) {
+    byte[] bytes = new byte[seq.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) seq.charAt(i);
+    }
+    add(bytes, key);
+  }//add
+
+  /**
+   * Returns the child of a node following the given byte.
+   *
+   * @param node the index of the node.
+   * @param b    the byte read (0-255).
+   * @return the index of the child, or NONE.
+   */
+  public int getChild(int node, int b) {
+    for (int child = m_FirstChild[node]; child != NONE; child = m_Sibling[child]) {
+      if ((m_Labels[child] & 0xFF) == b) {
+        return child;
+      }
+    }
+    return NONE;
+  }//getChild
+
+  /**
+   * Tests if there are longer sequences continuing
+   * the one that leads to the given node.
+   *
+   * @param node the index of the node.
+   * @return true if the node has children, false otherwise.
+   */
+  public boolean hasChildren(int node) {
+    return m_FirstChild[node] != NONE;
+  }//hasChildren
+
+  /**
+   * Returns the key of the sequence leading to
+   * the given node.
+   *
+   * @param node the index of the node.
+   * @return the key, or NONE if the sequence is incomplete.
+   */
+  public int getValue(int node) {
+    return m_Values[node];
+  }//getValue
+
+  private int newNode(byte label) {
+    if (m_Size == m_Labels.length) {
+      int len = m_Size * 2;
+      byte[] labels = new byte[len];
+      int[] first = new int[len];
+      int[] sibling = new int[len];
+      int[] values = new int[len];
+      System.arraycopy(m_Labels, 0, labels, 0, m_Size);
+      System.arraycopy(m_FirstChild, 0, first, 0, m_Size);
+      System.arraycopy(m_Sibling, 0, sibling, 0, m_Size);
+      System.arraycopy(m_Values, 0, values, 0, m_Size);
+      m_Labels = labels;
+      m_FirstChild = first;
+      m_Sibling = sibling;
+      m_Values = values;
+    }
+    int node = m_Size++;
+    m_Labels[node] = label;
+    m_FirstChild[node] = NONE;
+    m_Sibling[node] = NONE;
+    m_Values[node] = NONE;
+    return node;
+  }//newNode
+
+  /**
+   * Index of the root node.
+   */
+  public static final int ROOT = 0;
+
+  /**
+   * Flags a missing node or value.
+   */
+  public static final int NONE = -1;
+
+}//class KeyTrie
@@ -65,6 +65,17 @@ public interface Terminal {
    */
   public int translateEscapeSequence(int[] buffer);
 
+  /**
+   * Returns the key sequences this terminal sends, as trie
+   * mapping each complete sequence (starting with ESC) to a
+   * key constant defined in BasicTerminalIO.<br>
+   * The trie is used for decoding input sequences of any length;
+   * it is created once and must not be modified afterwards.
+   *
+   * @return the KeyTrie of this terminal.
+   */
+  public KeyTrie getKeyTrie();
+
 
   /**
    * Returns a terminal dependent escape sequence for
@@ -169,6 +180,10 @@ public interface Terminal {
    * <li> turns on/off blinking letters (BLINK,BLINK_OFF)
    * <li> turns on/off underlined letters (UNDERLINED,UNDERLINED_OFF)
    * </ul>
+   * <li> indexed foreground or background color (EXTFCOLOR, EXTBCOLOR)<br>
+   * with a 256 color palette index as parameter.
+   * <li> RGB foreground or background color (RGBFCOLOR, RGBBCOLOR)<br>
+   * with a 0xRRGGBB value as parameter.
    * <li> reset of set graphics rendition (RESET)<br>
    * which does not need any specific parameter.
    * <p/>
@@ -247,6 +262,16 @@ public interface Terminal {
    */
   public boolean supportsScrolling();
 
+  /**
+   * Returns the number of colors the terminal implementation
+   * is able to render.<br>
+   * Extended colors (indexed or RGB) requested through BasicTerminalIO or
+   * the internal markup are downsampled to this depth.
+   *
+   * @return one of COLORS_NONE, COLORS_BASIC, COLORS_INDEXED or COLORS_RGB.
+   */
+  public int getColorDepth();
+
 
   /**
    * Returns the atomic escape sequence length of the terminal
@@ -374,5 +399,13 @@ public interface Terminal {
   public static final byte LE = 75; 	// K...line erase actions related
   public static final byte SE = 74;  	// J...screen erase actions related
 
+  /**
+   * <b>Color depths.</b>
+   */
+  public static final int COLORS_NONE = 0;
+  public static final int COLORS_BASIC = 8;
+  public static final int COLORS_INDEXED = 256;
+  public static final int COLORS_RGB = 16777216;
+
 
 }//interface Terminal
@@ -55,6 +55,7 @@ public class TerminalManager {
   private static TerminalManager c_Self;	//Singleton reference
   private HashMap m_Terminals;			//datastructure for terminals
   private boolean m_WindoofHack = false;
+  private TerminfoDatabase m_Terminfo;	//optional terminfo lookup
 
   /**
    * Private constructor, instance can only be created
@@ -70,9 +71,10 @@ public class TerminalManager {
    * been set up, regarding to the key given as
    * parameter.<br>
    * If the key does not represent a terminal name or
-   * any alias for any terminal, then the returned terminal
-   * will be a default basic terminal (i.e. vt100 without
-   * color support).
+   * any alias for any terminal, it is looked up in the terminfo
+   * database (if enabled). If there is no entry either, then the
+   * returned terminal will be a default basic terminal (i.e. vt100
+   * without color support).
    *
    * @param key String that represents a terminal name or an alias.
    * @return Terminal instance or null if the key was invalid.
@@ -88,10 +90,19 @@ public class TerminalManager {
         //windoof telnet application thinks its uppercase ansi *brr*
         term = (Terminal) m_Terminals.get("windoof");
       } else {
+        String name = key;
         key = key.toLowerCase();
         //log.debug("Key:" + key);
         if (!m_Terminals.containsKey(key)) {
-          term = (Terminal) m_Terminals.get("default");
+          if (m_Terminfo != null) {
+            term = m_Terminfo.getTerminal(name);
+            if (term == null && !name.equals(key)) {
+              term = m_Terminfo.getTerminal(key);
+            }
+          }
+          if (term == null) {
+            term = (Terminal) m_Terminals.get("default");
+          }
         } else {
           term = (Terminal) m_Terminals.get(key);
         }
@@ -118,6 +129,10 @@ public class TerminalManager {
     m_WindoofHack = b;
   }//setWinHack
 
+  private void setTerminfoDatabase(TerminfoDatabase db) {
+    m_Terminfo = db;
+  }//setTerminfoDatabase
+
   /**
    * Loads the terminals and prepares an instance of each.
    */
@@ -232,6 +247,15 @@ public class TerminalManager {
       //construct manager
       tmgr = new TerminalManager();
       tmgr.setWindoofHack(winhack);
+      if (new Boolean(settings.getProperty("terminals.terminfo")).booleanValue()) {
+        String path = settings.getProperty("terminals.terminfo.path");
+        String[] dirs = (path == null || path.length() == 0)
+            ? TerminfoDatabase.getDefaultDirectories()
+            : StringUtil.split(path, ",");
+        int cachesize = Integer.parseInt(settings.getProperty("terminals.terminfo.cachesize", "16"));
+        tmgr.setTerminfoDatabase(new TerminfoDatabase(dirs, cachesize));
+        log.debug("Terminfo lookup enabled.");
+      }
       tmgr.setupTerminals(terminals);
 
       return tmgr;
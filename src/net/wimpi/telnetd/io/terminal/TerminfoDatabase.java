@@ -0,0 +1,176 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.terminal;
+
+import net.wimpi.telnetd.util.StringUtil;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class that locates compiled terminfo entries in the local
+ * terminfo directories and keeps the terminals created from
+ * them in a LRU cache.<br>
+ * Each entry is read and parsed only once while it stays in the
+ * cache; lookups for names that have no entry are cached as well,
+ * so that clients negotiating unknown terminal types do not cause
+ * repeated directory scans.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class TerminfoDatabase {
+
+  private static Log log = LogFactory.getLog(TerminfoDatabase.class);
+  private File[] m_Directories;
+  private Map m_Cache;
+
+  /**
+   * Constructs a database searching the given directories
+   * in order, with a cache of the given size.
+   *
+   * @param dirs      the terminfo directories.
+   * @param cachesize the maximum number of cached entries.
+   */
+  public TerminfoDatabase(String[] dirs, final int cachesize) {
+    m_Directories = new File[dirs.length];
+    for (int i = 0; i < dirs.length; i++) {
+      m_Directories[i] = new File(dirs[i]);
+    }
+    m_Cache = new LinkedHashMap(cachesize, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry eldest) {
+        return size() > cachesize;
+      }
+    };
+  }//constructor
+
+  /**
+   * Returns a terminal for the given terminfo name.
+   *
+   * @param name the terminal type name (e.g. xterm-256color).
+   * @return a TerminfoTerminal, or null if there is no
+   *         (valid) entry for the name.
+   */
+  public Terminal getTerminal(String name) {
+    if (name == null || name.length() == 0
+        || name.indexOf('/') != -1 || name.indexOf('\\') != -1 || name.startsWith(".")) {
+      return null;
+    }
+    synchronized (m_Cache) {
+      if (m_Cache.containsKey(name)) {
+        return (Terminal) m_Cache.get(name);
+      }
+    }
+    Terminal term = null;
+    TerminfoEntry entry = loadEntry(name);
+    if (entry != null) {
+      term = new TerminfoTerminal(entry);
+    }
+    synchronized (m_Cache) {
+      m_Cache.put(name, term);
+    }
+    return term;
+  }//getTerminal
+
+  private TerminfoEntry loadEntry(String name) {
+    char first = name.charAt(0);
+    for (int i = 0; i < m_Directories.length; i++) {
+      //common layout and the hex layout used on some systems
+      File f = new File(new File(m_Directories[i], String.valueOf(first)), name);
+      if (!f.isFile()) {
+        f = new File(new File(m_Directories[i], Integer.toHexString(first)), name);
+      }
+      if (f.isFile()) {
+        try {
+          TerminfoEntry entry = new TerminfoEntry(readFile(f));
+          log.debug("Loaded terminfo entry " + f);
+          return entry;
+        } catch (IOException ex) {
+          log.error("loadEntry(" + f + ")", ex);
+        }
+      }
+    }
+    log.debug("No terminfo entry for " + name);
+    return null;
+  }//loadEntry
+
+  private byte[] readFile(File f) throws IOException {
+    if (f.length() > MAX_ENTRY_SIZE) {
+      throw new IOException("Entry too large.");
+    }
+    byte[] data = new byte[(int) f.length()];
+    InputStream in = new FileInputStream(f);
+    try {
+      int off = 0;
+      while (off < data.length) {
+        int n = in.read(data, off, data.length - off);
+        if (n == -1) {
+          throw new IOException("Unexpected end of file.");
+        }
+        off += n;
+      }
+    } finally {
+      in.close();
+    }
+    return data;
+  }//readFile
+
+  /**
+   * Returns the default terminfo search path, honoring
+   * the TERMINFO environment variable and ~/.terminfo.
+   *
+   * @return the directories as String array.
+   */
+  public static String[] getDefaultDirectories() {
+    StringBuffer sbuf = new StringBuffer();
+    String env = System.getenv("TERMINFO");
+    if (env != null && env.length() > 0) {
+      sbuf.append(env).append(',');
+    }
+    sbuf.append(System.getProperty("user.home")).append("/.terminfo,");
+    sbuf.append(DEFAULT_PATH);
+    return StringUtil.split(sbuf.toString(), ",");
+  }//getDefaultDirectories
+
+  private static final int MAX_ENTRY_SIZE = 65536;
+  private static final String DEFAULT_PATH =
+      "/etc/terminfo,/lib/terminfo,/usr/share/terminfo,/usr/lib/terminfo";
+
+}//class TerminfoDatabase
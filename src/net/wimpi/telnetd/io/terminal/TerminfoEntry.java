@@ -0,0 +1,628 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.terminal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Class that represents a compiled terminfo entry as
+ * capability table.<br>
+ * Both the legacy (16 bit numbers) and the extended number
+ * format (32 bit numbers) are understood. Of the extended (user defined)
+ * capabilities the booleans and numbers are kept, to be looked up by
+ * name (e.g. <tt>Tc</tt> or <tt>RGB</tt> for direct color). Padding specifications (<tt>$&lt;..&gt;</tt>)
+ * are stripped from the string capabilities while parsing, as they
+ * are meaningless for a network virtual terminal.
+ * <p/>
+ * Parameterized string capabilities are expanded with
+ * {@link #expand(int,int[])}, which implements the terminfo
+ * parameter language (the <tt>tparm</tt> routine).
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class TerminfoEntry {
+
+  private String[] m_Names;
+  private boolean[] m_Booleans;
+  private int[] m_Numbers;
+  private byte[][] m_Strings;
+  private HashMap m_Extended;      //name to Boolean or Integer
+
+  /**
+   * Constructs a capability table by parsing
+   * the given compiled terminfo entry.
+   *
+   * @param data the compiled entry as read from the terminfo directory.
+   * @throws IOException if the data is not a valid compiled entry.
+   */
+  public TerminfoEntry(byte[] data) throws IOException {
+    parse(data);
+  }//constructor
+
+  /**
+   * Returns the names of this entry (the primary name first,
+   * followed by aliases and the long description).
+   *
+   * @return the names as String array.
+   */
+  public String[] getNames() {
+    return m_Names;
+  }//getNames
+
+  /**
+   * Returns the value of a boolean capability.
+   *
+   * @param cap the index of the capability (see constants).
+   * @return true if set, false otherwise.
+   */
+  public boolean getBoolean(int cap) {
+    return cap < m_Booleans.length && m_Booleans[cap];
+  }//getBoolean
+
+  /**
+   * Returns the value of a numeric capability.
+   *
+   * @param cap the index of the capability (see constants).
+   * @return the value, or -1 if absent.
+   */
+  public int getNumber(int cap) {
+    return (cap < m_Numbers.length) ? m_Numbers[cap] : -1;
+  }//getNumber
+
+  /**
+   * Returns the value of an extended boolean capability.
+   *
+   * @param name the name of the capability.
+   * @return true if set, false otherwise.
+   */
+  public boolean getExtendedBoolean(String name) {
+    return Boolean.TRUE.equals(m_Extended.get(name));
+  }//getExtendedBoolean
+
+  /**
+   * Returns the value of an extended numeric capability.
+   *
+   * @param name the name of the capability.
+   * @return the value, or -1 if absent.
+   */
+  public int getExtendedNumber(String name) {
+    Object o = m_Extended.get(name);
+    return (o instanceof Integer) ? ((Integer) o).intValue() : -1;
+  }//getExtendedNumber
+
+  /**
+   * Returns the value of a string capability.
+   *
+   * @param cap the index of the capability (see constants).
+   * @return the byte sequence, or null if absent.
+   */
+  public byte[] getString(int cap) {
+    return (cap < m_Strings.length) ? m_Strings[cap] : null;
+  }//getString
+
+  /**
+   * Returns the value of a string capability with the
+   * given parameters applied.
+   *
+   * @param cap    the index of the capability (see constants).
+   * @param params the parameters (up to nine).
+   * @return the expanded byte sequence, or null if absent.
+   */
+  public byte[] expand(int cap, int[] params) {
+    byte[] str = getString(cap);
+    if (str == null) {
+      return null;
+    }
+    return expand(str, params);
+  }//expand
+
+  private void parse(byte[] data) throws IOException {
+    try {
+      int magic = readShort(data, 0);
+      int numbersize;
+      if (magic == MAGIC) {
+        numbersize = 2;
+      } else if (magic == MAGIC_EXTNUM) {
+        numbersize = 4;
+      } else {
+        throw new IOException("Not a compiled terminfo entry (magic " + Integer.toOctalString(magic) + ").");
+      }
+      int namesize = readShort(data, 2);
+      int boolcount = readShort(data, 4);
+      int numcount = readShort(data, 6);
+      int strcount = readShort(data, 8);
+      int tablesize = readShort(data, 10);
+
+      int offset = 12;
+      //names, terminated with NUL
+      m_Names = split(new String(data, offset, Math.max(0, namesize - 1), "ISO-8859-1"));
+      offset += namesize;
+
+      m_Booleans = new boolean[boolcount];
+      for (int i = 0; i < boolcount; i++) {
+        m_Booleans[i] = (data[offset + i] == 1);
+      }
+      offset += boolcount;
+      //numbers start on an even byte
+      if ((offset & 1) == 1) {
+        offset++;
+      }
+
+      m_Numbers = new int[numcount];
+      for (int i = 0; i < numcount; i++) {
+        m_Numbers[i] = (numbersize == 2) ? readShort(data, offset) : readInt(data, offset);
+        offset += numbersize;
+      }
+
+      int table = offset + strcount * 2;
+      if (table + tablesize > data.length) {
+        throw new IOException("Truncated terminfo entry.");
+      }
+      m_Strings = new byte[strcount][];
+      for (int i = 0; i < strcount; i++) {
+        int stroffset = readShort(data, offset + i * 2);
+        if (stroffset >= 0 && stroffset < tablesize) {
+          m_Strings[i] = readString(data, table + stroffset, table + tablesize);
+        }
+      }
+      m_Extended = new HashMap();
+      parseExtended(data, table + tablesize, numbersize);
+    } catch (ArrayIndexOutOfBoundsException ex) {
+      throw new IOException("Truncated terminfo entry.");
+    }
+  }//parse
+
+  private void parseExtended(byte[] data, int offset, int numbersize) {
+    //extended header starts on an even byte, after the standard tables
+    if ((offset & 1) == 1) {
+      offset++;
+    }
+    if (offset + 10 > data.length) {
+      return;
+    }
+    int boolcount = readShort(data, offset);
+    int numcount = readShort(data, offset + 2);
+    int strcount = readShort(data, offset + 4);
+    int tablesize = readShort(data, offset + 8);
+    if (boolcount < 0 || numcount < 0 || strcount < 0 || tablesize < 0) {
+      return;
+    }
+    offset += 10;
+
+    int bools = offset;
+    offset += boolcount;
+    if ((offset & 1) == 1) {
+      offset++;
+    }
+    int numbers = offset;
+    offset += numcount * numbersize;
+    int values = offset;
+    offset += strcount * 2;
+    int names = offset;
+    offset += (boolcount + numcount + strcount) * 2;
+    int table = offset;
+    if (table + tablesize > data.length) {
+      return;
+    }
+    //the names follow the values of the extended strings
+    int namebase = 0;
+    for (int i = 0; i < strcount; i++) {
+      int stroffset = readShort(data, values + i * 2);
+      if (stroffset >= 0 && stroffset < tablesize) {
+        int end = stroffset;
+        while (end < tablesize && data[table + end] != 0) {
+          end++;
+        }
+        namebase = Math.max(namebase, end + 1);
+      }
+    }
+    for (int i = 0; i < boolcount + numcount; i++) {
+      int nameoffset = readShort(data, names + i * 2);
+      if (nameoffset < 0 || namebase + nameoffset >= tablesize) {
+        continue;
+      }
+      String name = new String(readString(data, table + namebase + nameoffset, table + tablesize));
+      if (i < boolcount) {
+        if (data[bools + i] == 1) {
+          m_Extended.put(name, Boolean.TRUE);
+        }
+      } else {
+        int at = numbers + (i - boolcount) * numbersize;
+        int value = (numbersize == 2) ? readShort(data, at) : readInt(data, at);
+        if (value >= 0) {
+          m_Extended.put(name, Integer.valueOf(value));
+        }
+      }
+    }
+  }//parseExtended
+
+  private static int readShort(byte[] data, int offset) {
+    //little endian, 0xFFFF (absent) and 0xFFFE (cancelled) map to negatives
+    return (short) ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8));
+  }//readShort
+
+  private static int readInt(byte[] data, int offset) {
+    return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+        | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24);
+  }//readInt
+
+  private static byte[] readString(byte[] data, int start, int limit) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+    for (int i = start; i < limit && data[i] != 0; i++) {
+      //strip padding $<..>
+      if (data[i] == '$' && i + 1 < limit && data[i + 1] == '<') {
+        int end = i + 2;
+        while (end < limit && data[end] != '>' && data[end] != 0) {
+          end++;
+        }
+        if (end < limit && data[end] == '>') {
+          i = end;
+          continue;
+        }
+      }
+      out.write(data[i]);
+    }
+    return out.toByteArray();
+  }//readString
+
+  private static String[] split(String names) {
+    int count = 1;
+    for (int i = 0; i < names.length(); i++) {
+      if (names.charAt(i) == '|') {
+        count++;
+      }
+    }
+    String[] result = new String[count];
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      int end = names.indexOf('|', start);
+      if (end == -1) {
+        end = names.length();
+      }
+      result[i] = names.substring(start, end);
+      start = end + 1;
+    }
+    return result;
+  }//split
+
+  /**
+   * Expands a parameterized string capability, implementing
+   * the terminfo parameter language (%p, %d, %i, %{}, %?%t%e%;,
+   * arithmetics, comparisons and static/dynamic variables).
+   *
+   * @param cap    the capability as byte sequence.
+   * @param params the parameters (up to nine).
+   * @return the expanded byte sequence.
+   */
+  public static byte[] expand(byte[] cap, int[] params) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(cap.length + 8);
+    int[] p = new int[9];
+    System.arraycopy(params, 0, p, 0, Math.min(params.length, 9));
+    int[] stack = new int[16];
+    int sp = 0;
+    int[] vars = new int[52];
+
+    int i = 0;
+    while (i < cap.length) {
+      byte c = cap[i++];
+      if (c != '%' || i >= cap.length) {
+        out.write(c);
+        continue;
+      }
+      c = cap[i++];
+      switch (c) {
+        case '%':
+          out.write('%');
+          break;
+        case 'c':
+          out.write((sp > 0) ? stack[--sp] : 0);
+          break;
+        case 'i':
+          p[0]++;
+          p[1]++;
+          break;
+        case 'p':
+          if (i < cap.length) {
+            int n = cap[i++] - '1';
+            if (sp < stack.length) {
+              stack[sp++] = (n >= 0 && n < 9) ? p[n] : 0;
+            }
+          }
+          break;
+        case 'P':
+          if (i < cap.length) {
+            int v = varIndex(cap[i++]);
+            if (v >= 0) {
+              vars[v] = (sp > 0) ? stack[--sp] : 0;
+            }
+          }
+          break;
+        case 'g':
+          if (i < cap.length) {
+            int v = varIndex(cap[i++]);
+            if (sp < stack.length) {
+              stack[sp++] = (v >= 0) ? vars[v] : 0;
+            }
+          }
+          break;
+        case '\'':
+          if (i + 1 < cap.length && sp < stack.length) {
+            stack[sp++] = cap[i] & 0xFF;
+          }
+          i += 2;
+          break;
+        case '{':
+          int value = 0;
+          while (i < cap.length && cap[i] != '}') {
+            value = value * 10 + (cap[i++] - '0');
+          }
+          i++;
+          if (sp < stack.length) {
+            stack[sp++] = value;
+          }
+          break;
+        case 'l':
+          //string length, strings are not supported as parameters
+          if (sp > 0) {
+            stack[sp - 1] = 0;
+          }
+          break;
+        case '+':
+        case '-':
+        case '*':
+        case '/':
+        case 'm':
+        case '&':
+        case '|':
+        case '^':
+        case '=':
+        case '>':
+        case '<':
+        case 'A':
+        case 'O':
+          int b = (sp > 0) ? stack[--sp] : 0;
+          int a = (sp > 0) ? stack[--sp] : 0;
+          stack[sp++] = operate(c, a, b);
+          break;
+        case '!':
+          if (sp > 0) {
+            stack[sp - 1] = (stack[sp - 1] == 0) ? 1 : 0;
+          }
+          break;
+        case '~':
+          if (sp > 0) {
+            stack[sp - 1] = ~stack[sp - 1];
+          }
+          break;
+        case '?':
+          break;
+        case 't':
+          int cond = (sp > 0) ? stack[--sp] : 0;
+          if (cond == 0) {
+            //skip to the matching %e or %;
+            i = skipConditional(cap, i, true);
+          }
+          break;
+        case 'e':
+          //then-part was taken, skip to the matching %;
+          i = skipConditional(cap, i, false);
+          break;
+        case ';':
+          break;
+        default:
+          //printf style format: %[[:]flags][width[.precision]][doxXs]
+          i = format(cap, i - 1, (sp > 0) ? stack[--sp] : 0, out);
+          break;
+      }
+    }
+    return out.toByteArray();
+  }//expand
+
+  private static int varIndex(byte b) {
+    if (b >= 'a' && b <= 'z') {
+      return b - 'a';
+    } else if (b >= 'A' && b <= 'Z') {
+      return 26 + b - 'A';
+    }
+    return -1;
+  }//varIndex
+
+  private static int operate(byte op, int a, int b) {
+    switch (op) {
+      case '+':
+        return a + b;
+      case '-':
+        return a - b;
+      case '*':
+        return a * b;
+      case '/':
+        return (b == 0) ? 0 : a / b;
+      case 'm':
+        return (b == 0) ? 0 : a % b;
+      case '&':
+        return a & b;
+      case '|':
+        return a | b;
+      case '^':
+        return a ^ b;
+      case '=':
+        return (a == b) ? 1 : 0;
+      case '>':
+        return (a > b) ? 1 : 0;
+      case '<':
+        return (a < b) ? 1 : 0;
+      case 'A':
+        return (a != 0 && b != 0) ? 1 : 0;
+      case 'O':
+        return (a != 0 || b != 0) ? 1 : 0;
+      default:
+        return 0;
+    }
+  }//operate
+
+  private static int skipConditional(byte[] cap, int i, boolean elsepart) {
+    int level = 0;
+    while (i < cap.length - 1) {
+      if (cap[i] == '%') {
+        byte c = cap[i + 1];
+        i += 2;
+        if (c == '?') {
+          level++;
+        } else if (c == ';') {
+          if (level == 0) {
+            return i;
+          }
+          level--;
+        } else if (c == 'e' && level == 0 && elsepart) {
+          return i;
+        }
+      } else {
+        i++;
+      }
+    }
+    return cap.length;
+  }//skipConditional
+
+  private static int format(byte[] cap, int i, int value, ByteArrayOutputStream out) {
+    boolean zeropad = false;
+    boolean leftalign = false;
+    int width = 0;
+    if (i < cap.length && cap[i] == ':') {
+      i++;
+    }
+    while (i < cap.length && (cap[i] == '-' || cap[i] == '+' || cap[i] == '#' || cap[i] == ' ' || cap[i] == '0')) {
+      if (cap[i] == '0') {
+        zeropad = true;
+      } else if (cap[i] == '-') {
+        leftalign = true;
+      }
+      i++;
+    }
+    while (i < cap.length && cap[i] >= '0' && cap[i] <= '9') {
+      width = width * 10 + (cap[i++] - '0');
+    }
+    if (i < cap.length && cap[i] == '.') {
+      i++;
+      while (i < cap.length && cap[i] >= '0' && cap[i] <= '9') {
+        i++;
+      }
+    }
+    if (i >= cap.length) {
+      return i;
+    }
+    String str;
+    switch (cap[i]) {
+      case 'o':
+        str = Integer.toOctalString(value);
+        break;
+      case 'x':
+        str = Integer.toHexString(value);
+        break;
+      case 'X':
+        str = Integer.toHexString(value).toUpperCase();
+        break;
+      default:
+        str = Integer.toString(value);
+        break;
+    }
+    for (int n = str.length(); !leftalign && n < width; n++) {
+      out.write((zeropad) ? '0' : ' ');
+    }
+    for (int n = 0; n < str.length(); n++) {
+      out.write(str.charAt(n));
+    }
+    for (int n = str.length(); leftalign && n < width; n++) {
+      out.write(' ');
+    }
+    return i + 1;
+  }//format
+
+  //magic numbers of the compiled formats
+  private static final int MAGIC = 0432;
+  private static final int MAGIC_EXTNUM = 01036;
+
+  /**
+   * <b>Capability indices</b> (in the order defined by term.h).
+   */
+  public static final int AUTO_RIGHT_MARGIN = 1;    //am
+  public static final int COLUMNS = 0;              //cols
+  public static final int LINES = 2;                //lines
+  public static final int MAX_COLORS = 13;          //colors
+  public static final int CHANGE_SCROLL_REGION = 3; //csr
+  public static final int CLEAR_SCREEN = 5;         //clear
+  public static final int CLR_EOL = 6;              //el
+  public static final int CLR_EOS = 7;              //ed
+  public static final int CURSOR_ADDRESS = 10;      //cup
+  public static final int CURSOR_DOWN = 11;         //cud1
+  public static final int CURSOR_HOME = 12;         //home
+  public static final int CURSOR_LEFT = 14;         //cub1
+  public static final int CURSOR_RIGHT = 17;        //cuf1
+  public static final int CURSOR_UP = 19;           //cuu1
+  public static final int ENTER_BLINK_MODE = 26;    //blink
+  public static final int ENTER_BOLD_MODE = 27;     //bold
+  public static final int ENTER_UNDERLINE_MODE = 36;//smul
+  public static final int EXIT_ATTRIBUTE_MODE = 39; //sgr0
+  public static final int EXIT_UNDERLINE_MODE = 44; //rmul
+  public static final int KEY_BACKSPACE = 55;       //kbs
+  public static final int KEY_DC = 59;              //kdch1
+  public static final int KEY_DOWN = 61;            //kcud1
+  public static final int KEY_LEFT = 79;            //kcub1
+  public static final int KEY_RIGHT = 83;           //kcuf1
+  public static final int KEY_UP = 87;              //kcuu1
+  public static final int KEY_HOME = 76;            //khome
+  public static final int KEY_IC = 77;              //kich1
+  public static final int KEY_NPAGE = 81;           //knp
+  public static final int KEY_PPAGE = 82;           //kpp
+  public static final int KEY_BTAB = 148;           //kcbt
+  public static final int KEY_END = 164;            //kend
+  public static final int[] KEY_F = {               //kf1-kf12
+    66, 68, 69, 70, 71, 72, 73, 74, 75, 67, 216, 217
+  };
+  public static final int PARM_DOWN_CURSOR = 107;   //cud
+  public static final int PARM_LEFT_CURSOR = 111;   //cub
+  public static final int PARM_RIGHT_CURSOR = 112;  //cuf
+  public static final int PARM_UP_CURSOR = 114;     //cuu
+  public static final int RESTORE_CURSOR = 126;     //rc
+  public static final int SAVE_CURSOR = 128;        //sc
+  public static final int SCROLL_FORWARD = 129;     //ind
+  public static final int SCROLL_REVERSE = 130;     //ri
+  public static final int CLR_BOL = 269;            //el1
+  public static final int ENTER_ITALICS_MODE = 311; //sitm
+  public static final int SET_A_FOREGROUND = 359;   //setaf
+  public static final int SET_A_BACKGROUND = 360;   //setab
+
+}//class TerminfoEntry
@@ -0,0 +1,341 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.terminal;
+
+import net.wimpi.telnetd.io.TerminalIO;
+
+/**
+ * Implements a terminal driven by a compiled terminfo entry.<br>
+ * Sequences are taken from the entry's capabilities where present,
+ * and fall back to the vt100 related sequences of the BasicTerminal
+ * otherwise. The sequences requested most often (cursor moves by a
+ * few cells, the palette colors) are expanded once on construction,
+ * so writing them does not involve the parameter interpreter.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class TerminfoTerminal extends BasicTerminal {
+
+  private TerminfoEntry m_Entry;
+  private int m_ColorDepth;
+  private byte[][][] m_Moves;      //per direction, pre-expanded for 1..MOVE_CACHE
+  private byte[][] m_Foreground;   //pre-expanded setaf
+  private byte[][] m_Background;   //pre-expanded setab
+
+  /**
+   * Constructs a terminal from the given capability table.
+   *
+   * @param entry the parsed terminfo entry.
+   */
+  public TerminfoTerminal(TerminfoEntry entry) {
+    m_Entry = entry;
+
+    int colors = entry.getNumber(TerminfoEntry.MAX_COLORS);
+    if (entry.getString(TerminfoEntry.SET_A_FOREGROUND) == null || colors < 8) {
+      m_ColorDepth = COLORS_NONE;
+    } else if (entry.getExtendedBoolean("Tc") || entry.getExtendedBoolean("RGB")
+        || entry.getExtendedNumber("RGB") > 0) {
+      //tmux and ncurses flags for direct color
+      m_ColorDepth = COLORS_RGB;
+    } else if (colors >= 256) {
+      m_ColorDepth = COLORS_INDEXED;
+    } else {
+      m_ColorDepth = COLORS_BASIC;
+    }
+
+    m_Moves = new byte[4][][];
+    m_Moves[0] = prepareMoves(TerminfoEntry.PARM_UP_CURSOR, TerminfoEntry.CURSOR_UP);
+    m_Moves[1] = prepareMoves(TerminfoEntry.PARM_DOWN_CURSOR, TerminfoEntry.CURSOR_DOWN);
+    m_Moves[2] = prepareMoves(TerminfoEntry.PARM_RIGHT_CURSOR, TerminfoEntry.CURSOR_RIGHT);
+    m_Moves[3] = prepareMoves(TerminfoEntry.PARM_LEFT_CURSOR, TerminfoEntry.CURSOR_LEFT);
+
+    if (m_ColorDepth != COLORS_NONE) {
+      //direct color entries take RGB values above the basic eight,
+      //the palette is then addressed by the vt100 related sequences
+      int count = (colors > 256) ? 8 : colors;
+      m_Foreground = prepareColors(TerminfoEntry.SET_A_FOREGROUND, count);
+      m_Background = prepareColors(TerminfoEntry.SET_A_BACKGROUND, count);
+    }
+  }//constructor
+
+  /**
+   * Returns the capability table this terminal is
+   * driven by.
+   *
+   * @return the terminfo entry.
+   */
+  public TerminfoEntry getEntry() {
+    return m_Entry;
+  }//getEntry
+
+  protected KeyTrie createKeyTrie() {
+    KeyTrie trie = super.createKeyTrie();
+    addKey(trie, TerminfoEntry.KEY_UP, TerminalIO.UP);
+    addKey(trie, TerminfoEntry.KEY_DOWN, TerminalIO.DOWN);
+    addKey(trie, TerminfoEntry.KEY_RIGHT, TerminalIO.RIGHT);
+    addKey(trie, TerminfoEntry.KEY_LEFT, TerminalIO.LEFT);
+    addKey(trie, TerminfoEntry.KEY_HOME, TerminalIO.BEGIN);
+    addKey(trie, TerminfoEntry.KEY_END, TerminalIO.END);
+    addKey(trie, TerminfoEntry.KEY_PPAGE, TerminalIO.PAGEUP);
+    addKey(trie, TerminfoEntry.KEY_NPAGE, TerminalIO.PAGEDOWN);
+    addKey(trie, TerminfoEntry.KEY_IC, TerminalIO.INSERT);
+    addKey(trie, TerminfoEntry.KEY_DC, TerminalIO.DELETE);
+    addKey(trie, TerminfoEntry.KEY_BTAB, TerminalIO.TABULATOR | TerminalIO.SHIFT);
+    for (int i = 0; i < TerminfoEntry.KEY_F.length; i++) {
+      addKey(trie, TerminfoEntry.KEY_F[i], TerminalIO.FUNCTIONKEY + 1 + i);
+    }
+    return trie;
+  }//createKeyTrie
+
+  public byte[] getCursorMoveSequence(int direction, int times) {
+    byte[][] moves = null;
+    switch (direction) {
+      case TerminalIO.UP:
+        moves = m_Moves[0];
+        break;
+      case TerminalIO.DOWN:
+        moves = m_Moves[1];
+        break;
+      case TerminalIO.RIGHT:
+        moves = m_Moves[2];
+        break;
+      case TerminalIO.LEFT:
+        moves = m_Moves[3];
+        break;
+      default:
+        break;
+    }
+    if (moves == null || times < 1) {
+      return super.getCursorMoveSequence(direction, times);
+    }
+    if (times <= MOVE_CACHE) {
+      return moves[times - 1];
+    }
+    byte[] parm = m_Entry.getString(PARM_MOVES[direction - TerminalIO.UP]);
+    if (parm != null) {
+      return TerminfoEntry.expand(parm, new int[]{times});
+    }
+    return super.getCursorMoveSequence(direction, times);
+  }//getCursorMoveSequence
+
+  public byte[] getCursorPositioningSequence(int[] pos) {
+    if (pos[0] == TerminalIO.HOME[0] && pos[1] == TerminalIO.HOME[1]) {
+      byte[] home = m_Entry.getString(TerminfoEntry.CURSOR_HOME);
+      if (home != null) {
+        return home;
+      }
+    } else {
+      //terminfo addresses are zero based
+      byte[] cup = m_Entry.expand(TerminfoEntry.CURSOR_ADDRESS, new int[]{pos[0] - 1, pos[1] - 1});
+      if (cup != null) {
+        return cup;
+      }
+    }
+    return super.getCursorPositioningSequence(pos);
+  }//getCursorPositioningSequence
+
+  public byte[] getEraseSequence(int eraseFunc) {
+    byte[] sequence = null;
+    switch (eraseFunc) {
+      case TerminalIO.EEOL:
+        sequence = m_Entry.getString(TerminfoEntry.CLR_EOL);
+        break;
+      case TerminalIO.EBOL:
+        sequence = m_Entry.getString(TerminfoEntry.CLR_BOL);
+        break;
+      case TerminalIO.EEOS:
+        sequence = m_Entry.getString(TerminfoEntry.CLR_EOS);
+        break;
+      default:
+        break;
+    }
+    return (sequence != null) ? sequence : super.getEraseSequence(eraseFunc);
+  }//getEraseSequence
+
+  public byte[] getSpecialSequence(int function) {
+    byte[] sequence = null;
+    switch (function) {
+      case TerminalIO.STORECURSOR:
+        sequence = m_Entry.getString(TerminfoEntry.SAVE_CURSOR);
+        break;
+      case TerminalIO.RESTORECURSOR:
+        sequence = m_Entry.getString(TerminfoEntry.RESTORE_CURSOR);
+        break;
+      case TerminalIO.INDEX:
+        sequence = m_Entry.getString(TerminfoEntry.SCROLL_FORWARD);
+        break;
+      case TerminalIO.REVERSEINDEX:
+        sequence = m_Entry.getString(TerminfoEntry.SCROLL_REVERSE);
+        break;
+      default:
+        break;
+    }
+    return (sequence != null) ? sequence : super.getSpecialSequence(function);
+  }//getSpecialSequence
+
+  public byte[] getGRSequence(int type, int param) {
+    byte[] sequence = null;
+    switch (type) {
+      case TerminalIO.FCOLOR:
+        sequence = getColor(m_Foreground, param - TerminalIO.BLACK);
+        break;
+      case TerminalIO.BCOLOR:
+        sequence = getColor(m_Background, param - TerminalIO.BLACK - 10);
+        break;
+      case TerminalIO.EXTFCOLOR:
+        sequence = getColor(m_Foreground, param);
+        break;
+      case TerminalIO.EXTBCOLOR:
+        sequence = getColor(m_Background, param);
+        break;
+      case TerminalIO.STYLE:
+        switch (param) {
+          case TerminalIO.BOLD:
+            sequence = m_Entry.getString(TerminfoEntry.ENTER_BOLD_MODE);
+            break;
+          case TerminalIO.ITALIC:
+            sequence = m_Entry.getString(TerminfoEntry.ENTER_ITALICS_MODE);
+            break;
+          case TerminalIO.UNDERLINED:
+            sequence = m_Entry.getString(TerminfoEntry.ENTER_UNDERLINE_MODE);
+            break;
+          case TerminalIO.UNDERLINED_OFF:
+            sequence = m_Entry.getString(TerminfoEntry.EXIT_UNDERLINE_MODE);
+            break;
+          case TerminalIO.BLINK:
+            sequence = m_Entry.getString(TerminfoEntry.ENTER_BLINK_MODE);
+            break;
+          default:
+            break;
+        }
+        break;
+      case TerminalIO.RESET:
+        sequence = m_Entry.getString(TerminfoEntry.EXIT_ATTRIBUTE_MODE);
+        break;
+      default:
+        break;
+    }
+    return (sequence != null) ? sequence : super.getGRSequence(type, param);
+  }//getGRSequence
+
+  public byte[] getScrollMarginsSequence(int topmargin, int bottommargin) {
+    byte[] sequence = m_Entry.expand(TerminfoEntry.CHANGE_SCROLL_REGION,
+        new int[]{topmargin - 1, bottommargin - 1});
+    return (sequence != null) ? sequence : new byte[0];
+  }//getScrollMarginsSequence
+
+  public int getColorDepth() {
+    return m_ColorDepth;
+  }//getColorDepth
+
+  public boolean supportsSGR() {
+    return m_ColorDepth != COLORS_NONE;
+  }//supportsSGR
+
+  public boolean supportsScrolling() {
+    return m_Entry.getString(TerminfoEntry.CHANGE_SCROLL_REGION) != null;
+  }//supportsScrolling
+
+  private byte[][] prepareMoves(int parmcap, int singlecap) {
+    byte[] parm = m_Entry.getString(parmcap);
+    byte[] single = m_Entry.getString(singlecap);
+    //single steps that are CR/LF/BS get rewritten by the NVT, avoid them
+    if (single != null && !isPrintableSequence(single)) {
+      single = null;
+    }
+    if (parm == null && single == null) {
+      return null;
+    }
+    byte[][] moves = new byte[MOVE_CACHE][];
+    for (int i = 0; i < MOVE_CACHE; i++) {
+      if (i == 0 && single != null) {
+        moves[i] = single;
+      } else if (parm != null) {
+        moves[i] = TerminfoEntry.expand(parm, new int[]{i + 1});
+      } else {
+        moves[i] = new byte[single.length * (i + 1)];
+        for (int n = 0; n <= i; n++) {
+          System.arraycopy(single, 0, moves[i], n * single.length, single.length);
+        }
+      }
+    }
+    return moves;
+  }//prepareMoves
+
+  private byte[][] prepareColors(int cap, int count) {
+    byte[] str = m_Entry.getString(cap);
+    if (str == null) {
+      return null;
+    }
+    byte[][] colors = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      colors[i] = TerminfoEntry.expand(str, new int[]{i});
+    }
+    return colors;
+  }//prepareColors
+
+  private void addKey(KeyTrie trie, int cap, int key) {
+    byte[] seq = m_Entry.getString(cap);
+    //only escape sequences, single control characters are translated directly
+    if (seq != null && seq.length > 1 && seq[0] == ESC) {
+      trie.add(seq, key);
+    }
+  }//addKey
+
+  private static byte[] getColor(byte[][] colors, int idx) {
+    if (colors == null || idx < 0 || idx >= colors.length) {
+      return null;
+    }
+    return colors[idx];
+  }//getColor
+
+  private static boolean isPrintableSequence(byte[] seq) {
+    for (int i = 0; i < seq.length; i++) {
+      if (seq[i] == 8 || seq[i] == 10 || seq[i] == 13) {
+        return false;
+      }
+    }
+    return true;
+  }//isPrintableSequence
+
+  private static final int MOVE_CACHE = 8;
+  private static final int[] PARM_MOVES = {
+    TerminfoEntry.PARM_UP_CURSOR,
+    TerminfoEntry.PARM_DOWN_CURSOR,
+    TerminfoEntry.PARM_RIGHT_CURSOR,
+    TerminfoEntry.PARM_LEFT_CURSOR
+  };
+
+}//class TerminfoTerminal
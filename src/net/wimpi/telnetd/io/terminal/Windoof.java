@@ -47,7 +47,8 @@ public class Windoof extends BasicTerminal {
   }//supportsSGR
 
   public boolean supportsScrolling() {
-    return true;
+    //margins are not honored, toolkit components repaint instead
+    return false;
   }//supportsScrolling
 
 }//class Windoof
@@ -48,4 +48,8 @@ public class xterm extends BasicTerminal {
     return true;
   }//supportsScrolling
 
+  public int getColorDepth() {
+    return COLORS_INDEXED;
+  }//getColorDepth
+
 }//class xterm
@@ -32,84 +32,218 @@
 
 package net.wimpi.telnetd.io.toolkit;
 
-import java.util.Vector;
-
 /**
- * Class implementing a character buffer.
+ * Class implementing a character buffer.<br>
+ * The characters are kept in a gap buffer: a <tt>char[]</tt>
+ * with a gap at the position of the last modification. Inserting
+ * and removing next to that position only moves the gap
+ * boundaries, so editing at a cursor costs amortized constant
+ * time. The string view is cached until the next modification.
  *
  * @author Dieter Wimberger
- * @version 2.0 (13/03/2005)
+ * @author agent
+ * @version 2.1 (19/10/2026)
  */
 class CharBuffer {
 
   //Members
-  private Vector m_Buffer;
+  private char[] m_Buffer;
+  private int m_GapStart;
+  private int m_GapEnd;
   private int m_Size;
+  private String m_String;
+
+  /**
+   * Constructs a CharBuffer of unlimited size.
+   */
+  public CharBuffer() {
+    this(UNLIMITED);
+  }//constructor
 
+  /**
+   * Constructs a CharBuffer.
+   *
+   * @param size int representing the maximum number of characters,
+   *             checked by {@link #ensureSpace(int)}.
+   */
   public CharBuffer(int size) {
-    m_Buffer = new Vector(size);
     m_Size = size;
+    m_Buffer = new char[(size > 0 && size < INITIAL_SIZE) ? size : INITIAL_SIZE];
+    m_GapStart = 0;
+    m_GapEnd = m_Buffer.length;
   }//constructor
 
   public char getCharAt(int pos)
       throws IndexOutOfBoundsException {
 
-    return ((Character) m_Buffer.elementAt(pos)).charValue();
+    checkIndex(pos, size() - 1);
+    return (pos < m_GapStart) ? m_Buffer[pos] : m_Buffer[pos + m_GapEnd - m_GapStart];
   }//getCharAt
 
   public void setCharAt(int pos, char ch)
       throws IndexOutOfBoundsException {
 
-    m_Buffer.setElementAt(new Character(ch), pos);
+    checkIndex(pos, size() - 1);
+    m_Buffer[(pos < m_GapStart) ? pos : pos + m_GapEnd - m_GapStart] = ch;
+    m_String = null;
   }//setCharAt
 
   public void insertCharAt(int pos, char ch)
       throws BufferOverflowException, IndexOutOfBoundsException {
 
-    m_Buffer.insertElementAt(new Character(ch), pos);
+    checkIndex(pos, size());
+    moveGap(pos);
+    ensureGap(1);
+    m_Buffer[m_GapStart++] = ch;
+    m_String = null;
   }//insertCharAt
 
+  public void insertStringAt(int pos, String str)
+      throws IndexOutOfBoundsException {
+
+    checkIndex(pos, size());
+    int len = str.length();
+    moveGap(pos);
+    ensureGap(len);
+    str.getChars(0, len, m_Buffer, m_GapStart);
+    m_GapStart += len;
+    m_String = null;
+  }//insertStringAt
+
+  public void insertCharsAt(int pos, char[] chars, int off, int len)
+      throws IndexOutOfBoundsException {
+
+    checkIndex(pos, size());
+    moveGap(pos);
+    ensureGap(len);
+    System.arraycopy(chars, off, m_Buffer, m_GapStart, len);
+    m_GapStart += len;
+    m_String = null;
+  }//insertCharsAt
+
   public void append(char aChar)
       throws BufferOverflowException {
 
-    m_Buffer.addElement(new Character(aChar));
+    insertCharAt(size(), aChar);
   }//append
 
   public void append(String str)
       throws BufferOverflowException {
-    for (int i = 0; i < str.length(); i++) {
-      append(str.charAt(i));
-    }
+
+    insertStringAt(size(), str);
   }//append
 
   public void removeCharAt(int pos)
       throws IndexOutOfBoundsException {
 
-    m_Buffer.removeElementAt(pos);
+    remove(pos, pos + 1);
   }//removeCharAt
 
+  /**
+   * Removes a range of characters.
+   *
+   * @param begin int representing the first position to remove.
+   * @param end   int representing the position after the last character to remove.
+   * @throws IndexOutOfBoundsException if the range is not within the buffer.
+   */
+  public void remove(int begin, int end)
+      throws IndexOutOfBoundsException {
+
+    if (begin < 0 || end > size() || begin > end) {
+      throw new IndexOutOfBoundsException();
+    }
+    moveGap(begin);
+    m_GapEnd += end - begin;
+    m_String = null;
+  }//remove
+
   public void clear() {
-    m_Buffer.removeAllElements();
+    m_GapStart = 0;
+    m_GapEnd = m_Buffer.length;
+    m_String = null;
   }//clear
 
   public int size() {
-    return m_Buffer.size();
+    return m_Buffer.length - (m_GapEnd - m_GapStart);
   }//size
 
-  public String toString() {
-    StringBuffer sbuf = new StringBuffer();
-    for (int i = 0; i < m_Buffer.size(); i++) {
-      sbuf.append(((Character) m_Buffer.elementAt(i)).charValue());
+  /**
+   * Returns a range of characters as string.
+   *
+   * @param begin int representing the first position.
+   * @param end   int representing the position after the last character.
+   * @return String containing the characters.
+   */
+  public String substring(int begin, int end) {
+    if (begin == 0 && end == size()) {
+      return toString();
+    }
+    if (end <= m_GapStart) {
+      return new String(m_Buffer, begin, end - begin);
     }
+    if (begin >= m_GapStart) {
+      return new String(m_Buffer, begin + m_GapEnd - m_GapStart, end - begin);
+    }
+    StringBuffer sbuf = new StringBuffer(end - begin);
+    sbuf.append(m_Buffer, begin, m_GapStart - begin);
+    sbuf.append(m_Buffer, m_GapEnd, end - m_GapStart);
     return sbuf.toString();
+  }//substring
+
+  public String toString() {
+    if (m_String == null) {
+      //closing the gap makes the characters contiguous
+      moveGap(size());
+      m_String = new String(m_Buffer, 0, m_GapStart);
+    }
+    return m_String;
   }//toString
 
   public void ensureSpace(int chars)
       throws BufferOverflowException {
 
-    if (chars > (m_Size - m_Buffer.size())) {
+    if (m_Size != UNLIMITED && chars > (m_Size - size())) {
       throw new BufferOverflowException();
     }
   }//ensureSpace
 
+  private void checkIndex(int pos, int max) {
+    if (pos < 0 || pos > max) {
+      throw new IndexOutOfBoundsException(Integer.toString(pos));
+    }
+  }//checkIndex
+
+  private void moveGap(int pos) {
+    if (pos < m_GapStart) {
+      int n = m_GapStart - pos;
+      System.arraycopy(m_Buffer, pos, m_Buffer, m_GapEnd - n, n);
+      m_GapStart -= n;
+      m_GapEnd -= n;
+    } else if (pos > m_GapStart) {
+      int n = pos - m_GapStart;
+      System.arraycopy(m_Buffer, m_GapEnd, m_Buffer, m_GapStart, n);
+      m_GapStart += n;
+      m_GapEnd += n;
+    }
+  }//moveGap
+
+  private void ensureGap(int len) {
+    if (m_GapEnd - m_GapStart >= len) {
+      return;
+    }
+    int tail = m_Buffer.length - m_GapEnd;
+    char[] buf = new char[Math.max(m_Buffer.length * 2, size() + len)];
+    System.arraycopy(m_Buffer, 0, buf, 0, m_GapStart);
+    System.arraycopy(m_Buffer, m_GapEnd, buf, buf.length - tail, tail);
+    m_GapEnd = buf.length - tail;
+    m_Buffer = buf;
+  }//ensureGap
+
+  /**
+   * Defines an unlimited buffer size.
+   */
+  public static final int UNLIMITED = -1;
+
+  private static final int INITIAL_SIZE = 80;
+
 }//class CharBuffer
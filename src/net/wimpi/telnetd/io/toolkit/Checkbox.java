@@ -60,6 +60,7 @@ public class Checkbox extends ActiveComponent {
     super(io, name);
     setBoxStyle(SQUARED_BOXSTYLE);
     setMarkStyle(LARGE_CHECKMARK);
+    m_Dim = new Dimension(5, 1);
   }//constructor
 
   /**
@@ -69,7 +70,9 @@ public class Checkbox extends ActiveComponent {
    */
   public void setSelected(boolean b) throws IOException {
     m_Selected = b;
-    drawMark();
+    if (!invalidate(2, 0, 1, 1)) {
+      drawMark();
+    }
   }//setSelected
 
   /**
@@ -90,7 +93,10 @@ public class Checkbox extends ActiveComponent {
    *            of the checkbox.
    */
   public void setText(String str) {
+    int oldwidth = m_Dim.getWidth();
     m_Text = str;
+    m_Dim = new Dimension(5 + m_Text.length(), 1);
+    invalidate(5, 0, Math.max(oldwidth, m_Dim.getWidth()) - 5, 1);
   }//setText
 
   /**
@@ -139,7 +145,7 @@ public class Checkbox extends ActiveComponent {
   public void run() throws IOException {
     int in = 0;
     draw();
-    m_IO.flush();
+    update();
     do {
       //get next key
       in = m_IO.read();
@@ -154,7 +160,7 @@ public class Checkbox extends ActiveComponent {
         default:
           m_IO.bell();
       }
-      m_IO.flush();
+      update();
     } while (in != -1);
   }//run
 
@@ -162,6 +168,19 @@ public class Checkbox extends ActiveComponent {
    * Method that draws the component.
    */
   public void draw() throws IOException {
+    if (m_Position != null) {
+      m_IO.setCursor(m_Position.getRow(), m_Position.getColumn());
+    }
+
+    m_IO.write(getRowText(0));
+    m_IO.moveLeft(3 + m_Text.length()); //thats the mark position
+    flush();
+  }//draw
+
+  protected String getRowText(int row) {
+    if (row != 0) {
+      return null;
+    }
     StringBuffer sbuf = new StringBuffer();
     sbuf.append(" ");			//1/1
     sbuf.append(m_LeftBracket);	//1/2
@@ -173,15 +192,8 @@ public class Checkbox extends ActiveComponent {
     sbuf.append(m_RightBracket);	//1/4
     sbuf.append(" ");			//1/5
     sbuf.append(m_Text);		//1/5+myText.length
-
-    if (m_Position != null) {
-      m_IO.setCursor(m_Position.getRow(), m_Position.getColumn());
-    }
-
-    m_IO.write(sbuf.toString());
-    m_IO.moveLeft(3 + m_Text.length()); //thats the mark position
-    m_IO.flush();
-  }//draw
+    return sbuf.toString();
+  }//getRowText
 
   private void drawMark() throws IOException {
     if (m_Position != null) {
@@ -199,7 +211,7 @@ public class Checkbox extends ActiveComponent {
     } else {
       m_IO.restoreCursor();
     }
-    m_IO.flush();
+    flush();
   }//drawMark
 
 
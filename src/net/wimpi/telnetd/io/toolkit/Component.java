@@ -33,21 +33,30 @@
 package net.wimpi.telnetd.io.toolkit;
 
 import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.net.ResizeListener;
 
 import java.io.IOException;
 
 /**
- * Class that represents an abstract toolkit component.
+ * Class that represents an abstract toolkit component.<br>
+ * Components registered with BasicTerminalIO.addResizeListener()
+ * get their onResize(int,int) hook called once the terminal
+ * geometry settled after a resize.<br>
+ * Components added to a Form report changed cells as damaged
+ * regions instead of drawing them right away; the form redraws
+ * the damaged cells and flushes once per input event.
  *
  * @author Dieter Wimberger
  * @version 2.0 (13/03/2005)
  */
-public abstract class Component {
+public abstract class Component implements ResizeListener {
 
   protected String m_Name;
   protected BasicTerminalIO m_IO;
   protected Point m_Position;
   protected Dimension m_Dim;
+  private Form m_Form;
 
   /**
    * Constructor for an abstract toolkit component.
@@ -130,5 +139,141 @@ public abstract class Component {
     m_Dim = dim;
   }//setDimension
 
+  /**
+   * Accessor method for the form this component was added to.
+   *
+   * @return the Form, or null if the component is not part of a form.
+   */
+  public Form getForm() {
+    return m_Form;
+  }//getForm
+
+  void setForm(Form form) {
+    m_Form = form;
+  }//setForm
+
+  /**
+   * Reports the whole component as damaged.
+   */
+  public void invalidate() {
+    if (m_Dim != null) {
+      invalidate(0, 0, m_Dim.getWidth(), m_Dim.getHeight());
+    }
+  }//invalidate
+
+  /**
+   * Reports cells of the component as damaged. The coordinates
+   * are relative to the component.
+   *
+   * @param col    the left column of the damaged cells.
+   * @param row    the top row of the damaged cells.
+   * @param width  the number of damaged columns.
+   * @param height the number of damaged rows.
+   * @return true if a form will redraw the cells, false if the
+   *         component has to redraw them itself.
+   */
+  protected boolean invalidate(int col, int row, int width, int height) {
+    if (m_Form == null || m_Position == null) {
+      return false;
+    }
+    m_Form.damage(new Region(m_Position.getColumn() + col,
+        m_Position.getRow() + row, width, height));
+    return true;
+  }//invalidate
+
+  /**
+   * Draws cells of the component. The coordinates are relative
+   * to the component; cells beyond the components text are blanked.
+   * Only components that provide their rows by getRowText(int)
+   * can be drawn cell wise, others have to be drawn completely
+   * by the caller.
+   *
+   * @param col    the left column of the cells.
+   * @param row    the top row of the cells.
+   * @param width  the number of columns.
+   * @param height the number of rows.
+   * @return true if the cells were drawn, false if the component
+   *         has no row text and nothing was drawn.
+   */
+  protected boolean drawRegion(int col, int row, int width, int height)
+      throws IOException {
+    for (int r = row; r < row + height; r++) {
+      if (getRowText(r) == null) {
+        return false;
+      }
+    }
+    StringBuffer sbuf = new StringBuffer(width);
+    for (int r = row; r < row + height; r++) {
+      String text = getRowText(r);
+      sbuf.setLength(0);
+      for (int c = col; c < col + width; c++) {
+        sbuf.append((c < text.length()) ? text.charAt(c) : ' ');
+      }
+      m_IO.setCursor(m_Position.getRow() + r, m_Position.getColumn() + col);
+      m_IO.write(sbuf.toString());
+    }
+    return true;
+  }//drawRegion
+
+  /**
+   * Returns the text of a row of the component as displayed,
+   * to be overridden by components that can be drawn cell wise.
+   *
+   * @param row the row relative to the component.
+   * @return the text without markup, or null if not available.
+   */
+  protected String getRowText(int row) {
+    return null;
+  }//getRowText
+
+  /**
+   * Flushes the output, unless the component is part of a form,
+   * which flushes once per input event.
+   */
+  protected void flush() throws IOException {
+    if (m_Form == null) {
+      m_IO.flush();
+    }
+  }//flush
+
+  /**
+   * Ends the processing of an input event: within a form, the
+   * damaged cells are redrawn; the output is flushed once.
+   */
+  protected void update() throws IOException {
+    if (m_Form != null) {
+      m_Form.render();
+    } else {
+      m_IO.flush();
+    }
+  }//update
+
+  /**
+   * Returns the length of the common prefix of two strings.
+   */
+  static int commonPrefix(String a, String b) {
+    int n = Math.min(a.length(), b.length());
+    int i = 0;
+    while (i < n && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    return i;
+  }//commonPrefix
+
+  public void onResize(ConnectionEvent ce) {
+    onResize(m_IO.getColumns(), m_IO.getRows());
+  }//onResize
+
+  /**
+   * Hook called when the terminal geometry changed, to be overridden
+   * by components that recompute their layout. Note that it is called
+   * by a timer thread, not the connection's thread.
+   *
+   * @param columns the new number of columns.
+   * @param rows    the new number of rows.
+   */
+  protected void onResize(int columns, int rows) {
+  }//onResize
+
 
 }//class Component
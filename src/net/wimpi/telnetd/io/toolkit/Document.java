@@ -0,0 +1,553 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+/**
+ * Class implementing a text document as a piece table.<br>
+ * The text is never copied on edits: the initial text is kept
+ * in an original buffer, inserted text is appended to an add
+ * buffer, and the document is a sequence of pieces referring to
+ * ranges of these buffers. The pieces are nodes of a balanced
+ * tree (a treap) that knows the number of characters and line
+ * breaks in every subtree, so offsets and line starts are found
+ * in O(log n) steps. The line breaks of both buffers are indexed
+ * once, so even a single piece covering a large file does not
+ * have to be scanned.<br>
+ * Tree nodes are immutable and edits copy only the path to the
+ * changed pieces. A version of the document is thus just a root
+ * node, which makes undo and redo snapshots cheap.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class Document {
+
+  //Members
+  private char[] m_Original;
+  private int[] m_OriginalBreaks;
+  private char[] m_Add;
+  private int m_AddLength;
+  private int[] m_AddBreaks;
+  private int m_AddBreakCount;
+  private Piece m_Root;
+  private LinkedList m_Undo;
+  private LinkedList m_Redo;
+  private int m_MaxUndo;
+  private Random m_Random;
+
+  /**
+   * Constructs an empty Document.
+   */
+  public Document() {
+    this("");
+  }//constructor
+
+  /**
+   * Constructs a Document holding the given text.
+   *
+   * @param text the initial text.
+   */
+  public Document(String text) {
+    m_Original = text.toCharArray();
+    m_OriginalBreaks = indexBreaks(m_Original, m_Original.length);
+    m_Add = new char[INITIAL_SIZE];
+    m_AddBreaks = new int[INITIAL_SIZE];
+    m_Undo = new LinkedList();
+    m_Redo = new LinkedList();
+    m_MaxUndo = DEFAULT_MAX_UNDO;
+    m_Random = new Random();
+    if (m_Original.length > 0) {
+      m_Root = createPiece(ORIGINAL, 0, m_Original.length);
+    }
+  }//constructor
+
+  /**
+   * Returns the number of characters.
+   *
+   * @return int representing the length of the document.
+   */
+  public int length() {
+    return size(m_Root);
+  }//length
+
+  /**
+   * Returns the number of lines, which is one more than
+   * the number of line breaks.
+   *
+   * @return int representing the number of lines.
+   */
+  public int getLineCount() {
+    return breaks(m_Root) + 1;
+  }//getLineCount
+
+  /**
+   * Returns the offset of the first character of a line.
+   *
+   * @param line int representing the line number, starting with 0.
+   * @return int representing the offset.
+   * @throws IndexOutOfBoundsException if the line does not exist.
+   */
+  public int getLineStart(int line)
+      throws IndexOutOfBoundsException {
+
+    if (line < 0 || line >= getLineCount()) {
+      throw new IndexOutOfBoundsException(Integer.toString(line));
+    }
+    if (line == 0) {
+      return 0;
+    }
+    //find the break ending the previous line
+    int k = line;
+    int offset = 0;
+    Piece p = m_Root;
+    while (true) {
+      int left = breaks(p.left);
+      if (k <= left) {
+        p = p.left;
+      } else if (k <= left + p.breaks) {
+        int[] index = getBreaks(p.buffer);
+        int pos = index[firstBreak(p.buffer, p.start) + (k - left) - 1];
+        return offset + size(p.left) + (pos - p.start) + 1;
+      } else {
+        k -= left + p.breaks;
+        offset += size(p.left) + p.length;
+        p = p.right;
+      }
+    }
+  }//getLineStart
+
+  /**
+   * Returns the offset after the last character of a line,
+   * not including its line break.
+   *
+   * @param line int representing the line number, starting with 0.
+   * @return int representing the offset.
+   * @throws IndexOutOfBoundsException if the line does not exist.
+   */
+  public int getLineEnd(int line)
+      throws IndexOutOfBoundsException {
+
+    return (line == getLineCount() - 1) ? length() : getLineStart(line + 1) - 1;
+  }//getLineEnd
+
+  /**
+   * Returns the number of the line containing an offset.
+   *
+   * @param offset int representing the offset.
+   * @return int representing the line number, starting with 0.
+   */
+  public int getLineOfOffset(int offset) {
+    int line = 0;
+    Piece p = m_Root;
+    while (p != null) {
+      int left = size(p.left);
+      if (offset < left) {
+        p = p.left;
+      } else if (offset < left + p.length) {
+        return line + breaks(p.left) + countBreaks(p.buffer, p.start, p.start + offset - left);
+      } else {
+        offset -= left + p.length;
+        line += breaks(p.left) + p.breaks;
+        p = p.right;
+      }
+    }
+    return line;
+  }//getLineOfOffset
+
+  /**
+   * Returns a line without its line break.
+   *
+   * @param line int representing the line number, starting with 0.
+   * @return String containing the line.
+   */
+  public String getLine(int line) {
+    return getText(getLineStart(line), getLineEnd(line));
+  }//getLine
+
+  /**
+   * Returns the character at an offset.
+   *
+   * @param offset int representing the offset.
+   * @return the character.
+   * @throws IndexOutOfBoundsException if the offset is not within the document.
+   */
+  public char charAt(int offset)
+      throws IndexOutOfBoundsException {
+
+    if (offset < 0 || offset >= length()) {
+      throw new IndexOutOfBoundsException(Integer.toString(offset));
+    }
+    Piece p = m_Root;
+    while (true) {
+      int left = size(p.left);
+      if (offset < left) {
+        p = p.left;
+      } else if (offset < left + p.length) {
+        return getBuffer(p.buffer)[p.start + offset - left];
+      } else {
+        offset -= left + p.length;
+        p = p.right;
+      }
+    }
+  }//charAt
+
+  /**
+   * Returns a range of the text.
+   *
+   * @param begin int representing the first offset.
+   * @param end   int representing the offset after the last character.
+   * @return String containing the text.
+   */
+  public String getText(int begin, int end) {
+    if (begin < 0 || end > length() || begin > end) {
+      throw new IndexOutOfBoundsException();
+    }
+    StringBuffer sbuf = new StringBuffer(end - begin);
+    appendText(m_Root, 0, begin, end, sbuf);
+    return sbuf.toString();
+  }//getText
+
+  public String toString() {
+    return getText(0, length());
+  }//toString
+
+  /**
+   * Inserts text.
+   *
+   * @param offset int representing the offset to insert at.
+   * @param text   the String to insert.
+   */
+  public void insert(int offset, String text) {
+    replace(offset, offset, text);
+  }//insert
+
+  /**
+   * Removes a range of the text.
+   *
+   * @param begin int representing the first offset.
+   * @param end   int representing the offset after the last character.
+   */
+  public void remove(int begin, int end) {
+    replace(begin, end, "");
+  }//remove
+
+  /**
+   * Replaces a range of the text. The previous version
+   * is kept for undo.
+   *
+   * @param begin int representing the first offset.
+   * @param end   int representing the offset after the last character.
+   * @param text  the String to insert.
+   */
+  public void replace(int begin, int end, String text) {
+    if (begin < 0 || end > length() || begin > end) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (begin == end && text.length() == 0) {
+      return;
+    }
+    Piece[] parts = split(m_Root, begin);
+    Piece right = split(parts[1], end - begin)[1];
+    Piece root = parts[0];
+    if (text.length() > 0) {
+      root = merge(root, append(text));
+    }
+    pushUndo();
+    m_Root = merge(root, right);
+  }//replace
+
+  /**
+   * Tests if there is an edit that can be undone.
+   *
+   * @return true if undo is possible, false otherwise.
+   */
+  public boolean canUndo() {
+    return !m_Undo.isEmpty();
+  }//canUndo
+
+  /**
+   * Tests if there is an undone edit that can be redone.
+   *
+   * @return true if redo is possible, false otherwise.
+   */
+  public boolean canRedo() {
+    return !m_Redo.isEmpty();
+  }//canRedo
+
+  /**
+   * Restores the version before the last edit.
+   *
+   * @return true if undone, false if there was nothing to undo.
+   */
+  public boolean undo() {
+    if (m_Undo.isEmpty()) {
+      return false;
+    }
+    m_Redo.addLast(m_Root);
+    m_Root = (Piece) m_Undo.removeLast();
+    return true;
+  }//undo
+
+  /**
+   * Restores the version before the last undo.
+   *
+   * @return true if redone, false if there was nothing to redo.
+   */
+  public boolean redo() {
+    if (m_Redo.isEmpty()) {
+      return false;
+    }
+    m_Undo.addLast(m_Root);
+    m_Root = (Piece) m_Redo.removeLast();
+    return true;
+  }//redo
+
+  /**
+   * Mutator method for the number of versions kept for undo.
+   *
+   * @param max int representing the number of versions.
+   */
+  public void setMaxUndo(int max) {
+    m_MaxUndo = max;
+    while (m_Undo.size() > m_MaxUndo) {
+      m_Undo.removeFirst();
+    }
+  }//setMaxUndo
+
+  private void pushUndo() {
+    m_Redo.clear();
+    if (m_MaxUndo <= 0) {
+      return;
+    }
+    m_Undo.addLast(m_Root);
+    if (m_Undo.size() > m_MaxUndo) {
+      m_Undo.removeFirst();
+    }
+  }//pushUndo
+
+  /**
+   * Appends text to the add buffer and returns a piece for it.
+   */
+  private Piece append(String text) {
+    int len = text.length();
+    if (m_AddLength + len > m_Add.length) {
+      char[] buf = new char[Math.max(m_Add.length * 2, m_AddLength + len)];
+      System.arraycopy(m_Add, 0, buf, 0, m_AddLength);
+      m_Add = buf;
+    }
+    int start = m_AddLength;
+    text.getChars(0, len, m_Add, start);
+    m_AddLength += len;
+    for (int i = start; i < m_AddLength; i++) {
+      if (m_Add[i] == '\n') {
+        if (m_AddBreakCount == m_AddBreaks.length) {
+          int[] index = new int[m_AddBreaks.length * 2];
+          System.arraycopy(m_AddBreaks, 0, index, 0, m_AddBreakCount);
+          m_AddBreaks = index;
+        }
+        m_AddBreaks[m_AddBreakCount++] = i;
+      }
+    }
+    return createPiece(ADD, start, len);
+  }//append
+
+  private Piece createPiece(int buffer, int start, int length) {
+    return new Piece(buffer, start, length, countBreaks(buffer, start, start + length),
+        m_Random.nextInt(), null, null);
+  }//createPiece
+
+  /**
+   * Splits a tree into the first <tt>offset</tt> characters and the rest.
+   */
+  private Piece[] split(Piece p, int offset) {
+    if (p == null) {
+      return new Piece[]{null, null};
+    }
+    int left = size(p.left);
+    if (offset <= left) {
+      Piece[] parts = split(p.left, offset);
+      return new Piece[]{parts[0], p.with(parts[1], p.right)};
+    }
+    if (offset >= left + p.length) {
+      Piece[] parts = split(p.right, offset - left - p.length);
+      return new Piece[]{p.with(p.left, parts[0]), parts[1]};
+    }
+    //the piece itself is divided
+    int cut = offset - left;
+    Piece head = createPiece(p.buffer, p.start, cut);
+    Piece tail = createPiece(p.buffer, p.start + cut, p.length - cut);
+    return new Piece[]{merge(p.left, head), merge(tail, p.right)};
+  }//split
+
+  /**
+   * Concatenates two trees.
+   */
+  private Piece merge(Piece a, Piece b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+    if (a.priority > b.priority) {
+      return a.with(a.left, merge(a.right, b));
+    }
+    return b.with(merge(a, b.left), b.right);
+  }//merge
+
+  private void appendText(Piece p, int offset, int begin, int end, StringBuffer sbuf) {
+    //in-order walk of the pieces overlapping [begin,end)
+    while (p != null) {
+      int pos = offset + size(p.left);
+      if (begin < pos) {
+        appendText(p.left, offset, begin, end, sbuf);
+      }
+      if (pos >= end) {
+        return;
+      }
+      appendPiece(p, pos, begin, end, sbuf);
+      offset = pos + p.length;
+      p = p.right;
+    }
+  }//appendText
+
+  private void appendPiece(Piece p, int offset, int begin, int end, StringBuffer sbuf) {
+    int from = Math.max(begin, offset);
+    int to = Math.min(end, offset + p.length);
+    if (from < to) {
+      sbuf.append(getBuffer(p.buffer), p.start + from - offset, to - from);
+    }
+  }//appendPiece
+
+  private char[] getBuffer(int buffer) {
+    return (buffer == ORIGINAL) ? m_Original : m_Add;
+  }//getBuffer
+
+  private int[] getBreaks(int buffer) {
+    return (buffer == ORIGINAL) ? m_OriginalBreaks : m_AddBreaks;
+  }//getBreaks
+
+  private int getBreakCount(int buffer) {
+    return (buffer == ORIGINAL) ? m_OriginalBreaks.length : m_AddBreakCount;
+  }//getBreakCount
+
+  /**
+   * Returns the index of the first break at or after a buffer position.
+   */
+  private int firstBreak(int buffer, int pos) {
+    int[] index = getBreaks(buffer);
+    int low = 0;
+    int high = getBreakCount(buffer);
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (index[mid] < pos) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }//firstBreak
+
+  private int countBreaks(int buffer, int start, int end) {
+    return firstBreak(buffer, end) - firstBreak(buffer, start);
+  }//countBreaks
+
+  private static int[] indexBreaks(char[] buf, int length) {
+    int count = 0;
+    for (int i = 0; i < length; i++) {
+      if (buf[i] == '\n') {
+        count++;
+      }
+    }
+    int[] index = new int[count];
+    count = 0;
+    for (int i = 0; i < length; i++) {
+      if (buf[i] == '\n') {
+        index[count++] = i;
+      }
+    }
+    return index;
+  }//indexBreaks
+
+  private static int size(Piece p) {
+    return (p == null) ? 0 : p.size;
+  }//size
+
+  private static int breaks(Piece p) {
+    return (p == null) ? 0 : p.lineBreaks;
+  }//breaks
+
+  private static final int ORIGINAL = 0;
+  private static final int ADD = 1;
+  private static final int INITIAL_SIZE = 1024;
+  private static final int DEFAULT_MAX_UNDO = 1000;
+
+  /**
+   * Immutable node of the piece tree.
+   */
+  private static final class Piece {
+
+    final int buffer;
+    final int start;
+    final int length;
+    final int breaks;
+    final int priority;
+    final Piece left;
+    final Piece right;
+    final int size;
+    final int lineBreaks;
+
+    Piece(int buffer, int start, int length, int breaks, int priority,
+          Piece left, Piece right) {
+      this.buffer = buffer;
+      this.start = start;
+      this.length = length;
+      this.breaks = breaks;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      size = size(left) + length + size(right);
+      lineBreaks = breaks(left) + breaks + breaks(right);
+    }//constructor
+
+    Piece with(Piece l, Piece r) {
+      return new Piece(buffer, start, length, breaks, priority, l, r);
+    }//with
+
+  }//class Piece
+
+}//class Document
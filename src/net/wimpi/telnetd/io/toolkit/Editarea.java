@@ -35,10 +35,14 @@ package net.wimpi.telnetd.io.toolkit;
 import net.wimpi.telnetd.io.BasicTerminalIO;
 
 import java.io.IOException;
-import java.util.Vector;
 
 /**
- * Class that implements an Editarea.
+ * Class that implements an Editarea.<br>
+ * The rows are kept in a {@link Document}, one line per row;
+ * rows that were wrapped while typing end with a marker before
+ * the line break. The row being edited is held by an Editline
+ * and stored back into the document when another row is
+ * activated. Ctrl-Z and Ctrl-Y undo and redo row changes.
  *
  * @author Dieter Wimberger
  * @version 2.0 (13/03/2005)
@@ -57,12 +61,13 @@ public class Editarea
   private String m_Softwrap = " ";
 
   //Associations
-  private Vector lines;
+  private Document m_Document;
   private Editline line;
+  private int m_ActiveRow = -1;
 
   public Editarea(BasicTerminalIO io, String name, int rowheight, int maxrows) {
     super(io, name);
-    lines = new Vector();
+    m_Document = new Document();
     m_Rows = maxrows;
     m_Firstrun = true;
     m_FirstVisibleRow = 0;
@@ -75,10 +80,7 @@ public class Editarea
    * @return int that represents the number of chars in the fields buffer.
    */
   public int getSize() {
-    int size = 0;
-    //iterate over buffers and accumulate size
-    //think of solution for hardwraps
-    return size;
+    return getValue().length();
   }//getSize
 
   public void setHardwrapString(String str) {
@@ -98,40 +100,103 @@ public class Editarea
   }//getSoftwrapString
 
   public String getValue() {
-    StringBuffer sbuf = new StringBuffer();
-    //iterate over buffers and accumulate size
-    Editline el = null;
-    for (int i = 0; i < lines.size(); i++) {
-      el = getLine(i);
-      sbuf.append(el.getValue()).append(((el.isHardwrapped()) ? m_Hardwrap : m_Softwrap));
+    storeLine();
+    String text = m_Document.toString();
+    StringBuffer sbuf = new StringBuffer(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char ch = text.charAt(i);
+      if (ch == SOFTWRAP && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+        sbuf.append(m_Softwrap);
+        i++;
+      } else if (ch == '\n') {
+        sbuf.append(m_Hardwrap);
+      } else {
+        sbuf.append(ch);
+      }
     }
     return sbuf.toString();
   }//getValue
 
+  /**
+   * Sets the text of this area. Lines longer than a row are
+   * wrapped at the last blank that fits, which is replaced by
+   * the softwrap string on {@link #getValue()}. Words longer
+   * than a row are broken.
+   *
+   * @param str the text with lines separated by the hardwrap string.
+   * @throws BufferOverflowException if the wrapped text needs more
+   *         rows than allowed.
+   */
   public void setValue(String str)
       throws BufferOverflowException {
 
     //buffers
-    lines.removeAllElements();
+    int width = m_IO.getColumns() - 1;
+    StringBuffer sbuf = new StringBuffer(str.length());
+    int rows = 1;
+    int pos = 0;
+    while (true) {
+      int idx = str.indexOf(m_Hardwrap, pos);
+      String para = str.substring(pos, (idx < 0) ? str.length() : idx);
+      //softwrap rows of the paragraph
+      while (para.length() > width) {
+        int cut = para.lastIndexOf(' ', width);
+        int next = cut + 1;
+        if (cut <= 0) {
+          cut = width;
+          next = width;
+        }
+        sbuf.append(para.substring(0, cut)).append(SOFTWRAP).append('\n');
+        para = para.substring(next);
+        rows++;
+      }
+      sbuf.append(para);
+      if (idx < 0) {
+        break;
+      }
+      sbuf.append('\n');
+      rows++;
+      pos = idx + m_Hardwrap.length();
+    }
+    if (rows > m_Rows) {
+      throw new BufferOverflowException();
+    }
+    m_Document = new Document(sbuf.toString());
+    m_ActiveRow = -1;
     //cursor
     m_RowCursor = 0;
     m_ColCursor = 0;
-    // think of a buffer filling strategy
-
+    m_FirstVisibleRow = 0;
+    m_Firstrun = false;
+    activateLine(0);
   }//setValue
 
   public void clear() throws IOException {
 
     //Buffers
-    lines.removeAllElements();
+    m_Document = new Document();
+    m_ActiveRow = -1;
     //Cursor
     m_RowCursor = 0;
     m_ColCursor = 0;
+    m_FirstVisibleRow = 0;
+    m_Firstrun = false;
+    activateLine(0);
     //Screen
     draw();
 
   }//clear
 
+  /**
+   * Accessor method for the document holding the rows.
+   *
+   * @return the Document of this Editarea.
+   */
+  public Document getDocument() {
+    storeLine();
+    return m_Document;
+  }//getDocument
+
   public void run() throws IOException {
     int oldcursor = 0;
     boolean done = false;
@@ -140,14 +205,14 @@ public class Editarea
     if (m_Firstrun) {
       //reset flag
       m_Firstrun = false;
-      //make a new editline
-      line = createLine();
-      appendLine(line);
+      //edit the first row
+      activateLine(0);
     }
 
     do {
       //switch return of a line
-      switch (line.run()) {
+      int key = line.run();
+      switch (key) {
         case BasicTerminalIO.UP:
           if (m_RowCursor > 0) {
             if (m_FirstVisibleRow == m_RowCursor) {
@@ -161,7 +226,7 @@ public class Editarea
           break;
         case BasicTerminalIO.DOWN:
 
-          if (m_RowCursor < (lines.size() - 1)) {
+          if (m_RowCursor < (getRowCount() - 1)) {
             if (m_RowCursor == m_FirstVisibleRow + (m_Dim.getHeight() - 1)) {
               scrollDown();
             } else {
@@ -175,7 +240,7 @@ public class Editarea
           /*
           System.out.println("DEBUG:firstVisibleRow:"+firstVisibleRow);
           System.out.println("DEBUG:rowCursor:"+rowCursor);
-          System.out.println("DEBUG:lines:"+lines.size());
+          System.out.println("DEBUG:lines:"+getRowCount());
           System.out.println("DEBUG:maxRows:"+myRows);
           System.out.println("DEBUG:height:"+myDim.getHeight());
           */
@@ -189,7 +254,7 @@ public class Editarea
               String wrap = line.getHardwrap();
               line.setHardwrapped(true);
 
-              if (m_RowCursor == (lines.size() - 1)) {
+              if (m_RowCursor == (getRowCount() - 1)) {
                 appendNewLine();
               } else {
                 insertNewLine();
@@ -213,6 +278,10 @@ public class Editarea
 
           done = true;
           break;
+        case Editline.UNDO:
+        case Editline.REDO:
+          undo(key == Editline.REDO);
+          break;
 
         case BasicTerminalIO.LEFT:
           if (m_RowCursor > 0) {
@@ -236,7 +305,7 @@ public class Editarea
           }
           break;
         case BasicTerminalIO.RIGHT:
-          if (m_RowCursor < (lines.size() - 1)) {
+          if (m_RowCursor < (getRowCount() - 1)) {
             if (m_RowCursor == m_FirstVisibleRow + (m_Dim.getHeight() - 1)) {
               line.setCursorPosition(0);
               m_IO.moveLeft(line.size());
@@ -273,7 +342,7 @@ public class Editarea
             //System.out.println("softwrap:"+wrap);
             line.setHardwrapped(false);
 
-            if (m_RowCursor == (lines.size() - 1)) {
+            if (m_RowCursor == (getRowCount() - 1)) {
               appendNewLine();
             } else {
               insertNewLine();
@@ -311,18 +380,24 @@ public class Editarea
     line.setCursorPosition(horizontalpos);
 
     //screen
+    if (scrollRows(m_FirstVisibleRow, -1)) {
+      //only the row scrolled in needs to be sent
+      writeRow(m_FirstVisibleRow);
+      positionCursor();
+      return;
+    }
     //horizontal
 
     //content:
     int lasthorizontal = horizontalpos;
     int count = 0;
-    for (int i = m_FirstVisibleRow; i < (m_FirstVisibleRow + m_Dim.getHeight()) && i < lines.size(); i++) {
+    for (int i = m_FirstVisibleRow; i < (m_FirstVisibleRow + m_Dim.getHeight()) && i < getRowCount(); i++) {
       //System.out.println("Debug:scrolling:up:drawing line "+i);
       m_IO.moveLeft(lasthorizontal);
-      Editline lin = (Editline) lines.elementAt(i);
-      lasthorizontal = lin.size();
+      String row = getRowContent(i);
+      lasthorizontal = row.length();
       m_IO.eraseToEndOfLine();
-      m_IO.write(lin.getValue());
+      m_IO.write(row);
       m_IO.moveDown(1);
       count++;
     }
@@ -371,6 +446,12 @@ public class Editarea
     line.setCursorPosition(horizontalpos);
 
     //screen
+    if (scrollRows(m_FirstVisibleRow, 1)) {
+      //only the row scrolled in needs to be sent
+      writeRow(m_FirstVisibleRow + m_Dim.getHeight() - 1);
+      positionCursor();
+      return;
+    }
     //vertical:
     m_IO.moveUp(m_Dim.getHeight() - 1);
     //content:
@@ -378,11 +459,11 @@ public class Editarea
     for (int i = m_FirstVisibleRow; i < (m_FirstVisibleRow + m_Dim.getHeight()); i++) {
       //System.out.println("Debug:scrolling:up:drawing line "+i);
       m_IO.moveLeft(lasthorizontal);
-      Editline lin = (Editline) lines.elementAt(i);
-      lasthorizontal = lin.size();
+      String row = getRowContent(i);
+      lasthorizontal = row.length();
 
       m_IO.eraseToEndOfLine();
-      m_IO.write(lin.getValue());
+      m_IO.write(row);
       m_IO.moveDown(1);
     }
     //correct move down and last write
@@ -418,12 +499,17 @@ public class Editarea
   private void appendNewLine() throws IOException {
     //System.out.println("Debug:appendline");
     //buffer
-    appendLine(createLine());
+    appendLine();
 
     if (m_RowCursor == m_FirstVisibleRow + (m_Dim.getHeight() - 1)) {
       //System.out.println("Debug:appendline:scroll");
       //this will "scroll"
       m_FirstVisibleRow++;
+      if (scrollRows(m_FirstVisibleRow, 1)) {
+        //the new line is blank, just move onto it
+        positionCursor(m_RowCursor + 1, 0);
+        return;
+      }
       //System.out.println("Debug:appendline:scroll:firstvis:"+firstVisibleRow);
       //System.out.println("Debug:appendline:scroll:rowCursor:"+rowCursor);
       //System.out.println("Debug:appendline:scroll:movevert:"+(myDim.getHeight()-1));
@@ -434,10 +520,10 @@ public class Editarea
       int lasthorizontal = line.getCursorPosition();
       for (int i = m_FirstVisibleRow; i < (m_FirstVisibleRow + m_Dim.getHeight()); i++) {
         //System.out.println("Debug:appendline:scroll:line:"+i);
-        Editline lin = (Editline) lines.elementAt(i);
+        String row = getRowContent(i);
         m_IO.eraseToEndOfLine();
-        m_IO.write(lin.getValue());
-        m_IO.moveLeft(lin.size());
+        m_IO.write(row);
+        m_IO.moveLeft(row.length());
         m_IO.moveDown(1);
       }
       //correct the move to down in last place
@@ -454,13 +540,18 @@ public class Editarea
   private void insertNewLine() throws IOException {
     //System.out.println("Debug:insertline:");
     //buffer
-    insertLine(m_RowCursor + 1, createLine());
+    insertLine(m_RowCursor + 1);
 
 
     if (m_RowCursor == m_FirstVisibleRow + (m_Dim.getHeight() - 1)) {
       //System.out.println("Debug:insertline:scroll");
       //this will "scroll"
       m_FirstVisibleRow++;
+      if (scrollRows(m_FirstVisibleRow, 1)) {
+        //the new line is blank, just move onto it
+        positionCursor(m_RowCursor + 1, 0);
+        return;
+      }
       //System.out.println("Debug:insertline:scroll:firstvis:"+firstVisibleRow);
       //System.out.println("Debug:appendline:scroll:rowCursor:"+rowCursor);
       //System.out.println("Debug:appendline:scroll:movevert:"+(myDim.getHeight()-1));
@@ -471,10 +562,10 @@ public class Editarea
       for (int i = m_FirstVisibleRow; i < (m_FirstVisibleRow + m_Dim.getHeight()); i++) {
         //System.out.println("Debug:appendline:scroll:line:"+i);
         m_IO.moveLeft(lasthorizontal);
-        Editline lin = (Editline) lines.elementAt(i);
-        lasthorizontal = lin.size();
+        String row = getRowContent(i);
+        lasthorizontal = row.length();
         m_IO.eraseToEndOfLine();
-        m_IO.write(lin.getValue());
+        m_IO.write(row);
         m_IO.moveDown(1);
 
       }
@@ -483,17 +574,22 @@ public class Editarea
 
     } else {
       //System.out.println("Debug:insertline:NOscroll");
+      if (scrollRows(m_RowCursor + 1, -1)) {
+        //lines below moved down, leaving a blank one for the new line
+        positionCursor(m_RowCursor + 1, 0);
+        return;
+      }
       //we have to redraw any line below rowCursor+1 anyway
       m_IO.moveDown(1);
       m_IO.moveLeft(line.getCursorPosition());
 
       int count = 0;
-      for (int i = m_RowCursor + 1; i < (m_FirstVisibleRow + m_Dim.getHeight()) && i < lines.size(); i++) {
+      for (int i = m_RowCursor + 1; i < (m_FirstVisibleRow + m_Dim.getHeight()) && i < getRowCount(); i++) {
         //System.out.println("Debug:insertline:redrawing line:"+i);
         m_IO.eraseToEndOfLine();
-        Editline lin = (Editline) lines.elementAt(i);
-        m_IO.write(lin.getValue());
-        m_IO.moveLeft(lin.size());
+        String row = getRowContent(i);
+        m_IO.write(row);
+        m_IO.moveLeft(row.length());
         m_IO.moveDown(1);
         count++;
       }
@@ -512,16 +608,26 @@ public class Editarea
 
 
     //Screen
+    if (scrollRows(m_RowCursor + 1, 1)) {
+      //lines below moved up, only the bottom row scrolled in needs to be sent
+      int bottom = m_FirstVisibleRow + m_Dim.getHeight() - 1;
+      if (bottom < getRowCount()) {
+        writeRow(bottom);
+      }
+      line.setCursorPosition(line.size());
+      positionCursor();
+      return;
+    }
     //content redraw
     int lasthorizontal = 0;
     int count = 0;
     for (int i = m_RowCursor + 1; i < (m_FirstVisibleRow + m_Dim.getHeight()); i++) {
-      if (i < lines.size()) {
+      if (i < getRowCount()) {
         //System.out.println("Debug:removeline:redrawing line:"+i);
         m_IO.eraseToEndOfLine();
-        Editline lin = (Editline) lines.elementAt(i);
-        m_IO.write(lin.getValue());
-        m_IO.moveLeft(lin.size());
+        String row = getRowContent(i);
+        m_IO.write(row);
+        m_IO.moveLeft(row.length());
         m_IO.moveDown(1);
         count++;
       } else {
@@ -543,11 +649,11 @@ public class Editarea
     if (m_Position != null) {
       m_IO.setCursor(m_Position.getRow(), m_Position.getColumn());
       int count = 0;
-      for (int i = m_FirstVisibleRow; i < (m_FirstVisibleRow + m_Dim.getHeight()) && i < lines.size(); i++) {
+      for (int i = m_FirstVisibleRow; i < (m_FirstVisibleRow + m_Dim.getHeight()) && i < getRowCount(); i++) {
         m_IO.eraseToEndOfLine();
-        Editline lin = (Editline) lines.elementAt(i);
-        m_IO.write(lin.getValue());
-        m_IO.moveLeft(lin.size());
+        String row = getRowContent(i);
+        m_IO.write(row);
+        m_IO.moveLeft(row.length());
         m_IO.moveDown(1);
         count++;
       }
@@ -559,12 +665,91 @@ public class Editarea
     m_IO.flush();
   }//draw
 
+  /**
+   * Scrolls the screen rows from the given line down to the bottom
+   * of the area, if the terminal supports scroll regions.
+   * Scroll margins need absolute rows, so this works only for
+   * positioned areas.
+   *
+   * @param row   the first line of the region.
+   * @param count the number of lines to scroll, negative for scrolling down.
+   * @return true if scrolled, false if the rows have to be redrawn.
+   */
+  private boolean scrollRows(int row, int count) throws IOException {
+    if (m_Position == null) {
+      return false;
+    }
+    return m_IO.scrollRegion(getScreenRow(row),
+        getScreenRow(m_FirstVisibleRow + m_Dim.getHeight() - 1), count);
+  }//scrollRows
+
+  private int getScreenRow(int row) {
+    return m_Position.getRow() + (row - m_FirstVisibleRow);
+  }//getScreenRow
+
+  private void writeRow(int row) throws IOException {
+    m_IO.setCursor(getScreenRow(row), m_Position.getColumn());
+    m_IO.write(getRowContent(row));
+  }//writeRow
+
+  private void positionCursor() throws IOException {
+    positionCursor(m_RowCursor, line.getCursorPosition());
+  }//positionCursor
+
+  private void positionCursor(int row, int col) throws IOException {
+    m_IO.setCursor(getScreenRow(row), m_Position.getColumn() + col);
+  }//positionCursor
+
   private void activateLine(int pos) {
-    line = getLine(pos);
+    storeLine();
+    line = createLine();
+    line.load(getRowContent(pos), isHardwrapped(pos));
+    m_ActiveRow = pos;
   }//activateLine
 
+  /**
+   * Stores the row being edited into the document.
+   */
+  private void storeLine() {
+    if (m_ActiveRow < 0) {
+      return;
+    }
+    int start = m_Document.getLineStart(m_ActiveRow);
+    int end = m_Document.getLineEnd(m_ActiveRow);
+    String value = line.getValue();
+    if (m_ActiveRow < getRowCount() - 1 && !line.isHardwrapped()) {
+      value = value + SOFTWRAP;
+    }
+    if (end - start != value.length() || !m_Document.getText(start, end).equals(value)) {
+      m_Document.replace(start, end, value);
+    }
+  }//storeLine
+
+  private String getRowContent(int pos) {
+    if (pos == m_ActiveRow) {
+      return line.getValue();
+    }
+    String row = m_Document.getLine(pos);
+    if (row.length() > 0 && row.charAt(row.length() - 1) == SOFTWRAP) {
+      return row.substring(0, row.length() - 1);
+    }
+    return row;
+  }//getRowContent
+
+  private boolean isHardwrapped(int pos) {
+    if (pos == getRowCount() - 1) {
+      return false;
+    }
+    int end = m_Document.getLineEnd(pos);
+    return end == m_Document.getLineStart(pos) || m_Document.charAt(end - 1) != SOFTWRAP;
+  }//isHardwrapped
+
+  private int getRowCount() {
+    return m_Document.getLineCount();
+  }//getRowCount
+
   private boolean hasLineSpace() {
-    return (lines.size() < m_Rows);
+    return (getRowCount() < m_Rows);
   }//hasLineSpace
 
   private Editline createLine() {
@@ -572,19 +757,98 @@ public class Editarea
   }//newLine
 
   private void deleteLine(int pos) {
-    lines.removeElementAt(pos);
+    if (pos == m_ActiveRow) {
+      m_ActiveRow = -1;
+    } else {
+      storeLine();
+    }
+    if (pos < getRowCount() - 1) {
+      m_Document.remove(m_Document.getLineStart(pos), m_Document.getLineStart(pos + 1));
+    } else {
+      //the row before becomes the last one and loses its line break
+      int begin = m_Document.getLineEnd(pos - 1);
+      if (!isHardwrapped(pos - 1)) {
+        begin--;
+      }
+      m_Document.remove(begin, m_Document.length());
+    }
+    if (m_ActiveRow > pos) {
+      m_ActiveRow--;
+    }
   }//deleteLine
 
-  private void insertLine(int pos, Editline el) {
-    lines.insertElementAt(el, pos);
+  /**
+   * Inserts an empty row before the given one.
+   */
+  private void insertLine(int pos) {
+    storeLine();
+    if (pos < getRowCount()) {
+      m_Document.insert(m_Document.getLineStart(pos), "\n");
+    } else {
+      m_Document.insert(m_Document.length(), "\n");
+    }
+    if (m_ActiveRow >= pos) {
+      m_ActiveRow++;
+    }
+    //the row before has a line break now
+    storeLine();
   }//insertLine
 
-  private void appendLine(Editline el) {
-    lines.addElement(el);
+  private void appendLine() {
+    insertLine(getRowCount());
   }//appendLine
 
-  private Editline getLine(int pos) {
-    return (Editline) lines.elementAt(pos);
-  }//getLine
+  /**
+   * Undoes or redoes the last row changes and redraws.
+   */
+  private void undo(boolean redo) throws IOException {
+    int screenrow = m_RowCursor - m_FirstVisibleRow;
+    int screencol = line.getCursorPosition();
+    storeLine();
+    if (!((redo) ? m_Document.redo() : m_Document.undo())) {
+      m_IO.bell();
+      return;
+    }
+    m_ActiveRow = -1;
+    //keep the cursor within the rows
+    m_RowCursor = Math.min(m_RowCursor, getRowCount() - 1);
+    m_FirstVisibleRow = Math.min(m_FirstVisibleRow, m_RowCursor);
+    activateLine(m_RowCursor);
+    line.setCursorPosition(screencol);
+    //screen
+    if (m_Position != null) {
+      m_IO.setCursor(m_Position.getRow(), m_Position.getColumn());
+    } else {
+      if (screenrow > 0) {
+        m_IO.moveUp(screenrow);
+      }
+      if (screencol > 0) {
+        m_IO.moveLeft(screencol);
+      }
+    }
+    int height = m_Dim.getHeight();
+    for (int i = 0; i < height; i++) {
+      m_IO.eraseToEndOfLine();
+      if (m_FirstVisibleRow + i < getRowCount()) {
+        String row = getRowContent(m_FirstVisibleRow + i);
+        m_IO.write(row);
+        if (row.length() > 0) {
+          m_IO.moveLeft(row.length());
+        }
+      }
+      if (i < height - 1) {
+        m_IO.moveDown(1);
+      }
+    }
+    int up = height - 1 - (m_RowCursor - m_FirstVisibleRow);
+    if (up > 0) {
+      m_IO.moveUp(up);
+    }
+    if (line.getCursorPosition() > 0) {
+      m_IO.moveRight(line.getCursorPosition());
+    }
+  }//undo
+
+  private static final char SOFTWRAP = '\u0000';
 
 }//class Editarea
@@ -35,9 +35,12 @@ package net.wimpi.telnetd.io.toolkit;
 import net.wimpi.telnetd.io.BasicTerminalIO;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
- * Class that implements an Editfield.
+ * Class that implements an Editfield.<br>
+ * Editing is done by a {@link LineEditor}, so the field
+ * supports the same keys as the shells.
  *
  * @author Dieter Wimberger
  * @version 2.0 (13/03/2005)
@@ -48,12 +51,9 @@ public class Editfield
   //Associations
   private InputFilter m_InputFilter = null;
   private InputValidator m_InputValidator = null;
-  //Aggregations (inner class!)
-  private Buffer m_Buffer;
+  //Aggregations
+  private LineEditor m_Editor;
   //Members
-  private int m_Cursor = 0;
-  private boolean m_InsertMode = true;
-  private int m_LastSize = 0;
   private boolean m_PasswordField = false;
   private boolean m_JustBackspace;
 
@@ -64,10 +64,8 @@ public class Editfield
     //init superclass
     super(io, name);
     //init class params
-    m_Buffer = new Buffer(length);
+    m_Editor = new LineEditor(io, length);
     setDimension(new Dimension(length, 1));
-    m_Cursor = 0;
-    m_InsertMode = true;
   }//constructor
 
   /**
@@ -85,11 +83,11 @@ public class Editfield
    * @return int that represents the number of chars in the fields buffer.
    */
   public int getSize() {
-    return m_Buffer.size();
+    return m_Editor.length();
   }//getSize
 
   public String getValue() {
-    return m_Buffer.toString();
+    return m_Editor.getValue();
   }//getValue
 
   public void setValue(String str)
@@ -100,120 +98,77 @@ public class Editfield
 
   public void clear() throws IOException {
     positionCursorAtBegin();
-    for (int i = 0; i < m_Buffer.size(); i++) {
+    for (int i = 0; i < m_Editor.length(); i++) {
       m_IO.write(' ');
     }
     positionCursorAtBegin();
-    m_Buffer.clear();
-    m_Cursor = 0;
-    m_LastSize = 0;
-    m_IO.flush();
+    m_Editor.reset();
+    flush();
   }//clear
 
   public char getCharAt(int pos)
       throws IndexOutOfBoundsException {
 
-    return m_Buffer.getCharAt(pos);
+    return m_Editor.charAt(pos);
   }//getCharAt
 
   public void setCharAt(int pos, char ch)
       throws IndexOutOfBoundsException, IOException {
 
-    //buffer
-    m_Buffer.setCharAt(pos, ch);
-    //cursor
-    //implements overwrite mode no change
-    //screen
-    draw();
+    //implements overwrite mode, the cursor stays
+    int cursor = m_Editor.getCursor();
+    if (pos >= m_Editor.length() || !m_Editor.replace(pos, pos + 1, String.valueOf(ch))) {
+      throw new IndexOutOfBoundsException();
+    }
+    m_Editor.setCursor(cursor);
   }//setCharAt
 
   public void insertCharAt(int pos, char ch)
       throws BufferOverflowException, IndexOutOfBoundsException, IOException {
 
-    storeSize();
-    //buffer
-    m_Buffer.ensureSpace(1);
-    m_Buffer.insertCharAt(pos, ch);
-    //cursor adjustment (so that it stays in "same" pos)
-    if (m_Cursor >= pos) {
-      moveRight();
-    }
-    //screen
-    draw();
+    insertStringAt(pos, String.valueOf(ch));
   }//insertCharAt
 
   public void removeCharAt(int pos)
       throws IndexOutOfBoundsException, IOException {
 
-    storeSize();
-    //buffer
-    m_Buffer.removeCharAt(pos);
-    //cursor adjustment
-    if (m_Cursor > pos) {
-      moveLeft();
+    int cursor = m_Editor.getCursor();
+    if (pos < 0 || pos >= m_Editor.length()) {
+      throw new IndexOutOfBoundsException();
     }
-    //screen
-    draw();
+    m_Editor.replace(pos, pos + 1, "");
+    //cursor adjustment (so that it stays in "same" pos)
+    m_Editor.setCursor((cursor > pos) ? cursor - 1 : cursor);
   }//removeChatAt
 
   public void insertStringAt(int pos, String str)
       throws BufferOverflowException, IndexOutOfBoundsException, IOException {
 
-    storeSize();
-    //buffer
-    m_Buffer.ensureSpace(str.length());
-    for (int i = 0; i < str.length(); i++) {
-      m_Buffer.insertCharAt(pos, str.charAt(i));
-      //Cursor
-      m_Cursor++;
+    ensureSpace(str.length());
+    int cursor = m_Editor.getCursor();
+    if (!m_Editor.replace(pos, pos, str)) {
+      throw new IndexOutOfBoundsException();
     }
-    //screen
-    draw();
-
+    //cursor adjustment (so that it stays in "same" pos)
+    m_Editor.setCursor((cursor >= pos) ? cursor + str.length() : cursor);
   }//insertStringAt
 
   public void append(char ch)
       throws BufferOverflowException, IOException {
 
-    storeSize();
-    //buffer
-    m_Buffer.ensureSpace(1);
-    m_Buffer.append(ch);
-    //cursor
-    m_Cursor++;
-    //screen
-    if (!m_PasswordField) {
-      m_IO.write(ch);
-    } else {
-      m_IO.write('.');
-    }
+    append(String.valueOf(ch));
   }//append(char)
 
   public void append(String str)
       throws BufferOverflowException, IOException {
 
-    storeSize();
-    //buffer
-    m_Buffer.ensureSpace(str.length());
-    for (int i = 0; i < str.length(); i++) {
-      m_Buffer.append(str.charAt(i));
-      //Cursor
-      m_Cursor++;
-    }
-    //screen
-    if (!m_PasswordField) {
-      m_IO.write(str);
-    } else {
-      StringBuffer sbuf = new StringBuffer();
-      for (int n = 0; n < str.length(); n++) {
-        sbuf.append('.');
-      }
-      m_IO.write(sbuf.toString());
-    }
+    ensureSpace(str.length());
+    m_Editor.setCursor(m_Editor.length());
+    m_Editor.insert(str);
   }//append(String)
 
   public int getCursorPosition() {
-    return m_Cursor;
+    return m_Editor.getCursor();
   }//getCursorPosition
 
   public boolean isJustBackspace() {
@@ -239,11 +194,11 @@ public class Editfield
   }//registerInputValidator
 
   public boolean isInInsertMode() {
-    return m_InsertMode;
+    return m_Editor.isInInsertMode();
   }//isInInsertMode
 
   public void setInsertMode(boolean b) {
-    m_InsertMode = b;
+    m_Editor.setInsertMode(b);
   }//setInsertMode
 
   public boolean isPasswordField() {
@@ -252,6 +207,7 @@ public class Editfield
 
   public void setPasswordField(boolean b) {
     m_PasswordField = b;
+    m_Editor.setMask((b) ? '.' : (char) 0);
   }//setPasswordField
 
   /**
@@ -262,7 +218,7 @@ public class Editfield
     int in = 0;
     //m_IO.setAutoflushing(false);
     draw();
-    m_IO.flush();
+    update();
     do {
       //get next key
       in = m_IO.read();
@@ -276,26 +232,20 @@ public class Editfield
       }
       switch (in) {
         case -1:
-          m_Buffer.clear();
+          m_Editor.reset();
           break;
         case InputFilter.INPUT_HANDLED:
           continue;
         case InputFilter.INPUT_INVALID:
           m_IO.bell();
           break;
-        case BasicTerminalIO.LEFT:
-          moveLeft();
-          break;
-        case BasicTerminalIO.RIGHT:
-          moveRight();
-          break;
         case BasicTerminalIO.UP:
         case BasicTerminalIO.DOWN:
           m_IO.bell();
           break;
         case BasicTerminalIO.ENTER:
           if (m_InputValidator != null) {
-            if (m_InputValidator.validate(m_Buffer.toString())) {
+            if (m_InputValidator.validate(m_Editor.getValue())) {
               in = -1;
             } else {
               m_IO.bell();
@@ -304,140 +254,50 @@ public class Editfield
             in = -1;
           }
           break;
-        case BasicTerminalIO.BACKSPACE:
-          try {
-            removeCharAt(m_Cursor - 1);
-          } catch (IndexOutOfBoundsException ioobex) {
-            m_IO.bell();
-          }
-          break;
-        case BasicTerminalIO.DELETE:
-          try {
-            removeCharAt(m_Cursor);
-          } catch (IndexOutOfBoundsException ioobex) {
-            m_IO.bell();
-          }
-          break;
         case BasicTerminalIO.TABULATOR:
           in = -1;
           break;
         default:
-          handleCharInput(in);
+          if (!m_Editor.handleKey(in)) {
+            m_IO.bell();
+          }
       }
-      m_IO.flush();
+      update();
     } while (in != -1);
   }//run
 
 
   public void draw() throws IOException {
-    //System.out.println("DEBUG: Buffer="+ m_Buffer.toString());
-    //System.out.println("DEBUG: Cursor="+ m_Cursor);
-
-    int diff = m_LastSize - m_Buffer.size();
-    String output = m_Buffer.toString();
-    if (m_PasswordField) {
-      StringBuffer stbuf = new StringBuffer();
-      for (int n = 0; n < output.length(); n++) {
-        stbuf.append('.');
-      }
-      output = stbuf.toString();
-    }
-    //System.out.println("DEBUG: Sizediff="+diff);
-    if (diff > 0) {
-      StringBuffer sbuf = new StringBuffer();
-      sbuf.append(output);
-      for (int i = 0; i < diff; i++) {
-        sbuf.append(" ");
-      }
-      output = sbuf.toString();
-    }
-
-    if (m_Position != null) {
-      m_IO.setCursor(m_Position.getRow(), m_Position.getColumn());
-    } else {
-      m_IO.moveLeft(m_Cursor);
-    }
-    m_IO.write(output);
-    //adjust screen cursor hmm
-    if (m_Cursor < output.length()) {
-      m_IO.moveLeft(output.length() - m_Cursor);
-    }
+    positionCursorAtBegin();
+    m_Editor.draw();
   }//draw
 
-  private void moveRight() throws IOException {
-    //cursor
-    if (m_Cursor < m_Buffer.size()) {
-      m_Cursor++;
-      //screen
-      m_IO.moveRight(1);
-    } else {
-      m_IO.bell();
+  protected String getRowText(int row) {
+    if (row != 0) {
+      return null;
     }
-  }//moveRight
-
-  private void moveLeft() throws IOException {
-    //cursor
-    if (m_Cursor > 0) {
-      m_Cursor--;
-      //screen
-      m_IO.moveLeft(1);
-    } else {
-      m_IO.bell();
+    String value = m_Editor.getValue();
+    if (m_PasswordField) {
+      char[] mask = new char[value.length()];
+      Arrays.fill(mask, '.');
+      return new String(mask);
     }
-  }//moveLeft
+    return value;
+  }//getRowText
 
   private void positionCursorAtBegin() throws IOException {
     //1. position cursor at first char
     if (m_Position == null) {
-      m_IO.moveLeft(m_Cursor);
+      m_IO.moveLeft(m_Editor.getCursor());
     } else {
       m_IO.setCursor(m_Position.getRow(), m_Position.getColumn());
     }
   }//positionCursoratBegin
 
-  private boolean isCursorAtEnd() {
-    return (m_Cursor == m_Buffer.size());
-  }//isCursorAtEnd
-
-  private void handleCharInput(int ch) throws IOException {
-    if (isCursorAtEnd()) {
-      try {
-        //Field
-        append((char) ch);
-      } catch (BufferOverflowException bex) {
-        m_IO.bell();
-      }
-    } else {
-      if (isInInsertMode()) {
-        try {
-          //Field
-          insertCharAt(m_Cursor, (char) ch);
-        } catch (BufferOverflowException bex) {
-          m_IO.bell();
-        }
-      } else {
-        try {
-          //Field
-          setCharAt(m_Cursor, (char) ch);
-        } catch (IndexOutOfBoundsException bex) {
-          m_IO.bell();
-        }
-      }
+  private void ensureSpace(int chars) throws BufferOverflowException {
+    if (m_Editor.length() + chars > getLength()) {
+      throw new BufferOverflowException();
     }
-  }//handleCharInput
-
-  private void storeSize() {
-    m_LastSize = m_Buffer.size();
-  }//storeSize
-
-
-  //inner class Buffer
-  class Buffer extends CharBuffer {
-
-    public Buffer(int size) {
-      super(size);
-    }//constructor
-
-  }//class Buffer
+  }//ensureSpace
 
 }//class Editfield
@@ -94,6 +94,21 @@ class Editline {
     append(str);
   }//setValue
 
+  /**
+   * Sets the content without screen output, e.g. when
+   * a row of an Editarea is activated.
+   *
+   * @param str         the String representing the content.
+   * @param hardwrapped flag that indicates if the line ends with a hard wrap.
+   */
+  void load(String str, boolean hardwrapped) {
+    m_Buffer.clear();
+    m_Buffer.insertStringAt(0, str);
+    m_Cursor = 0;
+    m_LastSize = 0;
+    m_HardWrapped = hardwrapped;
+  }//load
+
   public void clear() throws IOException {
 
     storeSize();
@@ -125,9 +140,7 @@ class Editline {
       m_Cursor = m_Cursor - content.length();
 
       //buffer
-      for (int i = 0; i < content.length(); i++) {
-        m_Buffer.removeCharAt(m_Cursor);
-      }
+      m_Buffer.remove(m_Cursor, m_Cursor + content.length());
 
       //screen
       m_IO.moveLeft(content.length());
@@ -143,15 +156,8 @@ class Editline {
       throws IndexOutOfBoundsException, IOException {
 
     //Buffer
-    String content = m_Buffer.toString();
-    content = content.substring(m_Cursor, content.length());
-    //System.out.println("buffer:tostring:"+buf.toString()+":");
-    //System.out.println("buffer:size:"+buf.size());
-    int lastsize = m_Buffer.size();
-    for (int i = m_Cursor; i < lastsize; i++) {
-      m_Buffer.removeCharAt(m_Cursor);
-      //System.out.println("buffer:removing char #"+i);
-    }
+    String content = m_Buffer.substring(m_Cursor, m_Buffer.size());
+    m_Buffer.remove(m_Cursor, m_Buffer.size());
     //System.out.println("buffer:tostring:"+buf.toString()+":");
     //cursor stays
     //screen
@@ -207,11 +213,9 @@ class Editline {
     storeSize();
     //buffer
     m_Buffer.ensureSpace(str.length());
-    for (int i = 0; i < str.length(); i++) {
-      m_Buffer.insertCharAt(pos, str.charAt(i));
-      //Cursor
-      m_Cursor++;
-    }
+    m_Buffer.insertStringAt(pos, str);
+    //Cursor
+    m_Cursor += str.length();
     //screen
     draw();
 
@@ -236,11 +240,9 @@ class Editline {
     storeSize();
     //buffer
     m_Buffer.ensureSpace(str.length());
-    for (int i = 0; i < str.length(); i++) {
-      m_Buffer.append(str.charAt(i));
-      //Cursor
-      m_Cursor++;
-    }
+    m_Buffer.append(str);
+    //Cursor
+    m_Cursor += str.length();
     //screen
     m_IO.write(str);
   }//append(String)
@@ -331,6 +333,8 @@ class Editline {
         case BasicTerminalIO.UP:
         case BasicTerminalIO.DOWN:
         case BasicTerminalIO.TABULATOR:
+        case UNDO:
+        case REDO:
           return in;
         default:
           try {
@@ -422,6 +426,16 @@ class Editline {
   }//storeSize
 
 
+  /**
+   * Key (Ctrl-Z) returned to the Editarea for undo.
+   */
+  static final int UNDO = 26;
+
+  /**
+   * Key (Ctrl-Y) returned to the Editarea for redo.
+   */
+  static final int REDO = 25;
+
   //inner class Buffer
   class Buffer extends CharBuffer {
 
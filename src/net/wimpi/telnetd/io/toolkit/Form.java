@@ -34,11 +34,18 @@ package net.wimpi.telnetd.io.toolkit;
 
 import net.wimpi.telnetd.io.BasicTerminalIO;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Vector;
 
 /**
  * Class that implements an intelligent generic container
- * for toolkit components.
+ * for toolkit components.<br>
+ * Components added to the form report changed cells as damaged
+ * regions. Touching regions are merged, and a render pass redraws
+ * just the damaged cells of the components covering them, with
+ * a single flush. Active components run a render pass per input
+ * event, so the terminal gets one batch of changed cells per key.
  *
  * @author Dieter Wimberger
  * @version 2.0 (13/03/2005)
@@ -47,22 +54,195 @@ public class Form
     extends ActiveComponent {
 
   protected Vector myComponents;
+  //Members
+  private Vector m_Damage;
 
   public Form(BasicTerminalIO myio, String name) {
     super(myio, name);
+    myComponents = new Vector(10, 5);
+    m_Damage = new Vector(10, 5);
     //we are screen large always
     setLocation(new Point(0, 0));
     setDimension(new Dimension(m_IO.getColumns(), m_IO.getRows()));
   }//constructor
 
+  /**
+   * Adds a component to the form. Components added later
+   * are drawn over components added earlier.
+   *
+   * @param c the Component to be added.
+   */
+  public void add(Component c) {
+    myComponents.addElement(c);
+    c.setForm(this);
+  }//add
 
-  public void run() {
+  /**
+   * Removes a component from the form. The cells it covered
+   * are redrawn with the next render pass.
+   *
+   * @param c the Component to be removed.
+   */
+  public void remove(Component c) {
+    c.invalidate();
+    if (myComponents.removeElement(c)) {
+      c.setForm(null);
+    }
+  }//remove
 
-  }//run
+  /**
+   * Accessor method for a component by its name.
+   *
+   * @param name String that represents the components name.
+   * @return the Component, or null if there is none with this name.
+   */
+  public Component getComponent(String name) {
+    for (int i = 0; i < myComponents.size(); i++) {
+      Component c = (Component) myComponents.elementAt(i);
+      if (c.getName().equals(name)) {
+        return c;
+      }
+    }
+    return null;
+  }//getComponent
 
-  public void draw() {
+  /**
+   * Activates the active components of the form one after the other,
+   * each until it is left (e.g. with tabulator or enter).
+   */
+  public void run() throws Exception {
+    boolean autoflush = m_IO.isAutoflushing();
+    m_IO.setAutoflushing(false);
+    try {
+      draw();
+      for (int i = 0; i < myComponents.size(); i++) {
+        Object o = myComponents.elementAt(i);
+        if (o instanceof ActiveComponent) {
+          ((ActiveComponent) o).run();
+          render();
+        }
+      }
+    } finally {
+      m_IO.setAutoflushing(autoflush);
+    }
+  }//run
 
+  /**
+   * Draws all components of the form.
+   */
+  public void draw() throws IOException {
+    m_Damage.removeAllElements();
+    m_IO.homeCursor();
+    m_IO.eraseScreen();
+    for (int i = 0; i < myComponents.size(); i++) {
+      ((Component) myComponents.elementAt(i)).draw();
+    }
+    m_IO.flush();
   }//draw
 
+  /**
+   * Records a damaged region, merging it with the regions
+   * it touches.
+   *
+   * @param r the damaged Region in terminal coordinates.
+   */
+  void damage(Region r) {
+    if (r.isEmpty()) {
+      return;
+    }
+    boolean merged;
+    do {
+      merged = false;
+      for (int i = 0; i < m_Damage.size(); i++) {
+        Region d = (Region) m_Damage.elementAt(i);
+        if (d.touches(r)) {
+          r = d.union(r);
+          m_Damage.removeElementAt(i);
+          merged = true;
+          break;
+        }
+      }
+    } while (merged);
+    m_Damage.addElement(r);
+  }//damage
+
+  /**
+   * Redraws the damaged cells and flushes the output once.
+   * The terminal cursor is left where it was.
+   */
+  public void render() throws IOException {
+    if (m_Damage.isEmpty()) {
+      m_IO.flush();
+      return;
+    }
+    boolean autoflush = m_IO.isAutoflushing();
+    m_IO.setAutoflushing(false);
+    m_IO.storeCursor();
+    for (int i = 0; i < m_Damage.size(); i++) {
+      Region d = (Region) m_Damage.elementAt(i);
+      clearUncovered(d);
+      for (int j = 0; j < myComponents.size(); j++) {
+        Component c = (Component) myComponents.elementAt(j);
+        Point pos = c.getLocation();
+        Dimension dim = c.getDimension();
+        if (pos == null || dim == null) {
+          continue;
+        }
+        Region r = d.intersection(new Region(pos.getColumn(), pos.getRow(),
+            dim.getWidth(), dim.getHeight()));
+        if (!r.isEmpty() && !c.drawRegion(r.getColumn() - pos.getColumn(),
+            r.getRow() - pos.getRow(), r.getWidth(), r.getHeight())) {
+          //the component may save the cursor itself, so the
+          //saved position has to be the current one
+          m_IO.restoreCursor();
+          c.draw();
+        }
+      }
+    }
+    m_Damage.removeAllElements();
+    m_IO.restoreCursor();
+    m_IO.flush();
+    m_IO.setAutoflushing(autoflush);
+  }//render
+
+  /**
+   * Blanks the cells of a damaged region that no component covers
+   * (anymore), e.g. cells left behind by a shrinking label.
+   */
+  private void clearUncovered(Region d) throws IOException {
+    boolean[] covered = new boolean[d.getWidth()];
+    for (int row = d.getRow(); row < d.getRow() + d.getHeight(); row++) {
+      Arrays.fill(covered, false);
+      Region line = new Region(d.getColumn(), row, d.getWidth(), 1);
+      for (int j = 0; j < myComponents.size(); j++) {
+        Component c = (Component) myComponents.elementAt(j);
+        Point pos = c.getLocation();
+        Dimension dim = c.getDimension();
+        if (pos == null || dim == null) {
+          continue;
+        }
+        Region r = line.intersection(new Region(pos.getColumn(), pos.getRow(),
+            dim.getWidth(), dim.getHeight()));
+        for (int k = 0; k < r.getWidth(); k++) {
+          covered[r.getColumn() - d.getColumn() + k] = true;
+        }
+      }
+      int k = 0;
+      while (k < covered.length) {
+        if (covered[k]) {
+          k++;
+          continue;
+        }
+        int start = k;
+        while (k < covered.length && !covered[k]) {
+          k++;
+        }
+        char[] blank = new char[k - start];
+        Arrays.fill(blank, ' ');
+        m_IO.setCursor(row, d.getColumn() + start);
+        m_IO.write(new String(blank));
+      }
+    }
+  }//clearUncovered
 
 }//class Form
@@ -77,11 +77,25 @@ public class Label extends InertComponent {
    * @param text String displayed on the terminal.
    */
   public void setText(String text) {
+    String old = m_Content;
+    int oldwidth = (m_Dim == null) ? 0 : m_Dim.getWidth();
     //set member
     m_Content = text;
     //set Dimensions
     m_Dim = new Dimension((int) ColorHelper.getVisibleLength(text), 1);
-
+    if (old == null) {
+      return;
+    }
+    //damage the cells from the first difference on
+    int width = Math.max(oldwidth, m_Dim.getWidth());
+    if (isPlain(old) && isPlain(text)) {
+      int prefix = commonPrefix(old, text);
+      if (prefix < width) {
+        invalidate(prefix, 0, width - prefix, 1);
+      }
+    } else {
+      invalidate(0, 0, width, 1);
+    }
   }//setText
 
   /**
@@ -105,9 +119,20 @@ public class Label extends InertComponent {
       m_IO.setCursor(m_Position.getRow(), m_Position.getColumn());
       m_IO.write(m_Content);
       m_IO.restoreCursor();
-      m_IO.flush();
+      flush();
     }
   }//draw
 
+  protected String getRowText(int row) {
+    if (row == 0 && isPlain(m_Content)) {
+      return m_Content;
+    }
+    return null;
+  }//getRowText
+
+  private static boolean isPlain(String str) {
+    return str.indexOf(ColorHelper.INTERNAL_MARKER) < 0;
+  }//isPlain
+
 
 }//class Label
@@ -0,0 +1,585 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+
+import java.io.IOException;
+
+/**
+ * Class implementing a line editing engine for shells
+ * and toolkit components.<br>
+ * The line is kept in a gap buffer ({@link CharBuffer}), so
+ * typing and deleting at the cursor only moves the gap
+ * boundaries. The screen is updated from
+ * the first changed position only; keys that merely move the
+ * cursor produce a single cursor sequence. Typing at the end of
+ * the line echoes the character and does not allocate.<br>
+ * The editor works relative to the terminal cursor, which has
+ * to be placed at the start of the line before calling
+ * {@link #draw()}, or before the first key if the line is empty.<br>
+ * Supported keys (emacs style):
+ * <ul>
+ * <li>Ctrl-A/Home, Ctrl-E/End: start and end of line
+ * <li>Ctrl-B/Left, Ctrl-F/Right: one character back and forward
+ * <li>Alt-B/Ctrl-Left, Alt-F/Ctrl-Right: one word back and forward
+ * <li>Backspace, Delete: delete character before or at the cursor
+ * <li>Ctrl-W/Alt-Backspace, Alt-D: kill word before or after the cursor
+ * <li>Ctrl-U, Ctrl-K: kill to start or end of line
+ * <li>Ctrl-Y: yank the last kill, Alt-Y: replace it by the one before
+ * <li>Ctrl-T: transpose characters, Insert: toggle insert mode
+ * </ul>
+ * Consecutive kills are collected into one kill ring entry.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class LineEditor {
+
+  //Associations
+  private BasicTerminalIO m_IO;
+  //Members
+  private CharBuffer m_Buffer;
+  private int m_Cursor;
+  private int m_MaxLength;
+  private char m_Mask;
+  private boolean m_InsertMode;
+  private char[] m_Single;
+  //kill ring
+  private String[] m_Kills;
+  private int m_KillIndex;
+  private int m_KillCount;
+  private int m_Yanked;
+  private int m_YankStart;
+  private int m_LastAction;
+
+  /**
+   * Constructs a LineEditor for lines of unlimited length.
+   *
+   * @param io Object instance implementing the BasicTerminalIO interface.
+   */
+  public LineEditor(BasicTerminalIO io) {
+    this(io, UNLIMITED);
+  }//constructor
+
+  /**
+   * Constructs a LineEditor.
+   *
+   * @param io        Object instance implementing the BasicTerminalIO interface.
+   * @param maxlength int representing the maximum number of characters,
+   *                  or UNLIMITED.
+   */
+  public LineEditor(BasicTerminalIO io, int maxlength) {
+    m_IO = io;
+    m_MaxLength = maxlength;
+    m_Buffer = new CharBuffer();
+    m_Cursor = 0;
+    m_InsertMode = true;
+    m_Single = new char[1];
+    m_Kills = new String[KILLRING_SIZE];
+    m_LastAction = ACTION_NONE;
+  }//constructor
+
+  /**
+   * Accessor method for the number of characters in the line.
+   *
+   * @return int representing the length of the line.
+   */
+  public int length() {
+    return m_Buffer.size();
+  }//length
+
+  /**
+   * Accessor method for the cursor position within the line.
+   *
+   * @return int representing the cursor position.
+   */
+  public int getCursor() {
+    return m_Cursor;
+  }//getCursor
+
+  /**
+   * Accessor method for a character of the line.
+   *
+   * @param pos int representing the position.
+   * @return the character at the given position.
+   * @throws IndexOutOfBoundsException if the position is not within the line.
+   */
+  public char charAt(int pos) throws IndexOutOfBoundsException {
+    return m_Buffer.getCharAt(pos);
+  }//charAt
+
+  /**
+   * Accessor method for the line.
+   *
+   * @return String representing the line.
+   */
+  public String getValue() {
+    return m_Buffer.toString();
+  }//getValue
+
+  /**
+   * Accessor method for a part of the line.
+   *
+   * @param begin int representing the first position.
+   * @param end   int representing the position after the last character.
+   * @return String representing the part of the line.
+   */
+  public String getText(int begin, int end) {
+    return m_Buffer.substring(begin, end);
+  }//getText
+
+  /**
+   * Mutator method for a masking character, that is echoed instead
+   * of the typed characters (e.g. for passwords).
+   *
+   * @param mask the character to echo, or 0 to echo the typed characters.
+   */
+  public void setMask(char mask) {
+    m_Mask = mask;
+  }//setMask
+
+  public boolean isInInsertMode() {
+    return m_InsertMode;
+  }//isInInsertMode
+
+  public void setInsertMode(boolean b) {
+    m_InsertMode = b;
+  }//setInsertMode
+
+  /**
+   * Processes a key read from the terminal.
+   * Keys that are not editing keys are left to the caller;
+   * editing keys that cannot be applied ring the bell.
+   *
+   * @param key int representing a character or key as defined in BasicTerminalIO.
+   * @return true if the key was handled, false otherwise.
+   * @throws IOException if an I/O error occurs.
+   */
+  public boolean handleKey(int key) throws IOException {
+    int action = ACTION_NONE;
+    boolean done = true;
+    boolean flush = beginOutput();
+    try {
+      switch (key) {
+        case CTRL_A:
+        case BasicTerminalIO.COLORINIT:
+        case BasicTerminalIO.BEGIN:
+          done = moveTo(0);
+          break;
+        case CTRL_E:
+        case BasicTerminalIO.END:
+          done = moveTo(length());
+          break;
+        case CTRL_B:
+        case BasicTerminalIO.LEFT:
+          done = moveTo(m_Cursor - 1);
+          break;
+        case CTRL_F:
+        case BasicTerminalIO.RIGHT:
+          done = moveTo(m_Cursor + 1);
+          break;
+        case ALT_B:
+        case CTRL_LEFT:
+          done = moveTo(wordStart(m_Cursor));
+          break;
+        case ALT_F:
+        case CTRL_RIGHT:
+          done = moveTo(wordEnd(m_Cursor));
+          break;
+        case BasicTerminalIO.BACKSPACE:
+          done = replace(m_Cursor - 1, m_Cursor, null, 0, 0);
+          break;
+        case BasicTerminalIO.DELETE:
+          done = replace(m_Cursor, m_Cursor + 1, null, 0, 0);
+          break;
+        case CTRL_W:
+        case ALT_BACKSPACE:
+          done = kill(wordStart(m_Cursor), m_Cursor);
+          action = ACTION_KILL;
+          break;
+        case ALT_D:
+          done = kill(m_Cursor, wordEnd(m_Cursor));
+          action = ACTION_KILL;
+          break;
+        case CTRL_U:
+          done = kill(0, m_Cursor);
+          action = ACTION_KILL;
+          break;
+        case CTRL_K:
+          done = kill(m_Cursor, length());
+          action = ACTION_KILL;
+          break;
+        case CTRL_Y:
+          done = yank();
+          action = ACTION_YANK;
+          break;
+        case ALT_Y:
+          done = yankPop();
+          action = ACTION_YANK;
+          break;
+        case CTRL_T:
+          done = transpose();
+          break;
+        case BasicTerminalIO.INSERT:
+          m_InsertMode = !m_InsertMode;
+          break;
+        default:
+          if (key < 32 || key > 255) {
+            return false;
+          }
+          m_Single[0] = (char) key;
+          if (!m_InsertMode && m_Cursor < length()) {
+            done = replace(m_Cursor, m_Cursor + 1, m_Single, 0, 1);
+          } else {
+            done = replace(m_Cursor, m_Cursor, m_Single, 0, 1);
+          }
+      }
+      if (!done) {
+        m_IO.bell();
+      }
+      m_LastAction = action;
+      return true;
+    } finally {
+      endOutput(flush);
+    }
+  }//handleKey
+
+  /**
+   * Inserts a string at the cursor.
+   *
+   * @param str the String to insert.
+   * @return true if inserted, false if the maximum length would be exceeded.
+   * @throws IOException if an I/O error occurs.
+   */
+  public boolean insert(String str) throws IOException {
+    return replace(m_Cursor, m_Cursor, str);
+  }//insert
+
+  /**
+   * Replaces a part of the line by a string. The cursor is placed
+   * after the inserted string.
+   *
+   * @param begin int representing the first position to replace.
+   * @param end   int representing the position after the last character to replace.
+   * @param str   the String to insert.
+   * @return true if replaced, false if the positions are not within
+   *         the line or the maximum length would be exceeded.
+   * @throws IOException if an I/O error occurs.
+   */
+  public boolean replace(int begin, int end, String str) throws IOException {
+    char[] chars = str.toCharArray();
+    boolean flush = beginOutput();
+    try {
+      m_LastAction = ACTION_NONE;
+      return replace(begin, end, chars, 0, chars.length);
+    } finally {
+      endOutput(flush);
+    }
+  }//replace
+
+  /**
+   * Replaces the line. Only the part differing from the actual
+   * line is redrawn; the cursor is placed at the end.
+   *
+   * @param str the String representing the new line.
+   * @return true if replaced, false if the maximum length would be exceeded.
+   * @throws IOException if an I/O error occurs.
+   */
+  public boolean setValue(String str) throws IOException {
+    int common = 0;
+    int max = Math.min(str.length(), length());
+    while (common < max && str.charAt(common) == charAt(common)) {
+      common++;
+    }
+    return replace(common, length(), str.substring(common));
+  }//setValue
+
+  /**
+   * Clears the line on the screen and in the buffer.
+   *
+   * @throws IOException if an I/O error occurs.
+   */
+  public void clear() throws IOException {
+    setValue("");
+  }//clear
+
+  /**
+   * Moves the cursor.
+   *
+   * @param pos int representing the new position.
+   * @return true if moved, false if the position is not within the line.
+   * @throws IOException if an I/O error occurs.
+   */
+  public boolean setCursor(int pos) throws IOException {
+    boolean flush = beginOutput();
+    try {
+      return moveTo(pos);
+    } finally {
+      endOutput(flush);
+    }
+  }//setCursor
+
+  /**
+   * Empties the buffer without any screen output, e.g. when
+   * the line was entered and the terminal is on a new line.
+   */
+  public void reset() {
+    m_Buffer.clear();
+    m_Cursor = 0;
+    m_LastAction = ACTION_NONE;
+  }//reset
+
+  /**
+   * Draws the line. The terminal cursor has to be placed at the
+   * start of the line, it is left at the editors cursor.
+   *
+   * @throws IOException if an I/O error occurs.
+   */
+  public void draw() throws IOException {
+    boolean flush = beginOutput();
+    try {
+      writeFrom(0, 0);
+    } finally {
+      endOutput(flush);
+    }
+  }//draw
+
+  /**
+   * Removes the line from the screen, leaving the terminal cursor
+   * at the start of the line. The buffer is not changed, so the line
+   * may be drawn again.
+   *
+   * @throws IOException if an I/O error occurs.
+   */
+  public void erase() throws IOException {
+    boolean flush = beginOutput();
+    try {
+      if (m_Cursor > 0) {
+        m_IO.moveLeft(m_Cursor);
+      }
+      m_IO.eraseToEndOfLine();
+    } finally {
+      endOutput(flush);
+    }
+  }//erase
+
+  private boolean moveTo(int pos) throws IOException {
+    if (pos < 0 || pos > length()) {
+      return false;
+    }
+    if (pos < m_Cursor) {
+      m_IO.moveLeft(m_Cursor - pos);
+    } else if (pos > m_Cursor) {
+      m_IO.moveRight(pos - m_Cursor);
+    }
+    m_Cursor = pos;
+    return true;
+  }//moveTo
+
+  /**
+   * Replaces characters in the buffer and redraws from the
+   * first changed position.
+   */
+  private boolean replace(int begin, int end, char[] chars, int off, int len)
+      throws IOException {
+    int oldlength = length();
+    if (begin < 0 || end > oldlength || begin > end) {
+      return false;
+    }
+    if (m_MaxLength != UNLIMITED && oldlength - (end - begin) + len > m_MaxLength) {
+      return false;
+    }
+    moveTo(begin);
+    m_Buffer.remove(begin, end);
+    if (len > 0) {
+      m_Buffer.insertCharsAt(begin, chars, off, len);
+    }
+    m_Cursor = begin + len;
+    if (end == oldlength && len >= end - begin) {
+      //the end of the line grew, just echo
+      for (int i = 0; i < len; i++) {
+        echo(chars[off + i]);
+      }
+    } else {
+      writeFrom(begin, oldlength - begin);
+    }
+    return true;
+  }//replace
+
+  /**
+   * Writes the line from a position with the terminal cursor at
+   * that position, blanks the rest of the previously drawn
+   * line and moves back to the editors cursor.
+   */
+  private void writeFrom(int pos, int drawn) throws IOException {
+    int length = length();
+    for (int i = pos; i < length; i++) {
+      echo(charAt(i));
+    }
+    int blanks = drawn - (length - pos);
+    for (int i = 0; i < blanks; i++) {
+      m_IO.write(' ');
+    }
+    int back = length + Math.max(0, blanks) - m_Cursor;
+    if (back > 0) {
+      m_IO.moveLeft(back);
+    }
+  }//writeFrom
+
+  private void echo(char ch) throws IOException {
+    m_IO.write((m_Mask != 0) ? m_Mask : ch);
+  }//echo
+
+  private boolean kill(int begin, int end) throws IOException {
+    if (begin >= end) {
+      return false;
+    }
+    String killed = getText(begin, end);
+    if (m_LastAction == ACTION_KILL && m_KillCount > 0) {
+      //consecutive kills form a single entry
+      String last = m_Kills[m_KillIndex];
+      m_Kills[m_KillIndex] = (begin < m_Cursor) ? killed + last : last + killed;
+    } else {
+      m_KillIndex = (m_KillIndex + 1) % KILLRING_SIZE;
+      m_Kills[m_KillIndex] = killed;
+      m_KillCount = Math.min(m_KillCount + 1, KILLRING_SIZE);
+    }
+    return replace(begin, end, null, 0, 0);
+  }//kill
+
+  private boolean yank() throws IOException {
+    if (m_KillCount == 0) {
+      return false;
+    }
+    m_Yanked = m_KillIndex;
+    return insertYank();
+  }//yank
+
+  private boolean yankPop() throws IOException {
+    if (m_LastAction != ACTION_YANK || m_KillCount < 2) {
+      return false;
+    }
+    //step back through the entries, the newest follows the oldest
+    int age = (m_KillIndex - m_Yanked + KILLRING_SIZE) % KILLRING_SIZE;
+    age = (age + 1) % m_KillCount;
+    m_Yanked = (m_KillIndex - age + KILLRING_SIZE) % KILLRING_SIZE;
+    return replace(m_YankStart, m_Cursor, null, 0, 0) && insertYank();
+  }//yankPop
+
+  private boolean insertYank() throws IOException {
+    char[] chars = m_Kills[m_Yanked].toCharArray();
+    m_YankStart = m_Cursor;
+    return replace(m_Cursor, m_Cursor, chars, 0, chars.length);
+  }//insertYank
+
+  private boolean transpose() throws IOException {
+    int length = length();
+    if (length < 2 || m_Cursor == 0) {
+      return false;
+    }
+    //at the end the two characters before the cursor are swapped
+    int pos = (m_Cursor == length) ? m_Cursor - 1 : m_Cursor;
+    char[] chars = new char[]{charAt(pos), charAt(pos - 1)};
+    return replace(pos - 1, pos + 1, chars, 0, 2);
+  }//transpose
+
+  private int wordStart(int pos) {
+    while (pos > 0 && !isWordChar(charAt(pos - 1))) {
+      pos--;
+    }
+    while (pos > 0 && isWordChar(charAt(pos - 1))) {
+      pos--;
+    }
+    return pos;
+  }//wordStart
+
+  private int wordEnd(int pos) {
+    int length = length();
+    while (pos < length && !isWordChar(charAt(pos))) {
+      pos++;
+    }
+    while (pos < length && isWordChar(charAt(pos))) {
+      pos++;
+    }
+    return pos;
+  }//wordEnd
+
+  private static boolean isWordChar(char ch) {
+    return Character.isLetterOrDigit(ch);
+  }//isWordChar
+
+  private boolean beginOutput() {
+    boolean flush = m_IO.isAutoflushing();
+    if (flush) {
+      m_IO.setAutoflushing(false);
+    }
+    return flush;
+  }//beginOutput
+
+  private void endOutput(boolean flush) throws IOException {
+    if (flush) {
+      m_IO.setAutoflushing(true);
+      m_IO.flush();
+    }
+  }//endOutput
+
+  /**
+   * Defines an unlimited line length.
+   */
+  public static final int UNLIMITED = -1;
+
+  private static final int KILLRING_SIZE = 16;
+
+  private static final int ACTION_NONE = 0;
+  private static final int ACTION_KILL = 1;
+  private static final int ACTION_YANK = 2;
+
+  private static final int CTRL_A = 1;
+  private static final int CTRL_B = 2;
+  private static final int CTRL_E = 5;
+  private static final int CTRL_F = 6;
+  private static final int CTRL_K = 11;
+  private static final int CTRL_T = 20;
+  private static final int CTRL_U = 21;
+  private static final int CTRL_W = 23;
+  private static final int CTRL_Y = 25;
+  private static final int ALT_B = 'b' | BasicTerminalIO.ALT;
+  private static final int ALT_D = 'd' | BasicTerminalIO.ALT;
+  private static final int ALT_F = 'f' | BasicTerminalIO.ALT;
+  private static final int ALT_Y = 'y' | BasicTerminalIO.ALT;
+  private static final int ALT_BACKSPACE = BasicTerminalIO.BACKSPACE | BasicTerminalIO.ALT;
+  private static final int CTRL_LEFT = BasicTerminalIO.LEFT | BasicTerminalIO.CTRL;
+  private static final int CTRL_RIGHT = BasicTerminalIO.RIGHT | BasicTerminalIO.CTRL;
+
+}//class LineEditor
@@ -0,0 +1,274 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import java.io.IOException;
+
+
+/**
+ * Class implementing a sparse line index over a pager source.<br>
+ * Only the start of every 64th line is recorded, and the
+ * source is only scanned as far as a lookup requires, so that
+ * huge or still growing sources can be paged right away.
+ * Lines are terminated by LF, CR LF or a sole CR.<br>
+ * Sources that are still growing are indexed as far as they
+ * go, the rest is indexed on later lookups.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+class LineIndex {
+
+  //Associations
+  private PagerSource m_Source;
+  //Members
+  private long[] m_Checkpoints;
+  private int m_CheckpointCount;
+  private long m_Lines;
+  private long m_LastStart;
+  private long m_Scanned;
+  private boolean m_Complete;
+  private byte[] m_ScanBuffer;
+  private byte[] m_Window;
+  private long m_WindowStart;
+  private int m_WindowLength;
+
+  /**
+   * Constructs an index over the given source.
+   *
+   * @param source the PagerSource to be indexed.
+   */
+  LineIndex(PagerSource source) {
+    this(source, 0);
+  }//constructor
+
+  /**
+   * Constructs an index over the given source, starting
+   * at the given position, which is taken as start of the
+   * first line.
+   *
+   * @param source the PagerSource to be indexed.
+   * @param start  the position where indexing starts.
+   */
+  LineIndex(PagerSource source, long start) {
+    m_Source = source;
+    m_Checkpoints = new long[64];
+    m_Checkpoints[0] = start;
+    m_CheckpointCount = 1;
+    m_LastStart = start;
+    m_Scanned = start;
+    m_WindowStart = start;
+    m_ScanBuffer = new byte[SCAN_SIZE];
+    m_Window = new byte[WINDOW_SIZE];
+  }//constructor
+
+  /**
+   * Returns the source this index is built on.
+   *
+   * @return the indexed PagerSource.
+   */
+  PagerSource getSource() {
+    return m_Source;
+  }//getSource
+
+  /**
+   * Returns the position where indexing started, i.e.
+   * the start of the first line.
+   *
+   * @return the offset of the first byte of the first line.
+   */
+  long getFirstLineStart() {
+    return m_Checkpoints[0];
+  }//getFirstLineStart
+
+  /**
+   * Returns the byte at the given position, reading through
+   * a small window so that walking the text is cheap.
+   *
+   * @param pos the position of the byte.
+   * @return the byte as unsigned value, or -1 at the end of the data.
+   */
+  int byteAt(long pos) throws IOException {
+    if (pos < m_WindowStart || pos >= m_WindowStart + m_WindowLength) {
+      int n = m_Source.read(pos, m_Window, 0, m_Window.length);
+      if (n <= 0) {
+        return -1;
+      }
+      m_WindowStart = pos;
+      m_WindowLength = n;
+    }
+    return m_Window[(int) (pos - m_WindowStart)] & 0xff;
+  }//byteAt
+
+  /**
+   * Tests if the whole source has been indexed.
+   *
+   * @return true if complete, false otherwise.
+   */
+  boolean isComplete() {
+    return m_Complete;
+  }//isComplete
+
+  /**
+   * Returns the number of lines of the source.
+   *
+   * @return the number of lines, or -1 if the source has
+   *         not been indexed completely yet.
+   */
+  long getLineCount() {
+    if (!m_Complete) {
+      return -1;
+    }
+    return (m_LastStart < m_Scanned) ? m_Lines + 1 : m_Lines;
+  }//getLineCount
+
+  /**
+   * Returns the number of the line containing the given offset.
+   * Offsets beyond the end of the data are mapped to the last line.
+   *
+   * @param offset the offset in the source.
+   * @return the number of the line (starting at 0).
+   */
+  long getLineOfOffset(long offset) throws IOException {
+    scan(offset, Long.MAX_VALUE);
+    //binary search the last checkpoint not after offset
+    int lo = 0;
+    int hi = m_CheckpointCount - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (m_Checkpoints[mid] <= offset) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    long line = (long) lo * INTERVAL;
+    long pos = m_Checkpoints[lo];
+    while (true) {
+      long next = nextLine(pos);
+      if (next == -1 || next > offset) {
+        return line;
+      }
+      line++;
+      pos = next;
+    }
+  }//getLineOfOffset
+
+  /**
+   * Returns the offset where the given line starts.
+   * Lines beyond the end of the data are mapped to the last line.
+   *
+   * @param line the number of the line (starting at 0).
+   * @return the offset of the first byte of the line.
+   */
+  long getLineStart(long line) throws IOException {
+    scan(Long.MAX_VALUE, line);
+    if (line > m_Lines) {
+      line = m_Lines;
+    }
+    long pos = m_Checkpoints[(int) (line / INTERVAL)];
+    for (int i = (int) (line % INTERVAL); i > 0; i--) {
+      pos = nextLine(pos);
+    }
+    return pos;
+  }//getLineStart
+
+  /**
+   * Returns the offset of the line following the line
+   * containing the given position.
+   *
+   * @param pos a position in the source.
+   * @return the start of the next line, or -1 if there is none.
+   */
+  long nextLine(long pos) throws IOException {
+    while (true) {
+      int b = byteAt(pos++);
+      if (b == -1) {
+        return -1;
+      } else if (b == LF) {
+        return pos;
+      } else if (b == CR) {
+        return (byteAt(pos) == LF) ? pos + 1 : pos;
+      }
+    }
+  }//nextLine
+
+  /**
+   * Scans the source in chunks until the given offset and
+   * line are indexed, or the data ends.
+   */
+  private void scan(long offset, long line) throws IOException {
+    byte[] buf = m_ScanBuffer;
+    while (!m_Complete && (m_Scanned <= offset && m_Lines < line)) {
+      boolean complete = m_Source.isComplete();
+      int n = m_Source.read(m_Scanned, buf, 0, buf.length);
+      if (n < 0) {
+        //a growing source is indexed further on the next lookup
+        m_Complete = complete;
+        break;
+      }
+      for (int i = 0; i < n; i++) {
+        byte b = buf[i];
+        if (b == LF) {
+          addLine(m_Scanned + i + 1);
+        } else if (b == CR) {
+          int next = (i + 1 < n) ? buf[i + 1] : byteAt(m_Scanned + n);
+          if (next != LF) {
+            addLine(m_Scanned + i + 1);
+          }
+        }
+      }
+      m_Scanned += n;
+    }
+  }//scan
+
+  private void addLine(long start) {
+    m_Lines++;
+    m_LastStart = start;
+    if (m_Lines % INTERVAL == 0) {
+      if (m_CheckpointCount == m_Checkpoints.length) {
+        long[] cps = new long[m_CheckpointCount * 2];
+        System.arraycopy(m_Checkpoints, 0, cps, 0, m_CheckpointCount);
+        m_Checkpoints = cps;
+      }
+      m_Checkpoints[m_CheckpointCount++] = start;
+    }
+  }//addLine
+
+  private static final int INTERVAL = 64;
+  private static final int SCAN_SIZE = 65536;
+  private static final int WINDOW_SIZE = 4096;
+  private static final int LF = 10;
+  private static final int CR = 13;
+
+}//class LineIndex
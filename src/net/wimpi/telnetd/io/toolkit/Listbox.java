@@ -0,0 +1,485 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * Class implementing a scrolling list for large option sets.<br>
+ * Only the visible window of the list is drawn, the last row of
+ * the component shows the type-ahead filter. Typed characters
+ * narrow the list to the options containing the filter (case
+ * insensitive), using the lowercase copies kept with the options.
+ * A filter keystroke only checks the options that matched before,
+ * a backspace restores the previous matches without any search.
+ * <p/>
+ * Keys: up/down move the selection, page up/page down move it a page,
+ * begin/end select the first/last option, backspace removes the last
+ * filter character, escape clears the filter, enter or tabulator leave
+ * the component. The component has to be located before it is drawn.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class Listbox extends ActiveComponent {
+
+  //Members
+  private String[] m_Options;
+  private String[] m_Lowercase;
+  private int m_Size;
+  private int[] m_Matches;
+  private StringBuffer m_Filter;
+  private Vector m_FilterHistory;
+  private String m_Prompt = "Find: ";
+  private int m_Cursor;
+  private int m_Top;
+
+  /**
+   * Constructs a Listbox instance.
+   *
+   * @param io     Object instance implementing the BasicTerminalIO interface.
+   * @param name   String representing this instances name.
+   * @param width  int representing the number of columns.
+   * @param height int representing the number of rows, including the filter row.
+   */
+  public Listbox(BasicTerminalIO io, String name, int width, int height) {
+    super(io, name);
+    m_Options = new String[16];
+    m_Lowercase = new String[16];
+    m_Filter = new StringBuffer();
+    m_FilterHistory = new Vector(10, 5);
+    setDimension(new Dimension(width, Math.max(2, height)));
+  }//constructor
+
+  /**
+   * Method to add an option to the list.
+   * An active filter is applied to the new option.
+   *
+   * @param str String representing the option.
+   */
+  public void addOption(String str) {
+    ensureCapacity(m_Size + 1);
+    m_Options[m_Size] = str;
+    m_Lowercase[m_Size] = str.toLowerCase();
+    m_Size++;
+    if (m_Filter.length() > 0) {
+      refilter();
+    }
+  }//addOption
+
+  /**
+   * Method to add a set of options to the list at once.
+   *
+   * @param strs String[] representing the options.
+   */
+  public void addOptions(String[] strs) {
+    ensureCapacity(m_Size + strs.length);
+    for (int i = 0; i < strs.length; i++) {
+      m_Options[m_Size] = strs[i];
+      m_Lowercase[m_Size] = strs[i].toLowerCase();
+      m_Size++;
+    }
+    if (m_Filter.length() > 0) {
+      refilter();
+    }
+  }//addOptions
+
+  /**
+   * Method to remove all options and the filter.
+   */
+  public void removeAllOptions() {
+    Arrays.fill(m_Options, 0, m_Size, null);
+    Arrays.fill(m_Lowercase, 0, m_Size, null);
+    m_Size = 0;
+    m_Matches = null;
+    m_Filter.setLength(0);
+    m_FilterHistory.removeAllElements();
+    m_Cursor = 0;
+    m_Top = 0;
+  }//removeAllOptions
+
+  /**
+   * Accessor method for an option of this list.
+   * Returns null if index is corrupt.
+   *
+   * @param index int representing the options index.
+   * @return String that represents the option.
+   */
+  public String getOption(int index) {
+    if (index < 0 || index >= m_Size) {
+      return null;
+    }
+    return m_Options[index];
+  }//getOption
+
+  /**
+   * Accessor method for the number of options.
+   *
+   * @return int representing the number of options.
+   */
+  public int getOptionCount() {
+    return m_Size;
+  }//getOptionCount
+
+  /**
+   * Accessor method for the number of options
+   * matching the filter.
+   *
+   * @return int representing the number of matching options.
+   */
+  public int getMatchCount() {
+    return (m_Matches == null) ? m_Size : m_Matches.length;
+  }//getMatchCount
+
+  /**
+   * Accessor method to retrieve the selected option.
+   * Returns -1 if no option matches.
+   *
+   * @return int representing the index of the selected option.
+   */
+  public int getSelected() {
+    if (m_Cursor >= getMatchCount()) {
+      return -1;
+    }
+    return getMatch(m_Cursor);
+  }//getSelected
+
+  /**
+   * Mutator method to set the selected option programatically.
+   * Does nothing if the index is corrupt or the option does not
+   * match the filter.
+   *
+   * @param index int representing an options index.
+   */
+  public void setSelected(int index) throws IOException {
+    int match = findMatch(index);
+    if (match >= 0) {
+      moveCursor(match);
+      flush();
+    }
+  }//setSelected
+
+  /**
+   * Accessor method for the filter.
+   *
+   * @return String representing the filter.
+   */
+  public String getFilter() {
+    return m_Filter.toString();
+  }//getFilter
+
+  /**
+   * Mutator method for the filter.
+   *
+   * @param str String representing the filter.
+   */
+  public void setFilter(String str) throws IOException {
+    m_Filter.setLength(0);
+    m_Filter.append(str.toLowerCase());
+    refilter();
+    repaint(0, m_Dim.getHeight());
+    flush();
+  }//setFilter
+
+  /**
+   * Mutator method for the prompt shown in front of the filter.
+   *
+   * @param str String representing the prompt.
+   */
+  public void setPrompt(String str) {
+    m_Prompt = str;
+  }//setPrompt
+
+  /**
+   * Method that will make the list active,
+   * reading and processing input.
+   */
+  public void run() throws IOException {
+    int in = 0;
+    draw();
+    update();
+    do {
+      //get next key
+      in = m_IO.read();
+      boolean done = true;
+      switch (in) {
+        case BasicTerminalIO.UP:
+          done = moveCursor(m_Cursor - 1);
+          break;
+        case BasicTerminalIO.DOWN:
+          done = moveCursor(m_Cursor + 1);
+          break;
+        case BasicTerminalIO.PAGEUP:
+          done = moveCursor(Math.max(0, m_Cursor - getVisibleRows()));
+          break;
+        case BasicTerminalIO.PAGEDOWN:
+          done = moveCursor(Math.min(getMatchCount() - 1, m_Cursor + getVisibleRows()));
+          break;
+        case BasicTerminalIO.BEGIN:
+          done = moveCursor(0);
+          break;
+        case BasicTerminalIO.END:
+          done = moveCursor(getMatchCount() - 1);
+          break;
+        case BasicTerminalIO.BACKSPACE:
+        case BasicTerminalIO.DELETE:
+          done = shortenFilter();
+          break;
+        case BasicTerminalIO.ESCAPE:
+          done = m_Filter.length() > 0;
+          if (done) {
+            m_Filter.setLength(0);
+            refilter();
+            repaint(0, m_Dim.getHeight());
+          }
+          break;
+        case BasicTerminalIO.TABULATOR:
+        case BasicTerminalIO.ENTER:
+          in = -1;
+          break;
+        default:
+          done = in >= 32 && in <= 255 && extendFilter((char) in);
+      }
+      if (!done) {
+        m_IO.bell();
+      }
+      positionCursor();
+      update();
+    } while (in != -1);
+  }//run
+
+  /**
+   * Method that draws the component.
+   */
+  public void draw() throws IOException {
+    drawRegion(0, 0, m_Dim.getWidth(), m_Dim.getHeight());
+    positionCursor();
+    flush();
+  }//draw
+
+  protected String getRowText(int row) {
+    int visible = getVisibleRows();
+    if (row < visible) {
+      int idx = m_Top + row;
+      if (idx >= getMatchCount()) {
+        return "";
+      }
+      return ((idx == m_Cursor) ? "> " : "  ") + m_Options[getMatch(idx)];
+    } else if (row == visible) {
+      StringBuffer sbuf = new StringBuffer(m_Dim.getWidth());
+      sbuf.append(m_Prompt).append(m_Filter);
+      String count = " " + getMatchCount() + "/" + m_Size;
+      int pad = m_Dim.getWidth() - sbuf.length() - count.length();
+      if (pad >= 0) {
+        for (int i = 0; i < pad; i++) {
+          sbuf.append(' ');
+        }
+        sbuf.append(count);
+      }
+      return sbuf.toString();
+    }
+    return "";
+  }//getRowText
+
+  private int getVisibleRows() {
+    return m_Dim.getHeight() - 1;
+  }//getVisibleRows
+
+  private int getMatch(int idx) {
+    return (m_Matches == null) ? idx : m_Matches[idx];
+  }//getMatch
+
+  /**
+   * Returns the position of an option within the matches,
+   * or -1 if it does not match.
+   */
+  private int findMatch(int index) {
+    if (index < 0 || index >= m_Size) {
+      return -1;
+    }
+    if (m_Matches == null) {
+      return index;
+    }
+    int idx = Arrays.binarySearch(m_Matches, index);
+    return (idx < 0) ? -1 : idx;
+  }//findMatch
+
+  /**
+   * Moves the selection, scrolling the window if required.
+   * Repaints the two changed rows, or the window if it scrolled.
+   */
+  private boolean moveCursor(int idx) throws IOException {
+    if (idx < 0 || idx >= getMatchCount() || idx == m_Cursor) {
+      return false;
+    }
+    int old = m_Cursor;
+    m_Cursor = idx;
+    if (scrollToCursor()) {
+      repaint(0, getVisibleRows());
+    } else {
+      repaint(old - m_Top, 1);
+      repaint(m_Cursor - m_Top, 1);
+    }
+    return true;
+  }//moveCursor
+
+  private boolean scrollToCursor() {
+    int visible = getVisibleRows();
+    int top = m_Top;
+    if (m_Cursor < top) {
+      top = m_Cursor;
+    } else if (m_Cursor >= top + visible) {
+      top = m_Cursor - visible + 1;
+    }
+    top = Math.max(0, Math.min(top, getMatchCount() - visible));
+    if (top == m_Top) {
+      return false;
+    }
+    m_Top = top;
+    return true;
+  }//scrollToCursor
+
+  /**
+   * Narrows the matches to the options containing the
+   * extended filter, which can only be options that
+   * matched before.
+   */
+  private boolean extendFilter(char ch) throws IOException {
+    String filter = m_Filter.toString() + Character.toLowerCase(ch);
+    int count = getMatchCount();
+    int[] matches = new int[count];
+    int n = 0;
+    for (int i = 0; i < count; i++) {
+      int idx = getMatch(i);
+      if (m_Lowercase[idx].indexOf(filter) >= 0) {
+        matches[n++] = idx;
+      }
+    }
+    if (n == 0) {
+      return false;
+    }
+    int[] narrowed = new int[n];
+    System.arraycopy(matches, 0, narrowed, 0, n);
+    int selected = getSelected();
+    m_FilterHistory.addElement(m_Matches);
+    m_Filter.append(filter.charAt(filter.length() - 1));
+    m_Matches = narrowed;
+    filterChanged(selected);
+    repaint(0, m_Dim.getHeight());
+    return true;
+  }//extendFilter
+
+  private boolean shortenFilter() throws IOException {
+    if (m_Filter.length() == 0) {
+      return false;
+    }
+    m_Filter.setLength(m_Filter.length() - 1);
+    if (m_FilterHistory.isEmpty()) {
+      refilter();
+    } else {
+      int selected = getSelected();
+      m_Matches = (int[]) m_FilterHistory.lastElement();
+      m_FilterHistory.removeElementAt(m_FilterHistory.size() - 1);
+      filterChanged(selected);
+    }
+    repaint(0, m_Dim.getHeight());
+    return true;
+  }//shortenFilter
+
+  /**
+   * Computes the matches of the filter from scratch.
+   */
+  private void refilter() {
+    int selected = getSelected();
+    m_FilterHistory.removeAllElements();
+    if (m_Filter.length() == 0) {
+      m_Matches = null;
+    } else {
+      String filter = m_Filter.toString();
+      int[] matches = new int[m_Size];
+      int n = 0;
+      for (int i = 0; i < m_Size; i++) {
+        if (m_Lowercase[i].indexOf(filter) >= 0) {
+          matches[n++] = i;
+        }
+      }
+      m_Matches = new int[n];
+      System.arraycopy(matches, 0, m_Matches, 0, n);
+    }
+    filterChanged(selected);
+  }//refilter
+
+  /**
+   * Keeps the selected option if it still matches.
+   */
+  private void filterChanged(int selected) {
+    int idx = findMatch(selected);
+    m_Cursor = (idx < 0) ? 0 : idx;
+    scrollToCursor();
+  }//filterChanged
+
+  /**
+   * Redraws rows of the list; within a form they are damaged
+   * instead and drawn by the next render pass.
+   */
+  private void repaint(int row, int count) throws IOException {
+    if (invalidate(0, row, m_Dim.getWidth(), count) || m_Position == null) {
+      return;
+    }
+    drawRegion(0, row, m_Dim.getWidth(), count);
+  }//repaint
+
+  private void positionCursor() throws IOException {
+    if (m_Position != null) {
+      int col = Math.min(m_Prompt.length() + m_Filter.length(), m_Dim.getWidth() - 1);
+      m_IO.setCursor(m_Position.getRow() + getVisibleRows(), m_Position.getColumn() + col);
+    }
+  }//positionCursor
+
+  private void ensureCapacity(int size) {
+    if (size > m_Options.length) {
+      int len = Math.max(size, m_Options.length * 2);
+      String[] options = new String[len];
+      String[] lowercase = new String[len];
+      System.arraycopy(m_Options, 0, options, 0, m_Size);
+      System.arraycopy(m_Lowercase, 0, lowercase, 0, m_Size);
+      m_Options = options;
+      m_Lowercase = lowercase;
+    }
+  }//ensureCapacity
+
+}//class Listbox
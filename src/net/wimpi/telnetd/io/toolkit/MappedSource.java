@@ -0,0 +1,137 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Class implementing a pager source over a memory mapped file.<br>
+ * The file is mapped in regions on demand, so that only the parts
+ * actually paged or searched are brought into memory, and files
+ * larger than a single mapping can be paged. Only a few regions
+ * are kept mapped; the others are left to the garbage collector,
+ * which releases their mappings.<br>
+ * The length of the file is taken when opening it. A file that is
+ * truncated meanwhile can not be read from its mappings anymore,
+ * so its size is checked before every read.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class MappedSource implements PagerSource {
+
+  //Members
+  private RandomAccessFile m_File;
+  private FileChannel m_Channel;
+  private long m_Length;
+  private MappedByteBuffer[] m_Regions;
+  private int m_Mapped;
+
+  /**
+   * Constructs a source mapping the given file.
+   * The length of the file is taken when opening it.
+   *
+   * @param file the file to be paged.
+   * @throws IOException if the file cannot be opened.
+   */
+  public MappedSource(File file) throws IOException {
+    m_File = new RandomAccessFile(file, "r");
+    m_Channel = m_File.getChannel();
+    m_Length = m_Channel.size();
+    m_Regions = new MappedByteBuffer[(int) ((m_Length + REGION_SIZE - 1) / REGION_SIZE)];
+  }//constructor
+
+  public int read(long pos, byte[] b, int off, int len) throws IOException {
+    if (pos >= m_Length) {
+      return -1;
+    }
+    int idx = (int) (pos / REGION_SIZE);
+    len = (int) Math.min(len, Math.min((long) (idx + 1) * REGION_SIZE, m_Length) - pos);
+    //touching a mapping beyond the end of the file is fatal
+    if (m_Channel.size() < pos + len) {
+      throw new IOException("File truncated.");
+    }
+    ByteBuffer region = getRegion(idx).duplicate();
+    region.position((int) (pos % REGION_SIZE));
+    try {
+      region.get(b, off, len);
+    } catch (InternalError err) {
+      //truncated right after the check
+      throw new IOException("File truncated.");
+    }
+    return len;
+  }//read
+
+  public long length() {
+    return m_Length;
+  }//length
+
+  public boolean isComplete() {
+    return true;
+  }//isComplete
+
+  public synchronized void close() throws IOException {
+    //mappings are released by the garbage collector
+    m_Regions = new MappedByteBuffer[0];
+    m_File.close();
+  }//close
+
+  private synchronized MappedByteBuffer getRegion(int idx) throws IOException {
+    if (idx >= m_Regions.length) {
+      throw new IOException("Source closed.");
+    }
+    if (m_Regions[idx] == null) {
+      if (m_Mapped == MAX_MAPPED) {
+        for (int i = 0; i < m_Regions.length; i++) {
+          m_Regions[i] = null;
+        }
+        m_Mapped = 0;
+      }
+      long start = (long) idx * REGION_SIZE;
+      m_Regions[idx] = m_Channel.map(FileChannel.MapMode.READ_ONLY,
+          start, Math.min(REGION_SIZE, m_Length - start));
+      m_Mapped++;
+    }
+    return m_Regions[idx];
+  }//getRegion
+
+  private static final int REGION_SIZE = 1 << 26;
+  private static final int MAX_MAPPED = 4;
+
+}//class MappedSource
@@ -33,37 +33,73 @@
 package net.wimpi.telnetd.io.toolkit;
 
 import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.io.Repaintable;
 import net.wimpi.telnetd.io.terminal.ColorHelper;
+import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.net.ResizeListener;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
-import java.util.Vector;
 
 
 /**
- * Class implementing a pager.
+ * Class implementing a pager.<br>
+ * The pager works on a PagerSource and keeps only the
+ * visible page in memory: rows are rendered from byte offsets,
+ * using a sparse line index that is extended only as far as
+ * the paging requires. This way even huge files or streams can
+ * be paged right away.<br>
+ * While paging, the pager listens for terminal resizes
+ * and re-renders the page to the settled geometry, re-wrapping
+ * only the line at the top of the page.<br>
+ * Besides paging, the pager supports searching with <tt>/</tt>,
+ * <tt>n</tt> and <tt>N</tt>, and jumping with <tt>g</tt>, <tt>G</tt>
+ * and <tt>:</tt>line. Searches run in the background, so the first
+ * hit is shown while the rest of the source is still being scanned.<br>
+ * A RingSource can be followed like with <tt>tail -f</tt>: appended
+ * rows are scrolled in as they arrive, and any key pauses following
+ * to page the data retained meanwhile. The rows are drawn through the
+ * connection's UpdateScheduler, so they do not interleave with other
+ * background repaints.<br>
+ * Text is decoded as UTF-8; bytes that are not part of a valid
+ * UTF-8 character are shown as ISO-8859-1 characters.
  *
  * @author Dieter Wimberger
  * @version 2.0 (13/03/2005);
  */
-public class Pager {
+public class Pager implements ResizeListener, Repaintable {
 
   //Associations
   private BasicTerminalIO m_IO;
   //Members
-  private StringReader m_Source;
+  private LineIndex m_Index;
   private String m_Prompt;
   private int m_StopKey;
-  private Vector m_Chunks;
-  private int m_ChunkPos;
-  private int m_LastNewChunk;
+  private long m_Top;
+  private long m_Bottom;
+  private boolean m_RowOpen;
   private boolean m_EOS;
   private int m_TermRows;
   private int m_TermCols;
   private boolean m_NoPrompt;
   private boolean m_ShowPos;
   private Statusbar m_Status;
+  private boolean m_Paging;
+  private SourceSearch m_Search;
+  private long m_Match;
+  private long m_MatchEnd;
+  private String m_Message;
+  private InputFilter m_InputFilter;
+  private RingSource m_Ring;
+  private String m_FollowPrompt;
+  private volatile boolean m_Following;
+  private Thread m_Follower;
+  private long m_Tail;
+  private long[] m_Rows;
+  private int m_RowFirst;
+  private int m_RowCount;
 
   /**
    * Constructor method
@@ -71,6 +107,7 @@ public class Pager {
   public Pager(BasicTerminalIO io) {
     m_IO = io;
     setPrompt(DEFAULT_PROMPT);
+    setFollowPrompt(DEFAULT_FOLLOW_PROMPT);
     setStopKey(DEFAULT_STOPKEY);
     m_TermRows = m_IO.getRows();
     m_TermCols = m_IO.getColumns();
@@ -89,9 +126,11 @@ public class Pager {
   public Pager(BasicTerminalIO io, String prompt, char stopKey) {
     m_IO = io;
     setPrompt(prompt);
+    setFollowPrompt(DEFAULT_FOLLOW_PROMPT);
     m_StopKey = stopKey;
     m_TermRows = m_IO.getRows();
     m_TermCols = m_IO.getColumns();
+    m_Status = new Statusbar(m_IO, "Pager Status");
     m_Status.setAlignment(Statusbar.ALIGN_LEFT);
   }//constructor
 
@@ -113,9 +152,43 @@ public class Pager {
     m_Prompt = prompt;
   }//setPrompt
 
-  private void updateStatus() {
-    if (m_ShowPos) {
-      m_Status.setStatusText(m_Prompt + " [" + (m_ChunkPos + 1) + "/" + m_Chunks.size() + "]");
+  /**
+   * Mutator method for the prompt shown while following.
+   *
+   * @param prompt String that represents the new prompt.
+   */
+  public void setFollowPrompt(String prompt) {
+    m_FollowPrompt = prompt;
+  }//setFollowPrompt
+
+  /**
+   * Method that registers an InputFilter, which gets the keys
+   * read before the pager handles them.
+   *
+   * @param filter Object instance that implements the InputFilter interface.
+   */
+  public void registerInputFilter(InputFilter filter) {
+    m_InputFilter = filter;
+  }//registerInputFilter
+
+  private void updateStatus() throws IOException {
+    if (m_Message != null) {
+      m_Status.setStatusText(m_Message);
+      m_Message = null;
+    } else if (m_Following) {
+      m_Status.setStatusText(m_FollowPrompt);
+    } else if (m_ShowPos) {
+      StringBuffer sbuf = new StringBuffer(m_Prompt);
+      sbuf.append(" [line ").append(m_Index.getLineOfOffset(m_Top) + 1);
+      PagerSource source = m_Index.getSource();
+      if (m_Index.isComplete()) {
+        sbuf.append('/').append(m_Index.getLineCount());
+      } else if (source.isComplete() && source.length() > 0) {
+        long shown = hasRow(m_Bottom) ? m_Bottom : source.length();
+        sbuf.append(", ").append(shown * 100 / source.length()).append('%');
+      }
+      sbuf.append(']');
+      m_Status.setStatusText(sbuf.toString());
     } else {
       m_Status.setStatusText(m_Prompt);
     }
@@ -135,50 +208,116 @@ public class Pager {
    * @param str String to be paged.
    */
   public void page(String str) throws IOException {
+    page(new ByteArrayInputStream(str.getBytes(ENCODING)));
+  }//page(String)
+
+  /**
+   * Method that pages text read from an InputStream.
+   * The stream is read only as far as it is paged,
+   * and it is left open.
+   *
+   * @param in InputStream representing a source for paging.
+   */
+  public void page(InputStream in)
+      throws IOException {
+    page(new SpoolSource(in));
+  }//page(InputStream)
+
+  /**
+   * Method that pages the content of a file.
+   * The file is memory mapped, so that its size
+   * does not matter.
+   *
+   * @param file File to be paged.
+   */
+  public void page(File file) throws IOException {
+    page(new MappedSource(file));
+  }//page(File)
+
+  /**
+   * Method that pages the given source to the client terminal,
+   * being aware of its geometry, and its geometry changes.
+   * The source is closed when paging is done.
+   *
+   * @param source PagerSource to be paged.
+   */
+  public void page(PagerSource source) throws IOException {
     terminalGeometryChanged();
+    m_IO.addResizeListener(this);
+    try {
+      pageSource(source);
+    } finally {
+      m_IO.removeResizeListener(this);
+      if (m_Search != null) {
+        m_Search.cancel();
+        m_Search = null;
+      }
+      source.close();
+    }
+  }//page(PagerSource)
+
+  private void pageSource(PagerSource source) throws IOException {
     boolean autoflush = m_IO.isAutoflushing();
     m_IO.setAutoflushing(true);
-    //store raw
-    m_Source = new StringReader(str);
-    //do renderchunks
-    m_ChunkPos = 0;
-    m_LastNewChunk = 0;
+    m_Index = new LineIndex(source);
+    m_Top = 0;
+    m_Match = -1;
+    m_MatchEnd = -1;
     m_EOS = false;
     m_NoPrompt = false;
 
-    renderChunks();
-    if (m_Chunks.size() == 1) {
-      m_IO.write((String) m_Chunks.elementAt(0));
+    if (fitsPage()) {
+      m_IO.write(getPage());
     } else {
-      m_IO.homeCursor();
-      m_IO.eraseScreen();
-      m_IO.write((String) m_Chunks.elementAt(m_ChunkPos));
+      m_Paging = true;
+      drawPage();
       updateStatus();
       m_Status.draw();
-      //storage for read byte
-      int in = 0;
-      do {
-        m_NoPrompt = false;
+      runPaging();
+      synchronized (this) {
+        m_Paging = false;
+      }
+      m_IO.eraseToEndOfLine();
 
-        //get next key
-        in = m_IO.read();
+    }
+    m_IO.write("\n");
+    m_IO.setAutoflushing(autoflush);
+  }//pageSource
+
+  /**
+   * Runs the paging loop until the stop key is pressed, or
+   * following should be resumed.
+   *
+   * @return the key that ended paging.
+   */
+  private int runPaging() throws IOException {
+    while (true) {
+      m_NoPrompt = false;
+
+      //get next key
+      int in = m_IO.read();
+      synchronized (this) {
         if (terminalGeometryChanged()) {
-          try {
-            m_Source.reset();
-          } catch (Exception ex) {
-          }
-          renderChunks();
-          m_ChunkPos = 0;
-          m_LastNewChunk = 0;
-          m_EOS = false;
-          m_NoPrompt = false;
-          m_IO.homeCursor();
-          m_IO.eraseScreen();
-          m_IO.write((String) m_Chunks.elementAt(m_ChunkPos));
-          updateStatus();
-          m_Status.draw();
+          //resize not (yet) notified
+          relayout();
           continue;
         }
+        if (m_InputFilter != null) {
+          in = m_InputFilter.filterInput(in);
+          if (in == InputFilter.INPUT_HANDLED) {
+            drawPage();
+            updateStatus();
+            m_Status.draw();
+            continue;
+          } else if (in == InputFilter.INPUT_INVALID) {
+            m_IO.bell();
+            continue;
+          }
+        }
+        //test for stopkey, cant be switched because not constant
+        if (in == m_StopKey) {
+          return in;
+        }
         switch (in) {
           case BasicTerminalIO.UP:
             drawPreviousPage();
@@ -189,197 +328,642 @@ public class Pager {
           case SPACE:
             drawNextPage();
             break;
-          default:
-            //test for stopkey, cant be switched because not constant
-            if (in == m_StopKey) {
-              //flag loop over
-              in = -1;
-              continue; //so that we omit prompt and return
-            } else {
-              m_IO.bell();
-              continue;
+          case BasicTerminalIO.ENTER:
+            drawNextLine();
+            break;
+          case SEARCH:
+            search();
+            break;
+          case NEXT_MATCH:
+            drawMatch(true);
+            break;
+          case PREVIOUS_MATCH:
+            drawMatch(false);
+            break;
+          case FIRST_LINE:
+            drawLine(0);
+            break;
+          case LAST_LINE:
+            drawLastPage();
+            break;
+          case GOTO_LINE:
+            gotoLine();
+            break;
+          case FOLLOW:
+            if (m_Ring != null) {
+              return in;
             }
+            m_IO.bell();
+            continue;
+          default:
+            m_IO.bell();
+            continue;
         }
         if (m_EOS) {
-          in = -1;
-          continue;
+          //paging past the end resumes following
+          return (m_Ring != null) ? FOLLOW : m_StopKey;
         }
         //prompt
         if (!m_NoPrompt) {
           updateStatus();
           m_Status.draw();
         }
-      } while (in != -1);
-      m_IO.eraseToEndOfLine();
+      }
+    }
+  }//runPaging
 
+  /**
+   * Method that follows a growing source, like <tt>tail -f</tt>.
+   * Appended rows are scrolled in as they arrive; rows that scrolled
+   * off the page are released, so that the writer can reuse their
+   * space. Any key but the stop key pauses following and pages the
+   * data retained, which is kept until following is resumed with
+   * <tt>F</tt> or by paging past the end.
+   *
+   * @param source RingSource to be followed, it is not closed.
+   */
+  public void follow(RingSource source) throws IOException {
+    terminalGeometryChanged();
+    m_IO.addResizeListener(this);
+    try {
+      followSource(source);
+    } finally {
+      m_IO.removeResizeListener(this);
+      synchronized (this) {
+        stopFollowing();
+        m_Paging = false;
+      }
+      if (m_Search != null) {
+        m_Search.cancel();
+        m_Search = null;
+      }
+      m_Ring = null;
     }
-    m_IO.write("\n");
-    m_Source.close();
+  }//follow
+
+  private void followSource(RingSource source) throws IOException {
+    boolean autoflush = m_IO.isAutoflushing();
+    m_IO.setAutoflushing(true);
+    m_Ring = source;
+    m_Index = new LineIndex(source, source.getStart());
+    m_Top = source.getStart();
+    m_Match = -1;
+    m_MatchEnd = -1;
+    int in = 0;
+    while (in != m_StopKey) {
+      synchronized (this) {
+        startFollowing();
+      }
+      in = m_IO.read();
+      synchronized (this) {
+        stopFollowing();
+        if (m_InputFilter != null) {
+          in = m_InputFilter.filterInput(in);
+          if (in == InputFilter.INPUT_INVALID) {
+            m_IO.bell();
+          }
+          if (in == InputFilter.INPUT_HANDLED || in == InputFilter.INPUT_INVALID) {
+            continue;
+          }
+        }
+        if (in == m_StopKey) {
+          continue;
+        }
+        //any other key pauses following
+        terminalGeometryChanged();
+        long start = m_Ring.retain();
+        m_Index = new LineIndex(m_Ring, start);
+        m_Top = Math.max(m_Top, start);
+        m_EOS = false;
+        m_Paging = true;
+        drawPage();
+        updateStatus();
+        m_Status.draw();
+      }
+      in = runPaging();
+      synchronized (this) {
+        m_Paging = false;
+      }
+    }
+    m_IO.setCursor(m_TermRows, 1);
+    m_IO.eraseLine();
     m_IO.setAutoflushing(autoflush);
-  }//page(String)
+  }//followSource
 
   /**
-   * Method that pages text read from an InputStream.
-   *
-   * @param in InputStream representing a source for paging.
+   * Starts following at the actual top row, drawing the last
+   * page of the data available.
    */
-  public void page(InputStream in)
-      throws IOException {
+  private void startFollowing() throws IOException {
+    terminalGeometryChanged();
+    m_Following = true;
+    m_Rows = new long[Math.max(1, getPageRows())];
+    m_RowFirst = 0;
+    m_RowCount = 0;
+    m_Tail = m_Top;
+    m_IO.homeCursor();
+    m_IO.eraseScreen();
+    updateStatus();
+    m_Status.draw();
+    drawTail();
+    m_Follower = new Follower();
+    m_Follower.start();
+  }//startFollowing
 
-    //buffer prepared for about 3k
-    StringBuffer inbuf = new StringBuffer(3060);
+  private void stopFollowing() {
+    m_Following = false;
+    m_Follower = null;
+  }//stopFollowing
 
-    //int buffering read
-    int b = 0;
+  /**
+   * Method that is called by the UpdateScheduler to draw the
+   * rows appended while following.
+   */
+  public void paint() throws IOException {
+    //the foreground may hold the lock while it reads input,
+    //but never while following
+    if (!m_Following) {
+      return;
+    }
+    synchronized (this) {
+      if (m_Following) {
+        writeTail();
+      }
+    }
+  }//paint
+
+  private void drawTail() throws IOException {
+    boolean autoflush = m_IO.isAutoflushing();
+    m_IO.setAutoflushing(false);
+    writeTail();
+    m_IO.flush();
+    m_IO.setAutoflushing(autoflush);
+  }//drawTail
 
-    while (b != -1) {
-      b = in.read();
-      if (b != -1) {
-        inbuf.append((char) b);
+  /**
+   * Writes the rows appended since the last call. While the page
+   * is not filled, or when a page or more was appended, the page
+   * is redrawn; otherwise the new rows are scrolled in.
+   */
+  private void writeTail() throws IOException {
+    int rows = m_Rows.length;
+    boolean full = (m_RowCount == rows);
+    int added = 0;
+    long pos = m_Tail;
+    while (hasRow(pos)) {
+      long next = nextRow(pos, null);
+      if (m_RowOpen && !m_Ring.isComplete()) {
+        //the line is still being written
+        break;
+      }
+      if (m_RowCount == rows) {
+        m_Rows[m_RowFirst] = pos;
+        m_RowFirst = (m_RowFirst + 1) % rows;
+      } else {
+        m_Rows[(m_RowFirst + m_RowCount++) % rows] = pos;
       }
+      added++;
+      pos = next;
     }
+    if (added == 0) {
+      return;
+    }
+    m_Tail = pos;
+    m_Top = m_Rows[m_RowFirst];
+    if (full && added < rows && m_IO.scrollRegion(1, rows, added)) {
+      m_IO.setCursor(rows - added + 1, 1);
+      StringBuffer sbuf = new StringBuffer((m_TermCols + 1) * added);
+      for (int i = rows - added; i < rows; i++) {
+        nextRow(m_Rows[(m_RowFirst + i) % rows], sbuf);
+        if (i < rows - 1) {
+          sbuf.append("\n");
+        }
+      }
+      m_IO.write(sbuf.toString());
+    } else {
+      drawPage();
+      updateStatus();
+      m_Status.draw();
+    }
+    //what scrolled off the page may be discarded
+    m_Ring.release(m_Top);
+  }//writeTail
 
-    //now page the string
-    page(inbuf.toString());
-  }//page(InputStream)
+  /**
+   * Re-renders the page being displayed once the terminal
+   * geometry settled after a resize.
+   *
+   * @param ce ConnectionEvent instance.
+   */
+  public synchronized void onResize(ConnectionEvent ce) {
+    if ((m_Paging || m_Following) && terminalGeometryChanged()) {
+      try {
+        if (m_Following) {
+          //rows are wrapped anew from the top row on
+          m_Rows = new long[Math.max(1, getPageRows())];
+          m_RowFirst = 0;
+          m_RowCount = 0;
+          m_Tail = m_Top;
+          m_IO.getUpdateScheduler().schedule(this);
+          return;
+        }
+        relayout();
+      } catch (IOException ex) {
+        //the reading loop will notice a broken connection
+      }
+    }
+  }//onResize
 
+  private void relayout() throws IOException {
+    //the top row may now start elsewhere in its line
+    m_Top = getRowStart(m_Top);
+    m_EOS = false;
+    m_NoPrompt = false;
+    drawPage();
+    updateStatus();
+    m_Status.draw();
+  }//relayout
 
   private void drawNextPage() throws IOException {
-    //System.out.println("drawing next page");
-    if (m_ChunkPos == m_LastNewChunk) {
-      drawNewPage();
+    if (hasRow(m_Bottom)) {
+      m_Top = m_Bottom;
+      drawPage();
     } else {
-      m_IO.homeCursor();
-      m_IO.eraseScreen();
-      m_IO.write((String) m_Chunks.elementAt(++m_ChunkPos));
+      //flag end
+      m_EOS = true;
+      m_NoPrompt = true;
     }
   }//drawNextPage
 
 
   private void drawPreviousPage() throws IOException {
-    //System.out.println("drawing previous page");
-    if (m_ChunkPos > 0) {
-      m_IO.homeCursor();
-      m_IO.eraseScreen();
-      m_IO.write((String) m_Chunks.elementAt(--m_ChunkPos));
+    if (m_Top > m_Index.getFirstLineStart()) {
+      m_Top = getRowsBack(m_Top, getPageRows());
+      drawPage();
     } else {
       m_IO.bell();
       m_NoPrompt = true;
     }
   }//drawPreviousPage
 
-  private void drawNewPage() throws IOException {
-
-    //increase counters
-    m_ChunkPos++;
-    m_LastNewChunk++;
-    //System.out.println("drawing new page chunkpos="+chunkpos+" lastnewchunk="+lastnewchunk);
-    if (m_ChunkPos < m_Chunks.size()) {
-      m_IO.homeCursor();
-      m_IO.eraseScreen();
-      m_IO.write((String) m_Chunks.elementAt(m_ChunkPos));
-      //if(chunkpos==chunks.size()-1) {
-      //	eos=true;
-      //	noprompt=true;
-      //}
+  private void drawNextLine() throws IOException {
+    int rows = getPageRows();
+    if (hasRow(m_Bottom)) {
+      m_Top = nextRow(m_Top, null);
+      //scroll the page region only, so that just the new line is sent
+      if (m_IO.scrollRegion(1, rows, 1)) {
+        m_IO.setCursor(rows, 1);
+        StringBuffer sbuf = new StringBuffer(m_TermCols + 25);
+        m_Bottom = nextRow(m_Bottom, sbuf);
+        m_IO.write(sbuf.toString());
+      } else {
+        drawPage();
+      }
     } else {
       //flag end
       m_EOS = true;
       m_NoPrompt = true;
     }
-  }//drawNewPage
+  }//drawNextLine
 
-  private void renderChunks() {
-    //System.out.println("Rendering Chunks");
-    //System.out.println("Rows = " + m_TermRows + "::Columns = " + m_TermCols);
-    //prepare with 10 as default, shouldnt be much larger normally
-    m_Chunks = new Vector(20);
-    //prepare a buffer the size of cols + security span
-    StringBuffer sbuf = new StringBuffer((m_TermCols + 25) * 25);
-    int b = 0;
-    int cols = 0;
-    int rows = 0;
-    boolean colorskip = false;
-
-    do {
-      //System.out.println("LoopRows=" + rows + "LoopColumns=" + cols);
-      //check rows to advance chunks
-      if (rows == m_TermRows - 1) {
-        //System.out.println("New page");
-        //add chunk to vector
-        m_Chunks.addElement(sbuf.toString());
-        //replace for new buffer
-        sbuf = new StringBuffer((m_TermCols + 25) * 25);
-        //reset counters
-        cols = 0;
-        rows = 0;
+  /**
+   * Prompts for a pattern and shows its first hit at or
+   * after the top of the page. An empty pattern repeats
+   * the last search.
+   */
+  private void search() throws IOException {
+    String text = readInput("/");
+    if (text == null) {
+      m_NoPrompt = true;
+      return;
+    }
+    if (text.length() > 0) {
+      if (m_Search != null) {
+        m_Search.cancel();
       }
-      //try read next byte
-      try {
-        b = m_Source.read();
-      } catch (IOException ioex) {
-        b = -1;
+      m_Search = new SourceSearch(m_Index.getSource(), text, m_Top);
+      m_Search.start();
+    } else if (m_Search == null) {
+      m_IO.bell();
+      return;
+    }
+    m_Match = -1;
+    drawHit(awaitHit(true, m_Top));
+  }//search
+
+  /**
+   * Shows the next or previous hit of the last search.
+   */
+  private void drawMatch(boolean forward) throws IOException {
+    if (m_Search == null) {
+      m_IO.bell();
+      m_NoPrompt = true;
+      return;
+    }
+    //continue from the last hit while it is on the page
+    long pos = m_Top;
+    if (m_Match >= m_Top && m_Match < m_Bottom) {
+      pos = (forward) ? m_Match + 1 : m_Match;
+    }
+    drawHit(awaitHit(forward, pos));
+  }//drawMatch
+
+  /**
+   * Waits for the background search to decide about the next
+   * hit, showing the progress in the status bar meanwhile.
+   * Escape or the stop key cancel the search.
+   */
+  private long awaitHit(boolean forward, long pos) throws IOException {
+    while (true) {
+      long hit = (forward) ?
+          m_Search.nextHit(pos, SEARCH_FEEDBACK) :
+          m_Search.previousHit(pos, SEARCH_FEEDBACK);
+      if (hit != SourceSearch.WAITING) {
+        return hit;
       }
-      if (b == -1) {
-        m_Chunks.addElement(sbuf.toString());
-        continue; //will end the loop
-      } else if (b == ColorHelper.MARKER_CODE || colorskip) {
-        //add it, flag right for next byte and skip counting
-        sbuf.append((char) b);
-        if (!colorskip) {
-          colorskip = true;
-        } else {
-          colorskip = false;
+      m_Status.setStatusText("Searching " + m_Search.getText() + " ...");
+      m_Status.draw();
+      m_IO.flush();
+      int in = m_IO.read(0);
+      if (in == BasicTerminalIO.ESCAPE || in == m_StopKey) {
+        m_Search.cancel();
+        return CANCELLED;
+      }
+    }
+  }//awaitHit
+
+  private void drawHit(long hit) throws IOException {
+    if (hit == CANCELLED) {
+      m_Message = "Search cancelled: " + m_Search.getText();
+      m_Search = null;
+      return;
+    }
+    if (hit < 0) {
+      m_IO.bell();
+      m_Message = "Pattern not found: " + m_Search.getText();
+      return;
+    }
+    m_Match = hit;
+    m_MatchEnd = hit + m_Search.getLength();
+    m_Top = getRowStart(hit);
+    drawPage();
+  }//drawHit
+
+  /**
+   * Prompts for a line number and shows the page starting there.
+   */
+  private void gotoLine() throws IOException {
+    String text = readInput(":");
+    if (text == null) {
+      m_NoPrompt = true;
+      return;
+    }
+    try {
+      drawLine(Long.parseLong(text.trim()) - 1);
+    } catch (NumberFormatException ex) {
+      m_IO.bell();
+    }
+  }//gotoLine
+
+  private void drawLine(long line) throws IOException {
+    m_Top = m_Index.getLineStart(Math.max(0, line));
+    drawPage();
+  }//drawLine
+
+  private void drawLastPage() throws IOException {
+    //indexes the source completely
+    m_Index.getLineStart(Long.MAX_VALUE);
+    m_Top = getRowsBack(m_Index.getSource().length(), getPageRows());
+    drawPage();
+  }//drawLastPage
+
+  /**
+   * Reads a line of input in the status bar, e.g. for
+   * keys handled by an InputFilter.
+   *
+   * The cursor is left at the start of the status row; it is not
+   * stored meanwhile, because background repaints store and restore
+   * it while the input is read.
+   *
+   * @param prefix the String prompting for the input.
+   * @return the input, or null if the input was cancelled.
+   */
+  public String readInput(String prefix) throws IOException {
+    m_IO.setCursor(m_TermRows, 1);
+    m_IO.eraseLine();
+    m_IO.write(prefix);
+    LineEditor editor = new LineEditor(m_IO, m_TermCols - prefix.length() - 1);
+    try {
+      while (true) {
+        int in = m_IO.read();
+        if (in == BasicTerminalIO.ENTER) {
+          return editor.getValue();
+        } else if (in == BasicTerminalIO.ESCAPE
+            || (in == BasicTerminalIO.BACKSPACE && editor.length() == 0)) {
+          updateStatus();
+          m_Status.draw();
+          return null;
+        } else if (!editor.handleKey(in)) {
+          m_IO.bell();
         }
-        continue;
-      } else if (b == 13) {
-        //advance a row
-        rows++;
-        //reset cols
-        cols = 0;
-        //append a newline char
+        m_IO.flush();
+      }
+    } finally {
+      m_IO.setCursor(m_TermRows, 1);
+    }
+  }//readInput
+
+  private void drawPage() throws IOException {
+    m_IO.homeCursor();
+    m_IO.eraseScreen();
+    m_IO.write(getPage());
+  }//drawPage
+
+  /**
+   * Returns the rows of the page starting at the actual top
+   * row, in one string so that markup can span rows.
+   * Sets the bottom to the start of the row following the page.
+   */
+  private String getPage() throws IOException {
+    int rows = getPageRows();
+    StringBuffer sbuf = new StringBuffer((m_TermCols + 1) * rows);
+    long pos = m_Top;
+    for (int i = 0; i < rows && hasRow(pos); i++) {
+      pos = nextRow(pos, sbuf);
+      if (!m_RowOpen) {
         sbuf.append("\n");
-        //skip newline if given
-        try {
-          b = m_Source.read();
-        } catch (IOException ex) {
-          b = -1;
+      }
+    }
+    m_Bottom = pos;
+    return sbuf.toString();
+  }//getPage
+
+  /**
+   * Tests if the source fits into a single page.
+   */
+  private boolean fitsPage() throws IOException {
+    long pos = 0;
+    for (int i = getPageRows(); i >= 0; i--) {
+      if (!hasRow(pos)) {
+        return true;
+      }
+      pos = nextRow(pos, null);
+    }
+    return false;
+  }//fitsPage
+
+  private int getPageRows() {
+    //last row is reserved for the status
+    return m_TermRows - 1;
+  }//getPageRows
+
+  private boolean hasRow(long pos) throws IOException {
+    return pos >= 0 && m_Index.byteAt(pos) != -1;
+  }//hasRow
+
+  /**
+   * Renders the row starting at the given position, wrapping
+   * at the terminal width. Markup does not count as columns.
+   *
+   * @param pos  the start of the row.
+   * @param sbuf buffer to append the row to, may be null.
+   * @return the start of the following row.
+   */
+  private long nextRow(long pos, StringBuffer sbuf) throws IOException {
+    m_RowOpen = false;
+    int cols = 0;
+    while (true) {
+      int b = m_Index.byteAt(pos);
+      if (b == -1) {
+        m_RowOpen = true;
+        return pos;
+      } else if (b == LF) {
+        return pos + 1;
+      } else if (b == CR) {
+        return (m_Index.byteAt(pos + 1) == LF) ? pos + 2 : pos + 1;
+      } else if (b == ColorHelper.MARKER_CODE) {
+        //the attribute byte decides how many bytes the markup spans
+        int attr = m_Index.byteAt(pos + 1);
+        int len = (attr == -1) ? 1 : ColorHelper.getMarkupLength((char) attr);
+        for (int i = 0; i < len && (b = m_Index.byteAt(pos)) != -1; i++, pos++) {
+          if (sbuf != null) {
+            sbuf.append((char) b);
+          }
         }
-        if (b == -1) {
-          continue;
+        continue;
+      } else if (cols == m_TermCols) {
+        //wrap, the byte starts the next row
+        return pos;
+      }
+      int len = getSequenceLength(pos, b);
+      if (len == -1) {
+        //the rest of the character has not arrived yet
+        m_RowOpen = true;
+        return pos;
+      }
+      if (sbuf != null) {
+        if (pos == m_Match) {
+          sbuf.append(MATCH_ON);
         }
-        if (b != 10) {
+        if (len == 1) {
           sbuf.append((char) b);
+        } else {
+          int cp = b & (0xff >> (len + 1));
+          for (int i = 1; i < len; i++) {
+            cp = (cp << 6) | (m_Index.byteAt(pos + i) & 0x3f);
+          }
+          sbuf.append(Character.toChars(cp));
+        }
+        if (pos <= m_MatchEnd - 1 && m_MatchEnd - 1 < pos + len) {
+          sbuf.append(MATCH_OFF);
         }
-        //System.out.println("Advancing a row (Newline).");
-        //go into next loop run
-        continue;
-      } else if (b == 10) {
-        //advance a row
-        rows++;
-        //reset cols
-        cols = 0;
-        //append a newline char
-        sbuf.append("\n");
-        continue;
-      } else {
-        sbuf.append((char) b);
-        cols++;
       }
+      cols++;
+      pos += len;
+    }
+  }//nextRow
 
-      //check cols to advance rows
-      if (cols == m_TermCols) {
-        rows++;
-        //append a newline
-        sbuf.append("\n");
-        //reset cols!!!
-        cols = 0;
-        //System.out.println("Advancing a row (COLS).");
+  /**
+   * Returns the number of bytes of the UTF-8 character starting
+   * at the given position. Bytes that do not start a valid
+   * sequence stand for themselves as ISO-8859-1 characters.
+   *
+   * @param pos the position of the first byte.
+   * @param b   the first byte.
+   * @return the number of bytes, or -1 if the sequence is not complete yet.
+   */
+  private int getSequenceLength(long pos, int b) throws IOException {
+    int len;
+    if (b >= 0xc2 && b <= 0xdf) {
+      len = 2;
+    } else if (b >= 0xe0 && b <= 0xef) {
+      len = 3;
+    } else if (b >= 0xf0 && b <= 0xf4) {
+      len = 4;
+    } else {
+      return 1;
+    }
+    for (int i = 1; i < len; i++) {
+      int next = m_Index.byteAt(pos + i);
+      if (next == -1) {
+        return (m_Index.getSource().isComplete()) ? 1 : -1;
+      } else if ((next & 0xc0) != 0x80) {
+        return 1;
       }
-    } while (b != -1);
-    //System.out.println("renderChunks()::Done #="+ m_Chunks.size());
-  }//renderChunks
+    }
+    //overlong forms and surrogates are not valid
+    int second = m_Index.byteAt(pos + 1);
+    if ((b == 0xe0 && second < 0xa0) || (b == 0xed && second > 0x9f)
+        || (b == 0xf0 && second < 0x90) || (b == 0xf4 && second > 0x8f)) {
+      return 1;
+    }
+    return len;
+  }//getSequenceLength
 
+  /**
+   * Returns the start of the row containing the given position,
+   * wrapping only the line the position is part of.
+   */
+  private long getRowStart(long pos) throws IOException {
+    long row = m_Index.getLineStart(m_Index.getLineOfOffset(pos));
+    while (hasRow(row)) {
+      long next = nextRow(row, null);
+      if (next > pos || m_RowOpen) {
+        break;
+      }
+      row = next;
+    }
+    return row;
+  }//getRowStart
+
+  /**
+   * Returns the start of the row the given number of
+   * rows before the row starting at the given position.
+   * Lines are wrapped one at a time, going backwards, but
+   * not beyond the first line indexed.
+   */
+  private long getRowsBack(long pos, int n) throws IOException {
+    long first = m_Index.getFirstLineStart();
+    long[] starts = new long[n];
+    while (n > 0 && pos > first) {
+      long line = m_Index.getLineStart(m_Index.getLineOfOffset(pos - 1));
+      int count = 0;
+      for (long row = line; row < pos; row = nextRow(row, null)) {
+        if (count == starts.length) {
+          long[] tmp = new long[count * 2];
+          System.arraycopy(starts, 0, tmp, 0, count);
+          starts = tmp;
+        }
+        starts[count++] = row;
+      }
+      if (count >= n) {
+        return starts[count - n];
+      }
+      n -= count;
+      pos = line;
+    }
+    return pos;
+  }//getRowsBack
 
   private boolean terminalGeometryChanged() {
     if (m_TermRows != m_IO.getRows() || m_TermCols != m_IO.getColumns()) {
@@ -391,12 +975,70 @@ public class Pager {
     }
   }//terminalGeometryChanged
 
+  /**
+   * Thread rendering appended data while following.
+   */
+  private class Follower extends Thread {
+
+    Follower() {
+      super("Pager Follower");
+      setDaemon(true);
+    }//constructor
+
+    public void run() {
+      try {
+        while (true) {
+          long seen;
+          boolean pending;
+          synchronized (Pager.this) {
+            if (m_Follower != this) {
+              return;
+            }
+            seen = m_Ring.length();
+            pending = m_Tail < seen;
+            if (m_Ring.isComplete() && !pending) {
+              return;
+            }
+          }
+          if (pending) {
+            m_IO.getUpdateScheduler().schedule(Pager.this);
+          }
+          if (m_Ring.isComplete()) {
+            //wait for the scheduled rows to be drawn
+            Thread.sleep(FOLLOW_INTERVAL);
+          } else {
+            m_Ring.awaitData(seen, FOLLOW_INTERVAL);
+          }
+        }
+      } catch (InterruptedException ex) {
+        //stop following
+      }
+    }//run
+
+  }//inner class Follower
+
   /**
    * Constant definitions
    */
   private static final char DEFAULT_STOPKEY = 's';
-  private static final String DEFAULT_PROMPT = "[Cursor Up,Cursor Down,Space,s (stop)] ";
+  private static final String DEFAULT_PROMPT = "[Cursor Up,Cursor Down,Space,Enter,/,n,N,g,G,:,s (stop)] ";
+  private static final String DEFAULT_FOLLOW_PROMPT = "[Following, any key pauses, s (stop)] ";
+  private static final String ENCODING = "UTF-8";
   private static final int SPACE = 32;
+  private static final int SEARCH = '/';
+  private static final int NEXT_MATCH = 'n';
+  private static final int PREVIOUS_MATCH = 'N';
+  private static final int FIRST_LINE = 'g';
+  private static final int LAST_LINE = 'G';
+  private static final int GOTO_LINE = ':';
+  private static final int FOLLOW = 'F';
+  private static final long FOLLOW_INTERVAL = 250;
+  private static final long SEARCH_FEEDBACK = 250;
+  private static final long CANCELLED = -3;
+  private static final String MATCH_ON = ColorHelper.INTERNAL_MARKER + ColorHelper.UNDERLINED;
+  private static final String MATCH_OFF = ColorHelper.INTERNAL_MARKER + ColorHelper.UNDERLINED_OFF;
+  private static final int LF = 10;
+  private static final int CR = 13;
 
 
 }//class Pager
@@ -0,0 +1,89 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import java.io.IOException;
+
+
+/**
+ * Interface that has to be implemented by any class
+ * that should be pageable by a Pager instance.<br>
+ * A source provides random access to the bytes being paged,
+ * so that the pager needs to keep only the visible window
+ * in memory. A source may still be growing while it is paged;
+ * reads beyond the data known so far either block until the data
+ * is available, or report the end of the data while the source
+ * is not complete.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public interface PagerSource {
+
+  /**
+   * Reads up to len bytes starting at the given position.
+   * Like InputStream.read(), this may read less bytes than
+   * requested.
+   *
+   * @param pos the position of the first byte to be read.
+   * @param b   the buffer to read into.
+   * @param off the offset in the buffer.
+   * @param len the maximum number of bytes to be read.
+   * @return the number of bytes read, or -1 if pos is at the
+   *         end of the data (known so far).
+   * @throws IOException if reading from the source fails.
+   */
+  public int read(long pos, byte[] b, int off, int len) throws IOException;
+
+  /**
+   * Returns the number of bytes known so far.
+   *
+   * @return the length of the data available without blocking.
+   */
+  public long length();
+
+  /**
+   * Tests if the end of the data is known.
+   *
+   * @return true if the source will not grow anymore, false otherwise.
+   */
+  public boolean isComplete();
+
+  /**
+   * Releases the resources held by this source.
+   *
+   * @throws IOException if releasing the resources fails.
+   */
+  public void close() throws IOException;
+
+}//interface PagerSource
@@ -0,0 +1,150 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+/**
+ * Class that represents a rectangular region on the terminal,
+ * e.g. the character cells of a component that need a redraw.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class Region {
+
+  //Members
+  private int m_Col;
+  private int m_Row;
+  private int m_Width;
+  private int m_Height;
+
+  /**
+   * Constructs an instance with given coordinates and size.
+   *
+   * @param col    Integer that represents the left column.
+   * @param row    Integer that represents the top row.
+   * @param width  Integer that represents the number of columns.
+   * @param height Integer that represents the number of rows.
+   */
+  public Region(int col, int row, int width, int height) {
+    m_Col = col;
+    m_Row = row;
+    m_Width = Math.max(0, width);
+    m_Height = Math.max(0, height);
+  }//constructor
+
+  /**
+   * Accessor method for the left column.
+   *
+   * @return int that represents the left column.
+   */
+  public int getColumn() {
+    return m_Col;
+  }//getColumn
+
+  /**
+   * Accessor method for the top row.
+   *
+   * @return int that represents the top row.
+   */
+  public int getRow() {
+    return m_Row;
+  }//getRow
+
+  /**
+   * Accessor method for the width.
+   *
+   * @return int that represents the number of columns.
+   */
+  public int getWidth() {
+    return m_Width;
+  }//getWidth
+
+  /**
+   * Accessor method for the height.
+   *
+   * @return int that represents the number of rows.
+   */
+  public int getHeight() {
+    return m_Height;
+  }//getHeight
+
+  /**
+   * Tests if the region covers no cells.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return m_Width == 0 || m_Height == 0;
+  }//isEmpty
+
+  /**
+   * Tests if the given region overlaps or borders on this one,
+   * so that both can be redrawn as one.
+   *
+   * @param r the Region to be tested.
+   * @return true if touching, false otherwise.
+   */
+  public boolean touches(Region r) {
+    return r.m_Col <= m_Col + m_Width && m_Col <= r.m_Col + r.m_Width
+        && r.m_Row <= m_Row + m_Height && m_Row <= r.m_Row + r.m_Height;
+  }//touches
+
+  /**
+   * Returns the smallest region covering this and the given region.
+   *
+   * @param r the Region to be united with this one.
+   * @return the united Region.
+   */
+  public Region union(Region r) {
+    int col = Math.min(m_Col, r.m_Col);
+    int row = Math.min(m_Row, r.m_Row);
+    return new Region(col, row,
+        Math.max(m_Col + m_Width, r.m_Col + r.m_Width) - col,
+        Math.max(m_Row + m_Height, r.m_Row + r.m_Height) - row);
+  }//union
+
+  /**
+   * Returns the cells covered by both this and the given region.
+   *
+   * @param r the Region to be intersected with this one.
+   * @return the intersection, which may be empty.
+   */
+  public Region intersection(Region r) {
+    int col = Math.max(m_Col, r.m_Col);
+    int row = Math.max(m_Row, r.m_Row);
+    return new Region(col, row,
+        Math.min(m_Col + m_Width, r.m_Col + r.m_Width) - col,
+        Math.min(m_Row + m_Height, r.m_Row + r.m_Height) - row);
+  }//intersection
+
+}//class Region
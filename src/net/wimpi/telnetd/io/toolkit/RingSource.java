@@ -0,0 +1,228 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+
+/**
+ * Class implementing a growing pager source with bounded memory.<br>
+ * Data is appended by a writer and kept in a ring of fixed capacity.
+ * Positions are absolute, so they stay valid while old data is
+ * discarded. Only data the reader released may be discarded;
+ * if the ring is full of data that was not released, a writer
+ * blocks (or an offer fails) until the reader catches up. This way
+ * a fast writer cannot outgrow a slow reader.<br>
+ * Reads do not block: the end of the data appended so far is reported
+ * as end of data, until the source is complete.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class RingSource implements PagerSource {
+
+  //Members
+  private byte[] m_Ring;
+  private long m_Start;
+  private long m_End;
+  private long m_Released;
+  private boolean m_Complete;
+
+  /**
+   * Constructs a ring source.
+   *
+   * @param capacity the maximum number of bytes retained.
+   */
+  public RingSource(int capacity) {
+    m_Ring = new byte[capacity];
+  }//constructor
+
+  /**
+   * Appends data, blocking while the ring is full of
+   * data that was not released yet.
+   *
+   * @param b   the buffer holding the data.
+   * @param off the offset of the data in the buffer.
+   * @param len the number of bytes to be appended.
+   * @throws IOException if the source is complete, or the
+   *                     writer was interrupted.
+   */
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      int free;
+      while ((free = getFree()) == 0 && !m_Complete) {
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+      if (m_Complete) {
+        throw new IOException("Source complete.");
+      }
+      int n = Math.min(len, free);
+      append(b, off, n);
+      off += n;
+      len -= n;
+    }
+  }//write
+
+  /**
+   * Appends data if it fits without blocking.
+   *
+   * @param b   the buffer holding the data.
+   * @param off the offset of the data in the buffer.
+   * @param len the number of bytes to be appended.
+   * @return true if the data was appended, false otherwise.
+   */
+  public synchronized boolean offer(byte[] b, int off, int len) {
+    if (m_Complete || len > getFree()) {
+      return false;
+    }
+    append(b, off, len);
+    return true;
+  }//offer
+
+  /**
+   * Marks the source complete, no more data will be appended.
+   */
+  public synchronized void finish() {
+    m_Complete = true;
+    notifyAll();
+  }//finish
+
+  /**
+   * Allows to discard the data before the given position.
+   *
+   * @param pos the position of the first byte that is still needed.
+   */
+  public synchronized void release(long pos) {
+    m_Released = pos;
+    notifyAll();
+  }//release
+
+  /**
+   * Keeps all data retained so far, until data is released again.
+   *
+   * @return the position of the first byte retained.
+   */
+  public synchronized long retain() {
+    m_Released = m_Start;
+    return m_Start;
+  }//retain
+
+  /**
+   * Returns the position of the first byte retained.
+   *
+   * @return the start of the retained data.
+   */
+  public synchronized long getStart() {
+    return m_Start;
+  }//getStart
+
+  /**
+   * Waits for data to be appended beyond the given position.
+   *
+   * @param pos     the position that is waited for.
+   * @param timeout the maximum time to wait in milliseconds.
+   * @return true if data is available at pos, false otherwise.
+   */
+  public synchronized boolean awaitData(long pos, long timeout) {
+    long deadline = System.currentTimeMillis() + timeout;
+    while (pos >= m_End && !m_Complete) {
+      long wait = deadline - System.currentTimeMillis();
+      if (wait <= 0) {
+        break;
+      }
+      try {
+        wait(wait);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    return pos < m_End;
+  }//awaitData
+
+  public synchronized int read(long pos, byte[] b, int off, int len)
+      throws IOException {
+    if (pos < m_Start) {
+      throw new IOException("Data discarded.");
+    }
+    if (pos >= m_End) {
+      return -1;
+    }
+    int idx = (int) (pos % m_Ring.length);
+    len = (int) Math.min(len, Math.min(m_End - pos, m_Ring.length - idx));
+    System.arraycopy(m_Ring, idx, b, off, len);
+    return len;
+  }//read
+
+  public synchronized long length() {
+    return m_End;
+  }//length
+
+  public synchronized boolean isComplete() {
+    return m_Complete;
+  }//isComplete
+
+  /**
+   * Marks the source complete; blocked writers will fail.
+   */
+  public void close() {
+    finish();
+  }//close
+
+  private int getFree() {
+    long discardable = Math.max(m_Start, Math.min(m_Released, m_End));
+    return (int) (m_Ring.length - (m_End - discardable));
+  }//getFree
+
+  private void append(byte[] b, int off, int len) {
+    if (m_End + len - m_Start > m_Ring.length) {
+      m_Start = m_End + len - m_Ring.length;
+    }
+    while (len > 0) {
+      int idx = (int) (m_End % m_Ring.length);
+      int n = Math.min(len, m_Ring.length - idx);
+      System.arraycopy(b, off, m_Ring, idx, n);
+      off += n;
+      len -= n;
+      m_End += n;
+    }
+    notifyAll();
+  }//append
+
+}//class RingSource
@@ -62,6 +62,7 @@ public class Selection extends ActiveComponent {
     m_Options = new Vector(10, 5);
     m_LastSelected = 0;
     m_Selected = 0;
+    m_Dim = new Dimension(0, 1);
   }//constructor
 
   /**
@@ -71,6 +72,7 @@ public class Selection extends ActiveComponent {
    */
   public void addOption(String str) {
     m_Options.addElement(str);
+    updateDimension();
   }//addOption
 
   /**
@@ -83,6 +85,7 @@ public class Selection extends ActiveComponent {
   public void insertOption(String str, int index) {
     try {
       m_Options.insertElementAt(str, index);
+      updateDimension();
     } catch (ArrayIndexOutOfBoundsException aex) {
       addOption(str);
     }
@@ -111,6 +114,7 @@ public class Selection extends ActiveComponent {
   public void removeOption(int index) {
     try {
       m_Options.removeElementAt(index);
+      updateDimension();
     } catch (ArrayIndexOutOfBoundsException aex) {
       //nothing
     }
@@ -154,12 +158,19 @@ public class Selection extends ActiveComponent {
    * @param index int representing an options index.
    */
   public void setSelected(int index) throws IOException {
-    if (index < 0 || index > m_Options.size()) {
+    if (index < 0 || index >= m_Options.size()) {
       return;
     } else {
+      String old = getOption(m_Selected);
       m_LastSelected = m_Selected;
       m_Selected = index;
-      //needs redraw
+      //needs redraw, within a form only from the first difference on
+      String opt = getOption(m_Selected);
+      int prefix = (old == null) ? 0 : commonPrefix(old, opt);
+      int width = Math.max((old == null) ? 0 : old.length(), opt.length());
+      if (prefix == width || invalidate(prefix, 0, width - prefix, 1)) {
+        return;
+      }
       draw();
     }
   }//setSelected
@@ -171,7 +182,7 @@ public class Selection extends ActiveComponent {
   public void run() throws IOException {
     int in = 0;
     draw();
-    m_IO.flush();
+    update();
     do {
       //get next key
       in = m_IO.read();
@@ -195,7 +206,7 @@ public class Selection extends ActiveComponent {
         default:
           m_IO.bell();
       }
-      m_IO.flush();
+      update();
     } while (in != -1);
 
   }//run
@@ -225,6 +236,18 @@ public class Selection extends ActiveComponent {
     m_IO.moveLeft(opttext.length());
   }//draw
 
+  protected String getRowText(int row) {
+    return (row == 0) ? getOption(m_Selected) : null;
+  }//getRowText
+
+  private void updateDimension() {
+    int width = 0;
+    for (int i = 0; i < m_Options.size(); i++) {
+      width = Math.max(width, ((String) m_Options.elementAt(i)).length());
+    }
+    m_Dim = new Dimension(width, 1);
+  }//updateDimension
+
 
   private boolean selectNext() throws IOException {
     if (m_Selected < (m_Options.size() - 1)) {
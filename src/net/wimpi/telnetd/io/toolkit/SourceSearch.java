@@ -0,0 +1,346 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import java.io.IOException;
+
+
+/**
+ * Class implementing a background search on a pager source.<br>
+ * The source is scanned in chunks with the Boyer-Moore-Horspool
+ * algorithm by a daemon thread, starting at an origin and
+ * wrapping around to the start of the source. Hits are published
+ * chunk by chunk, so that the first hits are available while the
+ * rest of the source is still being scanned.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+class SourceSearch implements Runnable {
+
+  //Associations
+  private PagerSource m_Source;
+  //Members
+  private String m_Text;
+  private byte[] m_Pattern;
+  private int[] m_Shift;
+  private long m_Origin;
+  private long[] m_Ahead;
+  private int m_AheadCount;
+  private long m_AheadScanned;
+  private long[] m_Behind;
+  private int m_BehindCount;
+  private long m_BehindScanned;
+  private boolean m_Done;
+  private volatile boolean m_Cancelled;
+
+  /**
+   * Constructs a search for the given text.
+   *
+   * @param source the PagerSource to be searched.
+   * @param text   the text to search for, must not be empty.
+   * @param origin the position where scanning starts.
+   */
+  SourceSearch(PagerSource source, String text, long origin) throws IOException {
+    m_Source = source;
+    m_Text = text;
+    m_Pattern = text.getBytes("UTF-8");
+    m_Origin = origin;
+    m_AheadScanned = origin;
+    m_Ahead = new long[16];
+    m_Behind = new long[16];
+    //bad character shifts
+    int m = m_Pattern.length;
+    m_Shift = new int[256];
+    for (int i = 0; i < 256; i++) {
+      m_Shift[i] = m;
+    }
+    for (int i = 0; i < m - 1; i++) {
+      m_Shift[m_Pattern[i] & 0xff] = m - 1 - i;
+    }
+  }//constructor
+
+  /**
+   * Starts scanning in a daemon thread.
+   */
+  void start() {
+    Thread t = new Thread(this, "Pager Search");
+    t.setDaemon(true);
+    t.start();
+  }//start
+
+  /**
+   * Stops scanning as soon as possible.
+   */
+  void cancel() {
+    m_Cancelled = true;
+  }//cancel
+
+  /**
+   * Returns the text searched for.
+   *
+   * @return the search text.
+   */
+  String getText() {
+    return m_Text;
+  }//getText
+
+  /**
+   * Returns the length of a hit.
+   *
+   * @return the length of the pattern in bytes.
+   */
+  int getLength() {
+    return m_Pattern.length;
+  }//getLength
+
+  /**
+   * Returns the number of hits found so far.
+   *
+   * @return the number of hits.
+   */
+  synchronized int getHitCount() {
+    return m_AheadCount + m_BehindCount;
+  }//getHitCount
+
+  /**
+   * Tests if the whole source has been scanned.
+   *
+   * @return true if done, false otherwise.
+   */
+  synchronized boolean isDone() {
+    return m_Done;
+  }//isDone
+
+  /**
+   * Returns the first hit at or after the given position,
+   * waiting for the scan to get there if necessary.
+   *
+   * @param pos     the position to search from.
+   * @param timeout the maximum time to wait in milliseconds.
+   * @return the position of the hit, -1 if there is none,
+   *         or WAITING if the scan did not get there in time.
+   */
+  synchronized long nextHit(long pos, long timeout) {
+    long deadline = System.currentTimeMillis() + timeout;
+    long hit;
+    while ((hit = findNext(pos)) == WAITING) {
+      if (!await(deadline)) {
+        break;
+      }
+    }
+    return hit;
+  }//nextHit
+
+  /**
+   * Returns the last hit before the given position,
+   * waiting for the scan to get there if necessary.
+   *
+   * @param pos     the position to search from.
+   * @param timeout the maximum time to wait in milliseconds.
+   * @return the position of the hit, -1 if there is none,
+   *         or WAITING if the scan did not get there in time.
+   */
+  synchronized long previousHit(long pos, long timeout) {
+    long deadline = System.currentTimeMillis() + timeout;
+    long hit;
+    while ((hit = findPrevious(pos)) == WAITING) {
+      if (!await(deadline)) {
+        break;
+      }
+    }
+    return hit;
+  }//previousHit
+
+  public void run() {
+    try {
+      //from the origin to the end, then wrap around
+      scan(m_Origin, Long.MAX_VALUE, true);
+      scan(0, m_Origin, false);
+    } catch (IOException ex) {
+      //source closed or broken, the hits so far remain valid
+    } finally {
+      synchronized (this) {
+        m_Done = true;
+        notifyAll();
+      }
+    }
+  }//run
+
+  private long findNext(long pos) {
+    if (pos < m_Origin) {
+      int i = ceiling(m_Behind, m_BehindCount, pos);
+      if (i < m_BehindCount) {
+        return m_Behind[i];
+      }
+      if (!m_Done) {
+        return WAITING;
+      }
+      pos = m_Origin;
+    }
+    int i = ceiling(m_Ahead, m_AheadCount, pos);
+    if (i < m_AheadCount) {
+      return m_Ahead[i];
+    }
+    return (m_AheadScanned == Long.MAX_VALUE || m_Done) ? -1 : WAITING;
+  }//findNext
+
+  private long findPrevious(long pos) {
+    if (pos > m_Origin) {
+      if (m_AheadScanned < pos && !m_Done) {
+        return WAITING;
+      }
+      int i = ceiling(m_Ahead, m_AheadCount, pos);
+      if (i > 0) {
+        return m_Ahead[i - 1];
+      }
+      pos = m_Origin;
+    }
+    if (m_BehindScanned < pos && !m_Done) {
+      return WAITING;
+    }
+    int i = ceiling(m_Behind, m_BehindCount, pos);
+    return (i > 0) ? m_Behind[i - 1] : -1;
+  }//findPrevious
+
+  private boolean await(long deadline) {
+    long wait = deadline - System.currentTimeMillis();
+    if (wait <= 0) {
+      return false;
+    }
+    try {
+      wait(wait);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }//await
+
+  /**
+   * Scans the match starts in [start,end) chunk by chunk.
+   */
+  private void scan(long start, long end, boolean ahead) throws IOException {
+    int m = m_Pattern.length;
+    byte[] pattern = m_Pattern;
+    byte[] buf = new byte[CHUNK_SIZE + m - 1];
+    long[] hits = new long[16];
+    long pos = start;
+    while (pos < end && !m_Cancelled) {
+      long remaining = end - pos;
+      int want = (remaining >= buf.length) ? buf.length : (int) Math.min(buf.length, remaining + m - 1);
+      int n = fill(pos, buf, want);
+      int count = 0;
+      for (int i = 0; i <= n - m; i += m_Shift[buf[i + m - 1] & 0xff]) {
+        int j = m - 1;
+        while (j >= 0 && buf[i + j] == pattern[j]) {
+          j--;
+        }
+        if (j < 0 && pos + i < end) {
+          if (count == hits.length) {
+            hits = grow(hits, count);
+          }
+          hits[count++] = pos + i;
+        }
+      }
+      long scanned = (n < want) ? end : pos + Math.max(0, n - m + 1);
+      publish(hits, count, scanned, ahead);
+      if (scanned == pos) {
+        break;
+      }
+      pos = scanned;
+    }
+  }//scan
+
+  private int fill(long pos, byte[] buf, int len) throws IOException {
+    int n = 0;
+    while (n < len) {
+      int r = m_Source.read(pos + n, buf, n, len - n);
+      if (r < 0) {
+        break;
+      }
+      n += r;
+    }
+    return n;
+  }//fill
+
+  private synchronized void publish(long[] hits, int count, long scanned, boolean ahead) {
+    if (ahead) {
+      if (m_AheadCount + count > m_Ahead.length) {
+        m_Ahead = grow(m_Ahead, m_AheadCount + count);
+      }
+      System.arraycopy(hits, 0, m_Ahead, m_AheadCount, count);
+      m_AheadCount += count;
+      m_AheadScanned = scanned;
+    } else {
+      if (m_BehindCount + count > m_Behind.length) {
+        m_Behind = grow(m_Behind, m_BehindCount + count);
+      }
+      System.arraycopy(hits, 0, m_Behind, m_BehindCount, count);
+      m_BehindCount += count;
+      m_BehindScanned = scanned;
+    }
+    notifyAll();
+  }//publish
+
+  private static long[] grow(long[] arr, int min) {
+    long[] tmp = new long[Math.max(min, arr.length * 2)];
+    System.arraycopy(arr, 0, tmp, 0, arr.length);
+    return tmp;
+  }//grow
+
+  /**
+   * Returns the index of the first element not less than pos.
+   */
+  private static int ceiling(long[] arr, int count, long pos) {
+    int lo = 0;
+    int hi = count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (arr[mid] < pos) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }//ceiling
+
+  /**
+   * Returned while the scan did not yet decide about a hit.
+   */
+  static final long WAITING = -2;
+
+  private static final int CHUNK_SIZE = 65536;
+
+}//class SourceSearch
@@ -0,0 +1,206 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+
+/**
+ * Class implementing a pager source over an InputStream.<br>
+ * The stream is only read as far as the pager asks for, and
+ * what has been read is spooled so that it can be paged back.
+ * The first part of the data is kept in memory blocks; once
+ * the memory limit is reached, the rest is spooled to a
+ * temporary file that is deleted when the source is closed.<br>
+ * While a thread blocks reading the stream, the data known
+ * so far remains readable by others.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class SpoolSource implements PagerSource {
+
+  //Associations
+  private InputStream m_In;
+  //Members
+  private byte[][] m_Blocks;
+  private long m_Length;
+  private boolean m_Complete;
+  private File m_SpoolFile;
+  private RandomAccessFile m_Spool;
+  private byte[] m_Transfer;
+
+  /**
+   * Constructs a source spooling the given stream,
+   * keeping up to 1 MB in memory.
+   *
+   * @param in the InputStream to be paged.
+   */
+  public SpoolSource(InputStream in) {
+    this(in, DEFAULT_MEMORY);
+  }//constructor
+
+  /**
+   * Constructs a source spooling the given stream.
+   *
+   * @param in     the InputStream to be paged.
+   * @param memory the number of bytes to be kept in memory
+   *               before spooling to a file.
+   */
+  public SpoolSource(InputStream in, int memory) {
+    m_In = in;
+    m_Blocks = new byte[Math.max(1, (memory + BLOCK_SIZE - 1) / BLOCK_SIZE)][];
+    m_Transfer = new byte[TRANSFER_SIZE];
+  }//constructor
+
+  public int read(long pos, byte[] b, int off, int len)
+      throws IOException {
+    while (true) {
+      long known;
+      synchronized (this) {
+        if (pos < m_Length || m_Complete) {
+          return copy(pos, b, off, len);
+        }
+        known = m_Length;
+      }
+      pull(known);
+    }
+  }//read
+
+  private int copy(long pos, byte[] b, int off, int len)
+      throws IOException {
+    if (pos >= m_Length) {
+      return -1;
+    }
+    len = (int) Math.min(len, m_Length - pos);
+    long memory = (long) m_Blocks.length * BLOCK_SIZE;
+    if (pos < memory) {
+      int idx = (int) (pos / BLOCK_SIZE);
+      int boff = (int) (pos % BLOCK_SIZE);
+      len = Math.min(len, BLOCK_SIZE - boff);
+      System.arraycopy(m_Blocks[idx], boff, b, off, len);
+    } else {
+      m_Spool.seek(pos - memory);
+      m_Spool.readFully(b, off, len);
+    }
+    return len;
+  }//copy
+
+  public synchronized long length() {
+    return m_Length;
+  }//length
+
+  public synchronized boolean isComplete() {
+    return m_Complete;
+  }//isComplete
+
+  /**
+   * Releases the spooled data. The stream itself is
+   * left open, it belongs to the caller.
+   */
+  public synchronized void close() throws IOException {
+    m_Complete = true;
+    m_Length = 0;
+    m_Blocks = new byte[1][];
+    if (m_Spool != null) {
+      m_Spool.close();
+      m_Spool = null;
+      m_SpoolFile.delete();
+    }
+  }//close
+
+  /**
+   * Reads the next chunk from the stream, blocking
+   * until some data is available. Only the stream is
+   * locked meanwhile, so that the data known so far
+   * can still be read.
+   *
+   * @param known the length known when the caller ran out of data.
+   */
+  private void pull(long known) throws IOException {
+    synchronized (m_Transfer) {
+      synchronized (this) {
+        if (m_Length != known || m_Complete) {
+          //pulled by another thread meanwhile
+          return;
+        }
+      }
+      int n = m_In.read(m_Transfer, 0, m_Transfer.length);
+      synchronized (this) {
+        if (m_Complete) {
+          //closed meanwhile
+          return;
+        }
+        if (n < 0) {
+          m_Complete = true;
+        } else {
+          append(n);
+        }
+      }
+    }
+  }//pull
+
+  private void append(int n) throws IOException {
+    int off = 0;
+    long memory = (long) m_Blocks.length * BLOCK_SIZE;
+    while (off < n && m_Length < memory) {
+      int idx = (int) (m_Length / BLOCK_SIZE);
+      int boff = (int) (m_Length % BLOCK_SIZE);
+      if (m_Blocks[idx] == null) {
+        m_Blocks[idx] = new byte[BLOCK_SIZE];
+      }
+      int len = Math.min(n - off, BLOCK_SIZE - boff);
+      System.arraycopy(m_Transfer, off, m_Blocks[idx], boff, len);
+      off += len;
+      m_Length += len;
+    }
+    if (off < n) {
+      if (m_Spool == null) {
+        m_SpoolFile = File.createTempFile("pager", ".spool");
+        m_SpoolFile.deleteOnExit();
+        m_Spool = new RandomAccessFile(m_SpoolFile, "rw");
+      }
+      m_Spool.seek(m_Length - memory);
+      m_Spool.write(m_Transfer, off, n - off);
+      m_Length += n - off;
+    }
+  }//append
+
+  private static final int BLOCK_SIZE = 65536;
+  private static final int TRANSFER_SIZE = 8192;
+  private static final int DEFAULT_MEMORY = 1 << 20;
+
+}//class SpoolSource
@@ -33,6 +33,7 @@
 package net.wimpi.telnetd.io.toolkit;
 
 import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.io.Repaintable;
 import net.wimpi.telnetd.io.terminal.ColorHelper;
 
 import java.io.IOException;
@@ -45,13 +46,15 @@ import java.io.IOException;
  * @version 2.0 (13/03/2005)
  */
 public class Statusbar
-    extends InertComponent {
+    extends InertComponent
+    implements Repaintable {
 
   //Members
   private String m_Status;
   private int m_Align;
   private String m_BgColor;
   private String m_FgColor;
+  private String m_Painted;
 
 
   /**
@@ -119,10 +122,30 @@ public class Statusbar
   public void draw() throws IOException {
     m_IO.storeCursor();
     m_IO.setCursor(m_IO.getRows(), 1);
-    m_IO.write(getBar());
+    m_Painted = getBar();
+    m_IO.write(m_Painted);
     m_IO.restoreCursor();
   }//draw
 
+  /**
+   * Requests a repaint of the statusbar from any thread, e.g. one
+   * updating a clock. The repaint is serialized with the input
+   * by the connection's UpdateScheduler and skipped if the
+   * statusbar did not change since it was drawn.
+   */
+  public void repaint() {
+    m_IO.getUpdateScheduler().schedule(this);
+  }//repaint
+
+  public void paint() throws IOException {
+    String bar = getBar();
+    if (!bar.equals(m_Painted)) {
+      m_IO.setCursor(m_IO.getRows(), 1);
+      m_IO.write(bar);
+      m_Painted = bar;
+    }
+  }//paint
+
 
   /**
    * Internal method that creates the true titlebarstring displayed
@@ -133,9 +156,9 @@ public class Statusbar
     //get actual screen width
     int width = m_IO.getColumns() - 1;
     //get actual statustext width
-    int textwidth = (int) ColorHelper.getVisibleLength(m_Status);
+    int textwidth = (int) ColorHelper.getVisibleLength(tstatus);
 
-    if (textwidth > width) tstatus = m_Status.substring(0, width);
+    if (textwidth > width) tstatus = tstatus.substring(0, width);
     textwidth = (int) ColorHelper.getVisibleLength(tstatus);
 
     //prepare a buffer with enough space
@@ -0,0 +1,499 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.io.Repaintable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Class implementing a table for live data, e.g. connection
+ * lists or server metrics.<br>
+ * The table shows a fixed header and the rows of a {@link TableSource}
+ * below, optionally sorted by a column. It remembers the text of
+ * every visible cell, so a frame only writes the cells whose text
+ * changed; adjacent changed cells are written in one go.
+ * <p/>
+ * Call refresh() when the data changed. While the table is refreshing,
+ * frames are drawn through the connection's UpdateScheduler, so they
+ * do not interleave with other output. Requests are coalesced, and the
+ * table draws at most its own frame rate, whatever rate the scheduler
+ * runs at for other components.
+ * <p/>
+ * Keys: up/down and page up/page down scroll the rows, left/right select
+ * the sort column, space reverses the sort order, enter or tabulator leave
+ * the component. The component has to be located before it is drawn.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class Table extends ActiveComponent implements Repaintable {
+
+  //Associations
+  private TableSource m_Source;
+  //Members
+  private int[] m_Widths = new int[0];
+  private int[] m_Alignments = new int[0];
+  private int[] m_Layout;
+  private int m_SortColumn = -1;
+  private boolean m_SortAscending = true;
+  private int m_Top;
+  private String m_ShownHeader;
+  private String[][] m_Shown;
+  private volatile boolean m_Dirty;
+  private volatile boolean m_Refreshing;
+  private long m_FrameInterval = 1000 / DEFAULT_FRAMERATE;
+  private long m_NextFrame;
+
+  /**
+   * Constructs a Table instance.
+   *
+   * @param io     Object instance implementing the BasicTerminalIO interface.
+   * @param name   String representing this instances name.
+   * @param source TableSource providing the data.
+   * @param width  int representing the number of columns.
+   * @param height int representing the number of rows, including the header.
+   */
+  public Table(BasicTerminalIO io, String name, TableSource source,
+               int width, int height) {
+    super(io, name);
+    m_Source = source;
+    setDimension(new Dimension(width, Math.max(3, height)));
+  }//constructor
+
+  /**
+   * Mutator method for the width of a column. Columns without
+   * a width share the space left by the others.
+   *
+   * @param col   int representing the column index.
+   * @param width int representing the width, 0 for automatic.
+   */
+  public synchronized void setColumnWidth(int col, int width) {
+    m_Widths = ensureLength(m_Widths, col + 1);
+    m_Widths[col] = width;
+    m_Layout = null;
+  }//setColumnWidth
+
+  /**
+   * Mutator method for the alignment of a column.
+   * By default numbers are aligned right, other values left.
+   *
+   * @param col   int representing the column index.
+   * @param align one of the ALIGN_* constants.
+   */
+  public synchronized void setColumnAlignment(int col, int align) {
+    m_Alignments = ensureLength(m_Alignments, col + 1);
+    m_Alignments[col] = align;
+    m_Shown = null;
+  }//setColumnAlignment
+
+  /**
+   * Mutator method for the sort column.
+   *
+   * @param col       int representing the column index, -1 for the source order.
+   * @param ascending boolean flagging ascending order.
+   */
+  public synchronized void setSortColumn(int col, boolean ascending) {
+    m_SortColumn = col;
+    m_SortAscending = ascending;
+    refresh();
+  }//setSortColumn
+
+  /**
+   * Accessor method for the sort column.
+   *
+   * @return int representing the column index, -1 for the source order.
+   */
+  public int getSortColumn() {
+    return m_SortColumn;
+  }//getSortColumn
+
+  /**
+   * Tests if the rows are sorted ascending.
+   *
+   * @return true if ascending, false if descending.
+   */
+  public boolean isSortAscending() {
+    return m_SortAscending;
+  }//isSortAscending
+
+  /**
+   * Mutator method for the maximum number of frames per second.
+   * The table's frames are also limited by the maximum rate of the
+   * connection's UpdateScheduler, which this does not change.
+   *
+   * @param fps int representing the frame rate.
+   */
+  public synchronized void setFrameRate(int fps) {
+    m_FrameInterval = 1000 / Math.max(1, fps);
+  }//setFrameRate
+
+  /**
+   * Accessor method for the maximum number of frames per second.
+   *
+   * @return int representing the frame rate.
+   */
+  public synchronized int getFrameRate() {
+    return (int) (1000 / m_FrameInterval);
+  }//getFrameRate
+
+  /**
+   * Requests a frame because the data of the source changed.
+   * May be called from any thread; the frame is drawn while the table
+   * is refreshing, once the shell waits for input.
+   * The caller never waits for a frame being written.
+   */
+  public void refresh() {
+    m_Dirty = true;
+    if (m_Refreshing) {
+      m_IO.getUpdateScheduler().schedule(this);
+    }
+  }//refresh
+
+  /**
+   * Starts drawing the requested frames.
+   */
+  public void startRefreshing() {
+    m_Refreshing = true;
+    if (m_Dirty) {
+      m_IO.getUpdateScheduler().schedule(this);
+    }
+  }//startRefreshing
+
+  /**
+   * Stops drawing the requested frames.
+   */
+  public void stopRefreshing() {
+    m_Refreshing = false;
+  }//stopRefreshing
+
+  /**
+   * Method that is called by the UpdateScheduler to draw
+   * the requested frame. A frame that is not due yet is
+   * scheduled again.
+   */
+  public synchronized void paint() throws IOException {
+    if (m_Refreshing && m_Dirty) {
+      long now = System.currentTimeMillis();
+      if (now < m_NextFrame) {
+        m_IO.getUpdateScheduler().schedule(this);
+        return;
+      }
+      m_Dirty = false;
+      m_NextFrame = now + m_FrameInterval;
+      writeFrame();
+    }
+  }//paint
+
+  /**
+   * Method that will make the table active, reading and processing
+   * input, while refreshing it.
+   */
+  public void run() throws IOException {
+    int in = 0;
+    draw();
+    startRefreshing();
+    try {
+      do {
+        //get next key
+        in = m_IO.read();
+        synchronized (this) {
+          int visible = getVisibleRows();
+          switch (in) {
+            case BasicTerminalIO.UP:
+              m_Top--;
+              break;
+            case BasicTerminalIO.DOWN:
+              m_Top++;
+              break;
+            case BasicTerminalIO.PAGEUP:
+              m_Top -= visible;
+              break;
+            case BasicTerminalIO.PAGEDOWN:
+              m_Top += visible;
+              break;
+            case BasicTerminalIO.BEGIN:
+              m_Top = 0;
+              break;
+            case BasicTerminalIO.END:
+              m_Top = Integer.MAX_VALUE;
+              break;
+            case BasicTerminalIO.LEFT:
+              m_SortColumn = Math.max(-1, m_SortColumn - 1);
+              break;
+            case BasicTerminalIO.RIGHT:
+              m_SortColumn = Math.min(m_Source.getColumnCount() - 1, m_SortColumn + 1);
+              break;
+            case SPACE:
+              m_SortAscending = !m_SortAscending;
+              break;
+            case BasicTerminalIO.TABULATOR:
+            case BasicTerminalIO.ENTER:
+              in = -1;
+              break;
+            default:
+              m_IO.bell();
+          }
+          //answer the key right away
+          drawFrame();
+        }
+      } while (in != -1);
+    } finally {
+      stopRefreshing();
+    }
+  }//run
+
+  /**
+   * Method that draws the component.
+   */
+  public synchronized void draw() throws IOException {
+    m_ShownHeader = null;
+    m_Shown = null;
+    m_IO.storeCursor();
+    m_IO.setCursor(m_Position.getRow() + 1, m_Position.getColumn());
+    char[] rule = new char[m_Dim.getWidth()];
+    Arrays.fill(rule, '-');
+    m_IO.write(new String(rule));
+    m_IO.restoreCursor();
+    drawFrame();
+  }//draw
+
+  /**
+   * Draws the cells that changed since the last frame
+   * and flushes the output once.
+   */
+  private void drawFrame() throws IOException {
+    m_IO.storeCursor();
+    writeFrame();
+    m_IO.restoreCursor();
+    m_IO.flush();
+  }//drawFrame
+
+  /**
+   * Writes the cells that changed since the last frame.
+   */
+  private void writeFrame() throws IOException {
+    m_Dirty = false;
+    int cols = m_Source.getColumnCount();
+    if (m_Layout == null || m_Layout.length != cols) {
+      layout(cols);
+    }
+    int visible = getVisibleRows();
+    if (m_Shown == null) {
+      m_Shown = new String[visible][cols];
+    }
+    int rows = m_Source.getRowCount();
+    int[] order = sortRows(rows);
+    m_Top = Math.max(0, Math.min(m_Top, rows - visible));
+
+    String header = getHeader(cols);
+    if (!header.equals(m_ShownHeader)) {
+      m_IO.setCursor(m_Position.getRow(), m_Position.getColumn());
+      m_IO.write(header);
+      m_ShownHeader = header;
+    }
+    StringBuffer run = new StringBuffer(m_Dim.getWidth());
+    for (int r = 0; r < visible; r++) {
+      int row = m_Top + r;
+      if (row < rows && order != null) {
+        row = order[row];
+      }
+      int x = 0;
+      int start = -1;
+      run.setLength(0);
+      for (int c = 0; c < cols; c++) {
+        String text = (row < rows)
+            ? format(m_Source.getValueAt(row, c), c)
+            : format(null, c);
+        if (text.equals(m_Shown[r][c])) {
+          if (start >= 0) {
+            writeRun(r, start, run);
+            start = -1;
+          }
+        } else {
+          if (start < 0) {
+            start = x;
+            run.setLength(0);
+          } else {
+            run.append(' ');
+          }
+          run.append(text);
+          m_Shown[r][c] = text;
+        }
+        x += m_Layout[c] + 1;
+      }
+      if (start >= 0) {
+        writeRun(r, start, run);
+      }
+    }
+  }//writeFrame
+
+  private void writeRun(int row, int col, StringBuffer run) throws IOException {
+    m_IO.setCursor(m_Position.getRow() + HEADER_ROWS + row, m_Position.getColumn() + col);
+    m_IO.write(run.toString());
+  }//writeRun
+
+  /**
+   * Returns the row indexes in sort order,
+   * or null if the source order is kept.
+   */
+  private int[] sortRows(int rows) {
+    if (m_SortColumn < 0 || m_SortColumn >= m_Source.getColumnCount()) {
+      return null;
+    }
+    final Object[] keys = new Object[rows];
+    Integer[] idx = new Integer[rows];
+    for (int i = 0; i < rows; i++) {
+      keys[i] = m_Source.getValueAt(i, m_SortColumn);
+      idx[i] = Integer.valueOf(i);
+    }
+    final int sign = (m_SortAscending) ? 1 : -1;
+    Arrays.sort(idx, new Comparator() {
+      public int compare(Object o1, Object o2) {
+        return sign * compareValues(keys[((Integer) o1).intValue()],
+            keys[((Integer) o2).intValue()]);
+      }//compare
+    });
+    int[] order = new int[rows];
+    for (int i = 0; i < rows; i++) {
+      order[i] = idx[i].intValue();
+    }
+    return order;
+  }//sortRows
+
+  private static int compareValues(Object o1, Object o2) {
+    if (o1 == null || o2 == null) {
+      return (o1 == null) ? ((o2 == null) ? 0 : -1) : 1;
+    }
+    if (o1 instanceof Comparable && o1.getClass() == o2.getClass()) {
+      return ((Comparable) o1).compareTo(o2);
+    }
+    return o1.toString().compareTo(o2.toString());
+  }//compareValues
+
+  /**
+   * Computes the column widths; columns without a set width
+   * share the remaining space.
+   */
+  private void layout(int cols) {
+    m_Layout = new int[cols];
+    int space = m_Dim.getWidth() - Math.max(0, cols - 1);
+    int automatic = 0;
+    for (int c = 0; c < cols; c++) {
+      if (c < m_Widths.length && m_Widths[c] > 0) {
+        m_Layout[c] = Math.min(m_Widths[c], Math.max(0, space));
+        space -= m_Layout[c];
+      } else {
+        automatic++;
+      }
+    }
+    for (int c = 0; c < cols && automatic > 0; c++) {
+      if (c >= m_Widths.length || m_Widths[c] <= 0) {
+        m_Layout[c] = Math.max(0, space / automatic);
+        space -= m_Layout[c];
+        automatic--;
+      }
+    }
+    m_ShownHeader = null;
+    m_Shown = null;
+  }//layout
+
+  private String getHeader(int cols) {
+    StringBuffer sbuf = new StringBuffer(m_Dim.getWidth());
+    for (int c = 0; c < cols; c++) {
+      if (c > 0) {
+        sbuf.append(' ');
+      }
+      String name = m_Source.getColumnName(c);
+      if (c == m_SortColumn && m_Layout[c] > 0) {
+        name = fit(name, m_Layout[c] - 1, ALIGN_LEFT) + ((m_SortAscending) ? "^" : "v");
+      }
+      sbuf.append(fit(name, m_Layout[c], ALIGN_LEFT));
+    }
+    return sbuf.toString();
+  }//getHeader
+
+  private String format(Object value, int col) {
+    int align;
+    if (col < m_Alignments.length && m_Alignments[col] != ALIGN_DEFAULT) {
+      align = m_Alignments[col];
+    } else {
+      align = (value instanceof Number) ? ALIGN_RIGHT : ALIGN_LEFT;
+    }
+    return fit((value == null) ? "" : value.toString(), m_Layout[col], align);
+  }//format
+
+  private static String fit(String str, int width, int align) {
+    if (str.length() >= width) {
+      return str.substring(0, width);
+    }
+    StringBuffer sbuf = new StringBuffer(width);
+    if (align == ALIGN_LEFT) {
+      sbuf.append(str);
+    }
+    for (int i = str.length(); i < width; i++) {
+      sbuf.append(' ');
+    }
+    if (align == ALIGN_RIGHT) {
+      sbuf.append(str);
+    }
+    return sbuf.toString();
+  }//fit
+
+  private int getVisibleRows() {
+    return m_Dim.getHeight() - HEADER_ROWS;
+  }//getVisibleRows
+
+  private static int[] ensureLength(int[] arr, int len) {
+    if (arr.length >= len) {
+      return arr;
+    }
+    int[] larger = new int[len];
+    System.arraycopy(arr, 0, larger, 0, arr.length);
+    return larger;
+  }//ensureLength
+
+  /**
+   * Constant definitions
+   */
+  public static final int ALIGN_DEFAULT = 0;
+  public static final int ALIGN_LEFT = 1;
+  public static final int ALIGN_RIGHT = 2;
+  private static final int HEADER_ROWS = 2;
+  private static final int DEFAULT_FRAMERATE = 4;
+  private static final int SPACE = 32;
+
+}//class Table
@@ -0,0 +1,79 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.io.toolkit;
+
+/**
+ * Interface that has to be implemented by any class
+ * that should provide the data of a Table.<br>
+ * The methods are called from the thread drawing the
+ * table frames; values that are Comparable of the same
+ * class are sorted by their natural order, others by their
+ * string representation.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public interface TableSource {
+
+  /**
+   * Returns the number of columns.
+   *
+   * @return int representing the number of columns.
+   */
+  public int getColumnCount();
+
+  /**
+   * Returns the name of a column, shown in the table header.
+   *
+   * @param col int representing the column index.
+   * @return String representing the name.
+   */
+  public String getColumnName(int col);
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return int representing the number of rows.
+   */
+  public int getRowCount();
+
+  /**
+   * Returns the value of a cell.
+   *
+   * @param row int representing the row index.
+   * @param col int representing the column index.
+   * @return the value, or null for an empty cell.
+   */
+  public Object getValueAt(int row, int col);
+
+}//interface TableSource
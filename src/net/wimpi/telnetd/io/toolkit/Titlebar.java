@@ -34,6 +34,7 @@ package net.wimpi.telnetd.io.toolkit;
 
 
 import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.io.Repaintable;
 import net.wimpi.telnetd.io.terminal.ColorHelper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,7 +48,9 @@ import java.io.IOException;
  * @author Dieter Wimberger
  * @version 2.0 (13/03/2005)
  */
-public class Titlebar extends InertComponent {
+public class Titlebar
+    extends InertComponent
+    implements Repaintable {
 
   private static Log log = LogFactory.getLog(Titlebar.class);
   //Members
@@ -55,6 +58,7 @@ public class Titlebar extends InertComponent {
   private int m_Align;
   private String m_BgColor;
   private String m_FgColor;
+  private String m_Painted;
 
 
   /**
@@ -121,10 +125,30 @@ public class Titlebar extends InertComponent {
   public void draw() throws IOException {
     m_IO.storeCursor();
     m_IO.homeCursor();
-    m_IO.write(getBar());
+    m_Painted = getBar();
+    m_IO.write(m_Painted);
     m_IO.restoreCursor();
   }//draw
 
+  /**
+   * Requests a repaint of the titlebar from any thread, e.g. one
+   * updating a clock. The repaint is serialized with the input
+   * by the connection's UpdateScheduler and skipped if the
+   * titlebar did not change since it was drawn.
+   */
+  public void repaint() {
+    m_IO.getUpdateScheduler().schedule(this);
+  }//repaint
+
+  public void paint() throws IOException {
+    String bar = getBar();
+    if (!bar.equals(m_Painted)) {
+      m_IO.homeCursor();
+      m_IO.write(bar);
+      m_Painted = bar;
+    }
+  }//paint
+
 
   /**
    * Internal method that creates the true titlebarstring displayed
@@ -135,9 +159,9 @@ public class Titlebar extends InertComponent {
     //get actual screen width , remove the correction offset
     int width = m_IO.getColumns() - 1;
     //get actual titletext width
-    int textwidth = (int) ColorHelper.getVisibleLength(m_Title);
+    int textwidth = (int) ColorHelper.getVisibleLength(ttitle);
 
-    if (textwidth > width) ttitle = m_Title.substring(0, width);
+    if (textwidth > width) ttitle = ttitle.substring(0, width);
     textwidth = (int) ColorHelper.getVisibleLength(ttitle);
 
     //prepare a buffer with enough space
@@ -39,6 +39,8 @@ import net.wimpi.telnetd.shell.ShellManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.Vector;
 
 /**
@@ -71,6 +73,9 @@ public class Connection
   private static int m_Number;			//unique number for a thread in the thread group
   private boolean m_Dead;
   private Vector m_Listeners;
+  private Vector m_ResizeListeners;
+  private TimerTask m_ResizeTask;			//pending (debounced) resize notification
+  private static Timer c_ResizeTimer;		//shared by all connections
 
   //Associations
   private ConnectionData m_ConnectionData;	//associated information
@@ -95,6 +100,7 @@ public class Connection
     //init the connection listeners for events
     //(there should actually be only one or two)
     m_Listeners = new Vector(3);
+    m_ResizeListeners = new Vector(3);
     m_TerminalIO = new TerminalIO(this);
     m_Dead = false;
   }//constructor
@@ -208,6 +214,8 @@ public class Connection
       try {
         //connection dead
         m_Dead = true;
+        //drop pending notifications
+        cancelResizeTask();
         //close i/o
         m_TerminalIO.close();
         //close socket
@@ -259,6 +267,82 @@ public class Connection
     m_Listeners.removeElement(cl);
   }//removeConnectionListener
 
+  /**
+   * Method that registers a ResizeListener with the
+   * Connection instance.
+   *
+   * @param rl ResizeListener to be registered.
+   * @see net.wimpi.telnetd.net.ResizeListener
+   */
+  public void addResizeListener(ResizeListener rl) {
+    m_ResizeListeners.addElement(rl);
+  }//addResizeListener
+
+  /**
+   * Method that removes a ResizeListener from the
+   * Connection instance.
+   *
+   * @param rl ResizeListener to be removed.
+   * @see net.wimpi.telnetd.net.ResizeListener
+   */
+  public void removeResizeListener(ResizeListener rl) {
+    m_ResizeListeners.removeElement(rl);
+  }//removeResizeListener
+
+  /**
+   * Method called by the io subsystem when the client reported
+   * a new terminal geometry.<br>
+   * The CONNECTION_RESIZED event is fired once no further change
+   * was reported for RESIZE_DELAY milliseconds, so that a burst of
+   * reports results in a single notification.
+   */
+  public synchronized void processTerminalResize() {
+    if (m_Dead) {
+      return;
+    }
+    cancelResizeTask();
+    m_ResizeTask = new TimerTask() {
+      public void run() {
+        synchronized (Connection.this) {
+          if (m_ResizeTask != this) {
+            return;
+          }
+          m_ResizeTask = null;
+        }
+        m_ConnectionData.resetTerminalGeometryChanged();
+        processConnectionEvent(new ConnectionEvent(Connection.this, ConnectionEvent.CONNECTION_RESIZED));
+      }
+    };
+    getResizeTimer().schedule(m_ResizeTask, RESIZE_DELAY);
+  }//processTerminalResize
+
+  private synchronized void cancelResizeTask() {
+    if (m_ResizeTask != null) {
+      m_ResizeTask.cancel();
+      m_ResizeTask = null;
+    }
+  }//cancelResizeTask
+
+  private static synchronized Timer getResizeTimer() {
+    if (c_ResizeTimer == null) {
+      c_ResizeTimer = new Timer(true);
+    }
+    return c_ResizeTimer;
+  }//getResizeTimer
+
+  /**
+   * Cancels the timer thread shared for debouncing resize
+   * notifications. Pending notifications are dropped.<br>
+   * Should be called when the daemon is stopped, a later
+   * resize will create a new timer.
+   */
+  public static synchronized void stopResizeTimer() {
+    if (c_ResizeTimer != null) {
+      c_ResizeTimer.cancel();
+      c_ResizeTimer = null;
+    }
+  }//stopResizeTimer
+
 
   /**
    * Method called by the io subsystem to pass on a
@@ -269,6 +353,15 @@ public class Connection
    * @see net.wimpi.telnetd.net.ConnectionEvent
    */
   public void processConnectionEvent(ConnectionEvent ce) {
+    if (ce.isType(ConnectionEvent.CONNECTION_RESIZED)) {
+      fireResize(ce);
+      return;
+    }
+    if (ce.isType(ConnectionEvent.CONNECTION_INTERRUPT)
+        || ce.isType(ConnectionEvent.CONNECTION_ABORTOUTPUT)) {
+      fireSignal(ce);
+      return;
+    }
     for (int i = 0; i < m_Listeners.size(); i++) {
       ConnectionListener cl = (ConnectionListener) m_Listeners.elementAt(i);
       if (ce.isType(ConnectionEvent.CONNECTION_IDLE)) {
@@ -286,4 +379,51 @@ public class Connection
     }
   }//processConnectionEvent
 
+  private void fireResize(ConnectionEvent ce) {
+    //shells implementing ResizeListener are notified directly
+    Object[] listeners = m_Listeners.toArray();
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i] instanceof ResizeListener) {
+        notifyResize((ResizeListener) listeners[i], ce);
+      }
+    }
+    listeners = m_ResizeListeners.toArray();
+    for (int i = 0; i < listeners.length; i++) {
+      notifyResize((ResizeListener) listeners[i], ce);
+    }
+  }//fireResize
+
+  private void fireSignal(ConnectionEvent ce) {
+    //only shells implementing SignalListener are interested
+    Object[] listeners = m_Listeners.toArray();
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i] instanceof SignalListener) {
+        SignalListener sl = (SignalListener) listeners[i];
+        try {
+          if (ce.isType(ConnectionEvent.CONNECTION_INTERRUPT)) {
+            sl.connectionInterrupted(ce);
+          } else {
+            sl.connectionOutputAborted(ce);
+          }
+        } catch (Exception ex) {
+          log.error("fireSignal()", ex);
+        }
+      }
+    }
+  }//fireSignal
+
+  private void notifyResize(ResizeListener rl, ConnectionEvent ce) {
+    try {
+      rl.onResize(ce);
+    } catch (Exception ex) {
+      log.error("fireResize()", ex);
+    }
+  }//notifyResize
+
+  /**
+   * Quiet period after the last reported geometry change
+   * before listeners are notified (in milliseconds).
+   */
+  public static final int RESIZE_DELAY = 200;
+
 }//class Connection
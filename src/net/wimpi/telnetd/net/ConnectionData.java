@@ -253,13 +253,10 @@ public class ConnectionData {
    * <li>index 0: Width in columns.
    * <li>index 1: Height in rows.
    * </ul>
-   * A call will reset the terminal geometry changed flag.
    *
    * @return integer array containing width and height.
    */
   public int[] getTerminalGeometry() {
-    //we toggle the flag because the change should now be known
-    if (m_TerminalGeometryChanged) m_TerminalGeometryChanged = false;
     return m_TerminalGeometry;
   }//getTerminalGeometry
 
@@ -283,7 +280,8 @@ public class ConnectionData {
 
   /**
    * Returns the state of the terminal geometry changed flag,
-   * which will be true if it has been set, and false
+   * which will be true if a change has been reported, that was
+   * not yet notified to the resize listeners, and false
    * if not.
    *
    * @return the state of the terminal geometry changed flag.
@@ -292,6 +290,16 @@ public class ConnectionData {
     return m_TerminalGeometryChanged;
   }//isTerminalGeometryChanged
 
+  /**
+   * Resets the terminal geometry changed flag.<br>
+   * <em>This method should not be called explicitly
+   * by the application</em>; the flag is reset once the
+   * resize notification has been fired.
+   */
+  public void resetTerminalGeometryChanged() {
+    m_TerminalGeometryChanged = false;
+  }//resetTerminalGeometryChanged
+
   /**
    * Sets the terminal type that has been negotiated
    * between telnet client and telnet server, in form of
@@ -126,4 +126,24 @@ public class ConnectionEvent {
    */
   public static final int CONNECTION_BREAK = 104;
 
+  /**
+   * Defines the connection resized event type.<br>
+   * It occurs when the terminal geometry reported by
+   * the client (NAWS) changed and settled.
+   */
+  public static final int CONNECTION_RESIZED = 105;
+
+  /**
+   * Defines the connection sent interrupt event type.<br>
+   * It occurs when the connection sent a NVT IP (Interrupt Process).
+   */
+  public static final int CONNECTION_INTERRUPT = 106;
+
+  /**
+   * Defines the connection aborted output event type.<br>
+   * It occurs when the connection sent a NVT AO (Abort Output)
+   * or a SYNCH; queued output has been discarded already.
+   */
+  public static final int CONNECTION_ABORTOUTPUT = 107;
+
 }//class ConnectionEvent
@@ -33,6 +33,8 @@
 package net.wimpi.telnetd.net;
 
 import net.wimpi.telnetd.BootException;
+import net.wimpi.telnetd.io.TokenBucket;
+import net.wimpi.telnetd.io.terminal.Terminal;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -68,6 +70,11 @@ public class ConnectionManager
   private String m_LoginShell;
   private boolean m_LineMode = false;
   private boolean m_Stopping = false;
+  private int m_EgressRate;			//bytes/sec per connection, 0 is unlimited
+  private int m_EgressBurst;			//burst size per connection
+  private boolean m_EgressSummarize;	//summarize instead of blocking
+  private int m_ColorDepth = -1;		//color depth of the terminals, -1 is auto
+  private static TokenBucket c_GlobalEgress;	//shared by all listeners, may be null
 
 
   private ConnectionManager(int con, int timew, int timedis,
@@ -107,6 +114,89 @@ public class ConnectionManager
     return m_Filter;
   }//getConnectionFilter
 
+  /**
+   * Configures output shaping for the connections of this
+   * <tt>ConnectionManager</tt>.
+   *
+   * @param rate      bytes per second per connection, 0 if unlimited.
+   * @param burst     burst size in bytes per connection.
+   * @param summarize true if output exceeding the rate should be summarized
+   *                  instead of being delayed.
+   */
+  public void setEgressShaping(int rate, int burst, boolean summarize) {
+    m_EgressRate = rate;
+    m_EgressBurst = burst;
+    m_EgressSummarize = summarize;
+  }//setEgressShaping
+
+  /**
+   * Creates the token bucket for shaping the output of a
+   * new connection. The server wide bucket is its parent.
+   *
+   * @return the TokenBucket instance, or null if output is not shaped.
+   */
+  public TokenBucket createEgressBucket() {
+    if (m_EgressRate <= 0) {
+      return getGlobalEgress();
+    }
+    return new TokenBucket(m_EgressRate, m_EgressBurst, getGlobalEgress());
+  }//createEgressBucket
+
+  /**
+   * Tests if output exceeding the shaping rate is summarized.<br>
+   * In that case whole lines of bulk output are dropped
+   * and replaced by periodic markers, instead of delaying the
+   * writer until the bandwidth is available.
+   *
+   * @return true if summarizing, false if blocking.
+   */
+  public boolean isEgressSummarizing() {
+    return m_EgressSummarize;
+  }//isEgressSummarizing
+
+  /**
+   * Sets the color depth assumed for the terminals of
+   * this <tt>ConnectionManager</tt>'s connections.
+   *
+   * @param depth one of the Terminal.COLORS_* constants, or -1
+   *              to use the depth the terminal declares.
+   */
+  public void setColorDepth(int depth) {
+    m_ColorDepth = depth;
+  }//setColorDepth
+
+  /**
+   * Returns the color depth assumed for the terminals of
+   * this <tt>ConnectionManager</tt>'s connections.
+   *
+   * @return one of the Terminal.COLORS_* constants, or -1 if
+   *         the depth the terminal declares is used.
+   */
+  public int getColorDepth() {
+    return m_ColorDepth;
+  }//getColorDepth
+
+  private static synchronized TokenBucket getGlobalEgress() {
+    return c_GlobalEgress;
+  }//getGlobalEgress
+
+  private static synchronized void prepareGlobalEgress(Properties settings) {
+    int rate = Integer.parseInt(settings.getProperty("egress.rate", "0"));
+    int burst = Integer.parseInt(settings.getProperty("egress.burst", "0"));
+    if (rate <= 0) {
+      c_GlobalEgress = null;
+      return;
+    }
+    if (c_GlobalEgress != null && c_GlobalEgress.getRate() == rate
+        && c_GlobalEgress.getBurst() == ((burst < 1) ? rate : burst)) {
+      //same configuration, shared by all listeners
+      return;
+    }
+    //connections created before keep the bucket they were given
+    c_GlobalEgress = new TokenBucket(rate, burst, null);
+    log.info("Server wide output limited to " + rate + " bytes/sec.");
+  }//prepareGlobalEgress
+
   /**
    * Starts this <tt>ConnectionManager</tt>.
    */
@@ -330,6 +420,23 @@ public class ConnectionManager
       }
       //return fabricated manager
       ConnectionManager cm = new ConnectionManager(maxc, timow, timodis, hoke, filter, loginshell, linemode);
+      //output shaping
+      prepareGlobalEgress(settings);
+      cm.setEgressShaping(
+          Integer.parseInt(settings.getProperty(name + ".egress.rate", "0")),
+          Integer.parseInt(settings.getProperty(name + ".egress.burst", "0")),
+          "summarize".equalsIgnoreCase(settings.getProperty(name + ".egress.mode")));
+      //colors
+      String colordepth = settings.getProperty(name + ".colordepth", "auto").toLowerCase();
+      if (colordepth.equals("basic")) {
+        cm.setColorDepth(Terminal.COLORS_BASIC);
+      } else if (colordepth.equals("256")) {
+        cm.setColorDepth(Terminal.COLORS_INDEXED);
+      } else if (colordepth.equals("rgb")) {
+        cm.setColorDepth(Terminal.COLORS_RGB);
+      } else if (!colordepth.equals("auto")) {
+        log.error("Unknown color depth " + colordepth + ", using auto.");
+      }
       //set higher priority!
       //cm.setPriority(Thread.NORM_PRIORITY + 2);
       return cm;
@@ -0,0 +1,67 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.net;
+
+/**
+ * Interface to be implemented if a class wants to be
+ * notified about changes of the terminal geometry.<br>
+ * Notifications are debounced: while a client keeps reporting
+ * new sizes (e.g. during a drag-resize of its window), no event
+ * is fired; the listener is called once the size settled.<br>
+ * Note that the notification is issued by a timer thread and not
+ * by the connection's thread, as are the idle and timeout
+ * notifications of a ConnectionListener.
+ * <p/>
+ * Shells that implement this interface in addition to
+ * ConnectionListener are notified without further registration,
+ * other listeners (e.g. toolkit components) register with
+ * Connection.addResizeListener() or BasicTerminalIO.addResizeListener().
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ * @see net.wimpi.telnetd.net.ConnectionEvent#CONNECTION_RESIZED
+ */
+public interface ResizeListener {
+
+  /**
+   * Called when a CONNECTION_RESIZED event occured.
+   * The new geometry can be obtained from the connection's
+   * ConnectionData.
+   *
+   * @param ce ConnectionEvent instance.
+   * @see net.wimpi.telnetd.net.ConnectionEvent#CONNECTION_RESIZED
+   */
+  public void onResize(ConnectionEvent ce);
+
+}//interface ResizeListener
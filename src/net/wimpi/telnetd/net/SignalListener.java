@@ -0,0 +1,72 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.net;
+
+/**
+ * Interface to be implemented by shells that want to react
+ * to the NVT signals Interrupt Process (IP) and Abort Output
+ * (AO, respectively a SYNCH sent by the client).<br>
+ * Shells that implement this interface in addition to
+ * ConnectionListener are notified without further registration.
+ * <p/>
+ * Notifications are issued by the thread reading from the
+ * connection, when the signal is encountered in the input.
+ * By the time connectionOutputAborted() is called, the output
+ * buffered by the connection has already been discarded and the
+ * output epoch (see BasicTerminalIO.getOutputEpoch()) was advanced,
+ * so that producers can drop their own queued output.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ * @see net.wimpi.telnetd.net.ConnectionEvent#CONNECTION_INTERRUPT
+ * @see net.wimpi.telnetd.net.ConnectionEvent#CONNECTION_ABORTOUTPUT
+ */
+public interface SignalListener {
+
+  /**
+   * Called when a CONNECTION_INTERRUPT event occured.
+   *
+   * @param ce ConnectionEvent instance.
+   * @see net.wimpi.telnetd.net.ConnectionEvent#CONNECTION_INTERRUPT
+   */
+  public void connectionInterrupted(ConnectionEvent ce);
+
+  /**
+   * Called when a CONNECTION_ABORTOUTPUT event occured.
+   *
+   * @param ce ConnectionEvent instance.
+   * @see net.wimpi.telnetd.net.ConnectionEvent#CONNECTION_ABORTOUTPUT
+   */
+  public void connectionOutputAborted(ConnectionEvent ce);
+
+}//interface SignalListener
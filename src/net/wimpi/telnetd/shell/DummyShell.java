@@ -40,6 +40,7 @@ import net.wimpi.telnetd.io.toolkit.*;
 import net.wimpi.telnetd.net.Connection;
 import net.wimpi.telnetd.net.ConnectionData;
 import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.net.ResizeListener;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -56,7 +57,7 @@ import java.io.IOException;
  * @version 2.0 (13/03/2005)
  */
 public class DummyShell
-    implements Shell {
+    implements Shell, ResizeListener {
 
   private static Log log = LogFactory.getLog(DummyShell.class);
   private Connection m_Connection;
@@ -309,6 +310,11 @@ public class DummyShell
     }
   }//connectionSentBreak
 
+  public void onResize(ConnectionEvent ce) {
+    ConnectionData cd = ce.getSource().getConnectionData();
+    log.debug("onResize():: " + cd.getTerminalColumns() + "x" + cd.getTerminalRows());
+  }//onResize
+
 
   public static Shell createShell() {
     return new DummyShell();
@@ -45,7 +45,10 @@ import net.wimpi.telnetd.net.ConnectionListener;
  * This method can either create a new instance of the class,
  * or it can return a recyled instance thats coming from a cache
  * (which is propably a good idea for using resources better
- * and increasing the performance).
+ * and increasing the performance).<br>
+ * A shell that also implements net.wimpi.telnetd.net.ResizeListener
+ * will be notified about terminal resizes once it registered as
+ * ConnectionListener.
  *
  * @author Dieter Wimberger
  * @version 2.0 (13/03/2005)
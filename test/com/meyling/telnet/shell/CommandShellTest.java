@@ -0,0 +1,117 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.meyling.telnet.shell;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.wimpi.telnetd.util.LoopbackConnection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the command shell over a loopback connection.
+ *
+ * @author    agent
+ */
+public final class CommandShellTest {
+
+    /** Maximum time to wait for the screen. */
+    private static final long WAIT = 5000;
+
+    /** Client connection. */
+    private LoopbackConnection loopback;
+
+    @Before
+    public void setUp() throws Exception {
+        loopback = new LoopbackConnection(LoopbackConnection.loadSettings(),
+            "std", "vt100", 80, 24);
+        loopback.start(new CommandShell());
+        assertTrue(loopback.waitForText("> ", WAIT));
+    }
+
+    @After
+    public void tearDown() {
+        loopback.close();
+    }
+
+    @Test
+    public void runsCommands() throws Exception {
+        loopback.type("echo hello world\n");
+        assertTrue(waitForLine("hello world"));
+    }
+
+    @Test
+    public void keysTypedWhileRunningAreKept() throws Exception {
+        loopback.type("count 5 100\n");
+        assertTrue(waitForLine("1"));
+        loopback.type("echo ahead\n");
+        assertTrue(waitForLine("5"));
+        assertTrue(waitForLine("> echo ahead"));
+        assertTrue(waitForLine("ahead"));
+    }
+
+    @Test
+    public void controlCCancelsTheCommand() throws Exception {
+        loopback.type("count 100 50\n");
+        assertTrue(waitForLine("2"));
+        loopback.type("\u0003");
+        assertTrue(loopback.waitForText("^C", WAIT));
+        loopback.type("echo done\n");
+        assertTrue(waitForLine("done"));
+        assertFalse(showsLine("100"));
+    }
+
+    /**
+     * Wait until a line of the screen shows a text.
+     *
+     * @param   text    Text of the line, without trailing blanks.
+     * @return  Shown within {@link #WAIT}?
+     * @throws  InterruptedException    Interrupted while waiting.
+     */
+    private boolean waitForLine(final String text) throws InterruptedException {
+        final long end = System.currentTimeMillis() + WAIT;
+        while (!showsLine(text)) {
+            if (System.currentTimeMillis() >= end) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    /**
+     * Does a line of the screen show a text?
+     *
+     * @param   text    Text of the line, without trailing blanks.
+     * @return  Shown?
+     */
+    private boolean showsLine(final String text) {
+        for (int row = 1; row <= loopback.getScreen().getRows(); row++) {
+            if (loopback.getScreen().getLine(row).trim().equals(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,199 @@
+/* $Id$
+ *
+ * This file is part of the project "Poor Woman's Telnet Server".
+ *
+ *   http://pwts.sourceforge.net/
+ *
+ * Copyright 2006,  Michael Meyling <michael@meyling.com>.
+ *
+ * "PWTS" is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.meyling.telnet.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the log tailer with a temporary file.
+ *
+ * @author    agent
+ */
+public final class LogTailerTest {
+
+    /** Maximum time to wait for lines. */
+    private static final long WAIT = 5000;
+
+    /** Followed file. */
+    private File file;
+
+    /** Tailer of the file. */
+    private LogTailer tailer;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("tail", ".log");
+        append(0, 10);
+        tailer = new LogTailer(file, 100, 20);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void filterGetsBacklogThenNewLines() throws Exception {
+        final Collector collector = new Collector();
+        tailer.subscribe(collector, "[02468]$", 3);
+        append(10, 15);
+        assertTrue(collector.await(6));
+        assertEquals("[line 4, line 6, line 8, line 10, line 12, line 14]",
+            collector.getLines().toString());
+        tailer.unsubscribe(collector);
+    }
+
+    @Test
+    public void blockedFilterDoesNotStallOtherSubscribers() throws Exception {
+        final Blocking blocking = new Blocking();
+        final Collector all = new Collector();
+        tailer.subscribe(blocking, "line", 1);
+        tailer.subscribe(all, null, 1);
+        append(10, 12);
+        assertTrue(all.await(3));
+        assertEquals("[line 9, line 10, line 11]", all.getLines().toString());
+        // more lines than a filter may fall behind
+        append(12, 20012);
+        assertTrue(all.await(20003));
+        blocking.release();
+        assertTrue(blocking.await(20003));
+        assertEquals("[line 9, line 10, line 11]", blocking.getLines().subList(0, 3).toString());
+        assertTrue(blocking.getDropped() > 0);
+        tailer.unsubscribe(blocking);
+        tailer.unsubscribe(all);
+    }
+
+    /**
+     * Append numbered lines to the file.
+     *
+     * @param   from    Number of the first line.
+     * @param   to      Number after the last line.
+     * @throws  IOException Writing failed.
+     */
+    private void append(final int from, final int to) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            for (int i = from; i < to; i++) {
+                out.write(("line " + i + "\n").getBytes());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Collects the lines it gets.
+     */
+    private static class Collector implements LogTailer.Subscriber {
+
+        /** Lines got so far. */
+        private final List lines = new ArrayList();
+
+        /** Number of lines dropped so far. */
+        private int dropped;
+
+        public synchronized void linesAppended(final List appended) {
+            lines.addAll(appended);
+            notifyAll();
+        }
+
+        public synchronized void linesDropped(final int count) {
+            dropped += count;
+            notifyAll();
+        }
+
+        /**
+         * Get the lines got so far.
+         *
+         * @return  Lines.
+         */
+        synchronized List getLines() {
+            return lines;
+        }
+
+        /**
+         * Get the number of lines dropped so far.
+         *
+         * @return  Number of dropped lines.
+         */
+        synchronized int getDropped() {
+            return dropped;
+        }
+
+        /**
+         * Wait for a number of lines, dropped lines included.
+         *
+         * @param   count   Number of lines.
+         * @return  Got them within {@link #WAIT}?
+         * @throws  InterruptedException    Interrupted while waiting.
+         */
+        synchronized boolean await(final int count) throws InterruptedException {
+            final long end = System.currentTimeMillis() + WAIT;
+            while (lines.size() + dropped < count) {
+                final long wait = end - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return false;
+                }
+                wait(wait);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Collects lines, but blocks the thread passing them until released.
+     */
+    private static final class Blocking extends Collector {
+
+        /** May lines be taken? */
+        private boolean released;
+
+        public synchronized void linesAppended(final List appended) {
+            while (!released) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            super.linesAppended(appended);
+        }
+
+        /**
+         * Stop blocking.
+         */
+        synchronized void release() {
+            released = true;
+            notifyAll();
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.toolkit;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the gap buffer of the CharBuffer against a StringBuffer
+ * with random edits.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class CharBufferTest {
+
+  @Test
+  public void randomEditsMatchStringBuffer() throws Exception {
+    for (long seed = 0; seed < SEEDS; seed++) {
+      Random rnd = new Random(seed);
+      CharBuffer buffer = new CharBuffer();
+      StringBuffer expected = new StringBuffer();
+      for (int op = 0; op < OPERATIONS; op++) {
+        String context = "seed " + seed + ", operation " + op;
+        int size = expected.length();
+        switch (rnd.nextInt(9)) {
+          case 0: {
+            int pos = rnd.nextInt(size + 1);
+            char ch = randomChar(rnd);
+            buffer.insertCharAt(pos, ch);
+            expected.insert(pos, ch);
+            break;
+          }
+          case 1: {
+            int pos = rnd.nextInt(size + 1);
+            String str = randomString(rnd);
+            buffer.insertStringAt(pos, str);
+            expected.insert(pos, str);
+            break;
+          }
+          case 2: {
+            int pos = rnd.nextInt(size + 1);
+            char[] chars = randomString(rnd).toCharArray();
+            int off = rnd.nextInt(chars.length + 1);
+            int len = rnd.nextInt(chars.length - off + 1);
+            buffer.insertCharsAt(pos, chars, off, len);
+            expected.insert(pos, chars, off, len);
+            break;
+          }
+          case 3: {
+            char ch = randomChar(rnd);
+            buffer.append(ch);
+            expected.append(ch);
+            break;
+          }
+          case 4: {
+            int begin = rnd.nextInt(size + 1);
+            int end = begin + rnd.nextInt(size - begin + 1);
+            buffer.remove(begin, end);
+            expected.delete(begin, end);
+            break;
+          }
+          case 5:
+            if (size > 0) {
+              int pos = rnd.nextInt(size);
+              buffer.removeCharAt(pos);
+              expected.deleteCharAt(pos);
+            }
+            break;
+          case 6:
+            if (size > 0) {
+              int pos = rnd.nextInt(size);
+              char ch = randomChar(rnd);
+              buffer.setCharAt(pos, ch);
+              expected.setCharAt(pos, ch);
+            }
+            break;
+          case 7:
+            //caches the string, later edits have to drop it
+            assertEquals(context, expected.toString(), buffer.toString());
+            break;
+          default:
+            if (rnd.nextInt(50) == 0) {
+              buffer.clear();
+              expected.setLength(0);
+            }
+        }
+        assertEquals(context, expected.length(), buffer.size());
+        if (expected.length() > 0) {
+          int pos = rnd.nextInt(expected.length());
+          assertEquals(context, expected.charAt(pos), buffer.getCharAt(pos));
+        }
+        int begin = rnd.nextInt(expected.length() + 1);
+        int end = begin + rnd.nextInt(expected.length() - begin + 1);
+        assertEquals(context, expected.substring(begin, end), buffer.substring(begin, end));
+      }
+      assertEquals("seed " + seed, expected.toString(), buffer.toString());
+    }
+  }//randomEditsMatchStringBuffer
+
+  @Test
+  public void ensureSpaceChecksTheLimit() throws Exception {
+    CharBuffer buffer = new CharBuffer(4);
+    buffer.ensureSpace(4);
+    buffer.append("abc");
+    buffer.ensureSpace(1);
+    try {
+      buffer.ensureSpace(2);
+      fail("space beyond the limit");
+    } catch (BufferOverflowException ex) {
+      //expected
+    }
+  }//ensureSpaceChecksTheLimit
+
+  @Test
+  public void positionsOutsideTheBufferAreRejected() throws Exception {
+    CharBuffer buffer = new CharBuffer();
+    buffer.append("abc");
+    int[] invalid = {-1, 3};
+    for (int i = 0; i < invalid.length; i++) {
+      try {
+        buffer.getCharAt(invalid[i]);
+        fail("getCharAt(" + invalid[i] + ")");
+      } catch (IndexOutOfBoundsException ex) {
+        //expected
+      }
+    }
+    try {
+      buffer.insertCharAt(4, 'x');
+      fail("insertCharAt(4)");
+    } catch (IndexOutOfBoundsException ex) {
+      //expected
+    }
+    try {
+      buffer.remove(2, 4);
+      fail("remove(2, 4)");
+    } catch (IndexOutOfBoundsException ex) {
+      //expected
+    }
+    assertEquals("abc", buffer.toString());
+  }//positionsOutsideTheBufferAreRejected
+
+  private static char randomChar(Random rnd) {
+    return (char) ('a' + rnd.nextInt(26));
+  }//randomChar
+
+  private static String randomString(Random rnd) {
+    //longer than the initial capacity now and then, to grow the gap
+    int len = (rnd.nextInt(20) == 0) ? rnd.nextInt(200) : rnd.nextInt(8);
+    StringBuffer sbuf = new StringBuffer(len);
+    for (int i = 0; i < len; i++) {
+      sbuf.append(randomChar(rnd));
+    }
+    return sbuf.toString();
+  }//randomString
+
+  private static final int SEEDS = 50;
+  private static final int OPERATIONS = 2000;
+
+}//class CharBufferTest
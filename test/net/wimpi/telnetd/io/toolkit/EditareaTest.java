@@ -0,0 +1,102 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.toolkit;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.util.LoopbackConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Editarea over a loopback connection.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class EditareaTest {
+
+  private LoopbackConnection m_Loopback;
+
+  @Before
+  public void setUp() throws Exception {
+    m_Loopback = new LoopbackConnection(LoopbackConnection.loadSettings(),
+        "std", "vt100", 40, 12);
+  }//setUp
+
+  @After
+  public void tearDown() {
+    m_Loopback.close();
+  }//tearDown
+
+  @Test
+  public void typedRowsAreSeparatedByHardwraps() throws Exception {
+    //the area is edited from the cursor position on
+    Editarea area = new Editarea(m_Loopback.getTerminalIO(), "area", 5, 10);
+    Thread t = m_Loopback.start(area);
+    m_Loopback.type("hello\nworld");
+    assertTrue(m_Loopback.waitForText("world", WAIT));
+    m_Loopback.press(BasicTerminalIO.TABULATOR);
+    t.join(WAIT);
+    assertEquals("hello\nworld", area.getValue());
+    assertEquals("hello", m_Loopback.getScreen().getLine(1).trim());
+    assertEquals("world", m_Loopback.getScreen().getLine(2).trim());
+  }//typedRowsAreSeparatedByHardwraps
+
+  @Test
+  public void setValueWrapsLongLinesAtBlanks() throws Exception {
+    Editarea area = new Editarea(m_Loopback.getTerminalIO(), "area", 5, 10);
+    String text = "the quick brown fox jumps over the lazy dog and runs away\nend";
+    area.setValue(text);
+    Document doc = area.getDocument();
+    assertEquals(3, doc.getLineCount());
+    for (int i = 0; i < doc.getLineCount(); i++) {
+      //the row and its softwrap marker fit the row width
+      assertTrue(doc.getLine(i).length() <= 40);
+    }
+    assertEquals(text, area.getValue());
+  }//setValueWrapsLongLinesAtBlanks
+
+  @Test(expected = BufferOverflowException.class)
+  public void setValueRejectsMoreRowsThanAllowed() throws Exception {
+    Editarea area = new Editarea(m_Loopback.getTerminalIO(), "area", 3, 3);
+    area.setValue("one\ntwo\nthree\nfour");
+  }//setValueRejectsMoreRowsThanAllowed
+
+  private static final long WAIT = 3000;
+
+}//class EditareaTest
@@ -0,0 +1,105 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.toolkit;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.util.LoopbackConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Listbox and the Selection over a loopback connection.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class ListboxTest {
+
+  private LoopbackConnection m_Loopback;
+
+  @Before
+  public void setUp() throws Exception {
+    m_Loopback = new LoopbackConnection(LoopbackConnection.loadSettings(),
+        "std", "vt100", 40, 12);
+  }//setUp
+
+  @After
+  public void tearDown() {
+    m_Loopback.close();
+  }//tearDown
+
+  @Test
+  public void typingFiltersTheOptions() throws Exception {
+    Listbox list = new Listbox(m_Loopback.getTerminalIO(), "list", 20, 6);
+    list.addOptions(new String[]{"apple", "banana", "apricot", "cherry"});
+    list.setLocation(new Point(1, 1));
+    Thread t = m_Loopback.start(list);
+    assertTrue(m_Loopback.waitForText("cherry", WAIT));
+    m_Loopback.type("ap");
+    assertTrue(m_Loopback.waitForText(" 2/4", WAIT));
+    m_Loopback.press(BasicTerminalIO.DOWN);
+    assertTrue(m_Loopback.waitForText("> apricot", WAIT));
+    m_Loopback.press(BasicTerminalIO.ENTER);
+    t.join(WAIT);
+    assertEquals("ap", list.getFilter());
+    assertEquals(2, list.getSelected());
+    assertEquals("apple", m_Loopback.getScreen().getLine(1).trim());
+    assertEquals("> apricot", m_Loopback.getScreen().getLine(2).trim());
+    assertFalse(m_Loopback.getScreen().contains("banana"));
+  }//typingFiltersTheOptions
+
+  @Test
+  public void selectionCyclesThroughTheOptions() throws Exception {
+    Selection sel = new Selection(m_Loopback.getTerminalIO(), "sel");
+    sel.addOption("red");
+    sel.addOption("green");
+    sel.addOption("blue");
+    sel.setLocation(new Point(1, 1));
+    Thread t = m_Loopback.start(sel);
+    assertTrue(m_Loopback.waitForText("red", WAIT));
+    m_Loopback.press(BasicTerminalIO.DOWN);
+    assertTrue(m_Loopback.waitForText("green", WAIT));
+    m_Loopback.press(BasicTerminalIO.ENTER);
+    t.join(WAIT);
+    assertEquals(1, sel.getSelected());
+  }//selectionCyclesThroughTheOptions
+
+  private static final long WAIT = 3000;
+
+}//class ListboxTest
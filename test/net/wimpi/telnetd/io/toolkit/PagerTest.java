@@ -0,0 +1,206 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+
+package net.wimpi.telnetd.io.toolkit;
+
+import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.net.Connection;
+import net.wimpi.telnetd.net.ConnectionEvent;
+import net.wimpi.telnetd.shell.Shell;
+import net.wimpi.telnetd.util.LoopbackConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Pager over a loopback connection.
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class PagerTest {
+
+  private LoopbackConnection m_Loopback;
+
+  @Before
+  public void setUp() throws Exception {
+    m_Loopback = new LoopbackConnection(LoopbackConnection.loadSettings(),
+        "std", "vt100", 40, 12);
+  }//setUp
+
+  @After
+  public void tearDown() {
+    m_Loopback.close();
+  }//tearDown
+
+  @Test
+  public void spacePagesForward() throws Exception {
+    Thread t = m_Loopback.start(new PagerShell(new SpoolSource(getLines(100))));
+    assertTrue(m_Loopback.waitForText("line 10", WAIT));
+    assertEquals("line 0", m_Loopback.getScreen().getLine(1).trim());
+    m_Loopback.type(" ");
+    assertTrue(m_Loopback.waitForText("line 21", WAIT));
+    //the last row is the status
+    assertEquals("line 11", m_Loopback.getScreen().getLine(1).trim());
+    m_Loopback.type("s");
+    t.join(WAIT);
+    assertFalse(t.isAlive());
+  }//spacePagesForward
+
+  @Test
+  public void searchShowsTheHitAtTheTop() throws Exception {
+    m_Loopback.start(new PagerShell(new SpoolSource(getLines(100))));
+    assertTrue(m_Loopback.waitForText("line 10", WAIT));
+    m_Loopback.type("/line 42\n");
+    assertTrue(m_Loopback.waitForText("line 52", WAIT));
+    assertEquals("line 42", m_Loopback.getScreen().getLine(1).trim());
+  }//searchShowsTheHitAtTheTop
+
+  @Test
+  public void searchWaitingForAStreamCanBeCancelled() throws Exception {
+    //the stream never ends, the search can not decide
+    PipedOutputStream out = new PipedOutputStream();
+    PipedInputStream in = new PipedInputStream(out);
+    out.write(getText(20).getBytes());
+    m_Loopback.start(new PagerShell(new SpoolSource(in)));
+    assertTrue(m_Loopback.waitForText("line 10", WAIT));
+    m_Loopback.type("/missing\n");
+    assertTrue(m_Loopback.waitForText("Searching missing", WAIT));
+    m_Loopback.press(BasicTerminalIO.ESCAPE);
+    assertTrue(m_Loopback.waitForText("Search cancelled", WAIT));
+    out.close();
+  }//searchWaitingForAStreamCanBeCancelled
+
+  @Test
+  public void pagingUpStopsAtTheRetainedData() throws Exception {
+    //a ring holding a few lines more than a page, old lines get discarded
+    final RingSource ring = new RingSource(128);
+    Thread t = m_Loopback.start(new PagerShell(ring));
+    Thread writer = new Thread() {
+      public void run() {
+        try {
+          byte[] b = getText(30).getBytes();
+          ring.write(b, 0, b.length);
+        } catch (IOException ex) {
+          //the test fails waiting for the screen
+        }
+      }
+    };
+    writer.start();
+    assertTrue(m_Loopback.waitForText("line 29", WAIT));
+    assertTrue(ring.getStart() > 0);
+    //the writer is done, the first line retained stays
+    byte[] b = new byte[16];
+    String head = new String(b, 0, ring.read(ring.getStart(), b, 0, b.length));
+    String first = head.substring(0, head.indexOf('\n'));
+    //pause, then page up beyond the top
+    m_Loopback.type("p");
+    m_Loopback.press(BasicTerminalIO.UP);
+    m_Loopback.press(BasicTerminalIO.UP);
+    assertTrue(m_Loopback.waitForOutput(QUIET, WAIT));
+    assertEquals(first, m_Loopback.getScreen().getLine(1).trim());
+    m_Loopback.type("G");
+    m_Loopback.press(BasicTerminalIO.UP);
+    assertTrue(m_Loopback.waitForOutput(QUIET, WAIT));
+    assertEquals(first, m_Loopback.getScreen().getLine(1).trim());
+    m_Loopback.type("s");
+    t.join(WAIT);
+    assertFalse(t.isAlive());
+    ring.finish();
+    writer.join(WAIT);
+  }//pagingUpStopsAtTheRetainedData
+
+  private static ByteArrayInputStream getLines(int count) {
+    return new ByteArrayInputStream(getText(count).getBytes());
+  }//getLines
+
+  private static String getText(int count) {
+    StringBuffer sbuf = new StringBuffer();
+    for (int i = 0; i < count; i++) {
+      sbuf.append("line ").append(i).append('\n');
+    }
+    return sbuf.toString();
+  }//getText
+
+  /**
+   * Shell paging a source, or following it
+   * if it is a ring.
+   */
+  private static class PagerShell implements Shell {
+
+    private PagerSource m_Source;
+
+    PagerShell(PagerSource source) {
+      m_Source = source;
+    }//constructor
+
+    public void run(Connection con) {
+      try {
+        Pager pager = new Pager(con.getTerminalIO());
+        if (m_Source instanceof RingSource) {
+          pager.follow((RingSource) m_Source);
+        } else {
+          pager.page(m_Source);
+        }
+      } catch (IOException ex) {
+        //the test fails waiting for the screen
+      }
+    }//run
+
+    public void connectionIdle(ConnectionEvent ce) {
+    }//connectionIdle
+
+    public void connectionTimedOut(ConnectionEvent ce) {
+    }//connectionTimedOut
+
+    public void connectionLogoutRequest(ConnectionEvent ce) {
+    }//connectionLogoutRequest
+
+    public void connectionSentBreak(ConnectionEvent ce) {
+    }//connectionSentBreak
+
+  }//inner class PagerShell
+
+  private static final long WAIT = 3000;
+  private static final long QUIET = 200;
+
+}//class PagerTest
@@ -0,0 +1,629 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.util;
+
+import net.wimpi.telnetd.BootException;
+import net.wimpi.telnetd.io.BasicTerminalIO;
+import net.wimpi.telnetd.io.terminal.TerminalManager;
+import net.wimpi.telnetd.io.toolkit.ActiveComponent;
+import net.wimpi.telnetd.net.Connection;
+import net.wimpi.telnetd.net.ConnectionData;
+import net.wimpi.telnetd.net.ConnectionManager;
+import net.wimpi.telnetd.shell.Shell;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Class that runs a Connection against an in-JVM client,
+ * for tests and benchmarks of the toolkit and the shells.<br>
+ * The connection is set up over a loopback socket, so the complete
+ * I/O stack is exercised. The client side answers the telnet option
+ * negotiation (window size, terminal type, echo and suppress go ahead),
+ * feeds everything the server sends into a {@link TerminalEmulator}
+ * and sends keys as a terminal would.
+ * <p/>
+ * The bytes and flushes the server sends are counted at its socket,
+ * so they can be reported per operation:
+ * <pre>
+ *   LoopbackConnection lc = new LoopbackConnection(settings, "std", "vt100", 80, 24);
+ *   lc.start(new Selection(lc.getTerminalIO(), "sel"));
+ *   lc.waitForOutput(50, 1000);
+ *   lc.resetCounters();
+ *   lc.press(BasicTerminalIO.DOWN);
+ *   lc.waitForOutput(50, 1000);
+ *   ... lc.getScreen().getLine(1), lc.getByteCount(), lc.getFlushCount()
+ * </pre>
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class LoopbackConnection {
+
+  private static Log log = LogFactory.getLog(LoopbackConnection.class);
+
+  //Associations
+  private Connection m_Connection;
+  private TerminalEmulator m_Screen;
+  //Members
+  private Socket m_Client;
+  private OutputStream m_Keys;
+  private String m_TerminalType;
+  private long m_Bytes;					//bytes sent by the server
+  private int m_Flushes;				//flushes of the server
+  private long m_Sent;					//total bytes sent by the server
+  private long m_Received;				//total bytes received by the client
+  private long m_LastOutput;			//time the client received data
+  private boolean m_Negotiated;
+  private boolean m_Closed;
+
+  /**
+   * Constructs a loopback connection. The terminals are set up from the
+   * settings if this was not done before, the connection is managed by
+   * a (not started) ConnectionManager for the given listener.
+   *
+   * @param settings Properties with the terminal and listener settings,
+   *                 as in telnetd.properties.
+   * @param listener String representing the name of the listener.
+   * @param terminal String representing the terminal type negotiated.
+   * @param columns  int representing the number of columns.
+   * @param rows     int representing the number of rows.
+   */
+  public LoopbackConnection(Properties settings, String listener,
+                            String terminal, int columns, int rows)
+      throws IOException, BootException {
+
+    if (TerminalManager.getReference() == null) {
+      TerminalManager.createTerminalManager(settings);
+    }
+    ConnectionManager cm = ConnectionManager.createConnectionManager(listener, settings);
+    m_TerminalType = terminal;
+    m_Screen = new TerminalEmulator(columns, rows);
+
+    //connect a client to a socket counting the output of the server
+    ServerSocket ss = new CountingServerSocket();
+    Socket server;
+    try {
+      m_Client = new Socket(ss.getInetAddress(), ss.getLocalPort());
+      server = ss.accept();
+    } finally {
+      ss.close();
+    }
+    m_Client.setTcpNoDelay(true);
+    m_Keys = m_Client.getOutputStream();
+    Thread reader = new Reader(m_Client.getInputStream());
+    reader.start();
+    //negotiates with the reader
+    m_Connection = new Connection(Thread.currentThread().getThreadGroup(),
+        new ConnectionData(server, cm));
+  }//constructor
+
+  /**
+   * Loads the settings from the telnetd.properties in the working
+   * directory, without a connection filter and with histories kept
+   * in memory.
+   *
+   * @return Properties with the settings.
+   */
+  public static Properties loadSettings() throws IOException {
+    Properties settings = new Properties();
+    FileInputStream in = new FileInputStream("telnetd.properties");
+    try {
+      settings.load(in);
+    } finally {
+      in.close();
+    }
+    settings.setProperty("std.connectionfilter", "none");
+    settings.setProperty("history.dir", "");
+    return settings;
+  }//loadSettings
+
+  /**
+   * Accessor method for the connection.
+   *
+   * @return the Connection of the server side.
+   */
+  public Connection getConnection() {
+    return m_Connection;
+  }//getConnection
+
+  /**
+   * Accessor method for the terminal I/O of the connection.
+   *
+   * @return the BasicTerminalIO of the server side.
+   */
+  public BasicTerminalIO getTerminalIO() {
+    return m_Connection.getTerminalIO();
+  }//getTerminalIO
+
+  /**
+   * Accessor method for the screen of the client.
+   *
+   * @return the TerminalEmulator fed with the output of the server.
+   */
+  public TerminalEmulator getScreen() {
+    return m_Screen;
+  }//getScreen
+
+  /**
+   * Runs a shell on the connection in a new thread.
+   *
+   * @param shell the Shell to be run.
+   * @return the Thread running the shell.
+   */
+  public Thread start(final Shell shell) {
+    Thread t = new Thread("Loopback Shell") {
+      public void run() {
+        shell.run(m_Connection);
+      }//run
+    };
+    t.setDaemon(true);
+    t.start();
+    return t;
+  }//start(Shell)
+
+  /**
+   * Activates a toolkit component in a new thread.
+   *
+   * @param component the ActiveComponent to be run.
+   * @return the Thread running the component.
+   */
+  public Thread start(final ActiveComponent component) {
+    Thread t = new Thread("Loopback Component") {
+      public void run() {
+        try {
+          component.run();
+        } catch (Exception ex) {
+          log.debug("run()", ex);
+        }
+      }//run
+    };
+    t.setDaemon(true);
+    t.start();
+    return t;
+  }//start(ActiveComponent)
+
+  /**
+   * Sends characters as typed on the client, a newline
+   * is sent as the enter key.
+   *
+   * @param str String with the characters.
+   */
+  public void type(String str) throws IOException {
+    for (int i = 0; i < str.length(); i++) {
+      char ch = str.charAt(i);
+      if (ch == '\n') {
+        send("\r\n");
+      } else if (ch == IAC) {
+        send("\377\377");
+      } else {
+        send(String.valueOf(ch));
+      }
+    }
+  }//type
+
+  /**
+   * Sends a key as pressed on a vt100 client.
+   *
+   * @param key one of the BasicTerminalIO key constants, or a character.
+   */
+  public void press(int key) throws IOException {
+    switch (key) {
+      case BasicTerminalIO.UP:
+        send("\033[A");
+        break;
+      case BasicTerminalIO.DOWN:
+        send("\033[B");
+        break;
+      case BasicTerminalIO.RIGHT:
+        send("\033[C");
+        break;
+      case BasicTerminalIO.LEFT:
+        send("\033[D");
+        break;
+      case BasicTerminalIO.BEGIN:
+        send("\033[H");
+        break;
+      case BasicTerminalIO.END:
+        send("\033[F");
+        break;
+      case BasicTerminalIO.INSERT:
+        send("\033[2~");
+        break;
+      case BasicTerminalIO.DELETE:
+        send("\033[3~");
+        break;
+      case BasicTerminalIO.PAGEUP:
+        send("\033[5~");
+        break;
+      case BasicTerminalIO.PAGEDOWN:
+        send("\033[6~");
+        break;
+      case BasicTerminalIO.BACKSPACE:
+        send("\b");
+        break;
+      case BasicTerminalIO.TABULATOR:
+        send("\t");
+        break;
+      case BasicTerminalIO.ESCAPE:
+        send("\033");
+        break;
+      case BasicTerminalIO.ENTER:
+        send("\r\n");
+        break;
+      default:
+        if (key >= 0 && key < 256) {
+          type(String.valueOf((char) key));
+        } else {
+          throw new IllegalArgumentException("Unsupported key: " + key);
+        }
+    }
+  }//press
+
+  /**
+   * Resizes the client, reporting the new window size
+   * to the server.
+   *
+   * @param columns int representing the number of columns.
+   * @param rows    int representing the number of rows.
+   */
+  public void resize(int columns, int rows) throws IOException {
+    m_Screen.resize(columns, rows);
+    sendWindowSize();
+  }//resize
+
+  /**
+   * Waits until the client received everything the server sent,
+   * and the server did not send anything for the given time.
+   *
+   * @param quiet   long representing the quiet time in milliseconds.
+   * @param timeout long representing the maximum time to wait in milliseconds.
+   * @return true if the output settled, false if timed out.
+   */
+  public synchronized boolean waitForOutput(long quiet, long timeout)
+      throws InterruptedException {
+    long start = System.currentTimeMillis();
+    long end = start + timeout;
+    while (true) {
+      long now = System.currentTimeMillis();
+      long settled = Math.max(start, m_LastOutput) + quiet;
+      if (now >= settled && m_Received >= m_Sent) {
+        return true;
+      }
+      if (now >= end) {
+        return false;
+      }
+      wait(Math.max(1, Math.min(settled, end) - now));
+    }
+  }//waitForOutput
+
+  /**
+   * Waits until the screen shows the given text.
+   *
+   * @param str     String to be waited for.
+   * @param timeout long representing the maximum time to wait in milliseconds.
+   * @return true if displayed, false if timed out.
+   */
+  public synchronized boolean waitForText(String str, long timeout)
+      throws InterruptedException {
+    long end = System.currentTimeMillis() + timeout;
+    while (!m_Screen.contains(str)) {
+      long now = System.currentTimeMillis();
+      if (now >= end || m_Closed) {
+        return false;
+      }
+      wait(end - now);
+    }
+    return true;
+  }//waitForText
+
+  /**
+   * Returns the number of bytes the server sent since the
+   * counters were reset, including telnet protocol bytes.
+   *
+   * @return long representing the number of bytes.
+   */
+  public synchronized long getByteCount() {
+    return m_Bytes;
+  }//getByteCount
+
+  /**
+   * Returns the number of flushes of the server since
+   * the counters were reset.
+   *
+   * @return int representing the number of flushes.
+   */
+  public synchronized int getFlushCount() {
+    return m_Flushes;
+  }//getFlushCount
+
+  /**
+   * Resets the byte and flush counters.
+   */
+  public synchronized void resetCounters() {
+    m_Bytes = 0;
+    m_Flushes = 0;
+  }//resetCounters
+
+  /**
+   * Closes the connection and the client.
+   */
+  public void close() {
+    m_Connection.close();
+    try {
+      m_Client.close();
+    } catch (IOException ex) {
+      log.debug("close()", ex);
+    }
+  }//close
+
+  private synchronized void countOutput(int bytes, boolean flush) {
+    m_Bytes += bytes;
+    m_Sent += bytes;
+    if (flush) {
+      m_Flushes++;
+    }
+  }//countOutput
+
+  private synchronized void received(int bytes) {
+    m_Received += bytes;
+    m_LastOutput = System.currentTimeMillis();
+    notifyAll();
+  }//received
+
+  private synchronized void closed() {
+    m_Closed = true;
+    notifyAll();
+  }//closed
+
+  private void send(String str) throws IOException {
+    byte[] b = new byte[str.length()];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = (byte) str.charAt(i);
+    }
+    synchronized (m_Keys) {
+      m_Keys.write(b);
+      m_Keys.flush();
+    }
+  }//send
+
+  private void sendCommand(int verb, int option) throws IOException {
+    send(new String(new char[]{IAC, (char) verb, (char) option}));
+  }//sendCommand
+
+  private void sendWindowSize() throws IOException {
+    int cols = m_Screen.getColumns();
+    int rows = m_Screen.getRows();
+    send(new String(new char[]{IAC, SB, NAWS,
+        (char) ((cols >> 8) & 0xFF), (char) (cols & 0xFF),
+        (char) ((rows >> 8) & 0xFF), (char) (rows & 0xFF), IAC, SE}));
+  }//sendWindowSize
+
+  /**
+   * Answers the option negotiation of the server.
+   */
+  private void negotiate(int verb, int option) throws IOException {
+    switch (verb) {
+      case DO:
+        if (option == NAWS) {
+          sendCommand(WILL, NAWS);
+          sendWindowSize();
+        } else if (option == TTYPE) {
+          sendCommand(WILL, TTYPE);
+        } else {
+          sendCommand(WONT, option);
+        }
+        break;
+      case WILL:
+        sendCommand((option == ECHO || option == SUPGA) ? DO : DONT, option);
+        break;
+      default:
+        //DONT and WONT need no answer
+    }
+  }//negotiate
+
+  private void subnegotiate(int option, byte[] data, int len) throws IOException {
+    if (option == TTYPE && len > 0 && data[0] == SEND) {
+      send(new String(new char[]{IAC, SB, TTYPE, IS}) + m_TerminalType
+          + new String(new char[]{IAC, SE}));
+      if (!m_Negotiated) {
+        //the terminal type is negotiated last, a NUL ends the
+        //initial negotiation of the server without waiting for its timeout
+        m_Negotiated = true;
+        send("\000");
+      }
+    }
+  }//subnegotiate
+
+  /**
+   * Thread reading the output of the server, handling the
+   * telnet protocol and passing all other bytes to the screen.
+   */
+  private class Reader extends Thread {
+
+    private InputStream m_In;
+
+    Reader(InputStream in) {
+      super("Loopback Reader");
+      setDaemon(true);
+      m_In = in;
+    }//constructor
+
+    public void run() {
+      byte[] buf = new byte[4096];
+      byte[] sb = new byte[256];
+      int sblen = 0;
+      int state = DATA;
+      int verb = 0;
+      try {
+        int n;
+        while ((n = m_In.read(buf)) > 0) {
+          for (int i = 0; i < n; i++) {
+            int b = buf[i] & 0xFF;
+            switch (state) {
+              case IAC:
+                if (b == IAC) {
+                  m_Screen.write(b);
+                  state = DATA;
+                } else if (b == DO || b == DONT || b == WILL || b == WONT) {
+                  verb = b;
+                  state = VERB;
+                } else if (b == SB) {
+                  sblen = 0;
+                  state = SB;
+                } else {
+                  state = DATA;
+                }
+                break;
+              case VERB:
+                negotiate(verb, b);
+                state = DATA;
+                break;
+              case SB:
+                if (b == IAC) {
+                  state = SE;
+                } else if (sblen < sb.length) {
+                  sb[sblen++] = (byte) b;
+                }
+                break;
+              case SE:
+                if (b == SE) {
+                  if (sblen > 0) {
+                    byte[] data = new byte[sblen - 1];
+                    System.arraycopy(sb, 1, data, 0, data.length);
+                    subnegotiate(sb[0] & 0xFF, data, data.length);
+                  }
+                  state = DATA;
+                } else {
+                  if (sblen < sb.length) {
+                    sb[sblen++] = (byte) b;
+                  }
+                  state = SB;
+                }
+                break;
+              default:
+                if (b == IAC) {
+                  state = IAC;
+                } else {
+                  m_Screen.write(b);
+                }
+            }
+          }
+          received(n);
+        }
+      } catch (IOException ex) {
+        log.debug("run()", ex);
+      } finally {
+        closed();
+      }
+    }//run
+
+  }//inner class Reader
+
+  /**
+   * Server socket accepting a CountingSocket on the loopback interface.
+   */
+  private class CountingServerSocket extends ServerSocket {
+
+    CountingServerSocket() throws IOException {
+      super(0, 1, InetAddress.getByName("127.0.0.1"));
+    }//constructor
+
+    public Socket accept() throws IOException {
+      Socket s = new CountingSocket();
+      implAccept(s);
+      return s;
+    }//accept
+
+  }//inner class CountingServerSocket
+
+  /**
+   * Socket counting the bytes written and the flushes.
+   */
+  private class CountingSocket extends Socket {
+
+    private OutputStream m_Out;
+
+    public synchronized OutputStream getOutputStream() throws IOException {
+      if (m_Out == null) {
+        m_Out = new FilterOutputStream(super.getOutputStream()) {
+          public void write(int b) throws IOException {
+            out.write(b);
+            countOutput(1, false);
+          }//write(int)
+
+          public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            countOutput(len, false);
+          }//write(byte[],int,int)
+
+          public void flush() throws IOException {
+            out.flush();
+            countOutput(0, true);
+          }//flush
+        };
+      }
+      return m_Out;
+    }//getOutputStream
+
+  }//inner class CountingSocket
+
+  /**
+   * Telnet protocol constants, also used as reader states.
+   */
+  private static final int DATA = 0;
+  private static final int VERB = 1;
+  private static final char IAC = 255;
+  private static final char DONT = 254;
+  private static final char DO = 253;
+  private static final char WONT = 252;
+  private static final char WILL = 251;
+  private static final char SB = 250;
+  private static final char SE = 240;
+  private static final char ECHO = 1;
+  private static final char SUPGA = 3;
+  private static final char TTYPE = 24;
+  private static final char NAWS = 31;
+  private static final char IS = 0;
+  private static final char SEND = 1;
+
+}//class LoopbackConnection
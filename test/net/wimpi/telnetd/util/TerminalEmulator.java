@@ -0,0 +1,782 @@
+//License
+/***
+ * Java TelnetD library (embeddable telnet daemon)
+ * Copyright (c) 2000-2005 Dieter Wimberger 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *  
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+
+package net.wimpi.telnetd.util;
+
+import java.util.Arrays;
+
+/**
+ * Class implementing a headless VT100/ANSI terminal.<br>
+ * It consumes the bytes a BasicTerminalIO sends (with the telnet
+ * protocol already removed, see {@link LoopbackConnection}) and
+ * maintains a model of the screen, so that tests and benchmarks
+ * can check what a client would display.
+ * <p/>
+ * Supported are the sequences produced by the terminal implementations
+ * of this package: cursor positioning and movement, erasing, store and
+ * restore cursor, index and reverse index, scroll margins, line wrapping
+ * and graphic rendition (styles and 8, 16 and 256 colors), plus the
+ * insert/delete line and character sequences common to ANSI terminals.
+ * Bytes are interpreted as ISO-8859-1 characters.
+ * <p/>
+ * Rows and columns are counted from 1, as with
+ * BasicTerminalIO.setCursor(int,int).
+ *
+ * @author agent
+ * @version 1.0 (19/10/2026)
+ */
+public class TerminalEmulator {
+
+  //Members
+  private int m_Columns;
+  private int m_Rows;
+  private char[][] m_Chars;
+  private int[][] m_Attributes;
+  private int m_Row;					//cursor, 0 based
+  private int m_Col;
+  private boolean m_WrapPending;		//cursor behind the last column
+  private boolean m_AutoWrap;
+  private int m_Top;					//scroll margins, 0 based
+  private int m_Bottom;
+  private int m_Attribute;				//current graphic rendition
+  private int m_SavedRow;
+  private int m_SavedCol;
+  private int m_SavedAttribute;
+  private int m_State;
+  private StringBuffer m_Params;
+  private long m_Bytes;
+  private int m_Bells;
+
+  /**
+   * Constructs a terminal with the given geometry.
+   *
+   * @param columns int representing the number of columns.
+   * @param rows    int representing the number of rows.
+   */
+  public TerminalEmulator(int columns, int rows) {
+    m_Params = new StringBuffer();
+    m_Columns = columns;
+    m_Rows = rows;
+    m_Chars = new char[rows][columns];
+    m_Attributes = new int[rows][columns];
+    reset();
+  }//constructor
+
+  /**
+   * Resets the terminal to its initial state, clearing the screen.
+   */
+  public synchronized void reset() {
+    for (int i = 0; i < m_Rows; i++) {
+      Arrays.fill(m_Chars[i], ' ');
+      Arrays.fill(m_Attributes[i], 0);
+    }
+    m_Row = 0;
+    m_Col = 0;
+    m_WrapPending = false;
+    m_AutoWrap = true;
+    m_Top = 0;
+    m_Bottom = m_Rows - 1;
+    m_Attribute = 0;
+    m_SavedRow = 0;
+    m_SavedCol = 0;
+    m_SavedAttribute = 0;
+    m_State = STATE_TEXT;
+  }//reset
+
+  /**
+   * Changes the geometry of the terminal, keeping the
+   * contents that still fit.
+   *
+   * @param columns int representing the number of columns.
+   * @param rows    int representing the number of rows.
+   */
+  public synchronized void resize(int columns, int rows) {
+    char[][] chars = new char[rows][columns];
+    int[][] attrs = new int[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      Arrays.fill(chars[i], ' ');
+      if (i < m_Rows) {
+        int n = Math.min(columns, m_Columns);
+        System.arraycopy(m_Chars[i], 0, chars[i], 0, n);
+        System.arraycopy(m_Attributes[i], 0, attrs[i], 0, n);
+      }
+    }
+    m_Chars = chars;
+    m_Attributes = attrs;
+    m_Columns = columns;
+    m_Rows = rows;
+    m_Top = 0;
+    m_Bottom = rows - 1;
+    m_Row = Math.min(m_Row, rows - 1);
+    m_Col = Math.min(m_Col, columns - 1);
+    m_WrapPending = false;
+  }//resize
+
+  /**
+   * Processes bytes sent to the terminal.
+   *
+   * @param b   byte[] holding the bytes.
+   * @param off int representing the offset of the first byte.
+   * @param len int representing the number of bytes.
+   */
+  public synchronized void write(byte[] b, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      write(b[i]);
+    }
+  }//write(byte[],int,int)
+
+  /**
+   * Processes a byte sent to the terminal.
+   *
+   * @param b int holding the byte.
+   */
+  public synchronized void write(int b) {
+    m_Bytes++;
+    char ch = (char) (b & 0xFF);
+    switch (m_State) {
+      case STATE_ESCAPE:
+        escape(ch);
+        break;
+      case STATE_CSI:
+        csi(ch);
+        break;
+      case STATE_CHARSET:
+        m_State = STATE_TEXT;
+        break;
+      case STATE_OSC:
+        if (ch == BEL) {
+          m_State = STATE_TEXT;
+        } else if (ch == ESC) {
+          m_State = STATE_OSC_ESCAPE;
+        }
+        break;
+      case STATE_OSC_ESCAPE:
+        m_State = STATE_TEXT;
+        break;
+      default:
+        text(ch);
+    }
+  }//write(int)
+
+  /**
+   * Accessor method for the number of columns.
+   *
+   * @return int representing the number of columns.
+   */
+  public int getColumns() {
+    return m_Columns;
+  }//getColumns
+
+  /**
+   * Accessor method for the number of rows.
+   *
+   * @return int representing the number of rows.
+   */
+  public int getRows() {
+    return m_Rows;
+  }//getRows
+
+  /**
+   * Accessor method for the row of the cursor.
+   *
+   * @return int representing the row, counted from 1.
+   */
+  public synchronized int getCursorRow() {
+    return m_Row + 1;
+  }//getCursorRow
+
+  /**
+   * Accessor method for the column of the cursor.
+   *
+   * @return int representing the column, counted from 1.
+   */
+  public synchronized int getCursorColumn() {
+    return m_Col + 1;
+  }//getCursorColumn
+
+  /**
+   * Returns a character of the screen.
+   *
+   * @param row int representing the row, counted from 1.
+   * @param col int representing the column, counted from 1.
+   * @return the character displayed.
+   */
+  public synchronized char getChar(int row, int col) {
+    return m_Chars[row - 1][col - 1];
+  }//getChar
+
+  /**
+   * Returns the style flags of a character of the screen.
+   *
+   * @param row int representing the row, counted from 1.
+   * @param col int representing the column, counted from 1.
+   * @return int with the BOLD, ITALIC, UNDERLINED, BLINK and REVERSE flags.
+   */
+  public synchronized int getStyle(int row, int col) {
+    return m_Attributes[row - 1][col - 1] & STYLE_MASK;
+  }//getStyle
+
+  /**
+   * Returns the foreground color of a character of the screen.
+   *
+   * @param row int representing the row, counted from 1.
+   * @param col int representing the column, counted from 1.
+   * @return the palette index (0-255), or -1 for the default color.
+   */
+  public synchronized int getForeground(int row, int col) {
+    return ((m_Attributes[row - 1][col - 1] >> FG_SHIFT) & COLOR_MASK) - 1;
+  }//getForeground
+
+  /**
+   * Returns the background color of a character of the screen.
+   *
+   * @param row int representing the row, counted from 1.
+   * @param col int representing the column, counted from 1.
+   * @return the palette index (0-255), or -1 for the default color.
+   */
+  public synchronized int getBackground(int row, int col) {
+    return ((m_Attributes[row - 1][col - 1] >> BG_SHIFT) & COLOR_MASK) - 1;
+  }//getBackground
+
+  /**
+   * Returns a row of the screen.
+   *
+   * @param row int representing the row, counted from 1.
+   * @return String with all columns of the row.
+   */
+  public synchronized String getLine(int row) {
+    return new String(m_Chars[row - 1]);
+  }//getLine
+
+  /**
+   * Returns the screen as text, one line per row
+   * without trailing spaces.
+   *
+   * @return String with the screen contents.
+   */
+  public synchronized String getText() {
+    StringBuffer sbuf = new StringBuffer(m_Rows * (m_Columns + 1));
+    for (int i = 0; i < m_Rows; i++) {
+      int end = m_Columns;
+      while (end > 0 && m_Chars[i][end - 1] == ' ') {
+        end--;
+      }
+      sbuf.append(m_Chars[i], 0, end).append('\n');
+    }
+    return sbuf.toString();
+  }//getText
+
+  /**
+   * Tests if a row of the screen contains the given text.
+   *
+   * @param str String to be searched.
+   * @return true if displayed, false otherwise.
+   */
+  public synchronized boolean contains(String str) {
+    for (int i = 0; i < m_Rows; i++) {
+      if (new String(m_Chars[i]).indexOf(str) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }//contains
+
+  /**
+   * Accessor method for the number of bytes processed.
+   *
+   * @return long representing the number of bytes.
+   */
+  public synchronized long getByteCount() {
+    return m_Bytes;
+  }//getByteCount
+
+  /**
+   * Accessor method for the number of bells received.
+   *
+   * @return int representing the number of bells.
+   */
+  public synchronized int getBellCount() {
+    return m_Bells;
+  }//getBellCount
+
+  public String toString() {
+    return getText();
+  }//toString
+
+  private void text(char ch) {
+    switch (ch) {
+      case ESC:
+        m_State = STATE_ESCAPE;
+        break;
+      case CR:
+        m_Col = 0;
+        m_WrapPending = false;
+        break;
+      case LF:
+      case VT:
+      case FF:
+        lineFeed();
+        break;
+      case BS:
+        if (m_Col > 0) {
+          m_Col--;
+        }
+        m_WrapPending = false;
+        break;
+      case HT:
+        m_Col = Math.min(m_Columns - 1, (m_Col / 8 + 1) * 8);
+        m_WrapPending = false;
+        break;
+      case BEL:
+        m_Bells++;
+        break;
+      default:
+        if (ch >= 32 && ch != 127) {
+          put(ch);
+        }
+    }
+  }//text
+
+  private void put(char ch) {
+    if (m_WrapPending) {
+      m_Col = 0;
+      lineFeed();
+    }
+    m_Chars[m_Row][m_Col] = ch;
+    m_Attributes[m_Row][m_Col] = m_Attribute;
+    if (m_Col < m_Columns - 1) {
+      m_Col++;
+    } else {
+      m_WrapPending = m_AutoWrap;
+    }
+  }//put
+
+  private void lineFeed() {
+    m_WrapPending = false;
+    if (m_Row == m_Bottom) {
+      scrollUp(m_Top, m_Bottom, 1);
+    } else if (m_Row < m_Rows - 1) {
+      m_Row++;
+    }
+  }//lineFeed
+
+  private void reverseIndex() {
+    m_WrapPending = false;
+    if (m_Row == m_Top) {
+      scrollDown(m_Top, m_Bottom, 1);
+    } else if (m_Row > 0) {
+      m_Row--;
+    }
+  }//reverseIndex
+
+  private void escape(char ch) {
+    m_State = STATE_TEXT;
+    switch (ch) {
+      case '[':
+        m_Params.setLength(0);
+        m_State = STATE_CSI;
+        break;
+      case ']':
+        m_State = STATE_OSC;
+        break;
+      case '(':
+      case ')':
+        m_State = STATE_CHARSET;
+        break;
+      case '7':
+        saveCursor();
+        break;
+      case '8':
+        restoreCursor();
+        break;
+      case 'D':
+        lineFeed();
+        break;
+      case 'M':
+        reverseIndex();
+        break;
+      case 'E':
+        m_Col = 0;
+        lineFeed();
+        break;
+      case 'c':
+        reset();
+        break;
+      default:
+        //not supported
+    }
+  }//escape
+
+  private void csi(char ch) {
+    if ((ch >= '0' && ch <= '9') || ch == ';' || ch == '?' || ch == '>') {
+      m_Params.append(ch);
+      return;
+    }
+    if (ch >= 0x20 && ch <= 0x2f) {
+      //intermediate bytes are ignored
+      return;
+    }
+    m_State = STATE_TEXT;
+    boolean priv = m_Params.length() > 0
+        && (m_Params.charAt(0) == '?' || m_Params.charAt(0) == '>');
+    int[] p = parseParams(priv ? m_Params.substring(1) : m_Params.toString());
+    int n = Math.max(1, getParam(p, 0, 1));
+    m_WrapPending = false;
+    switch (ch) {
+      case 'A':
+        m_Row = Math.max(0, m_Row - n);
+        break;
+      case 'B':
+        m_Row = Math.min(m_Rows - 1, m_Row + n);
+        break;
+      case 'C':
+        m_Col = Math.min(m_Columns - 1, m_Col + n);
+        break;
+      case 'D':
+        m_Col = Math.max(0, m_Col - n);
+        break;
+      case 'E':
+        m_Row = Math.min(m_Rows - 1, m_Row + n);
+        m_Col = 0;
+        break;
+      case 'F':
+        m_Row = Math.max(0, m_Row - n);
+        m_Col = 0;
+        break;
+      case 'G':
+        m_Col = clamp(n - 1, m_Columns);
+        break;
+      case 'd':
+        m_Row = clamp(n - 1, m_Rows);
+        break;
+      case 'H':
+      case 'f':
+        m_Row = clamp(getParam(p, 0, 1) - 1, m_Rows);
+        m_Col = clamp(getParam(p, 1, 1) - 1, m_Columns);
+        break;
+      case 'J':
+        eraseDisplay(getParam(p, 0, 0));
+        break;
+      case 'K':
+        eraseLine(getParam(p, 0, 0));
+        break;
+      case 'L':
+        if (m_Row >= m_Top && m_Row <= m_Bottom) {
+          scrollDown(m_Row, m_Bottom, n);
+        }
+        break;
+      case 'M':
+        if (m_Row >= m_Top && m_Row <= m_Bottom) {
+          scrollUp(m_Row, m_Bottom, n);
+        }
+        break;
+      case '@':
+        insertChars(n);
+        break;
+      case 'P':
+        deleteChars(n);
+        break;
+      case 'X':
+        erase(m_Row, m_Col, Math.min(m_Columns, m_Col + n));
+        break;
+      case 'S':
+        scrollUp(m_Top, m_Bottom, n);
+        break;
+      case 'T':
+        scrollDown(m_Top, m_Bottom, n);
+        break;
+      case 'r':
+        int top = getParam(p, 0, 1) - 1;
+        int bottom = getParam(p, 1, m_Rows) - 1;
+        if (top >= 0 && top < bottom && bottom < m_Rows) {
+          m_Top = top;
+          m_Bottom = bottom;
+          m_Row = 0;
+          m_Col = 0;
+        }
+        break;
+      case 'm':
+        graphicRendition(p);
+        break;
+      case 'h':
+      case 'l':
+        if (getParam(p, 0, 0) == 7) {
+          m_AutoWrap = (ch == 'h');
+        }
+        break;
+      case 's':
+        saveCursor();
+        break;
+      case 'u':
+        restoreCursor();
+        break;
+      default:
+        //not supported
+    }
+  }//csi
+
+  private void graphicRendition(int[] p) {
+    if (p.length == 0) {
+      m_Attribute = 0;
+      return;
+    }
+    for (int i = 0; i < p.length; i++) {
+      int code = p[i];
+      if (code == 38 || code == 48) {
+        //extended colors: 5;index or 2;r;g;b
+        int mode = getParam(p, i + 1, -1);
+        int color = 0;
+        if (mode == 5) {
+          color = getParam(p, i + 2, -1) + 1;
+          i += 2;
+        } else if (mode == 2) {
+          //true colors are not modelled, treated as default
+          i += 4;
+        } else {
+          continue;
+        }
+        setColor((code == 38) ? FG_SHIFT : BG_SHIFT, color);
+      } else if (code == 0) {
+        m_Attribute = 0;
+      } else if (code == 1) {
+        m_Attribute |= BOLD;
+      } else if (code == 3) {
+        m_Attribute |= ITALIC;
+      } else if (code == 4) {
+        m_Attribute |= UNDERLINED;
+      } else if (code == 5) {
+        m_Attribute |= BLINK;
+      } else if (code == 7) {
+        m_Attribute |= REVERSE;
+      } else if (code == 22) {
+        m_Attribute &= ~BOLD;
+      } else if (code == 23) {
+        m_Attribute &= ~ITALIC;
+      } else if (code == 24) {
+        m_Attribute &= ~UNDERLINED;
+      } else if (code == 25) {
+        m_Attribute &= ~BLINK;
+      } else if (code == 27) {
+        m_Attribute &= ~REVERSE;
+      } else if (code >= 30 && code <= 37) {
+        setColor(FG_SHIFT, code - 30 + 1);
+      } else if (code == 39) {
+        setColor(FG_SHIFT, 0);
+      } else if (code >= 40 && code <= 47) {
+        setColor(BG_SHIFT, code - 40 + 1);
+      } else if (code == 49) {
+        setColor(BG_SHIFT, 0);
+      } else if (code >= 90 && code <= 97) {
+        setColor(FG_SHIFT, code - 90 + 8 + 1);
+      } else if (code >= 100 && code <= 107) {
+        setColor(BG_SHIFT, code - 100 + 8 + 1);
+      }
+    }
+  }//graphicRendition
+
+  private void setColor(int shift, int color) {
+    m_Attribute = (m_Attribute & ~(COLOR_MASK << shift)) | ((color & COLOR_MASK) << shift);
+  }//setColor
+
+  private void saveCursor() {
+    m_SavedRow = m_Row;
+    m_SavedCol = m_Col;
+    m_SavedAttribute = m_Attribute;
+  }//saveCursor
+
+  private void restoreCursor() {
+    m_Row = Math.min(m_SavedRow, m_Rows - 1);
+    m_Col = Math.min(m_SavedCol, m_Columns - 1);
+    m_Attribute = m_SavedAttribute;
+    m_WrapPending = false;
+  }//restoreCursor
+
+  private void eraseDisplay(int mode) {
+    switch (mode) {
+      case 0:
+        erase(m_Row, m_Col, m_Columns);
+        for (int i = m_Row + 1; i < m_Rows; i++) {
+          erase(i, 0, m_Columns);
+        }
+        break;
+      case 1:
+        for (int i = 0; i < m_Row; i++) {
+          erase(i, 0, m_Columns);
+        }
+        erase(m_Row, 0, m_Col + 1);
+        break;
+      case 2:
+        for (int i = 0; i < m_Rows; i++) {
+          erase(i, 0, m_Columns);
+        }
+        break;
+      default:
+        //not supported
+    }
+  }//eraseDisplay
+
+  private void eraseLine(int mode) {
+    switch (mode) {
+      case 0:
+        erase(m_Row, m_Col, m_Columns);
+        break;
+      case 1:
+        erase(m_Row, 0, m_Col + 1);
+        break;
+      case 2:
+        erase(m_Row, 0, m_Columns);
+        break;
+      default:
+        //not supported
+    }
+  }//eraseLine
+
+  private void erase(int row, int from, int to) {
+    Arrays.fill(m_Chars[row], from, to, ' ');
+    Arrays.fill(m_Attributes[row], from, to, m_Attribute & (COLOR_MASK << BG_SHIFT));
+  }//erase
+
+  private void insertChars(int n) {
+    n = Math.min(n, m_Columns - m_Col);
+    System.arraycopy(m_Chars[m_Row], m_Col, m_Chars[m_Row], m_Col + n, m_Columns - m_Col - n);
+    System.arraycopy(m_Attributes[m_Row], m_Col, m_Attributes[m_Row], m_Col + n, m_Columns - m_Col - n);
+    erase(m_Row, m_Col, m_Col + n);
+  }//insertChars
+
+  private void deleteChars(int n) {
+    n = Math.min(n, m_Columns - m_Col);
+    System.arraycopy(m_Chars[m_Row], m_Col + n, m_Chars[m_Row], m_Col, m_Columns - m_Col - n);
+    System.arraycopy(m_Attributes[m_Row], m_Col + n, m_Attributes[m_Row], m_Col, m_Columns - m_Col - n);
+    erase(m_Row, m_Columns - n, m_Columns);
+  }//deleteChars
+
+  /**
+   * Scrolls the rows top to bottom up, blanking rows at the bottom.
+   */
+  private void scrollUp(int top, int bottom, int n) {
+    n = Math.min(n, bottom - top + 1);
+    for (int k = 0; k < n; k++) {
+      char[] chars = m_Chars[top];
+      int[] attrs = m_Attributes[top];
+      for (int i = top; i < bottom; i++) {
+        m_Chars[i] = m_Chars[i + 1];
+        m_Attributes[i] = m_Attributes[i + 1];
+      }
+      m_Chars[bottom] = chars;
+      m_Attributes[bottom] = attrs;
+      erase(bottom, 0, m_Columns);
+    }
+  }//scrollUp
+
+  /**
+   * Scrolls the rows top to bottom down, blanking rows at the top.
+   */
+  private void scrollDown(int top, int bottom, int n) {
+    n = Math.min(n, bottom - top + 1);
+    for (int k = 0; k < n; k++) {
+      char[] chars = m_Chars[bottom];
+      int[] attrs = m_Attributes[bottom];
+      for (int i = bottom; i > top; i--) {
+        m_Chars[i] = m_Chars[i - 1];
+        m_Attributes[i] = m_Attributes[i - 1];
+      }
+      m_Chars[top] = chars;
+      m_Attributes[top] = attrs;
+      erase(top, 0, m_Columns);
+    }
+  }//scrollDown
+
+  private static int[] parseParams(String str) {
+    if (str.length() == 0) {
+      return new int[0];
+    }
+    //empty fields are kept, they denote defaults
+    int count = 1;
+    for (int i = 0; i < str.length(); i++) {
+      if (str.charAt(i) == ';') {
+        count++;
+      }
+    }
+    int[] p = new int[count];
+    Arrays.fill(p, -1);
+    int idx = 0;
+    for (int i = 0; i < str.length(); i++) {
+      char ch = str.charAt(i);
+      if (ch == ';') {
+        idx++;
+      } else if (ch >= '0' && ch <= '9') {
+        p[idx] = Math.min(MAX_PARAM, Math.max(0, p[idx]) * 10 + (ch - '0'));
+      }
+    }
+    return p;
+  }//parseParams
+
+  private static int getParam(int[] p, int idx, int def) {
+    return (idx < p.length && p[idx] >= 0) ? p[idx] : def;
+  }//getParam
+
+  private static int clamp(int val, int size) {
+    return Math.max(0, Math.min(size - 1, val));
+  }//clamp
+
+  /**
+   * Style flags, see getStyle(int,int).
+   */
+  public static final int BOLD = 1;
+  public static final int ITALIC = 2;
+  public static final int UNDERLINED = 4;
+  public static final int BLINK = 8;
+  public static final int REVERSE = 16;
+
+  private static final int MAX_PARAM = 65535;
+  private static final int STYLE_MASK = 0xFF;
+  private static final int COLOR_MASK = 0x1FF;
+  private static final int FG_SHIFT = 8;
+  private static final int BG_SHIFT = 17;
+
+  private static final int STATE_TEXT = 0;
+  private static final int STATE_ESCAPE = 1;
+  private static final int STATE_CSI = 2;
+  private static final int STATE_CHARSET = 3;
+  private static final int STATE_OSC = 4;
+  private static final int STATE_OSC_ESCAPE = 5;
+
+  private static final char BEL = 7;
+  private static final char BS = 8;
+  private static final char HT = 9;
+  private static final char LF = 10;
+  private static final char VT = 11;
+  private static final char FF = 12;
+  private static final char CR = 13;
+  private static final char ESC = 27;
+
+}//class TerminalEmulator